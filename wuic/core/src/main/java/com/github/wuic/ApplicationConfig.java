@@ -105,6 +105,14 @@ public interface ApplicationConfig {
      */
     String USE_INCLUDE_FOR_PATH_PATTERN = DAO_PREFIX + "useIncludeForPathPattern";
 
+    /**
+     * <p>
+     * Number of seconds during which the content of a resource read through the servlet context is reused without being
+     * dispatched again. A value lower or equals to zero disables the cache.
+     * </p>
+     */
+    String REVALIDATION_SECONDS = DAO_PREFIX + "revalidationSeconds";
+
     /**
      * Polling interval for nuts refresher.
      */
@@ -270,6 +278,14 @@ public interface ApplicationConfig {
      */
     String AGGREGATE = ENGINE_PREFIX + "aggregate";
 
+    /**
+     * <p>
+     * Indicates if the aggregated source map should be an index map with one section per aggregated nut instead of
+     * a single map merging all the mappings.
+     * </p>
+     */
+    String INDEX_SOURCE_MAP = ENGINE_PREFIX + "indexSourceMap";
+
     /**
      * <p>
      * Indicates if the engine should inspects and eventually transform or not.
@@ -400,6 +416,15 @@ public interface ApplicationConfig {
      */
     String RESOLVED_FILE_DIRECTORY_AS_WORKING_DIR = ENGINE_PREFIX + "resolvedFileDirectoryAsWorkingDirectory";
 
+    /**
+     * A boolean value that tells a command line engine to compile each nut separately instead of compiling all the
+     * aggregated nuts at once. The tool must support single file compilation. Compilations run concurrently and
+     * results are cached by content, so nuts are not compiled again as long as no nut of the same composition changes.
+     * Any change compiles all the nuts again. Files imported by a nut without being part of the composition are not
+     * tracked.
+     */
+    String CONVERT_BY_NUT = ENGINE_PREFIX + "convertByNut";
+
     /**
      * <p>
      * Indicates all the regex expressions configured in a filter.
@@ -424,6 +449,18 @@ public interface ApplicationConfig {
      */
     String MAX_HEAP_RESOLUTION_STATS = FACADE_PREFIX + "maxHeapResolutionStats";
 
+    /**
+     * Instrumentation level of timers and statistics for the facade. Possible values are enumerated by
+     * {@link com.github.wuic.util.TimerTreeFactory.Level}, case insensitive. When sampled, reported counts and throughput
+     * are divided by the sampling rate. Heap resolutions are always reported, whatever the level.
+     */
+    String INSTRUMENTATION_LEVEL = FACADE_PREFIX + "instrumentationLevel";
+
+    /**
+     * When the instrumentation level is sampled, only one request out of this number is timed.
+     */
+    String INSTRUMENTATION_SAMPLING_RATE = FACADE_PREFIX + "instrumentationSamplingRate";
+
     /**
      * Init parameter which indicates if configurations injected by tag supports (JSP, Thymeleaf, etc) should be done
      * each time a page is processed or not.
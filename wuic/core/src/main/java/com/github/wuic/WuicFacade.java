@@ -37,16 +37,21 @@ import java.beans.PropertyChangeListener;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.github.wuic.mbean.FacadeStats;
 import com.github.wuic.nut.ConvertibleNut;
+import com.github.wuic.nut.HeapListener;
+import com.github.wuic.nut.Nut;
 import com.github.wuic.nut.dao.NutDao;
 import com.github.wuic.util.JmxPropertyResolver;
 import com.github.wuic.util.NumberUtils;
 import com.github.wuic.util.Timer;
+import com.github.wuic.util.TimerTreeFactory;
 import com.github.wuic.util.UrlProviderFactory;
 import com.github.wuic.util.UrlUtils;
 import com.github.wuic.util.WuicScheduledThreadPool;
@@ -155,6 +160,11 @@ public final class WuicFacade implements ObjectBuilderInspector, PropertyChangeL
      */
     private FacadeStats facadeStats;
 
+    /**
+     * Decides which requests of this facade are timed.
+     */
+    private TimerTreeFactory.Sampler sampler;
+
     /**
      * The nut type factory.
      */
@@ -165,6 +175,11 @@ public final class WuicFacade implements ObjectBuilderInspector, PropertyChangeL
      */
     private Context context;
 
+    /**
+     * Incremented each time the context is built.
+     */
+    private final AtomicLong contextVersion;
+
     /**
      * <p>
      * Builds a new {@link WuicFacade}.
@@ -176,6 +191,7 @@ public final class WuicFacade implements ObjectBuilderInspector, PropertyChangeL
      */
     WuicFacade(final WuicFacadeBuilder b) throws WuicException {
         config = b;
+        contextVersion = new AtomicLong();
 
         try {
             if (b.wuicConfigurationPaths() != null) {
@@ -203,6 +219,7 @@ public final class WuicFacade implements ObjectBuilderInspector, PropertyChangeL
         // finally merge all settings
         builder.tag(getClass().getName()).mergeSettings(b.contextBuilder()).releaseTag();
 
+        configureInstrumentation(b);
         configureJmx(b);
         buildContext();
     }
@@ -284,16 +301,18 @@ public final class WuicFacade implements ObjectBuilderInspector, PropertyChangeL
      * @return the processed nuts
      * @throws WuicException if the context can't be processed
      */
-    public synchronized ConvertibleNut runWorkflow(final String id,
+    public ConvertibleNut runWorkflow(final String id,
                                                    final String path,
                                                    final UrlProviderFactory urlProviderFactory,
                                                    final ProcessContext processContext,
                                                    final EngineType ... skip)
             throws WuicException {
         try {
-            final Timer timer = beforeRunWorkflow(id);
-            final ConvertibleNut retval = context.process(config.getContextPath(), id, path, urlProviderFactory, processContext, skip);
-            Logging.TIMER.log("Workflow retrieved in {} seconds", (float) (timer.end()) / (float) NumberUtils.ONE_THOUSAND);
+            final TimerTreeFactory timerTreeFactory = sampler.newInstance();
+            final Timer timer = beforeRunWorkflow(id, timerTreeFactory);
+            final ConvertibleNut retval = upToDateContext().process(
+                    config.getContextPath(), id, path, urlProviderFactory, processContext, timerTreeFactory, skip);
+            afterRunWorkflow(timer);
             return retval;
         } catch (IOException ioe) {
             WuicException.throwWuicException(ioe);
@@ -318,7 +337,7 @@ public final class WuicFacade implements ObjectBuilderInspector, PropertyChangeL
      * @return the processed nuts
      * @throws WuicException if the context can't be processed
      */
-    public synchronized ConvertibleNut runWorkflow(final String id,
+    public ConvertibleNut runWorkflow(final String id,
                                                    final String path,
                                                    final ProcessContext processContext,
                                                    final EngineType ... skip)
@@ -338,14 +357,16 @@ public final class WuicFacade implements ObjectBuilderInspector, PropertyChangeL
      * @return the processed nuts
      * @throws WuicException if the context can't be processed
      */
-    public synchronized List<ConvertibleNut> runWorkflow(final String id,
+    public List<ConvertibleNut> runWorkflow(final String id,
                                                          final UrlProviderFactory urlProviderFactory,
                                                          final ProcessContext processContext,
                                                          final EngineType ... skip)
             throws WuicException {
-        final Timer timer = beforeRunWorkflow(id);
-        final List<ConvertibleNut> retval = context.process(config.getContextPath(), id, urlProviderFactory, processContext, skip);
-        Logging.TIMER.log("Workflow retrieved in {} seconds", (float) (timer.end()) / (float) NumberUtils.ONE_THOUSAND);
+        final TimerTreeFactory timerTreeFactory = sampler.newInstance();
+        final Timer timer = beforeRunWorkflow(id, timerTreeFactory);
+        final List<ConvertibleNut> retval = upToDateContext().process(
+                config.getContextPath(), id, urlProviderFactory, processContext, timerTreeFactory, skip);
+        afterRunWorkflow(timer);
 
         return retval;
     }
@@ -361,11 +382,52 @@ public final class WuicFacade implements ObjectBuilderInspector, PropertyChangeL
      * @return the processed nuts
      * @throws WuicException if the context can't be processed
      */
-    public synchronized List<ConvertibleNut> runWorkflow(final String id, final ProcessContext processContext, final EngineType ... skip)
+    public List<ConvertibleNut> runWorkflow(final String id, final ProcessContext processContext, final EngineType ... skip)
             throws WuicException {
         return runWorkflow(id, UrlUtils.urlProviderFactory(), processContext, skip);
     }
 
+    /**
+     * <p>
+     * Gets the nuts of the heap processed by the workflow identified by the specified ID.
+     * </p>
+     *
+     * @param id the workflow ID
+     * @return the nuts
+     * @throws WuicException if the context can't be refreshed or if the workflow does not exist
+     */
+    public synchronized List<Nut> getHeapNuts(final String id) throws WuicException {
+        refreshContext();
+        return context.getWorkflow(id).getHeap().getNuts();
+    }
+
+    /**
+     * <p>
+     * Adds the given listener to the heap of the workflow identified by the specified ID. The listener will be notified
+     * when any nut of the heap changes until the context is built again.
+     * </p>
+     *
+     * @param id the workflow ID
+     * @param listener the listener
+     * @throws WuicException if the context can't be refreshed or if the workflow does not exist
+     */
+    public synchronized void addHeapListener(final String id, final HeapListener listener) throws WuicException {
+        refreshContext();
+        context.getWorkflow(id).getHeap().addObserver(listener);
+    }
+
+    /**
+     * <p>
+     * Gets the version of the context. The value changes each time the context is built, which allows to detect that
+     * any state computed from a previous context must be discarded.
+     * </p>
+     *
+     * @return the context version
+     */
+    public long getContextVersion() {
+        return contextVersion.get();
+    }
+
     /**
      * <p>
      * Returns the workflow IDs.
@@ -379,23 +441,51 @@ public final class WuicFacade implements ObjectBuilderInspector, PropertyChangeL
 
     /**
      * <p>
-     * Method called before running a workflow.
+     * Method called before running a workflow. The instrumentation of the request has already been decided when the
+     * given {@link TimerTreeFactory} has been created, the returned timer is enabled only if the factory is enabled.
      * </p>
      *
      * @param id the workflow to be run
+     * @param timerTreeFactory the timer tree factory of the request
      * @return the timer started at the beginning of the call
      * @throws WuicException if context can't be built
      */
-    private Timer beforeRunWorkflow(final String id) throws WuicException {
-        final Timer retval = new Timer();
+    private Timer beforeRunWorkflow(final String id, final TimerTreeFactory timerTreeFactory) throws WuicException {
+        final Timer retval = timerTreeFactory.createTimer();
         retval.start();
 
         log.info("Getting nuts for workflow : {}", id);
-        refreshContext();
 
         return retval;
     }
 
+    /**
+     * <p>
+     * Refreshes the context if necessary and returns it. Only this step holds the lock of the facade. The context
+     * serves cached nuts concurrently and lets only one request at a time run the engines and the heaps.
+     * </p>
+     *
+     * @return the context
+     * @throws WuicException if context can't be built
+     */
+    private synchronized Context upToDateContext() throws WuicException {
+        refreshContext();
+        return context;
+    }
+
+    /**
+     * <p>
+     * Method called after running a workflow.
+     * </p>
+     *
+     * @param timer the timer returned by {@link #beforeRunWorkflow(String)}
+     */
+    private void afterRunWorkflow(final Timer timer) {
+        if (timer.isEnabled()) {
+            Logging.TIMER.log("Workflow retrieved in {} seconds", (float) (timer.end()) / (float) NumberUtils.ONE_THOUSAND);
+        }
+    }
+
     /**
      * <p>
      * Refresh the context if necessary.
@@ -474,6 +564,60 @@ public final class WuicFacade implements ObjectBuilderInspector, PropertyChangeL
         return object;
     }
 
+    /**
+     * <p>
+     * Configures the instrumentation level of timers. The level and the sampling rate only apply to this facade.
+     * </p>
+     *
+     * @param b the facade builder
+     * @throws WuicException if the level or the sampling rate is not valid
+     */
+    private void configureInstrumentation(final WuicFacadeBuilder b) throws WuicException {
+        final String level = b.getPropertyResolver().resolveProperty(ApplicationConfig.INSTRUMENTATION_LEVEL);
+        final String rate = b.getPropertyResolver().resolveProperty(ApplicationConfig.INSTRUMENTATION_SAMPLING_RATE);
+        TimerTreeFactory.Level l = TimerTreeFactory.Level.FULL;
+        int r = NumberUtils.ONE_THOUSAND;
+
+        if (level != null) {
+            try {
+                l = TimerTreeFactory.Level.valueOf(level.trim().toUpperCase());
+            } catch (IllegalArgumentException iae) {
+                WuicException.throwWuicException(new IllegalArgumentException(String.format(
+                        "'%s' is not a valid value for %s, expected one of %s",
+                        level, ApplicationConfig.INSTRUMENTATION_LEVEL, Arrays.toString(TimerTreeFactory.Level.values())), iae));
+            }
+        }
+
+        if (rate != null) {
+            try {
+                r = Integer.parseInt(rate.trim());
+            } catch (NumberFormatException nfe) {
+                WuicException.throwWuicException(new IllegalArgumentException(String.format(
+                        "'%s' is not a valid value for %s, expected a positive integer",
+                        rate, ApplicationConfig.INSTRUMENTATION_SAMPLING_RATE), nfe));
+            }
+
+            if (r < 1) {
+                WuicException.throwWuicException(new IllegalArgumentException(String.format(
+                        "'%s' is not a valid value for %s, expected a positive integer",
+                        rate, ApplicationConfig.INSTRUMENTATION_SAMPLING_RATE)));
+            }
+        }
+
+        sampler = new TimerTreeFactory.Sampler(l, r);
+    }
+
+    /**
+     * <p>
+     * Gets the instrumentation level of this facade.
+     * </p>
+     *
+     * @return the level
+     */
+    public TimerTreeFactory.Level getInstrumentationLevel() {
+        return sampler.getLevel();
+    }
+
     /**
      * <p>
      * Configures JMX.
@@ -541,6 +685,7 @@ public final class WuicFacade implements ObjectBuilderInspector, PropertyChangeL
     private void buildContext() throws WuicException {
         context = builder.build();
         context.addPropertyChangeListener(this);
+        contextVersion.incrementAndGet();
         nutTypeFactory = builder.getNutTypeFactory();
 
         switch (config.getWarmUpStrategy()) {
@@ -36,11 +36,14 @@ import com.github.wuic.engine.EngineRequestBuilder;
 import com.github.wuic.engine.core.StaticEngine;
 import com.github.wuic.exception.WuicException;
 import com.github.wuic.nut.ConvertibleNut;
+import com.github.wuic.nut.Nut;
+import com.github.wuic.nut.PrecompressedVariant;
 import com.github.wuic.nut.dao.core.DiskNutDao;
 import com.github.wuic.nut.dao.core.UnreachableNutDao;
 import com.github.wuic.util.IOUtils;
 import com.github.wuic.util.NutUtils;
 import com.github.wuic.util.Pipe;
+import com.github.wuic.util.StringUtils;
 import com.github.wuic.util.UrlProvider;
 import com.github.wuic.util.UrlProviderFactory;
 import com.github.wuic.util.UrlUtils;
@@ -53,16 +56,32 @@ import javax.xml.bind.Marshaller;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
+import java.util.zip.GZIPOutputStream;
 import java.util.regex.Pattern;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
@@ -88,6 +107,25 @@ import java.util.jar.JarOutputStream;
  * </p>
  *
  * <p>
+ * Workflows can be processed concurrently when {@link #parallel} is {@code true}. The results are transformed in memory
+ * by a pool bounded to the number of available processors and then written in the order of the workflows. The engines
+ * and the heaps are run by one workflow at a time, only the transformations are concurrent. When {@link #incremental}
+ * is {@code true}, a manifest storing the version numbers of the nuts in the heap of each workflow and a digest of the
+ * configuration files is written to the output directory. This includes the configuration files detected in the
+ * classpath. A workflow whose heap did not change since the previous build is not processed again and its files are
+ * kept as is. Like heap polling, only the nuts of the heap are checked, not the nuts they
+ * reference. Incremental builds are not supported when the output is packaged as a JAR file which is always entirely
+ * written.
+ * </p>
+ *
+ * <p>
+ * When {@link #precompress} is {@code true}, a GZIP variant is written next to each text nut with the {@code .gz}
+ * extension if it's smaller than the original content. The size and the hash of each variant are described in the
+ * {@link StaticEngine#STATIC_PRECOMPRESSED_FILE} metadata, so the variants can be served at runtime without compressing
+ * the content again.
+ * </p>
+ *
+ * <p>
  * This class can be integrated with ant as a custom task since it respects its name conventions.
  * </p>
  *
@@ -101,6 +139,16 @@ public class WuicTask extends ContextInterceptorAdapter implements UrlProviderFa
      */
     public static final String BUILD_INFO_FILE = "wuic-build-info.properties";
 
+    /**
+     * Manifest file storing the version numbers of the nuts processed by each workflow for incremental builds.
+     */
+    public static final String BUILD_MANIFEST_FILE = "wuic-build-manifest.properties";
+
+    /**
+     * GZIP content encoding.
+     */
+    private static final String GZIP = "gzip";
+
     /**
      * XML file name.
      */
@@ -173,6 +221,21 @@ public class WuicTask extends ContextInterceptorAdapter implements UrlProviderFa
      */
     private boolean useRegex;
 
+    /**
+     * Process the workflows concurrently.
+     */
+    private boolean parallel;
+
+    /**
+     * Skip the workflows whose heap did not change since the previous build.
+     */
+    private boolean incremental;
+
+    /**
+     * Write a compressed variant of each nut.
+     */
+    private boolean precompress;
+
     /**
      * <p>
      * Builds a new instance. {@link #relocateTransformedXml} is {@code null} and default {@link #contextPath} is '/'.
@@ -184,6 +247,9 @@ public class WuicTask extends ContextInterceptorAdapter implements UrlProviderFa
         this.useRegex = false;
         this.taskName = "wuic-task";
         this.packageAsJar = true;
+        this.parallel = false;
+        this.incremental = false;
+        this.precompress = false;
     }
 
     /**
@@ -359,6 +425,8 @@ public class WuicTask extends ContextInterceptorAdapter implements UrlProviderFa
         JarOutputStream jarOutputStream = null;
         OutputStream buildInfoFileOs = null;
         FileOutputStream outputXmlFile = null;
+        ExecutorService executor = null;
+        final Properties buildManifest = new Properties();
 
         try {
             if (packageAsJar) {
@@ -384,11 +452,48 @@ public class WuicTask extends ContextInterceptorAdapter implements UrlProviderFa
                 buildInfo.write("workflowList=");
             }
 
+            final List<String> workflowIds = new ArrayList<String>(facade.workflowIds());
+            final String charset = facade.getNutTypeFactory().getCharset();
+
+            // Detect the workflows that don't need to be processed again
+            final Set<String> upToDate = new HashSet<String>();
+
+            if (incremental && packageAsJar) {
+                log.warn("Incremental build is not supported when output is packaged as a JAR file, all workflows are processed.");
+            } else if (incremental) {
+                final Properties previous = readManifest();
+                final String classpathConfiguration = classpathConfigurationDigest(facadeBuilder.getClasspathResourceResolver());
+
+                for (final String wId : workflowIds) {
+                    final String fingerprint = fingerprint(facade, wId, classpathConfiguration);
+                    buildManifest.setProperty(wId, fingerprint);
+
+                    if (fingerprint.equals(previous.getProperty(wId))) {
+                        log.info("Heap of workflow {} did not change since previous build, skipping it", wId);
+                        upToDate.add(wId);
+                    }
+                }
+            }
+
+            // Transform the workflows concurrently, the results are written in the order of the workflows
+            final Map<String, Future<WorkflowOutput>> outputs = new HashMap<String, Future<WorkflowOutput>>();
+
+            if (parallel) {
+                executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+                for (final String wId : workflowIds) {
+                    if (!upToDate.contains(wId)) {
+                        outputs.put(wId, executor.submit(new WorkflowJob(facade, wId, charset)));
+                    }
+                }
+            }
+
             // Now write each workflow result to disk with its description file
             int cpt = 0;
-            int len = facade.workflowIds().size();
+            int len = workflowIds.size();
 
-            for (final String wId : facade.workflowIds()) {
+            for (final String wId : workflowIds) {
+                final boolean skip = upToDate.contains(wId);
                 PrintWriter pw = null;
 
                 try {
@@ -403,13 +508,24 @@ public class WuicTask extends ContextInterceptorAdapter implements UrlProviderFa
                             // relocateTransformedXmlTo is not null
                             final File file = new File(relocateTransformedXmlTo, fileName);
 
-                            if (!file.getParentFile().mkdirs()) {
-                                log.error("Unable to create '{}' directory", file.getParent());
-                            }
-
                             // Adds file name without '/' at the beginning
                             retval.add(fileName.substring(1));
-                            pw = new PrintWriter(file);
+
+                            final String variantsFileName = String.format(StaticEngine.STATIC_PRECOMPRESSED_FILE, wId);
+
+                            // Variants written by previous build are kept too
+                            if (skip && new File(relocateTransformedXmlTo, variantsFileName).isFile()) {
+                                retval.add(variantsFileName.substring(1));
+                            }
+
+                            // Description file written by previous build is kept
+                            if (!skip) {
+                                if (!file.getParentFile().mkdirs()) {
+                                    log.error("Unable to create '{}' directory", file.getParent());
+                                }
+
+                                pw = new PrintWriter(file);
+                            }
                         }
 
                         buildInfo.write(wId);
@@ -419,10 +535,26 @@ public class WuicTask extends ContextInterceptorAdapter implements UrlProviderFa
                         }
                     }
 
-                    final List<ConvertibleNut> nuts = facade.runWorkflow(wId, ProcessContext.DEFAULT);
+                    final Future<WorkflowOutput> output = outputs.get(wId);
+                    final Sink sink = jarOutputStream == null ? new FileSink() : new JarSink(jarOutputStream);
+                    Properties variants = null;
+
+                    if (output != null) {
+                        final WorkflowOutput result = waitAndGet(output);
+                        result.writeTo(pw, sink);
+                        variants = result.variants;
+                    } else if (!skip) {
+                        final List<ConvertibleNut> nuts = facade.runWorkflow(wId, ProcessContext.DEFAULT);
+                        variants = precompress ? new Properties() : null;
+
+                        for (final ConvertibleNut nut : nuts) {
+                            write(nut, wId, pw, sink, variants, 0, charset);
+                        }
+                    }
 
-                    for (final ConvertibleNut nut : nuts) {
-                        write(nut, wId, pw, jarOutputStream, 0, facade.getNutTypeFactory().getCharset());
+                    // Describes the compressed variants to serve them at runtime
+                    if (relocateTransformedXmlTo != null && variants != null && !variants.isEmpty()) {
+                        writeVariants(wId, variants, jarOutputStream, retval);
                     }
                 } finally {
                     // Don't close the writer if it's pointing to a JarEntry
@@ -432,6 +564,11 @@ public class WuicTask extends ContextInterceptorAdapter implements UrlProviderFa
                 }
             }
 
+            // Manifest for next incremental build
+            if (incremental && !packageAsJar) {
+                writeManifest(buildManifest);
+            }
+
             // No need to continue if we don't want to generate wuic.xml file too or if file is packaged inside the JAR
             if (relocateTransformedXmlTo != null) {
                 buildInfo.flush();
@@ -467,6 +604,10 @@ public class WuicTask extends ContextInterceptorAdapter implements UrlProviderFa
                 }
             }
         } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+
             IOUtils.close(buildInfo, jarOutputStream, buildInfoFileOs, outputXmlFile);
         }
 
@@ -493,6 +634,32 @@ public class WuicTask extends ContextInterceptorAdapter implements UrlProviderFa
                       final int depth,
                       final String charset)
             throws WuicException, IOException {
+        write(nut, wId, workflowWriter, jarOutputStream == null ? new FileSink() : new JarSink(jarOutputStream), null, depth, charset);
+    }
+
+    /**
+     * <p>
+     * Writes the given net into the given sink.
+     * </p>
+     *
+     * @param nut    the nut to be written
+     * @param wId    the workflow ID
+     * @param workflowWriter the writer of the workflow description, {@code null} if no description is written
+     * @param sink   the sink where the nut is written
+     * @param variants where compressed variants are described, {@code null} if no variant is written
+     * @param depth  the depth computed from referenced nuts chain
+     * @param charset the charset
+     * @throws WuicException if WUIC fails
+     * @throws IOException   if output can't be reached or if transformation fails
+     */
+    private void write(final ConvertibleNut nut,
+                       final String wId,
+                       final PrintWriter workflowWriter,
+                       final Sink sink,
+                       final Properties variants,
+                       final int depth,
+                       final String charset)
+            throws WuicException, IOException {
         final String path = nut.getProxyUri() == null ? IOUtils.mergePath(String.valueOf(NutUtils.getVersionNumber(nut)), nut.getName()) : nut.getProxyUri();
 
         if (workflowWriter != null) {
@@ -504,7 +671,6 @@ public class WuicTask extends ContextInterceptorAdapter implements UrlProviderFa
             workflowWriter.flush();
         }
 
-        final OutputStream os;
         final String name;
 
         // Keep the file in the top directory
@@ -514,56 +680,293 @@ public class WuicTask extends ContextInterceptorAdapter implements UrlProviderFa
             name = IOUtils.mergePath(wId, String.valueOf(NutUtils.getVersionNumber(nut)), nut.getName());
         }
 
-        // Write to file if content if not packaged in a JAR file
-        if (jarOutputStream == null) {
-            final File file = new File(output, name);
+        final OutputStream os = sink.open(name);
 
-            // Create if not exist
-            if (file.getParentFile() != null && file.getParentFile().mkdirs()) {
-                log.debug("{} created", file.getParent());
-            }
+        // Keep the text content to compress it, binary content is usually already compressed and is written directly
+        final ByteArrayOutputStream content = variants == null || nut.isCompressed() ? null : new ByteArrayOutputStream();
+        final AtomicBoolean buffered = new AtomicBoolean();
 
-            os = new FileOutputStream(file);
-        } else {
-            os = new OutputStream() {
+        try {
+            nut.transform(new Pipe.OnReady() {
                 @Override
-                public void write(final int b) throws IOException {
-                    jarOutputStream.write(b);
+                public void ready(final Pipe.Execution e) throws IOException {
+                    buffered.set(content != null && e.isText());
+                    final OutputStream out = buffered.get() ? content : os;
+
+                    if (e.isText()) {
+                        e.writeResultTo(new PrintWriter(new OutputStreamWriter(out, charset)));
+                    } else {
+                       e.writeResultTo(out);
+                    }
                 }
+            });
 
-                @Override
-                public void close() throws IOException {
-                    // transform() closes the stream, avoid this with jarOutputStream as we need to close it only when all entries are written
-                }
-            };
+            if (buffered.get()) {
+                content.writeTo(os);
+            }
+        } finally {
+            sink.close(os);
+        }
 
-            jarOutputStream.putNextEntry(new JarEntry(IOUtils.mergePath("META-INF", "resources", name)));
+        if (buffered.get()) {
+            precompress(content.toByteArray(), path, name, sink, variants);
         }
-        
-        nut.transform(new Pipe.OnReady() {
-            @Override
-            public void ready(final Pipe.Execution e) throws IOException {
-                if (e.isText()) {
-                    e.writeResultTo(new PrintWriter(new OutputStreamWriter(os, charset)));
-                } else {
-                   e.writeResultTo(os);
-                }
+
+        // Recursive call on referenced nuts
+        if (nut.getReferencedNuts() != null) {
+            for (final ConvertibleNut ref : nut.getReferencedNuts()) {
+                write(ref, wId, workflowWriter, sink, variants, depth + 1, charset);
             }
-        });
+        }
+    }
+
+    /**
+     * <p>
+     * Writes the GZIP variant of the given content if it's smaller than the content and describes it in the given
+     * properties.
+     * </p>
+     *
+     * @param bytes the content
+     * @param path the path of the nut in the workflow description
+     * @param name the name of the written nut
+     * @param sink the sink where the variant is written
+     * @param variants where the variant is described
+     * @throws IOException if the variant can't be written
+     */
+    private void precompress(final byte[] bytes,
+                             final String path,
+                             final String name,
+                             final Sink sink,
+                             final Properties variants)
+            throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final GZIPOutputStream gzip = new GZIPOutputStream(bos);
+
+        try {
+            gzip.write(bytes);
+        } finally {
+            IOUtils.close(gzip);
+        }
+
+        final byte[] compressed = bos.toByteArray();
+
+        // Compression is not worth it
+        if (compressed.length >= bytes.length) {
+            return;
+        }
+
+        final String resource = name + ".gz";
+        final OutputStream os = sink.open(resource);
+
+        try {
+            os.write(compressed);
+        } finally {
+            sink.close(os);
+        }
+
+        final String hash = StringUtils.toHexString(IOUtils.digest(compressed));
+        variants.setProperty(path, new PrecompressedVariant(GZIP, compressed.length, hash, resource).toString());
+    }
+
+    /**
+     * <p>
+     * Writes the metadata describing the compressed variants of the given workflow.
+     * </p>
+     *
+     * @param wId the workflow ID
+     * @param variants the variants
+     * @param jarOutputStream if not {@code null}, the metadata is written as a jar entry
+     * @param files the list of files relocated with the {@link #relocateTransformedXmlTo} location
+     * @throws IOException if the metadata can't be written
+     */
+    private void writeVariants(final String wId,
+                               final Properties variants,
+                               final JarOutputStream jarOutputStream,
+                               final List<String> files)
+            throws IOException {
+        final String fileName = String.format(StaticEngine.STATIC_PRECOMPRESSED_FILE, wId);
 
-        // Close the entry if needed
         if (jarOutputStream != null) {
+            jarOutputStream.putNextEntry(new JarEntry(fileName.substring(1)));
+            variants.store(jarOutputStream, null);
             jarOutputStream.closeEntry();
-        } else  {
+        } else {
+            OutputStream os = null;
+
+            try {
+                os = new FileOutputStream(new File(relocateTransformedXmlTo, fileName));
+                variants.store(os, null);
+            } finally {
+                IOUtils.close(os);
+            }
+
+            // Adds file name without '/' at the beginning
+            files.add(fileName.substring(1));
+        }
+    }
+
+    /**
+     * <p>
+     * Computes a fingerprint of the heap processed by the given workflow, based on the version number of each nut and on
+     * the task configuration.
+     * </p>
+     *
+     * @param facade the facade
+     * @param wId the workflow ID
+     * @param classpathConfiguration the digest of the configuration files detected in the classpath
+     * @return the fingerprint
+     * @throws WuicException if the heap can't be retrieved
+     */
+    private String fingerprint(final WuicFacade facade, final String wId, final String classpathConfiguration)
+            throws WuicException {
+        final List<String> values = new ArrayList<String>();
+        values.add(classpathConfiguration);
+        values.add(String.valueOf(xml == null ? null : new File(xml).lastModified()));
+        values.add(String.valueOf(properties == null ? null : new File(properties).lastModified()));
+        values.add(String.valueOf(profiles));
+        values.add(String.valueOf(contextPath));
+        values.add(String.valueOf(moveToTopDirPattern));
+        values.add(String.valueOf(precompress));
+
+        for (final Nut nut : facade.getHeapNuts(wId)) {
+            values.add(nut.getInitialName());
+            values.add(String.valueOf(NutUtils.getVersionNumber(nut)));
+        }
+
+        return StringUtils.toHexString(IOUtils.digest(values.toArray(new String[values.size()])));
+    }
+
+    /**
+     * <p>
+     * Computes a digest of the content of the {@code wuic.xml}, {@code wuic.json} and {@code wuic.properties} files,
+     * and of their variants for each profile enabled by this task, detected in the classpath by the facade builder.
+     * </p>
+     *
+     * @param classpathResourceResolver the resolver used by the facade builder
+     * @return the digest
+     * @throws IOException if a file can't be read
+     */
+    private String classpathConfigurationDigest(final ClassPathResourceResolver classpathResourceResolver)
+            throws IOException {
+        final List<String> files = new ArrayList<String>();
+        final String[] suffixes = { ".xml", ".json", ".properties", };
+
+        for (final String suffix : suffixes) {
+            files.add("wuic" + suffix);
+
+            if (profiles != null) {
+                for (final String profile : profiles.split(",")) {
+                    files.add(String.format("wuic-%s%s", profile, suffix));
+                }
+            }
+        }
+
+        final List<String> values = new ArrayList<String>();
+
+        for (final String file : files) {
+            final URL url = classpathResourceResolver.getResource(file);
+
+            if (url != null) {
+                final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                InputStream is = null;
+
+                try {
+                    is = url.openStream();
+                    IOUtils.copyStream(is, bos);
+                } finally {
+                    IOUtils.close(is);
+                }
+
+                values.add(file);
+                values.add(StringUtils.toHexString(IOUtils.digest(bos.toByteArray())));
+            }
+        }
+
+        return StringUtils.toHexString(IOUtils.digest(values.toArray(new String[values.size()])));
+    }
+
+    /**
+     * <p>
+     * Reads the manifest written by the previous build.
+     * </p>
+     *
+     * @return the manifest, empty if it does not exist
+     * @throws IOException if the file can't be read
+     */
+    private Properties readManifest() throws IOException {
+        final Properties retval = new Properties();
+        final File file = new File(output, BUILD_MANIFEST_FILE);
+
+        if (file.isFile()) {
+            InputStream is = null;
+
+            try {
+                is = new FileInputStream(file);
+                retval.load(is);
+            } finally {
+                IOUtils.close(is);
+            }
+        }
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Writes the manifest for the next build.
+     * </p>
+     *
+     * @param manifest the manifest
+     * @throws IOException if the file can't be written
+     */
+    private void writeManifest(final Properties manifest) throws IOException {
+        final File file = new File(output, BUILD_MANIFEST_FILE);
+
+        // Create if not exist
+        if (file.getParentFile() != null && file.getParentFile().mkdirs()) {
+            log.debug("{} created", file.getParent());
+        }
+
+        OutputStream os = null;
+
+        try {
+            os = new FileOutputStream(file);
+            manifest.store(os, null);
+        } finally {
             IOUtils.close(os);
         }
+    }
 
-        // Recursive call on referenced nuts
-        if (nut.getReferencedNuts() != null) {
-            for (final ConvertibleNut ref : nut.getReferencedNuts()) {
-                write(ref, wId, workflowWriter, jarOutputStream, depth + 1, charset);
+    /**
+     * <p>
+     * Waits for the output of a workflow transformed concurrently.
+     * </p>
+     *
+     * @param future the output
+     * @return the result
+     * @throws WuicException if the workflow fails
+     * @throws IOException if the transformation fails
+     */
+    private WorkflowOutput waitAndGet(final Future<WorkflowOutput> future) throws WuicException, IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ie) {
+            WuicException.throwWuicException(ie);
+        } catch (ExecutionException ee) {
+            final Throwable cause = ee.getCause();
+
+            if (cause instanceof WuicException) {
+                throw (WuicException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                WuicException.throwWuicException(ee);
             }
         }
+
+        return null;
     }
 
     /**
@@ -700,6 +1103,39 @@ public class WuicTask extends ContextInterceptorAdapter implements UrlProviderFa
         this.packageAsJar = packageAsJar;
     }
 
+    /**
+     * <p>
+     * Processes the workflows concurrently or not.
+     * </p>
+     *
+     * @param parallel {@code true} if workflows are processed concurrently, {@code false} otherwise
+     */
+    public void setParallel(final boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * <p>
+     * Skips or not the workflows whose heap did not change since the previous build.
+     * </p>
+     *
+     * @param incremental {@code true} if unchanged workflows are skipped, {@code false} otherwise
+     */
+    public void setIncremental(final boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * <p>
+     * Writes or not a compressed variant of each nut.
+     * </p>
+     *
+     * @param precompress {@code true} if compressed variants are written, {@code false} otherwise
+     */
+    public void setPrecompress(final boolean precompress) {
+        this.precompress = precompress;
+    }
+
     /**
      * <p>
      * This particular {@code UrlProvider} checks if the resource will be located on top of the website thanks to
@@ -763,4 +1199,274 @@ public class WuicTask extends ContextInterceptorAdapter implements UrlProviderFa
             return -1;
         }
     }
+
+    /**
+     * <p>
+     * Where the nuts are written.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    private interface Sink {
+
+        /**
+         * <p>
+         * Opens the stream where the nut with the given name is written.
+         * </p>
+         *
+         * @param name the name
+         * @return the stream
+         * @throws IOException if the stream can't be opened
+         */
+        OutputStream open(String name) throws IOException;
+
+        /**
+         * <p>
+         * Closes the given stream returned by {@link #open(String)}.
+         * </p>
+         *
+         * @param os the stream
+         * @throws IOException if the stream can't be closed
+         */
+        void close(OutputStream os) throws IOException;
+    }
+
+    /**
+     * <p>
+     * Writes the nuts to files in the {@link #output} directory.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    private class FileSink implements Sink {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public OutputStream open(final String name) throws IOException {
+            final File file = new File(output, name);
+
+            // Create if not exist
+            if (file.getParentFile() != null && file.getParentFile().mkdirs()) {
+                log.debug("{} created", file.getParent());
+            }
+
+            return new FileOutputStream(file);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close(final OutputStream os) {
+            IOUtils.close(os);
+        }
+    }
+
+    /**
+     * <p>
+     * Writes the nuts to entries of a JAR file in the {@code META-INF/resources} directory.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    private static final class JarSink implements Sink {
+
+        /**
+         * The JAR file.
+         */
+        private final JarOutputStream jarOutputStream;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param jarOutputStream the JAR file
+         */
+        private JarSink(final JarOutputStream jarOutputStream) {
+            this.jarOutputStream = jarOutputStream;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public OutputStream open(final String name) throws IOException {
+            jarOutputStream.putNextEntry(new JarEntry(IOUtils.mergePath("META-INF", "resources", name)));
+
+            return new OutputStream() {
+                @Override
+                public void write(final int b) throws IOException {
+                    jarOutputStream.write(b);
+                }
+
+                @Override
+                public void write(final byte[] b, final int off, final int len) throws IOException {
+                    jarOutputStream.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    // transform() closes the stream, avoid this with jarOutputStream as we need to close it only when all entries are written
+                }
+            };
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close(final OutputStream os) throws IOException {
+            jarOutputStream.closeEntry();
+        }
+    }
+
+    /**
+     * <p>
+     * Keeps in memory the description and the nuts written by a workflow processed concurrently, in order to write them
+     * later to another {@link Sink}.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    private static final class WorkflowOutput implements Sink {
+
+        /**
+         * The workflow description.
+         */
+        private final StringWriter description = new StringWriter();
+
+        /**
+         * The names of the written nuts.
+         */
+        private final List<String> names = new ArrayList<String>();
+
+        /**
+         * The content of the written nuts.
+         */
+        private final List<ByteArrayOutputStream> contents = new ArrayList<ByteArrayOutputStream>();
+
+        /**
+         * The compressed variants, {@code null} if no variant is written.
+         */
+        private final Properties variants;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param precompress {@code true} if compressed variants are written
+         */
+        private WorkflowOutput(final boolean precompress) {
+            variants = precompress ? new Properties() : null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public OutputStream open(final String name) {
+            final ByteArrayOutputStream retval = new ByteArrayOutputStream();
+            names.add(name);
+            contents.add(retval);
+            return retval;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close(final OutputStream os) {
+            // Nothing to release
+        }
+
+        /**
+         * <p>
+         * Writes the description and the nuts kept in memory.
+         * </p>
+         *
+         * @param workflowWriter the writer of the workflow description, {@code null} if no description is written
+         * @param sink the sink where the nuts are written
+         * @throws IOException if an I/O error occurs
+         */
+        void writeTo(final PrintWriter workflowWriter, final Sink sink) throws IOException {
+            if (workflowWriter != null) {
+                workflowWriter.print(description.toString());
+                workflowWriter.flush();
+            }
+
+            for (int i = 0; i < names.size(); i++) {
+                final OutputStream os = sink.open(names.get(i));
+
+                try {
+                    contents.get(i).writeTo(os);
+                } finally {
+                    sink.close(os);
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Runs a workflow and transforms its nuts in memory.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    private final class WorkflowJob implements Callable<WorkflowOutput> {
+
+        /**
+         * The facade.
+         */
+        private final WuicFacade facade;
+
+        /**
+         * The workflow ID.
+         */
+        private final String workflowId;
+
+        /**
+         * The charset.
+         */
+        private final String charset;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param facade the facade
+         * @param workflowId the workflow ID
+         * @param charset the charset
+         */
+        private WorkflowJob(final WuicFacade facade, final String workflowId, final String charset) {
+            this.facade = facade;
+            this.workflowId = workflowId;
+            this.charset = charset;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public WorkflowOutput call() throws WuicException, IOException {
+            final WorkflowOutput retval = new WorkflowOutput(precompress);
+            final PrintWriter pw = relocateTransformedXmlTo != null ? new PrintWriter(retval.description) : null;
+
+            for (final ConvertibleNut nut : facade.runWorkflow(workflowId, ProcessContext.DEFAULT)) {
+                write(nut, workflowId, pw, retval, retval.variants, 0, charset);
+            }
+
+            return retval;
+        }
+    }
 }
@@ -31,15 +31,22 @@ import com.github.wuic.engine.HeadEngine;
 import com.github.wuic.exception.WorkflowNotFoundException;
 import com.github.wuic.exception.WuicException;
 import com.github.wuic.nut.ConvertibleNut;
+import com.github.wuic.nut.Nut;
+import com.github.wuic.nut.RequestNut;
 import com.github.wuic.nut.Source;
+import com.github.wuic.nut.TransformedNut;
 import com.github.wuic.util.NutUtils;
 import com.github.wuic.util.Pipe;
+import com.github.wuic.util.Timer;
+import com.github.wuic.util.TimerTreeFactory;
 import com.github.wuic.util.UrlProviderFactory;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -107,7 +114,7 @@ public class Context implements PropertyChangeListener {
     /**
      * <p>
      * Processes a workflow and returns the resulting nuts. If no workflow is associated to the given ID, then an
-     * exception will be thrown.
+     * exception will be thrown. The request is always timed.
      * </p>
      *
      * @param workflowId the workflow ID
@@ -124,12 +131,39 @@ public class Context implements PropertyChangeListener {
                                         final ProcessContext processContext,
                                         final EngineType ... skip)
             throws WuicException {
-        return process(contextPath, workflowId, getWorkflow(workflowId), urlProviderFactory, processContext, skip);
+        return process(contextPath, workflowId, urlProviderFactory, processContext, new TimerTreeFactory(), skip);
     }
 
     /**
      * <p>
-     * Processes a workflow an returns the nut inside the result with a name that equals to the specified one.
+     * Processes a workflow and returns the resulting nuts. The given {@link TimerTreeFactory} results from the
+     * instrumentation decision taken by the caller for this request.
+     * </p>
+     *
+     * @param workflowId the workflow ID
+     * @param contextPath the context path where nuts will be referenced
+     * @param urlProviderFactory the {@link UrlProviderFactory}
+     * @param processContext the process context
+     * @param timerTreeFactory the timer tree factory of the request
+     * @param skip the skipped engines
+     * @return the resulting nuts
+     * @throws com.github.wuic.exception.WuicException if any exception related to WUIC occurs
+     */
+    public List<ConvertibleNut> process(final String contextPath,
+                                        final String workflowId,
+                                        final UrlProviderFactory urlProviderFactory,
+                                        final ProcessContext processContext,
+                                        final TimerTreeFactory timerTreeFactory,
+                                        final EngineType ... skip)
+            throws WuicException {
+        return process(contextPath, workflowId, getWorkflow(workflowId), urlProviderFactory, processContext,
+                timerTreeFactory, skip);
+    }
+
+    /**
+     * <p>
+     * Processes a workflow an returns the nut inside the result with a name that equals to the specified one. The
+     * request is always timed.
      * </p>
      *
      * @param skip the skipped engine types
@@ -149,7 +183,35 @@ public class Context implements PropertyChangeListener {
                                   final ProcessContext processContext,
                                   final EngineType ... skip)
             throws WuicException, IOException {
-        return process(contextPath, wId, getWorkflow(wId), path, urlProviderFactory, processContext, skip);
+        return process(contextPath, wId, path, urlProviderFactory, processContext, new TimerTreeFactory(), skip);
+    }
+
+    /**
+     * <p>
+     * Processes a workflow an returns the nut inside the result with a name that equals to the specified one. The
+     * given {@link TimerTreeFactory} results from the instrumentation decision taken by the caller for this request.
+     * </p>
+     *
+     * @param skip the skipped engine types
+     * @param contextPath the context path where nuts will be referenced
+     * @param wId the workflow ID
+     * @param path the nut name
+     * @param urlProviderFactory the URL provider
+     * @param processContext the process context
+     * @param timerTreeFactory the timer tree factory of the request
+     * @return the nut corresponding to the nut name
+     * @throws WuicException if workflow fails to be processed
+     * @throws IOException if any I/O error occurs
+     */
+    public ConvertibleNut process(final String contextPath,
+                                  final String wId,
+                                  final String path,
+                                  final UrlProviderFactory urlProviderFactory,
+                                  final ProcessContext processContext,
+                                  final TimerTreeFactory timerTreeFactory,
+                                  final EngineType ... skip)
+            throws WuicException, IOException {
+        return process(contextPath, wId, getWorkflow(wId), path, urlProviderFactory, processContext, timerTreeFactory, skip);
     }
 
     /**
@@ -208,7 +270,7 @@ public class Context implements PropertyChangeListener {
 
     /**
      * <p>
-     * Builds a new request to submit to a chain.
+     * Creates a new builder for a request to submit to a chain. The interceptors are applied to the builder.
      * </p>
      *
      * @param contextPath the context path
@@ -217,17 +279,20 @@ public class Context implements PropertyChangeListener {
      * @param path a nut name to particularly retrieve in the result (could be {@code null})
      * @param urlProviderFactory the URL provider
      * @param processContext the process context
+     * @param timerTreeFactory the timer tree factory of the request
      * @param skip the engines to skip
-     * @return the created request
+     * @return the created request builder
      */
-    private EngineRequest newRequest(final String contextPath,
+    private EngineRequestBuilder newRequestBuilder(final String contextPath,
                                      final String wId,
                                      final Workflow workflow,
                                      final String path,
                                      final UrlProviderFactory urlProviderFactory,
                                      final ProcessContext processContext,
+                                     final TimerTreeFactory timerTreeFactory,
                                      final EngineType ... skip) {
-        EngineRequestBuilder request = new EngineRequestBuilder(wId, workflow.getHeap(), this, contextBuilder.getNutTypeFactory())
+        EngineRequestBuilder request = new EngineRequestBuilder(
+                wId, workflow.getHeap(), this, contextBuilder.getNutTypeFactory(), timerTreeFactory)
                 .contextPath(contextPath)
                 .chains(workflow.getChains())
                 .urlProviderFactory(urlProviderFactory)
@@ -242,7 +307,7 @@ public class Context implements PropertyChangeListener {
             }
         }
 
-        return request.build();
+        return request;
     }
 
     /**
@@ -256,6 +321,7 @@ public class Context implements PropertyChangeListener {
      * @param path the path corresponding to desired nut
      * @param urlProviderFactory the URL provider
      * @param processContext the process context
+     * @param timerTreeFactory the timer tree factory of the request
      * @return the resulting nuts
      * @throws com.github.wuic.exception.WuicException if any exception related to WUIC occurs
      */
@@ -265,15 +331,36 @@ public class Context implements PropertyChangeListener {
                                    final String path,
                                    final UrlProviderFactory urlProviderFactory,
                                    final ProcessContext processContext,
+                                   final TimerTreeFactory timerTreeFactory,
                                    final EngineType ... skip)
             throws IOException, WuicException {
-        final EngineRequest request = newRequest(contextPath, wId, workflow, path, urlProviderFactory, processContext, skip);
+        final EngineRequestBuilder builder = newRequestBuilder(
+                contextPath, wId, workflow, path, urlProviderFactory, processContext, timerTreeFactory, skip);
+
+        // Fast path: the nut is already available, no need to wrap the nuts of the heap
+        final Timer timer = timerTreeFactory.createTimer();
+        timer.start();
+        ConvertibleNut retval = workflow.getHead() != null ? workflow.getHead().findReady(builder, path) : null;
+        final EngineRequest request;
 
-        ConvertibleNut retval;
-        if (workflow.getHead() != null) {
-            retval = workflow.getHead().parse(request, path);
+        if (retval != null) {
+            // Lightweight request without nuts, only used to report the statistics of the hit like any other request
+            request = builder.nuts(Collections.<Nut>emptyList()).build();
+
+            if (timer.isEnabled()) {
+                request.reportParseEngine(timer.end());
+            }
         } else {
-            retval = NutUtils.findByName(HeadEngine.runChains(request), path);
+            // Engines and heaps are run by one request at a time, cached nuts are served concurrently
+            synchronized (contextBuilder.getProcessLock()) {
+                request = builder.build();
+
+                if (workflow.getHead() != null) {
+                    retval = workflow.getHead().parse(request, path);
+                } else {
+                    retval = NutUtils.findByName(HeadEngine.runChains(request), path);
+                }
+            }
         }
 
         for (final ContextInterceptor interceptor : interceptors) {
@@ -284,7 +371,12 @@ public class Context implements PropertyChangeListener {
             WuicException.throwNutNotFoundException(path, wId);
         } else {
             request.notifyHeapResolutionsTo(propertyChangeSupport);
-            registerStatsReporter(retval, new ReportStatsOnReady(wId, request));
+
+            // Statistics are reported only for instrumented requests
+            if (request.getTimerTreeFactory().isEnabled()) {
+                retval = view(retval);
+                registerStatsReporter(retval, new ReportStatsOnReady(wId, request));
+            }
         }
 
         return retval;
@@ -300,6 +392,7 @@ public class Context implements PropertyChangeListener {
      * @param contextPath the context path where nuts will be referenced
      * @param urlProviderFactory the URL provider
      * @param processContext the process context
+     * @param timerTreeFactory the timer tree factory of the request
      * @return the resulting nuts
      * @throws com.github.wuic.exception.WuicException if any exception related to WUIC occurs
      */
@@ -308,26 +401,41 @@ public class Context implements PropertyChangeListener {
                                          final Workflow workflow,
                                          final UrlProviderFactory urlProviderFactory,
                                          final ProcessContext processContext,
+                                         final TimerTreeFactory timerTreeFactory,
                                          final EngineType ... skip)
             throws WuicException {
-        final EngineRequest request = newRequest(contextPath, wId, workflow, null, urlProviderFactory, processContext, skip);
-
+        final EngineRequestBuilder builder = newRequestBuilder(
+                contextPath, wId, workflow, null, urlProviderFactory, processContext, timerTreeFactory, skip);
+        final EngineRequest request;
         List<ConvertibleNut> retval;
 
-        if (workflow.getHead() != null) {
-            retval = workflow.getHead().parse(request);
-        } else {
-            retval = HeadEngine.runChains(request);
+        // Engines and heaps are run by one request at a time
+        synchronized (contextBuilder.getProcessLock()) {
+            request = builder.build();
+
+            if (workflow.getHead() != null) {
+                retval = workflow.getHead().parse(request);
+            } else {
+                retval = HeadEngine.runChains(request);
+            }
         }
 
         for (final ContextInterceptor interceptor : interceptors) {
             retval = interceptor.afterProcess(retval);
         }
 
-        final ReportStatsOnReady onReady =  new ReportStatsOnReady(wId, request);
+        // Statistics are reported only for instrumented requests
+        if (request.getTimerTreeFactory().isEnabled()) {
+            final ReportStatsOnReady onReady =  new ReportStatsOnReady(wId, request);
+            final List<ConvertibleNut> views = new ArrayList<ConvertibleNut>(retval.size());
+
+            for (final ConvertibleNut convertibleNut : retval) {
+                final ConvertibleNut view = view(convertibleNut);
+                registerStatsReporter(view, onReady);
+                views.add(view);
+            }
 
-        for (final ConvertibleNut convertibleNut : retval) {
-            registerStatsReporter(convertibleNut, onReady);
+            retval = views;
         }
 
         request.notifyHeapResolutionsTo(propertyChangeSupport);
@@ -356,17 +464,33 @@ public class Context implements PropertyChangeListener {
         return workflowMap.keySet();
     }
 
+    /**
+     * <p>
+     * Returns a {@link RequestNut} view over the given nut if it's shared between requests. Otherwise the nut is
+     * returned as is.
+     * </p>
+     *
+     * @param convertibleNut the nut
+     * @return the nut to return for the request
+     */
+    private ConvertibleNut view(final ConvertibleNut convertibleNut) {
+        return convertibleNut instanceof TransformedNut ? new RequestNut(convertibleNut) : convertibleNut;
+    }
+
     /**
      * <p>
      * Registers the given {@link ReportStatsOnReady} to be notified when the given nut is transformed.
+     * Shared nuts are never modified: callbacks are registered on their {@link RequestNut view} instead.
      * </p>
      *
      * @param convertibleNut the convertible nut
      * @param onReady the callback
      */
     private void registerStatsReporter(final ConvertibleNut convertibleNut, final ReportStatsOnReady onReady) {
-        // Source objects are never transformed
-        if (!(convertibleNut instanceof Source)) {
+        // Source objects are never transformed and shared nuts are not modified
+        if (convertibleNut instanceof TransformedNut) {
+            return;
+        } else if (!(convertibleNut instanceof Source)) {
             convertibleNut.onReady(onReady, true);
         }
 
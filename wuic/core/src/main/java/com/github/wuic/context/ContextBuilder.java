@@ -134,6 +134,11 @@ public class ContextBuilder implements HeapListener {
      */
     private ReentrantLock lock;
 
+    /**
+     * The lock held by the contexts built by this instance when they run engines and heaps.
+     */
+    private final Object processLock;
+
     /**
      * The current tag.
      */
@@ -242,6 +247,7 @@ public class ContextBuilder implements HeapListener {
                           final ObjectBuilderInspector ... inspectors) {
         this.taggedSettings = new TaggedSettings();
         this.lock = new ReentrantLock();
+        this.processLock = new Object();
         this.configureDefault = false;
         this.propertyResolver = new EnhancedPropertyResolver();
         this.profiles = new ArrayList<String>();
@@ -905,6 +911,21 @@ public class ContextBuilder implements HeapListener {
          */
         private final Object factory;
 
+        /**
+         * The template created for the workflows, {@code null} if not created yet or freed.
+         */
+        private WorkflowTemplate template;
+
+        /**
+         * The workflows created by the last call to {@link #getWorkflowMap(String, Map, ContextSetting, Collection)}.
+         */
+        private final Map<String, Workflow> workflows;
+
+        /**
+         * The heaps composed by the workflow when {@link #forEachHeap} is {@code false}.
+         */
+        private NutsHeap[] composition;
+
         /**
          * <p>
          *  Builds a new registration
@@ -921,6 +942,19 @@ public class ContextBuilder implements HeapListener {
             this.forEachHeap = forEachHeap;
             this.heapIdPattern = heapIdPattern;
             this.workflowTemplateId  = workflowTemplateId;
+            this.workflows = new HashMap<String, Workflow>();
+        }
+
+        /**
+         * <p>
+         * Drops the template and the workflows created by this registration. They will be created again with the
+         * engines currently registered on the next call to {@link #getWorkflowMap(String, Map, ContextSetting, Collection)}.
+         * </p>
+         */
+        void free() {
+            template = null;
+            composition = null;
+            workflows.clear();
         }
 
         /**
@@ -950,6 +984,12 @@ public class ContextBuilder implements HeapListener {
          * Gets a new map of {@link com.github.wuic.Workflow} for this registration.
          * </p>
          *
+         * <p>
+         * The template and the workflows created by a previous call are kept until {@link #free()} is called. A workflow
+         * is created again only if the heap it refers has been re-created in the meantime. This way, the engines and their
+         * cache survive a rebuild of the context when no related heap has changed.
+         * </p>
+         *
          * @param identifier the workflow ID
          * @param heapCollection a collection of heap for workflow creation
          * @param contextSetting the setting this registration belongs to
@@ -964,7 +1004,12 @@ public class ContextBuilder implements HeapListener {
                                              final ContextSetting contextSetting,
                                              final Collection<String> profiles)
                 throws WorkflowTemplateNotFoundException, DuplicatedRegistrationException, IOException {
-            final WorkflowTemplate template = taggedSettings.getWorkflowTemplate(workflowTemplateId, profiles);
+            if (template == null) {
+                template = taggedSettings.getWorkflowTemplate(workflowTemplateId, profiles);
+                composition = null;
+                workflows.clear();
+            }
+
             final Map<String, Workflow> retval = new HashMap<String, Workflow>();
 
             final Map<NutType, ? extends NodeEngine> chains = template.getChains();
@@ -986,7 +1031,15 @@ public class ContextBuilder implements HeapListener {
                                 String.format("Workflow ID %s cannot be a numeric value", loopId)));
                     }
 
-                    retval.put(loopId, new Workflow(template.getHead(), chains, heapCollection.get(heap.getKey())));
+                    final NutsHeap nutsHeap = heapCollection.get(heap.getKey());
+                    final Workflow workflow = workflows.get(loopId);
+
+                    // Reuse the workflow if the heap has not been refreshed
+                    if (workflow != null && workflow.getHeap() == nutsHeap) {
+                        retval.put(loopId, workflow);
+                    } else {
+                        retval.put(loopId, new Workflow(template.getHead(), chains, nutsHeap));
+                    }
                 }
             } else {
                 if (NumberUtils.isNumber(id)) {
@@ -1001,14 +1054,48 @@ public class ContextBuilder implements HeapListener {
                     array[cpt++] = heapCollection.get(heap.getKey());
                 }
 
-                final NutsHeap heap = new NutsHeap(factory, null, null, heapIdPattern, getNutTypeFactory(), array);
-                heap.addObserver(ContextBuilder.this);
-                heap.checkFiles(contextSetting.getProcessContext());
-                retval.put(id, new Workflow(template.getHead(), chains, heap));
+                final Workflow workflow = workflows.get(id);
+
+                // Reuse the workflow if none of the composed heaps has been refreshed
+                if (workflow != null && sameHeaps(composition, array)) {
+                    retval.put(id, workflow);
+                } else {
+                    final NutsHeap heap = new NutsHeap(factory, null, null, heapIdPattern, getNutTypeFactory(), array);
+                    heap.addObserver(ContextBuilder.this);
+                    heap.checkFiles(contextSetting.getProcessContext());
+                    retval.put(id, new Workflow(template.getHead(), chains, heap));
+                    composition = array;
+                }
             }
 
+            workflows.clear();
+            workflows.putAll(retval);
+
             return retval;
         }
+
+        /**
+         * <p>
+         * Indicates if the two given arrays contain the same {@link NutsHeap} instances in the same order.
+         * </p>
+         *
+         * @param previous the previous array, could be {@code null}
+         * @param current the current array
+         * @return {@code true} if both arrays refer the same instances, {@code false} otherwise
+         */
+        private boolean sameHeaps(final NutsHeap[] previous, final NutsHeap[] current) {
+            if (previous == null || previous.length != current.length) {
+                return false;
+            }
+
+            for (int i = 0; i < current.length; i++) {
+                if (previous[i] != current[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
     }
 
     /**
@@ -2458,6 +2545,7 @@ public class ContextBuilder implements HeapListener {
         setting.getTemplateMap().put(new RegistrationId(id, getSetting().getRequiredProfiles()),
                 new WorkflowTemplateRegistration(ebIds, ebTypesExclusion, includeDefaultEngines));
         taggedSettings.put(currentTag, setting);
+        taggedSettings.refreshWorkflows();
         notifyExpiration();
 
         return this;
@@ -2594,6 +2682,18 @@ public class ContextBuilder implements HeapListener {
         }
     }
 
+    /**
+     * <p>
+     * Gets the lock shared by all the contexts built by this instance to run engines and heaps. Engines and heaps are
+     * shared by the contexts and they are not designed to process several requests at the same time.
+     * </p>
+     *
+     * @return the lock
+     */
+    Object getProcessLock() {
+        return processLock;
+    }
+
     /**
      * <p>
      * Gets the {@link ObjectBuilderFactory} which builds {@link Engine}.
@@ -51,6 +51,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -77,6 +78,11 @@ public class TaggedSettings extends ContextInterceptorAdapter {
      */
     private final Map<Object, ContextSetting> taggedSettings;
 
+    /**
+     * The default workflows created for heaps not referenced by any workflow registration.
+     */
+    private final Map<NutsHeap, Workflow> defaultWorkflows;
+
     /**
      * <p>
      * Builds a new instance.
@@ -84,6 +90,7 @@ public class TaggedSettings extends ContextInterceptorAdapter {
      */
     TaggedSettings() {
         taggedSettings = new HashMap<Object, ContextSetting>();
+        defaultWorkflows = new IdentityHashMap<NutsHeap, Workflow>();
     }
 
     /**
@@ -119,7 +126,14 @@ public class TaggedSettings extends ContextInterceptorAdapter {
      * @return the removed setting
      */
     ContextSetting remove(final Object tag) {
-        return taggedSettings.remove(tag);
+        final ContextSetting retval = taggedSettings.remove(tag);
+
+        // Workflows could refer a removed engine or template
+        if (retval != null && (!retval.getEngineMap().isEmpty() || !retval.getTemplateMap().isEmpty())) {
+            refreshWorkflows();
+        }
+
+        return retval;
     }
 
     /**
@@ -225,6 +239,8 @@ public class TaggedSettings extends ContextInterceptorAdapter {
         for (final ContextSetting s : taggedSettings.values()) {
             s.getEngineMap().remove(id);
         }
+
+        refreshWorkflows();
     }
 
     /**
@@ -278,6 +294,8 @@ public class TaggedSettings extends ContextInterceptorAdapter {
             setting.getInterceptorsList().addAll(s.getInterceptorsList());
             taggedSettings.put(currentTag, setting);
         }
+
+        refreshWorkflows();
     }
 
     /**
@@ -646,6 +664,8 @@ public class TaggedSettings extends ContextInterceptorAdapter {
         }
 
         // Create a default workflow for heaps not referenced by any workflow
+        final Map<NutsHeap, Workflow> retained = new IdentityHashMap<NutsHeap, Workflow>();
+
         heapLoop :
         for (final NutsHeap heap : heapMap.values()) {
             for (final Workflow workflow : workflowMap.values()) {
@@ -660,12 +680,23 @@ public class TaggedSettings extends ContextInterceptorAdapter {
                 WuicException.throwDuplicateRegistrationException(Arrays.asList((Object) heap.getId()), profiles);
             }
 
-            // No workflow has been found: create a default with the heap ID as ID
-            final HeadEngine head = createHead(knownTypes, configureDefault, null, profiles);
-            final Map<NutType, NodeEngine> chains = createChains(configureDefault, knownTypes, Boolean.TRUE, null, profiles);
-            workflowMap.put(heap.getId(), new Workflow(head, chains, heap));
+            // No workflow has been found: reuse or create a default with the heap ID as ID
+            Workflow workflow = defaultWorkflows.get(heap);
+
+            if (workflow == null) {
+                final HeadEngine head = createHead(knownTypes, configureDefault, null, profiles);
+                final Map<NutType, NodeEngine> chains = createChains(configureDefault, knownTypes, Boolean.TRUE, null, profiles);
+                workflow = new Workflow(head, chains, heap);
+            }
+
+            workflowMap.put(heap.getId(), workflow);
+            retained.put(heap, workflow);
         }
 
+        // Only keep the default workflows still in use
+        defaultWorkflows.clear();
+        defaultWorkflows.putAll(retained);
+
         return workflowMap;
     }
 
@@ -843,7 +874,7 @@ public class TaggedSettings extends ContextInterceptorAdapter {
 
     /**
      * <p>
-     * Refresh all heaps and DAOs initialized in the internal settings and free all their resources.
+     * Refresh all heaps, DAOs and workflows initialized in the internal settings and free all their resources.
      * </p>
      */
     void refreshAll() {
@@ -857,6 +888,24 @@ public class TaggedSettings extends ContextInterceptorAdapter {
                 heap.free();
             }
         }
+
+        refreshWorkflows();
+    }
+
+    /**
+     * <p>
+     * Frees all the workflows and templates created from the internal settings. This must be called when any engine
+     * or template is changed since all workflows could use it, for instance through the default engines.
+     * </p>
+     */
+    void refreshWorkflows() {
+        for (final ContextSetting setting : taggedSettings.values()) {
+            for (final ContextBuilder.WorkflowRegistration workflow : setting.getWorkflowMap().values()) {
+                workflow.free();
+            }
+        }
+
+        defaultWorkflows.clear();
     }
 
     /**
@@ -903,6 +952,9 @@ public class TaggedSettings extends ContextInterceptorAdapter {
      * @see #refreshDependencies(ContextSetting)
      */
     void refreshDependencies(final String ... profiles) {
+        // Engines resolved by templates depend on the active profiles
+        refreshWorkflows();
+
         for (final ContextSetting setting : taggedSettings.values()) {
             for (final String profile : profiles) {
                 if (setting.getRequiredProfiles().contains(profile)) {
@@ -72,4 +72,15 @@ public interface DimensionPacker<T> {
      * @return the filled area
      */
     Dimension getFilledArea();
+
+    /**
+     * <p>
+     * Creates a new packer with the same configuration as this instance but without any element. A packer keeps the
+     * elements it packs, so each operation uses its own packer created from the configured one.
+     * </p>
+     *
+     * @return the new packer
+     * @since 0.5.3
+     */
+    DimensionPacker<T> newInstance();
 }
@@ -118,7 +118,12 @@ public final class EngineRequest implements HeapListener {
     public void heapResolved(final HeapResolutionEvent event) {
         final List<HeapResolution> list = new LinkedList<HeapResolution>();
         list.add(event.getResolution());
-        CollectionUtils.merge(event.getId(), list, engineRequestBuilder.getHeapResolutionStats());
+        final Map<String, List<HeapResolution>> stats = engineRequestBuilder.getHeapResolutionStats();
+
+        // Chains of the request may run concurrently
+        synchronized (stats) {
+            CollectionUtils.merge(event.getId(), list, stats);
+        }
     }
 
     /**
@@ -129,7 +134,12 @@ public final class EngineRequest implements HeapListener {
      * @param transformationStats the transformation statistics grouped by transformer
      */
     public void reportTransformerStat(final Map<String, List<TransformationStat>> transformationStats) {
-        CollectionUtils.merge(transformationStats, engineRequestBuilder.getTransformationStats());
+        final Map<String, List<TransformationStat>> stats = engineRequestBuilder.getTransformationStats();
+
+        // Chains of the request may run concurrently
+        synchronized (stats) {
+            CollectionUtils.merge(transformationStats, stats);
+        }
     }
 
     /**
@@ -163,12 +173,20 @@ public final class EngineRequest implements HeapListener {
      * @param propertyChangeSupport the observable
      */
     public void notifyHeapResolutionsTo(final PropertyChangeSupport propertyChangeSupport) {
-        for (final Map.Entry<String, List<HeapResolution>> resolutions : getBuilder().getHeapResolutionStats().entrySet()) {
-            for (final HeapResolution heapResolution : resolutions.getValue()) {
-                final HeapResolutionEvent evt = new HeapResolutionEvent(resolutions.getKey(), heapResolution);
-                propertyChangeSupport.firePropertyChange(Event.HEAP_RESOLUTION.name(), null, evt);
+        final List<HeapResolutionEvent> events = new ArrayList<HeapResolutionEvent>();
+        final Map<String, List<HeapResolution>> stats = getBuilder().getHeapResolutionStats();
+
+        synchronized (stats) {
+            for (final Map.Entry<String, List<HeapResolution>> resolutions : stats.entrySet()) {
+                for (final HeapResolution heapResolution : resolutions.getValue()) {
+                    events.add(new HeapResolutionEvent(resolutions.getKey(), heapResolution));
+                }
             }
         }
+
+        for (final HeapResolutionEvent evt : events) {
+            propertyChangeSupport.firePropertyChange(Event.HEAP_RESOLUTION.name(), null, evt);
+        }
     }
 
     /**
@@ -181,15 +199,20 @@ public final class EngineRequest implements HeapListener {
     public WorkflowExecution getWorkflowStatistics() {
         long elapsed = 0;
 
-        final List<TransformerStat> transformerStats = new ArrayList<TransformerStat>(getBuilder().getTransformationStats().size());
+        final Map<String, List<TransformationStat>> stats = getBuilder().getTransformationStats();
+        final List<TransformerStat> transformerStats;
+
+        synchronized (stats) {
+            transformerStats = new ArrayList<TransformerStat>(stats.size());
 
-        for (final Map.Entry<String, List<TransformationStat>> t : getBuilder().getTransformationStats().entrySet()) {
-            final TransformerStat s = new TransformerStat(t.getKey(), new LinkedList<TransformationStat>());
-            transformerStats.add(s);
+            for (final Map.Entry<String, List<TransformationStat>> t : stats.entrySet()) {
+                final TransformerStat s = new TransformerStat(t.getKey(), new LinkedList<TransformationStat>());
+                transformerStats.add(s);
 
-            for (final TransformationStat transformationStat : t.getValue()) {
-                elapsed += transformationStat.getDuration();
-                s.getTransformations().add(transformationStat);
+                for (final TransformationStat transformationStat : t.getValue()) {
+                    elapsed += transformationStat.getDuration();
+                    s.getTransformations().add(transformationStat);
+                }
             }
         }
 
@@ -323,6 +346,18 @@ public final class EngineRequest implements HeapListener {
         return key;
     }
 
+    /**
+     * <p>
+     * Gets a key identifying the workflow and the skipped engines of this request, regardless its nuts.
+     * </p>
+     *
+     * @return the key
+     * @see EngineRequestBuilder#getWorkflowKey()
+     */
+    public Key getWorkflowKey() {
+        return engineRequestBuilder.getWorkflowKey();
+    }
+
     /**
      * <p>
      * Gets the {@link UrlProviderFactory}.
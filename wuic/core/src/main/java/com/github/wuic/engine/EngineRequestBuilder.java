@@ -32,7 +32,6 @@ import com.github.wuic.nut.ConvertibleNut;
 import com.github.wuic.nut.Nut;
 import com.github.wuic.nut.NutsHeap;
 import com.github.wuic.nut.PipedConvertibleNut;
-import com.github.wuic.util.CollectionUtils;
 import com.github.wuic.util.TimerTreeFactory;
 import com.github.wuic.util.UrlProviderFactory;
 import com.github.wuic.util.UrlUtils;
@@ -40,6 +39,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -91,6 +91,11 @@ public final class EngineRequestBuilder {
      */
     private EngineType[] skip;
 
+    /**
+     * The skipped engine types as a mask built with {@link EngineType#mask(EngineType...)}.
+     */
+    private int skipMask;
+
     /**
      * The prefix path of created nuts.
      */
@@ -158,7 +163,7 @@ public final class EngineRequestBuilder {
 
     /**
      * <p>
-     * Builds a new instance with mandatory workflow ID and {@link NutsHeap}.
+     * Builds a new instance with mandatory workflow ID and {@link NutsHeap}. The request is always timed.
      * </p>
      *
      * @param wId the workflow id
@@ -167,6 +172,26 @@ public final class EngineRequestBuilder {
      * @param ntf the nut type factory
      */
     public EngineRequestBuilder(final String wId, final NutsHeap h, final Context ctx, final NutTypeFactory ntf) {
+        this(wId, h, ctx, ntf, new TimerTreeFactory());
+    }
+
+    /**
+     * <p>
+     * Builds a new instance with mandatory workflow ID and {@link NutsHeap} and the {@link TimerTreeFactory} created
+     * when the instrumentation of the request has been decided.
+     * </p>
+     *
+     * @param wId the workflow id
+     * @param h the heap
+     * @param ctx the context
+     * @param ntf the nut type factory
+     * @param ttf the timer tree factory
+     */
+    public EngineRequestBuilder(final String wId,
+                                final NutsHeap h,
+                                final Context ctx,
+                                final NutTypeFactory ntf,
+                                final TimerTreeFactory ttf) {
         workflowId(wId);
         heap(h);
         prefixCreatedNut("");
@@ -178,7 +203,7 @@ public final class EngineRequestBuilder {
         transformationStats = new TreeMap<String, List<TransformationStat>>();
         heapResolutionStats = new TreeMap<String, List<HeapResolution>>();
         parseEngines = 0;
-        timerTreeFactory = new TimerTreeFactory();
+        timerTreeFactory = ttf;
     }
 
     /**
@@ -196,6 +221,7 @@ public final class EngineRequestBuilder {
         workflowId = other.workflowId;
         chains = other.chains;
         skip = other.skip;
+        skipMask = other.skipMask;
         prefixCreatedNut = other.prefixCreatedNut;
         urlProviderFactory = other.urlProviderFactory;
         bestEffort = other.bestEffort;
@@ -211,6 +237,20 @@ public final class EngineRequestBuilder {
         timerTreeFactory = other.timerTreeFactory;
     }
 
+    /**
+     * <p>
+     * Sets the timer tree factory. Package access for {@link HeadEngine} which forks the factory when chains are run
+     * concurrently.
+     * </p>
+     *
+     * @param ttf the timer tree factory
+     * @return this
+     */
+    EngineRequestBuilder timerTreeFactory(final TimerTreeFactory ttf) {
+        timerTreeFactory = ttf;
+        return this;
+    }
+
     /**
      * <p>
      * Disables best effort for this request.
@@ -303,6 +343,7 @@ public final class EngineRequestBuilder {
     public EngineRequestBuilder skip(final EngineType... toSkip) {
         skip = new EngineType[toSkip.length];
         System.arraycopy(toSkip, 0, skip, 0, toSkip.length);
+        skipMask = EngineType.mask(toSkip);
         return this;
     }
 
@@ -527,7 +568,18 @@ public final class EngineRequestBuilder {
      * @return {@code true} if treatment should be skipped, {@code false} otherwise.
      */
     public boolean shouldSkip(final EngineType engineType) {
-        return CollectionUtils.indexOf(engineType, skip) != -1;
+        return (skipMask & engineType.mask()) != 0;
+    }
+
+    /**
+     * <p>
+     * Gets the skipped engine types as a mask built with {@link EngineType#mask(EngineType...)}.
+     * </p>
+     *
+     * @return the mask
+     */
+    int getSkipMask() {
+        return skipMask;
     }
 
     /**
@@ -574,6 +626,19 @@ public final class EngineRequestBuilder {
         return origin;
     }
 
+    /**
+     * <p>
+     * Creates a key identifying the workflow and the skipped {@link EngineType types} of the request being built. The
+     * key does not depend on the nuts, so it can be computed without wrapping the nuts of the heap.
+     * </p>
+     *
+     * @return the key
+     */
+    public EngineRequest.Key getWorkflowKey() {
+        // Built requests skip an empty array by default
+        return new EngineRequest.Key(workflowId, Collections.<ConvertibleNut>emptyList(), skip == null ? new EngineType[0] : skip);
+    }
+
     /**
      * <p>
      * Gets the skipped {@link EngineType types}. Package access for {@link EngineRequest} only.
@@ -77,6 +77,35 @@ public enum EngineType {
      */
     BINARY_COMPRESSION;
 
+    /**
+     * <p>
+     * Gets the bit identifying this type in a mask built with {@link #mask(EngineType...)}.
+     * </p>
+     *
+     * @return the bit
+     */
+    public int mask() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * <p>
+     * Builds a bit mask containing all the given types.
+     * </p>
+     *
+     * @param types the types
+     * @return the mask
+     */
+    public static int mask(final EngineType ... types) {
+        int retval = 0;
+
+        for (final EngineType type : types) {
+            retval |= type.mask();
+        }
+
+        return retval;
+    }
+
     /**
      * <p>
      * Returns all the {@link EngineType} without the specified one.
@@ -34,6 +34,15 @@ import com.github.wuic.util.Timer;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <p>
@@ -63,9 +72,11 @@ public abstract class HeadEngine extends Engine {
             try {
                 return internalParse(request);
             } finally {
-                final long elapsed = timer.end();
-                Logging.TIMER.log("Parse operation by head engine executed in {}s", (float) (elapsed) / (float) NumberUtils.ONE_THOUSAND);
-                request.reportParseEngine(elapsed);
+                if (timer.isEnabled()) {
+                    final long elapsed = timer.end();
+                    Logging.TIMER.log("Parse operation by head engine executed in {}s", (float) (elapsed) / (float) NumberUtils.ONE_THOUSAND);
+                    request.reportParseEngine(elapsed);
+                }
             }
         } else {
             return runChains(request);
@@ -78,20 +89,103 @@ public abstract class HeadEngine extends Engine {
      * aggregates the nuts with same names between the results.
      * </p>
      *
+     * <p>
+     * When more than one sequence is processed by a chain, the chains are run concurrently in a pool bounded to the
+     * number of available processors. The caller thread runs itself any chain which is not started yet when its result
+     * is expected, so the request never waits for a free thread. Results are merged in the order of the sequences.
+     * </p>
+     *
      * @param request the request providing engine chains
      * @return the process result
      * @throws WuicException if WUIC fails to process nuts
      */
     public static List<ConvertibleNut> runChains(final EngineRequest request) throws WuicException {
-        final List<ConvertibleNut> retval = new ArrayList<ConvertibleNut>();
+        final List<List<? extends ConvertibleNut>> sequences = new ArrayList<List<? extends ConvertibleNut>>();
+        final List<NodeEngine> chains = new ArrayList<NodeEngine>();
         final Iterator<List<? extends ConvertibleNut>> it = request.iterator();
+        int parallelism = 0;
 
         // We parse a request for each sequence of nuts having the same type
         while (it.hasNext()) {
             final List<? extends ConvertibleNut> nuts = it.next();
             final NutType nutType = nuts.get(0).getInitialNutType();
             final NodeEngine chain = request.getChainFor(nutType);
-            retval.addAll(chain == null ? nuts : chain.parse(new EngineRequestBuilder(request).nuts(nuts).build()));
+            sequences.add(nuts);
+            chains.add(chain);
+
+            if (chain != null) {
+                parallelism++;
+            }
+        }
+
+        final List<ConvertibleNut> retval = new ArrayList<ConvertibleNut>();
+
+        if (parallelism < NumberUtils.TWO) {
+            for (int i = 0; i < sequences.size(); i++) {
+                final NodeEngine chain = chains.get(i);
+                final List<? extends ConvertibleNut> nuts = sequences.get(i);
+                retval.addAll(chain == null ? nuts : chain.parse(new EngineRequestBuilder(request).nuts(nuts).build()));
+            }
+        } else {
+            final List<FutureTask<List<ConvertibleNut>>> tasks = new ArrayList<FutureTask<List<ConvertibleNut>>>(sequences.size());
+            final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+            // Create all tasks before submitting them since a failing chain cancels its siblings
+            for (int i = 0; i < sequences.size(); i++) {
+                final NodeEngine chain = chains.get(i);
+
+                if (chain == null) {
+                    tasks.add(null);
+                } else {
+                    // Each chain has its own timer tree since it can run in a different thread
+                    final EngineRequest chainRequest = new EngineRequestBuilder(request)
+                            .nuts(sequences.get(i))
+                            .timerTreeFactory(request.getBuilder().getTimerTreeFactory().fork())
+                            .build();
+                    tasks.add(new FutureTask<List<ConvertibleNut>>(new ChainCall(chain, chainRequest, classLoader, tasks, i)));
+                }
+            }
+
+            for (final FutureTask<List<ConvertibleNut>> task : tasks) {
+                if (task != null) {
+                    ChainPool.INSTANCE.execute(task);
+                }
+            }
+
+            boolean completed = false;
+            CancellationException cancelled = null;
+
+            try {
+                // Collect results in the original order
+                for (int i = 0; i < sequences.size(); i++) {
+                    final FutureTask<List<ConvertibleNut>> task = tasks.get(i);
+
+                    if (task == null) {
+                        retval.addAll(sequences.get(i));
+                    } else {
+                        // No effect if the task is already started by the pool
+                        task.run();
+
+                        try {
+                            retval.addAll(waitAndGet(task));
+                        } catch (CancellationException ce) {
+                            // A sibling has failed, its exception will be thrown when its result is collected
+                            cancelled = ce;
+                        }
+                    }
+                }
+
+                // Never return a partial result
+                if (cancelled != null) {
+                    throw cancelled;
+                }
+
+                completed = true;
+            } finally {
+                if (!completed) {
+                    cancel(tasks, -1);
+                }
+            }
         }
 
         for (final ConvertibleNut nut : retval) {
@@ -106,6 +200,66 @@ public abstract class HeadEngine extends Engine {
         return CompositeNut.mergeNuts(request.getProcessContext(), retval, request.getCharset());
     }
 
+    /**
+     * <p>
+     * Stops the threads running chains concurrently. This method should be called when the application is stopped
+     * or undeployed to not leak the threads. A new pool is created if chains are run again.
+     * </p>
+     */
+    public static void shutdown() {
+        ChainPool.INSTANCE.shutdown();
+    }
+
+    /**
+     * <p>
+     * Cancels the chains that are not started yet. Running chains are not interrupted since one of them could be run
+     * by the thread of the request.
+     * </p>
+     *
+     * @param tasks the tasks running the chains, {@code null} elements are ignored
+     * @param except the index of a task that must not be cancelled, -1 to cancel all tasks
+     */
+    private static void cancel(final List<? extends Future<?>> tasks, final int except) {
+        for (int i = 0; i < tasks.size(); i++) {
+            final Future<?> task = tasks.get(i);
+
+            if (task != null && i != except) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Waits for the result of the given chain execution. Any exception thrown by the chain is rethrown as is.
+     * </p>
+     *
+     * @param future the chain execution
+     * @return the nuts returned by the chain
+     * @throws WuicException if the chain throws it
+     */
+    private static List<ConvertibleNut> waitAndGet(final Future<List<ConvertibleNut>> future) throws WuicException {
+        try {
+            return future.get();
+        } catch (InterruptedException ie) {
+            WuicException.throwBadArgumentException(new IllegalArgumentException(ie));
+        } catch (ExecutionException ee) {
+            final Throwable cause = ee.getCause();
+
+            if (cause instanceof WuicException) {
+                throw (WuicException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                WuicException.throwBadArgumentException(new IllegalArgumentException(ee));
+            }
+        }
+
+        return null;
+    }
+
     /**
      * <p>
      * Parses the given request and returns the nut associated to the given path.
@@ -117,4 +271,173 @@ public abstract class HeadEngine extends Engine {
      * @throws WuicException if request could not be executed successfully
      */
     public abstract ConvertibleNut parse(EngineRequest request, String path) throws WuicException;
+
+    /**
+     * <p>
+     * Returns the nut associated to the given path if it's already available for the request that is going to be built.
+     * This gives a chance to serve a nut without building the request, which wraps each nut of the heap. If {@code null}
+     * is returned, the caller must build the request and invoke {@link #parse(EngineRequest, String)}.
+     * </p>
+     *
+     * <p>
+     * By default, this method always returns {@code null}.
+     * </p>
+     *
+     * @param request the request builder
+     * @param path the nut name
+     * @return the nut, {@code null} if the request must be built
+     */
+    public ConvertibleNut findReady(final EngineRequestBuilder request, final String path) {
+        return null;
+    }
+
+    /**
+     * <p>
+     * Parses a sequence of nuts with the chain dedicated to their type. The call is performed with the context class
+     * loader of the thread that submitted the chain and the sibling chains are cancelled if the call fails.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    private static final class ChainCall implements Callable<List<ConvertibleNut>> {
+
+        /**
+         * The chain.
+         */
+        private final NodeEngine chain;
+
+        /**
+         * The request.
+         */
+        private final EngineRequest request;
+
+        /**
+         * The context class loader of the thread that submitted the chain.
+         */
+        private final ClassLoader classLoader;
+
+        /**
+         * All the tasks running the chains of the request.
+         */
+        private final List<? extends Future<?>> siblings;
+
+        /**
+         * The index of the task running this call in the siblings.
+         */
+        private final int index;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param chain the chain
+         * @param request the request
+         * @param classLoader the context class loader to use
+         * @param siblings all the tasks of the request
+         * @param index the index of the task running this call
+         */
+        private ChainCall(final NodeEngine chain,
+                          final EngineRequest request,
+                          final ClassLoader classLoader,
+                          final List<? extends Future<?>> siblings,
+                          final int index) {
+            this.chain = chain;
+            this.request = request;
+            this.classLoader = classLoader;
+            this.siblings = siblings;
+            this.index = index;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public List<ConvertibleNut> call() throws WuicException {
+            final Thread thread = Thread.currentThread();
+            final ClassLoader previous = thread.getContextClassLoader();
+            boolean success = false;
+            thread.setContextClassLoader(classLoader);
+
+            try {
+                final List<ConvertibleNut> retval = chain.parse(request);
+                success = true;
+                return retval;
+            } finally {
+                thread.setContextClassLoader(previous);
+
+                if (!success) {
+                    cancel(siblings, index);
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Bounded pool running chains concurrently. Threads are daemons to never prevent the JVM from exiting. This pool
+     * is separated from {@link com.github.wuic.util.WuicScheduledThreadPool} because chains wait for jobs submitted
+     * to the latter, like version number computations, and must not starve it. The pool is created when the first
+     * chain is submitted and can be shut down with {@link #shutdown()}.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    private enum ChainPool implements ThreadFactory {
+
+        /**
+         * Singleton.
+         */
+        INSTANCE;
+
+        /**
+         * Thread counter.
+         */
+        private final AtomicInteger count = new AtomicInteger();
+
+        /**
+         * The pool, {@code null} if not created or shut down.
+         */
+        private ExecutorService pool;
+
+        /**
+         * <p>
+         * Executes the given task as soon as a thread is available.
+         * </p>
+         *
+         * @param task the task
+         */
+        synchronized void execute(final Runnable task) {
+            if (pool == null) {
+                pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), this);
+            }
+
+            pool.execute(task);
+        }
+
+        /**
+         * <p>
+         * Shuts down the pool. Tasks waiting for a thread are not executed by the pool but are still run by the
+         * thread collecting the results.
+         * </p>
+         */
+        synchronized void shutdown() {
+            if (pool != null) {
+                pool.shutdownNow();
+                pool = null;
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread thread = new Thread(r, "wuic-chain-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
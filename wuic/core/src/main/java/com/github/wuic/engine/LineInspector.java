@@ -32,6 +32,7 @@ import com.github.wuic.nut.dao.NutDao;
 import com.github.wuic.nut.dao.NutDaoWrapper;
 import com.github.wuic.util.IOUtils;
 import com.github.wuic.util.NutUtils;
+import com.github.wuic.util.SpliceBuilder;
 import com.github.wuic.util.TimerTreeFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -437,6 +438,31 @@ public abstract class LineInspector {
             stringBuilder.replace(startIndex, endIndex, str);
         }
 
+        /**
+         * <p>
+         * Records in the given {@link SpliceBuilder} the replacement of the portion delimited by the
+         * {@link #startIndex} and {@link #endIndex} positions with the {@link #string} value.
+         * </p>
+         *
+         * @param spliceBuilder the builder
+         */
+        public void replace(final SpliceBuilder spliceBuilder) {
+            replace(spliceBuilder, string);
+        }
+
+        /**
+         * <p>
+         * Records in the given {@link SpliceBuilder} the replacement of the portion delimited by the
+         * {@link #startIndex} and {@link #endIndex} positions with the given value.
+         * </p>
+         *
+         * @param spliceBuilder the builder
+         * @param str the replacement {@code String}
+         */
+        public void replace(final SpliceBuilder spliceBuilder, final String str) {
+            spliceBuilder.replace(startIndex, endIndex, str);
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -32,11 +32,14 @@ import com.github.wuic.util.BiFunction;
 import com.github.wuic.util.NumberUtils;
 import com.github.wuic.util.Timer;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * <p>
@@ -50,6 +53,12 @@ import java.util.ListIterator;
  * </p>
  *
  * <p>
+ * The chain starting at an engine is compiled once for each combination of skipped {@link EngineType types} into an
+ * execution plan listing the engines to run. A request walks through the plan instead of visiting the skipped engines.
+ * The plans are dropped when the chain is modified with {@link #setNext(NodeEngine)}.
+ * </p>
+ *
+ * <p>
  * The {@link BiFunction} interface is implemented by this class in order to register it to any parsed nut via the
  * method {@link ConvertibleNut#addVersionNumberCallback(BiFunction)} which allows the subclass to transform the version
  * number.
@@ -70,6 +79,11 @@ public abstract class NodeEngine extends Engine implements NutTypeFactoryHolder
      */
     private NodeEngine previousEngine;
 
+    /**
+     * The execution plans of the chain starting at this engine, indexed by skip mask.
+     */
+    private final ConcurrentMap<Integer, NodeEngine[]> executionPlans = new ConcurrentHashMap<Integer, NodeEngine[]>();
+
     /**
      * Nut type factory.
      */
@@ -196,29 +210,75 @@ public abstract class NodeEngine extends Engine implements NutTypeFactoryHolder
      */
     @Override
     public List<ConvertibleNut> parse(final EngineRequest request) throws WuicException {
-        if (request.shouldSkip(getEngineType())) {
-            // Call next engine in chain
-            if (getNext() != null) {
-                return getNext().parse(new EngineRequestBuilder(request).nuts(request.getNuts()).build());
-            } else {
-                return request.getNuts();
+        final NodeEngine[] plan = getExecutionPlan(request.getBuilder().getSkipMask());
+        EngineRequest cursor = request;
+
+        for (int i = 0; i < plan.length; i++) {
+            final NodeEngine engine = plan[i];
+            final List<ConvertibleNut> nuts = engine.execute(cursor);
+
+            // Last engine or the engine already called the next engine
+            if (i == plan.length - 1 || !engine.callNextEngine()) {
+                return nuts;
             }
-        } else {
-            final Timer timer = request.createTimer();
-            timer.start();
-            final List<ConvertibleNut> nuts = internalParse(request);
-            registerVersionNumberCallback(nuts);
+
+            cursor = new EngineRequestBuilder(cursor).nuts(nuts).build();
+        }
+
+        // All engines are skipped
+        return request.getNuts();
+    }
+
+    /**
+     * <p>
+     * Runs this engine only for the given request.
+     * </p>
+     *
+     * @param request the request
+     * @return the parsed nuts
+     * @throws WuicException if parsing fails
+     */
+    private List<ConvertibleNut> execute(final EngineRequest request) throws WuicException {
+        final Timer timer = request.createTimer();
+        timer.start();
+        final List<ConvertibleNut> nuts = internalParse(request);
+        registerVersionNumberCallback(nuts);
+
+        if (timer.isEnabled()) {
             final long elapsed = timer.end();
             Logging.TIMER.log("Parse operation by node engine executed in {}s", (float) (elapsed) / (float) NumberUtils.ONE_THOUSAND);
             request.reportParseEngine(elapsed);
+        }
 
-            // Call next engine in chain
-            if (getNext() != null && callNextEngine()) {
-                return getNext().parse(new EngineRequestBuilder(request).nuts(nuts).build());
-            } else {
-                return nuts;
+        return nuts;
+    }
+
+    /**
+     * <p>
+     * Gets the engines to run in the chain starting at this engine when the types in the given mask are skipped.
+     * The plan is computed once for each mask.
+     * </p>
+     *
+     * @param skipMask the skipped types
+     * @return the engines to run, in the order of the chain
+     */
+    private NodeEngine[] getExecutionPlan(final int skipMask) {
+        NodeEngine[] retval = executionPlans.get(skipMask);
+
+        if (retval == null) {
+            final List<NodeEngine> plan = new ArrayList<NodeEngine>();
+
+            for (NodeEngine engine = this; engine != null; engine = engine.nextEngine) {
+                if ((skipMask & engine.getEngineType().mask()) == 0) {
+                    plan.add(engine);
+                }
             }
+
+            retval = plan.toArray(new NodeEngine[plan.size()]);
+            executionPlans.put(skipMask, retval);
         }
+
+        return retval;
     }
 
     /**
@@ -232,6 +292,11 @@ public abstract class NodeEngine extends Engine implements NutTypeFactoryHolder
     public void setNext(final NodeEngine next) {
         nextEngine = next;
 
+        // Plans of this engine and all the engines before it are not valid anymore
+        for (NodeEngine engine = this; engine != null; engine = engine.previousEngine) {
+            engine.executionPlans.clear();
+        }
+
         if (nextEngine != null) {
             nextEngine.previousEngine = this;
         }
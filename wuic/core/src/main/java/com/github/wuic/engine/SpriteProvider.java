@@ -88,4 +88,15 @@ public interface SpriteProvider {
      * @param nut the new image
      */
     void init(ConvertibleNut nut);
+
+    /**
+     * <p>
+     * Creates a new provider with the same configuration as this instance but without any image nor region. A provider
+     * keeps the regions it has been notified, so each image uses its own provider created from the configured one.
+     * </p>
+     *
+     * @return the new provider
+     * @since 0.5.3
+     */
+    SpriteProvider newInstance();
 }
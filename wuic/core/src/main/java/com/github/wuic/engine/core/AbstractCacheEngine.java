@@ -33,25 +33,33 @@ import com.github.wuic.nut.CompositeNut;
 import com.github.wuic.nut.ConvertibleNut;
 import com.github.wuic.nut.HeapListener;
 import com.github.wuic.nut.InMemoryNut;
+import com.github.wuic.nut.Nut;
 import com.github.wuic.nut.NutsHeap;
 import com.github.wuic.nut.PrefixedNut;
 import com.github.wuic.nut.SizableNut;
 import com.github.wuic.nut.Source;
+import com.github.wuic.nut.SourceMapNut;
 import com.github.wuic.util.NutUtils;
 import com.github.wuic.util.Pipe;
+import com.github.wuic.util.StringUtils;
+import com.github.wuic.util.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
@@ -71,6 +79,11 @@ import java.util.concurrent.Future;
  * </p>
  *
  * <p>
+ * Each time a whole heap is put in the cache, the key of the request is indexed by the workflow and the skipped engines.
+ * This allows to {@link #findReady(EngineRequestBuilder, String) find} a static nut before the request is built.
+ * </p>
+ *
+ * <p>
  * The cache itself is abstract here and it needs to be provided by subclass.
  * </p>
  *
@@ -89,6 +102,11 @@ public abstract class AbstractCacheEngine extends HeadEngine {
      */
     private final Map<EngineRequest.Key, Future<Map<String, ConvertibleNut>>> parsingDefault;
 
+    /**
+     * The cache keys of requests covering a whole heap mapped to their {@link EngineRequest#getWorkflowKey() workflow key}.
+     */
+    private final ConcurrentMap<EngineRequest.Key, EngineRequest.Key> readyKeys;
+
     /**
      * If cache or not.
      */
@@ -106,6 +124,7 @@ public abstract class AbstractCacheEngine extends HeadEngine {
      */
     protected AbstractCacheEngine() {
         parsingDefault = new HashMap<EngineRequest.Key, Future<Map<String, ConvertibleNut>>>();
+        readyKeys = new ConcurrentHashMap<EngineRequest.Key, EngineRequest.Key>();
     }
 
     /**
@@ -192,6 +211,58 @@ public abstract class AbstractCacheEngine extends HeadEngine {
         return parse(request, path, 0);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ConvertibleNut findReady(final EngineRequestBuilder request, final String path) {
+        if (!works() || path.startsWith("best-effort")) {
+            return null;
+        }
+
+        final EngineRequest.Key key = readyKeys.get(request.getWorkflowKey());
+
+        if (key == null) {
+            return null;
+        }
+
+        // Default result is being computed, the request must be built to wait for it
+        synchronized (parsingDefault) {
+            if (parsingDefault.containsKey(key)) {
+                return null;
+            }
+        }
+
+        final CacheResult result = getFromCache(key);
+        return result == null ? null : result.find(null, path, false);
+    }
+
+    /**
+     * <p>
+     * Indexes the key of the given request by its {@link EngineRequest#getWorkflowKey() workflow key} if the request
+     * contains all the nuts of its heap. The result cached for a request that contains only some nuts of the heap can't
+     * be shared with the requests built from the heap.
+     * </p>
+     *
+     * @param request the request
+     */
+    private void indexReadyKey(final EngineRequest request) {
+        final List<Nut> heapNuts = request.getHeap().getNuts();
+        final List<ConvertibleNut> nuts = request.getNuts();
+
+        if (heapNuts.size() != nuts.size()) {
+            return;
+        }
+
+        for (int i = 0; i < nuts.size(); i++) {
+            if (!heapNuts.get(i).getInitialName().equals(nuts.get(i).getInitialName())) {
+                return;
+            }
+        }
+
+        readyKeys.put(request.getWorkflowKey(), request.getKey());
+    }
+
     /**
      * <p>
      * Executes the given request in best effort.
@@ -269,7 +340,8 @@ public abstract class AbstractCacheEngine extends HeadEngine {
      */
     private ConvertibleNut parse(final EngineRequest request, final String path, final int callee) throws WuicException {
         // Log duration
-        final Long start = System.currentTimeMillis();
+        final Timer timer = request.getTimerTreeFactory().createTimer();
+        timer.start();
         ConvertibleNut retval;
 
         // Apply cache support
@@ -310,6 +382,7 @@ public abstract class AbstractCacheEngine extends HeadEngine {
                     parse(request);
                     retval = parse(request, path);
                 } else {
+                    indexReadyKey(request);
                     retval = result.find(request, path, false);
                 }
             }
@@ -318,7 +391,9 @@ public abstract class AbstractCacheEngine extends HeadEngine {
             retval = runAndFind(request, path);
         }
 
-        Logging.TIMER.log("'{}' retrieved from cache engine in {} ms", path, (System.currentTimeMillis() - start));
+        if (timer.isEnabled()) {
+            Logging.TIMER.log("'{}' retrieved from cache engine in {} ms", path, timer.end());
+        }
 
         return retval;
     }
@@ -579,6 +654,7 @@ public abstract class AbstractCacheEngine extends HeadEngine {
                 // Update cache
                 log.debug("Caching nuts with key '{}'", request);
                 putToCache(request.getKey(), cached);
+                indexReadyKey(request);
 
                 return retval;
             } catch (IOException ioe) {
@@ -752,53 +828,41 @@ public abstract class AbstractCacheEngine extends HeadEngine {
 
             /**
              * <p>
-             * Finds the nut with the given name if wrapped in this entry.
+             * Adds to the given index the nuts wrapped in this entry: the static nut, the referenced nuts and the sources.
+             * A dynamic nut is indexed with this entry since it has to be computed from the request.
              * </p>
              *
-             * @param request the request that requires the nut
-             * @param name the nut name
-             * @return the nut, {@code null} if not found
+             * @param index the index
              */
-            ConvertibleNut find(final EngineRequest request, final String name) {
-                List<ConvertibleNut> referenced;
-                Source source;
+            void index(final NameIndex index) {
+                final List<ConvertibleNut> referenced;
+                final Source source;
 
                 if (staticNut != null) {
-                    if (name.equals(staticNut.getName())) {
-                        return staticNut;
-                    } else {
-                        referenced = staticNut.getReferencedNuts();
-                        source = staticNut.getSource();
-                    }
-                } else if (name.equals(dynamicName)) {
-                    return toConvertibleNut(request);
+                    index.put(staticNut.getName(), staticNut);
+                    referenced = staticNut.getReferencedNuts();
+                    source = staticNut.getSource();
                 } else {
+                    index.putDynamic(dynamicName, this);
                     referenced = dynamicReferencedNuts;
                     source = null;
                 }
 
-                // Look for nut inside referenced nuts
+                // Nuts inside referenced nuts
                 if (referenced != null) {
-                    final ConvertibleNut ref = NutUtils.findByName(referenced, name);
-
-                    if (ref != null) {
-                        return ref;
+                    for (final ConvertibleNut ref : referenced) {
+                        index.putByName(ref);
                     }
                 }
 
-                // Look for nut inside sources
+                // Nuts inside sources
                 if (source instanceof ConvertibleNut) {
-                    // Source map
-                    final ConvertibleNut src = NutUtils.findByName(ConvertibleNut.class.cast(source), name);
+                    index.putByName(ConvertibleNut.class.cast(source));
 
-                    if (src != null) {
-                        return src;
-                    } else {
-                        return NutUtils.findByName(source.getOriginalNuts(), name);
+                    for (final ConvertibleNut original : source.getOriginalNuts()) {
+                        index.putByName(original);
                     }
                 }
-
-                return null;
             }
 
             /**
@@ -860,7 +924,17 @@ public abstract class AbstractCacheEngine extends HeadEngine {
         /**
          * The default result.
          */
-        private Map<String, Entry> defaultResult;
+        private volatile Map<String, Entry> defaultResult;
+
+        /**
+         * The nuts of the best effort result indexed by name, built on first lookup and never serialized.
+         */
+        private transient volatile NameIndex bestEffortIndex;
+
+        /**
+         * The nuts of the default result indexed by name, built on first lookup and never serialized.
+         */
+        private transient volatile NameIndex defaultIndex;
 
         /**
          * <p>
@@ -881,27 +955,52 @@ public abstract class AbstractCacheEngine extends HeadEngine {
          * Finds the entry that wraps the nut with the given name and return it.
          * </p>
          *
-         * @param request the request
+         * @param request the request, {@code null} if only static nuts can be returned
          * @param bestEffort find in the best effort result
          * @param name the nut name
          * @return the found nut, {@code null} if no nut has been found
          */
         ConvertibleNut find(final EngineRequest request, final String name, final boolean bestEffort) {
-            final Map<String, Entry> map = !bestEffort ? defaultResult : bestEffortResult;
+            final NameIndex index = bestEffort ? getBestEffortIndex() : getDefaultIndex();
+            return index == null ? null : index.find(request, name);
+        }
 
-            if (map == null) {
-                return null;
+        /**
+         * <p>
+         * Gets the index of the best effort result. The index is built on first call.
+         * </p>
+         *
+         * @return the index, {@code null} if there is no best effort result
+         */
+        private NameIndex getBestEffortIndex() {
+            final Map<String, Entry> result = bestEffortResult;
+            NameIndex retval = bestEffortIndex;
+
+            if (result != null && (retval == null || !retval.isBuiltFrom(result))) {
+                retval = new NameIndex(result);
+                bestEffortIndex = retval;
             }
 
-            for (final Map.Entry<String, Entry> entry : map.entrySet()) {
-                final ConvertibleNut retval = entry.getValue().find(request, name);
+            return result == null ? null : retval;
+        }
 
-                if (retval != null) {
-                    return retval;
-                }
+        /**
+         * <p>
+         * Gets the index of the default result. The index is built on first call and after each change of the result.
+         * </p>
+         *
+         * @return the index, {@code null} if there is no default result
+         */
+        private NameIndex getDefaultIndex() {
+            final Map<String, Entry> result = defaultResult;
+            NameIndex retval = defaultIndex;
+
+            if (result != null && (retval == null || !retval.isBuiltFrom(result))) {
+                retval = new NameIndex(result);
+                defaultIndex = retval;
             }
 
-            return null;
+            return result == null ? null : retval;
         }
 
         /**
@@ -937,4 +1036,174 @@ public abstract class AbstractCacheEngine extends HeadEngine {
             this.defaultResult = defaultResult;
         }
     }
+
+    /**
+     * <p>
+     * A flat index of the nuts wrapped by the entries of a result. Each nut is mapped to all the names that
+     * {@link NutUtils#findByName(ConvertibleNut, String)} would match. When several nuts match the same name, the first
+     * one found by iterating the entries is kept, like a sequential lookup would do.
+     * </p>
+     *
+     * <p>
+     * The index is built once and never modified, so it can be read by any number of threads.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    static final class NameIndex {
+
+        /**
+         * Prefix of the nuts created in best effort.
+         */
+        private static final String BEST_EFFORT_PREFIX = "best-effort/";
+
+        /**
+         * The indexed entries.
+         */
+        private final Map<String, CacheResult.Entry> entries;
+
+        /**
+         * Static nuts by name.
+         */
+        private final Map<String, ConvertibleNut> nuts;
+
+        /**
+         * Entries wrapping a dynamic nut by name.
+         */
+        private final Map<String, CacheResult.Entry> dynamicEntries;
+
+        /**
+         * The nuts already indexed, used when building the index to avoid cycles.
+         */
+        private Set<ConvertibleNut> visited;
+
+        /**
+         * <p>
+         * Builds a new index for the given entries.
+         * </p>
+         *
+         * @param entries the entries
+         */
+        private NameIndex(final Map<String, CacheResult.Entry> entries) {
+            this.entries = entries;
+            nuts = new HashMap<String, ConvertibleNut>();
+            dynamicEntries = new HashMap<String, CacheResult.Entry>();
+            visited = Collections.newSetFromMap(new IdentityHashMap<ConvertibleNut, Boolean>());
+
+            for (final CacheResult.Entry entry : entries.values()) {
+                entry.index(this);
+            }
+
+            visited = null;
+        }
+
+        /**
+         * <p>
+         * Indicates if this index has been built from the given entries.
+         * </p>
+         *
+         * @param result the entries
+         * @return {@code true} if the entries are the indexed ones, {@code false} otherwise
+         */
+        boolean isBuiltFrom(final Map<String, CacheResult.Entry> result) {
+            return entries == result;
+        }
+
+        /**
+         * <p>
+         * Finds the nut with the given name.
+         * </p>
+         *
+         * @param request the request, {@code null} if only static nuts can be returned
+         * @param name the name
+         * @return the nut, {@code null} if not found
+         */
+        ConvertibleNut find(final EngineRequest request, final String name) {
+            final ConvertibleNut retval = nuts.get(name);
+
+            if (retval != null) {
+                return retval;
+            }
+
+            final CacheResult.Entry entry = dynamicEntries.get(name);
+
+            // A dynamic nut is computed from the request
+            return entry == null || request == null ? null : entry.toConvertibleNut(request);
+        }
+
+        /**
+         * <p>
+         * Maps the given name to the given static nut if not already indexed.
+         * </p>
+         *
+         * @param name the name
+         * @param nut the nut
+         */
+        void put(final String name, final ConvertibleNut nut) {
+            if (!nuts.containsKey(name) && !dynamicEntries.containsKey(name)) {
+                nuts.put(name, nut);
+            }
+        }
+
+        /**
+         * <p>
+         * Maps the given name to the given entry wrapping a dynamic nut if not already indexed.
+         * </p>
+         *
+         * @param name the name
+         * @param entry the entry
+         */
+        void putDynamic(final String name, final CacheResult.Entry entry) {
+            if (!nuts.containsKey(name) && !dynamicEntries.containsKey(name)) {
+                dynamicEntries.put(name, entry);
+            }
+        }
+
+        /**
+         * <p>
+         * Indexes the given nut with all the names matched by {@link NutUtils#findByName(ConvertibleNut, String)}, then
+         * indexes the nuts it contains in the same order as this method looks for them.
+         * </p>
+         *
+         * @param nut the nut
+         */
+        void putByName(final ConvertibleNut nut) {
+            if (!visited.add(nut)) {
+                return;
+            }
+
+            final String parsedName = StringUtils.simplifyPathWithDoubleDot(nut.getName());
+            put(parsedName, nut);
+            put('/' + parsedName, nut);
+
+            if (parsedName.startsWith("/")) {
+                put(parsedName.substring(1), nut);
+            }
+
+            if (parsedName.startsWith(BEST_EFFORT_PREFIX)) {
+                final String name = parsedName.substring(BEST_EFFORT_PREFIX.length());
+                put(name, nut);
+                put('/' + name, nut);
+            }
+
+            // Source map
+            if (!(nut instanceof Source) && (nut.getSource() instanceof SourceMapNut)) {
+                final SourceMapNut sourceMapNut = SourceMapNut.class.cast(nut.getSource());
+                putByName(sourceMapNut);
+
+                for (final ConvertibleNut original : sourceMapNut.getOriginalNuts()) {
+                    if (!original.equals(nut)) {
+                        putByName(original);
+                    }
+                }
+            }
+
+            if (nut.getReferencedNuts() != null) {
+                for (final ConvertibleNut ref : nut.getReferencedNuts()) {
+                    putByName(ref);
+                }
+            }
+        }
+    }
 }
@@ -138,7 +138,7 @@ public abstract class AbstractConverterEngine extends NodeEngine {
                     }
 
                     Pipe.executeAndWriteTo(finalPipe, null, os);
-                    request.reportTransformerStat(finalPipe.getStatistics());
+                    request.reportTransformerStat(finalPipe.drainStatistics());
                 }
             } finally {
                 IOUtils.close(result);
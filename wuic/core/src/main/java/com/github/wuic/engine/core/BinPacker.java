@@ -79,6 +79,14 @@ public final class BinPacker<T> implements Comparator<T>, DimensionPacker<T> {
         root = new Node<T>(0, 0, 0, 0, null);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DimensionPacker<T> newInstance() {
+        return new BinPacker<T>();
+    }
+
     /**
      * {@inheritDoc}
      */
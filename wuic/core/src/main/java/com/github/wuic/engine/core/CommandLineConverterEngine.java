@@ -37,13 +37,17 @@ import com.github.wuic.nut.InMemoryNut;
 import com.github.wuic.nut.CompositeNut;
 import com.github.wuic.nut.ConvertibleNut;
 import com.github.wuic.nut.SourceMapNutImpl;
+import com.github.wuic.nut.sourcemap.SourceMapGeneratorV3;
+import com.github.wuic.nut.sourcemap.SourceMapParseException;
 import com.github.wuic.util.BiFunction;
 import com.github.wuic.util.DefaultInput;
 import com.github.wuic.util.IOUtils;
+import com.github.wuic.util.InMemoryInput;
 import com.github.wuic.util.Input;
 import com.github.wuic.util.NutDiskStore;
 import com.github.wuic.util.NutUtils;
 import com.github.wuic.util.StringUtils;
+import com.github.wuic.util.WuicScheduledThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -55,6 +59,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -62,12 +67,18 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Pattern;
 
 import static com.github.wuic.ApplicationConfig.COMMAND;
+import static com.github.wuic.ApplicationConfig.CONVERT_BY_NUT;
 import static com.github.wuic.ApplicationConfig.INPUT_NUT_TYPE;
 import static com.github.wuic.ApplicationConfig.OUTPUT_NUT_TYPE;
 import static com.github.wuic.ApplicationConfig.PATH_SEPARATOR;
@@ -110,6 +121,15 @@ import static com.github.wuic.ApplicationConfig.RESOLVED_FILE_DIRECTORY_AS_WORKI
  * </p>
  *
  * <p>
+ * When {@link ApplicationConfig#CONVERT_BY_NUT} is enabled, the command is executed once per nut instead of once for
+ * all the aggregated nuts, so the {@link #PATH_TOKEN} token is replaced by a single path. Compilations run concurrently
+ * when no library is installed in the working directory. Results and source maps are then concatenated in the order of
+ * the aggregated nuts. Dependencies between nuts are not known, so each result is reused only while no nut of the
+ * composition changes: when polling detects a change, all the nuts are compiled again. This mode thus speeds up the
+ * compilation by running it in parallel, not by compiling less.
+ * </p>
+ *
+ * <p>
  * Some mandatory settings must be used to configure this engine if you want to activate it:
  *   <ul>
  *     <li>{@link ApplicationConfig#INPUT_NUT_TYPE}: the {@link NutType} name corresponding to the type expected of input file</li>
@@ -236,6 +256,137 @@ public class CommandLineConverterEngine extends AbstractConverterEngine implemen
         }
     }
 
+    /**
+     * <p>
+     * The result of a command executed for one nut.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    private static final class Conversion {
+
+        /**
+         * The hash of the nut name and content combined with the hash of its composition.
+         */
+        private final String hash;
+
+        /**
+         * The compilation result.
+         */
+        private final String content;
+
+        /**
+         * The generated source map, {@code null} if not generated.
+         */
+        private final String sourceMap;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param hash the hash
+         * @param content the compilation result
+         * @param sourceMap the source map
+         */
+        private Conversion(final String hash, final String content, final String sourceMap) {
+            this.hash = hash;
+            this.content = content;
+            this.sourceMap = sourceMap;
+        }
+
+        /**
+         * <p>
+         * Indicates if this result can be reused for the given hash.
+         * </p>
+         *
+         * @param h the hash of the nut to compile combined with the hash of its composition
+         * @param bestEffort if the source map is not required
+         * @return {@code true} if the nut and its composition have not changed since this result has been computed
+         */
+        private boolean isValid(final String h, final boolean bestEffort) {
+            return hash.equals(h) && (bestEffort || sourceMap != null);
+        }
+    }
+
+    /**
+     * <p>
+     * Executes the command for one nut and reads the generated files.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    private final class NutCompilation implements Callable<Conversion> {
+
+        /**
+         * The hash of the nut.
+         */
+        private final String hash;
+
+        /**
+         * The command line information.
+         */
+        private final CommandLineInfo commandLineInfo;
+
+        /**
+         * The request.
+         */
+        private final EngineRequest request;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param hash the hash of the nut
+         * @param commandLineInfo the command line information
+         * @param request the request
+         */
+        private NutCompilation(final String hash, final CommandLineInfo commandLineInfo, final EngineRequest request) {
+            this.hash = hash;
+            this.commandLineInfo = commandLineInfo;
+            this.request = request;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Conversion call() throws IOException {
+            final File compilationResult = commandLineInfo.getCompilationResult();
+            final File sourceMapFile = new File(compilationResult.getAbsolutePath() + ".map");
+            try {
+                run(executor, commandLineInfo, request);
+                return new Conversion(hash, read(compilationResult), request.isBestEffort() ? null : read(sourceMapFile));
+            } finally {
+                IOUtils.delete(compilationResult);
+                IOUtils.delete(sourceMapFile);
+            }
+        }
+
+        /**
+         * <p>
+         * Reads the given generated file.
+         * </p>
+         *
+         * @param file the file
+         * @return the content
+         * @throws IOException if the file can't be read
+         */
+        private String read(final File file) throws IOException {
+            InputStream is = null;
+
+            try {
+                is = new FileInputStream(file);
+                return IOUtils.readString(new InputStreamReader(is, getNutTypeFactory().getCharset()));
+            } finally {
+                IOUtils.close(is);
+            }
+        }
+    }
+
     /**
      * OS name.
      */
@@ -276,6 +427,11 @@ public class CommandLineConverterEngine extends AbstractConverterEngine implemen
      */
     private static final Logger log = LoggerFactory.getLogger(CommandLineConverterEngine.class);
 
+    /**
+     * Counts the compilations of nuts converted separately to give a unique name to their results.
+     */
+    private static final AtomicLong COMPILATIONS = new AtomicLong();
+
     /**
      * Path separator in the command line.
      */
@@ -322,6 +478,18 @@ public class CommandLineConverterEngine extends AbstractConverterEngine implemen
      */
     private String outputNutType;
 
+    /**
+     * Compile each nut separately.
+     */
+    private Boolean convertByNut;
+
+    /**
+     * The last conversions of the nuts compiled separately by name, for each converted nut identified by its workflow
+     * and its name. An entry is replaced by each conversion, so nuts removed from a composition are not retained.
+     */
+    private final ConcurrentMap<String, Map<String, Conversion>> conversions =
+            new ConcurrentHashMap<String, Map<String, Conversion>>();
+
     /**
      * <p>
      * Initializes a new instance.
@@ -333,6 +501,7 @@ public class CommandLineConverterEngine extends AbstractConverterEngine implemen
      * @param separator the path separator
      * @param libs additional libraries paths available in the classpath
      * @param srdaws try to reuse source directory to generate files
+     * @param byNut compile each nut separately
      * @throws WuicException if the engine cannot be initialized
      * @throws IOException if any I/O error occurs
      */
@@ -343,9 +512,11 @@ public class CommandLineConverterEngine extends AbstractConverterEngine implemen
                      @StringConfigParam(propertyKey = OUTPUT_NUT_TYPE, defaultValue = "") final String outputNutType,
                      @StringConfigParam(propertyKey = PATH_SEPARATOR, defaultValue = " ") final String separator,
                      @StringConfigParam(propertyKey = LIBRARIES, defaultValue = "") final String libs,
-                     @BooleanConfigParam(propertyKey = RESOLVED_FILE_DIRECTORY_AS_WORKING_DIR, defaultValue = true) final Boolean srdaws)
+                     @BooleanConfigParam(propertyKey = RESOLVED_FILE_DIRECTORY_AS_WORKING_DIR, defaultValue = true) final Boolean srdaws,
+                     @BooleanConfigParam(propertyKey = CONVERT_BY_NUT, defaultValue = false) final Boolean byNut)
             throws WuicException, IOException {
         this.resolvedFileDirectoryAsWorkingDirectory = srdaws;
+        this.convertByNut = byNut;
 
         // Engine won't be associated to any chain
         if (inputNutType.isEmpty() || outputNutType.isEmpty()) {
@@ -387,38 +558,12 @@ public class CommandLineConverterEngine extends AbstractConverterEngine implemen
             throws IOException {
         // Do not generate source map if we are in best effort
         final boolean be = request.isBestEffort();
-        final List<ConvertibleNut> compositionList;
-
-        if (is instanceof CompositeNut.CompositeInput) {
-            compositionList = CompositeNut.CompositeInput.class.cast(is).getCompositeNut().getCompositionList();
-        } else if (nut instanceof CompositeNut) {
-            compositionList = CompositeNut.class.cast(nut).getCompositionList();
-        } else {
-            final String m = "Nut must be a %s or it's InputStream must be an instance of %s";
-            throw new IllegalArgumentException(String.format(m, CompositeNut.class.getName(), CompositeNut.CompositeInput.class.getName()));
-        }
-
+        final List<ConvertibleNut> compositionList = compositionList(is, nut);
         final List<String> pathsToCompile = new ArrayList<String>(compositionList.size());
-        File workingDir = NutDiskStore.INSTANCE.getWorkingDirectory();
-        boolean copyFiles = true;
+        final File sourceDir = resolvedFileDirectoryAsWorkingDirectory ? sourceDirectory(compositionList) : null;
+        final File workingDir = sourceDir == null ? NutDiskStore.INSTANCE.getWorkingDirectory() : sourceDir;
 
-        // Try to use common parent directory of collected nuts
-        if (resolvedFileDirectoryAsWorkingDirectory) {
-            final String file = NutUtils.getParentFile(compositionList);
-
-            // There is a common parent directory...
-            if (file != null) {
-                final File f = new File(file);
-
-                // ... where we can write
-                if (f.canWrite()) {
-                    workingDir = f;
-                    copyFiles = false;
-                }
-            }
-        }
-
-        collectPathToCompile(pathsToCompile, compositionList, copyFiles);
+        collectPathToCompile(pathsToCompile, compositionList, sourceDir == null);
 
         // Resources to clean
         InputStream sourceMapInputStream = null;
@@ -431,16 +576,7 @@ public class CommandLineConverterEngine extends AbstractConverterEngine implemen
 
         try {
             log.debug("absolute path: {}", workingDir.getAbsolutePath());
-
-            if (!executor.apply(new CommandLineInfo(pathsToCompile, compilationResult), request)) {
-                log.error("executor {} returns false", executor);
-                WuicException.throwStreamException(new IOException("Executor failed."));
-            } else if (!compilationResult.exists() || (!be && !sourceMapFile.exists())) {
-                log.error("{} and/or {} do not exist, which means that some errors break compilation. Check log above to see them.",
-                        compilationResult.getAbsolutePath(), sourceMapFile.getAbsolutePath());
-
-                WuicException.throwStreamException(new IOException("Command execution fails, check logs for details."));
-            }
+            run(executor, new CommandLineInfo(pathsToCompile, compilationResult), request);
 
             // Read the generated source map
             if (!be) {
@@ -464,6 +600,266 @@ public class CommandLineConverterEngine extends AbstractConverterEngine implemen
         }
     }
 
+    /**
+     * <p>
+     * Executes the given command line information and checks that the expected files have been generated.
+     * </p>
+     *
+     * @param executor the function that executes the command line
+     * @param commandLineInfo the command line information
+     * @param request the request that initiated conversion
+     * @throws IOException if the execution fails
+     */
+    private static void run(final BiFunction<CommandLineInfo, EngineRequest, Boolean> executor,
+                            final CommandLineInfo commandLineInfo,
+                            final EngineRequest request)
+            throws IOException {
+        final File compilationResult = commandLineInfo.getCompilationResult();
+        final File sourceMapFile = new File(compilationResult.getAbsolutePath() + ".map");
+
+        if (!executor.apply(commandLineInfo, request)) {
+            log.error("executor {} returns false", executor);
+            WuicException.throwStreamException(new IOException("Executor failed."));
+        } else if (!compilationResult.exists() || (!request.isBestEffort() && !sourceMapFile.exists())) {
+            log.error("{} and/or {} do not exist, which means that some errors break compilation. Check log above to see them.",
+                    compilationResult.getAbsolutePath(), sourceMapFile.getAbsolutePath());
+
+            WuicException.throwStreamException(new IOException("Command execution fails, check logs for details."));
+        }
+    }
+
+    /**
+     * <p>
+     * Gets the nuts to convert from the given stream or nut.
+     * </p>
+     *
+     * @param is the source input stream
+     * @param nut the corresponding nut
+     * @return the nuts to convert
+     */
+    private static List<ConvertibleNut> compositionList(final Input is, final ConvertibleNut nut) {
+        if (is instanceof CompositeNut.CompositeInput) {
+            return CompositeNut.CompositeInput.class.cast(is).getCompositeNut().getCompositionList();
+        } else if (nut instanceof CompositeNut) {
+            return CompositeNut.class.cast(nut).getCompositionList();
+        } else {
+            final String m = "Nut must be a %s or it's InputStream must be an instance of %s";
+            throw new IllegalArgumentException(String.format(m, CompositeNut.class.getName(), CompositeNut.CompositeInput.class.getName()));
+        }
+    }
+
+    /**
+     * <p>
+     * Gets the common parent directory of the given nuts if the engine can write in it.
+     * </p>
+     *
+     * @param nuts the nuts
+     * @return the directory, {@code null} if the nuts must be copied to a temporary directory
+     */
+    private static File sourceDirectory(final List<ConvertibleNut> nuts) {
+        final String file = NutUtils.getParentFile(nuts);
+
+        // There is a common parent directory where we can write
+        if (file != null) {
+            final File f = new File(file);
+
+            if (f.canWrite()) {
+                return f;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * <p>
+     * Converts each nut of the given stream separately. Other nuts are compiled concurrently if the command does not
+     * rely on libraries installed in the working directory, because they would be overridden by each execution.
+     * </p>
+     *
+     * <p>
+     * A nut is not compiled again if neither the nut nor any other nut of the composition changed since its last
+     * conversion. The other nuts are taken into account because the tool can read them when the nut imports or
+     * references them, so any change compiles all the nuts again. A file imported by a nut without being part of the
+     * composition is not tracked: its changes are taken into account only when a nut of the composition changes.
+     * </p>
+     *
+     * @param is the source input stream
+     * @param nut the corresponding nut
+     * @param request the request that initiated conversion
+     * @return the concatenated results
+     * @throws IOException if any I/O error occurs
+     */
+    private Input executeByNut(final Input is, final ConvertibleNut nut, final EngineRequest request) throws IOException {
+        final boolean be = request.isBestEffort();
+        final List<ConvertibleNut> compositionList = compositionList(is, nut);
+        final File sourceDir = resolvedFileDirectoryAsWorkingDirectory ? sourceDirectory(compositionList) : null;
+        final File workingDir = sourceDir == null ? NutDiskStore.INSTANCE.getWorkingDirectory() : sourceDir;
+        final List<Conversion> results = new ArrayList<Conversion>(compositionList.size());
+        final List<FutureTask<Conversion>> tasks = new ArrayList<FutureTask<Conversion>>(compositionList.size());
+        final boolean parallel = libraries.isEmpty();
+        final String[] hashes = new String[compositionList.size()];
+        final Charset charset = Charset.forName(getNutTypeFactory().getCharset());
+
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = hash(compositionList.get(i), charset);
+        }
+
+        final String key = request.getWorkflowId() + '/' + nut.getName();
+        final Map<String, Conversion> previous = conversions.get(key);
+        final Map<String, Conversion> current = new HashMap<String, Conversion>(compositionList.size());
+
+        // Any change in the composition invalidates all the conversions since a nut can depend on another one
+        final String compositionHash = StringUtils.toHexString(IOUtils.digest(hashes));
+
+        for (int i = 0; i < hashes.length; i++) {
+            final ConvertibleNut n = compositionList.get(i);
+            final String hash = StringUtils.toHexString(IOUtils.digest(hashes[i], compositionHash));
+            final Conversion conversion = previous == null ? null : previous.get(n.getName());
+
+            if (conversion != null && conversion.isValid(hash, be)) {
+                log.debug("{} and its composition have not changed since its last conversion", n.getName());
+                current.put(n.getName(), conversion);
+                results.add(conversion);
+                tasks.add(null);
+            } else {
+                final List<String> pathsToCompile = new ArrayList<String>(1);
+                collectPathToCompile(pathsToCompile, Arrays.asList(n), sourceDir == null);
+
+                // Name is unique since compilations can run concurrently in the same directory, even for the same nut
+                final File compilationResult = new File(workingDir, hash + '-' + COMPILATIONS.incrementAndGet() + '-'
+                        + TextAggregatorEngine.aggregationName(EnumNutType.JAVASCRIPT.getExtensions()));
+                final FutureTask<Conversion> task = new FutureTask<Conversion>(
+                        new NutCompilation(hash, new CommandLineInfo(pathsToCompile, compilationResult), request));
+                results.add(null);
+                tasks.add(task);
+
+                if (parallel) {
+                    WuicScheduledThreadPool.INSTANCE.executeAsap(task);
+                }
+            }
+        }
+
+        for (int i = 0; i < tasks.size(); i++) {
+            final FutureTask<Conversion> task = tasks.get(i);
+
+            if (task != null) {
+                // No effect if the task is already started by the pool
+                task.run();
+                final Conversion conversion = waitAndGet(task);
+                current.put(compositionList.get(i).getName(), conversion);
+                results.set(i, conversion);
+            }
+        }
+
+        conversions.put(key, current);
+
+        return concatenate(results, nut, request);
+    }
+
+    /**
+     * <p>
+     * Concatenates the given results and sets the source map merging their own source maps to the given nut.
+     * </p>
+     *
+     * @param results the results
+     * @param nut the converted nut
+     * @param request the request that initiated conversion
+     * @return the concatenated results
+     * @throws IOException if any I/O error occurs
+     */
+    private Input concatenate(final List<Conversion> results, final ConvertibleNut nut, final EngineRequest request)
+            throws IOException {
+        final StringBuilder content = new StringBuilder();
+        final SourceMapGeneratorV3 generator = request.isBestEffort() ? null : new SourceMapGeneratorV3();
+        int line = 0;
+
+        try {
+            for (final Conversion conversion : results) {
+                if (generator != null) {
+                    generator.mergeMapSection(line, 0, conversion.sourceMap);
+                }
+
+                content.append(conversion.content);
+
+                for (int i = 0; i < conversion.content.length(); i++) {
+                    if (conversion.content.charAt(i) == '\n') {
+                        line++;
+                    }
+                }
+
+                // Next result starts on a new line
+                if (content.length() > 0 && content.charAt(content.length() - 1) != '\n') {
+                    content.append('\n');
+                    line++;
+                }
+            }
+
+            if (generator != null) {
+                final String name = TextAggregatorEngine.aggregationName(EnumNutType.JAVASCRIPT.getExtensions()) + ".map";
+                final StringBuilder sourceMap = new StringBuilder();
+                generator.appendTo(sourceMap, name);
+                final String charset = getNutTypeFactory().getCharset();
+                final NutType nutType = getNutTypeFactory().getNutType(EnumNutType.MAP);
+                final ConvertibleNut sourceMapNut =
+                        new InMemoryNut(sourceMap.toString().getBytes(charset), name, nutType, 0L, false);
+                nut.setSource(new SourceMapNutImpl(request.getHeap(), nut, sourceMapNut, request.getProcessContext()));
+            }
+        } catch (SourceMapParseException smpe) {
+            throw new IOException(smpe);
+        } catch (WuicException we) {
+            throw new IOException(we);
+        }
+
+        return new InMemoryInput(content.toString(), getNutTypeFactory().getCharset());
+    }
+
+    /**
+     * <p>
+     * Computes a hash of the name and the content of the given nut.
+     * </p>
+     *
+     * @param nut the nut
+     * @param charset the charset used to encode the name
+     * @return the hash
+     * @throws IOException if the nut can't be read
+     */
+    private static String hash(final ConvertibleNut nut, final Charset charset) throws IOException {
+        Input is = null;
+
+        try {
+            is = nut.openStream();
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            IOUtils.copyStream(is.inputStream(), bos);
+            return StringUtils.toHexString(IOUtils.digest(nut.getName().getBytes(charset), bos.toByteArray()));
+        } finally {
+            IOUtils.close(is);
+        }
+    }
+
+    /**
+     * <p>
+     * Waits for the result of the given compilation. An {@code IOException} thrown by the compilation is rethrown as is.
+     * </p>
+     *
+     * @param task the compilation
+     * @return the result
+     * @throws IOException if the compilation fails
+     */
+    private static Conversion waitAndGet(final FutureTask<Conversion> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException ie) {
+            throw new IOException(ie);
+        } catch (ExecutionException ee) {
+            if (ee.getCause() instanceof IOException) {
+                throw (IOException) ee.getCause();
+            } else {
+                throw new IOException(ee.getCause());
+            }
+        }
+    }
+
     /**
      * <p>
      * Collects the path to be used by the converter in order to generate the content.
@@ -805,6 +1201,10 @@ public class CommandLineConverterEngine extends AbstractConverterEngine implemen
     @Override
     public Input transform(final Input is, final ConvertibleNut nut, final EngineRequest request)
             throws IOException {
+        if (convertByNut) {
+            return executeByNut(is, nut, request);
+        }
+
         return execute(is, nut, request, getNutTypeFactory(), executor, resolvedFileDirectoryAsWorkingDirectory);
     }
 
@@ -0,0 +1,458 @@
+/*
+ * Copyright (c) 2016   The authors of WUIC
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.github.wuic.engine.core;
+
+import com.github.wuic.util.NumberUtils;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * Minifies CSS at token level. Comments are removed, except the ones starting with {@code /*!}. White spaces are
+ * removed around braces, semicolons, commas and colons of declarations, and around combinators in selectors. Empty
+ * and last declarations of a block lose their semicolon.
+ * </p>
+ *
+ * <p>
+ * Values of declarations are shortened: the unit of a zero length is removed, useless zeros of numbers are removed
+ * and hexadecimal colors are written with three digits when possible. The unit is kept inside functions, where
+ * {@code calc(100% - 0px)} is not valid without it, and in custom properties whose value can be used anywhere.
+ * Strings and {@code url()} are copied as is.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @since 0.5.3
+ */
+public class CssMinifier extends TokenMinifier {
+
+    /**
+     * Zero length with a unit.
+     */
+    private static final Pattern ZERO_LENGTH = Pattern.compile(
+            "[+-]?(?:0+\\.?0*|\\.0+)(?:px|em|rem|ex|ch|vw|vh|vmin|vmax|cm|mm|q|in|pt|pc)", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Number with an optional unit.
+     */
+    private static final Pattern NUMBER = Pattern.compile("([+-]?)(\\d*)(?:\\.(\\d*))?([a-zA-Z%]*)");
+
+    /**
+     * Hexadecimal color with six digits.
+     */
+    private static final Pattern COLOR = Pattern.compile("#([0-9a-fA-F])\\1([0-9a-fA-F])\\2([0-9a-fA-F])\\3");
+
+    /**
+     * Properties where the unit of a zero length must be kept.
+     */
+    private static final Set<String> KEEP_UNIT = new HashSet<String>(Arrays.asList("flex", "-ms-flex", "-webkit-flex"));
+
+    /**
+     * At-rules whose block contains declarations instead of rules.
+     */
+    private static final Set<String> DECLARATION_AT_RULES = new HashSet<String>(Arrays.asList(
+            "@font-face", "@page", "@viewport", "@-ms-viewport", "@counter-style", "@property", "@font-palette-values"));
+
+    /**
+     * For each opened block, indicates if it contains declarations.
+     */
+    private final Deque<Boolean> blocks;
+
+    /**
+     * Offset where the selector, the at-rule or the declaration being read starts.
+     */
+    private int statementStart;
+
+    /**
+     * The property of the declaration whose value is being read, {@code null} outside values.
+     */
+    private String property;
+
+    /**
+     * Parenthesis depth.
+     */
+    private int parenthesis;
+
+    /**
+     * White spaces have been skipped since the previous token.
+     */
+    private boolean space;
+
+    /**
+     * A semicolon has been skipped and must be written if the block is not closed.
+     */
+    private boolean semicolon;
+
+    /**
+     * The previous token if it's a word.
+     */
+    private String previousWord;
+
+    /**
+     * <p>
+     * Builds a new instance.
+     * </p>
+     *
+     * @param input the style sheet
+     */
+    public CssMinifier(final char[] input) {
+        super(input);
+        blocks = new ArrayDeque<Boolean>();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void run() {
+        final char[] input = getInput();
+        int i = 0;
+
+        while (i < input.length) {
+            final char c = input[i];
+
+            if (Character.isWhitespace(c)) {
+                space = true;
+                i++;
+            } else if (c == '/' && charAt(i + 1) == '*') {
+                i = comment(i);
+            } else if (c == '"' || c == '\'') {
+                i = write(i, skipString(i));
+            } else if (c == '(' && previousWord != null && "url".equals(previousWord.toLowerCase(Locale.ENGLISH))) {
+                i = write(i, skipUrl(i));
+            } else if (c == '{') {
+                open(i);
+                i++;
+            } else if (c == '}') {
+                close(i);
+                i++;
+            } else if (c == ';') {
+                // Written before the next token if the block is not closed
+                semicolon = lastChar() != ';' && lastChar() != '{' && lastChar() != 0;
+                endStatement(i + 1);
+                i++;
+            } else if (isPunctuator(c)) {
+                write(i, i + 1);
+
+                if (c == ':' && property == null && isDeclaration() && parenthesis == 0) {
+                    property = statement(i);
+                } else if (c == '(') {
+                    parenthesis++;
+                } else if (c == ')' && parenthesis > 0) {
+                    parenthesis--;
+                }
+
+                i++;
+            } else {
+                i = word(i);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Indicates if the given character is a token on its own.
+     * </p>
+     *
+     * @param c the character
+     * @return {@code true} if the character is not part of a word
+     */
+    private boolean isPunctuator(final char c) {
+        return "(),:>~".indexOf(c) != -1 || (c == '+' && !isDeclaration());
+    }
+
+    /**
+     * <p>
+     * Indicates if the current block contains declarations.
+     * </p>
+     *
+     * @return {@code true} if declarations are read, {@code false} if rules are read
+     */
+    private boolean isDeclaration() {
+        return !blocks.isEmpty() && blocks.peek();
+    }
+
+    /**
+     * <p>
+     * Marks the beginning of a new selector, at-rule or declaration.
+     * </p>
+     *
+     * @param start the offset of the statement
+     */
+    private void endStatement(final int start) {
+        statementStart = start;
+        property = null;
+        parenthesis = 0;
+        previousWord = null;
+    }
+
+    /**
+     * <p>
+     * Gets the text of the statement being read until the given offset, in lower case. The leading white spaces and
+     * comments are ignored.
+     * </p>
+     *
+     * @param end the end offset
+     * @return the statement
+     */
+    private String statement(final int end) {
+        final char[] input = getInput();
+        int start = statementStart;
+
+        while (start < end) {
+            if (Character.isWhitespace(input[start])) {
+                start++;
+            } else if (input[start] == '/' && charAt(start + 1) == '*') {
+                start = Math.min(skipBlockComment(start), end);
+            } else {
+                break;
+            }
+        }
+
+        return new String(input, start, end - start).trim().toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * <p>
+     * Opens a block. The block contains declarations unless it's opened by an at-rule containing rules.
+     * </p>
+     *
+     * @param offset the offset of the brace
+     */
+    private void open(final int offset) {
+        final String prelude = statement(offset);
+        final int nameEnd = prelude.indexOf(' ');
+        final String atRule = nameEnd == -1 ? prelude : prelude.substring(0, nameEnd);
+        blocks.push(!prelude.startsWith("@") || DECLARATION_AT_RULES.contains(atRule));
+        semicolon = false;
+        write(offset, offset + 1);
+        endStatement(offset + 1);
+    }
+
+    /**
+     * <p>
+     * Closes the current block. The skipped semicolon preceding the brace is useless.
+     * </p>
+     *
+     * @param offset the offset of the brace
+     */
+    private void close(final int offset) {
+        if (!blocks.isEmpty()) {
+            blocks.pop();
+        }
+
+        semicolon = false;
+        write(offset, offset + 1);
+        endStatement(offset + 1);
+    }
+
+    /**
+     * <p>
+     * Writes the pending separators, then the token located between the given offsets.
+     * </p>
+     *
+     * @param start the start offset
+     * @param end the end offset
+     * @return the end offset
+     */
+    private int write(final int start, final int end) {
+        separate(getInput()[start]);
+        token(start, end);
+        previousWord = null;
+        return end;
+    }
+
+    /**
+     * <p>
+     * Writes the skipped semicolon and the space required between the previous token and the next one, if any.
+     * </p>
+     *
+     * @param first the first character of the next token
+     */
+    private void separate(final char first) {
+        if (semicolon) {
+            separator(';');
+            semicolon = false;
+        } else if (space && !canRemoveSpace(lastChar(), first)) {
+            separator(' ');
+        }
+
+        space = false;
+    }
+
+    /**
+     * <p>
+     * Indicates if the white spaces between the given characters can be removed.
+     * </p>
+     *
+     * @param last the last character of the previous token
+     * @param first the first character of the next token
+     * @return {@code true} if no space has to be written
+     */
+    private boolean canRemoveSpace(final char last, final char first) {
+        if (last == 0 || "{};,(".indexOf(last) != -1 || "{};,)".indexOf(first) != -1) {
+            return true;
+        } else if (isDeclaration() || parenthesis > 0) {
+            // Space before a colon is significant in selectors only
+            return last == ':' || (first == ':' && property == null);
+        } else {
+            // Combinators
+            return ">~+".indexOf(last) != -1 || ">~+".indexOf(first) != -1;
+        }
+    }
+
+    /**
+     * <p>
+     * Writes the word starting at the given offset, shortened if it's part of a value.
+     * </p>
+     *
+     * @param start the offset of the word
+     * @return the offset following the word
+     */
+    private int word(final int start) {
+        final char[] input = getInput();
+        int end = start + 1;
+
+        while (end < input.length
+                && !Character.isWhitespace(input[end])
+                && "{};\"'".indexOf(input[end]) == -1
+                && !isPunctuator(input[end])
+                && !(input[end] == '/' && charAt(end + 1) == '*')) {
+            end++;
+        }
+
+        final String word = new String(input, start, end - start);
+        final String shortened = property == null ? word : shorten(word);
+
+        separate(input[start]);
+        token(start, shortened);
+        previousWord = word;
+        return end;
+    }
+
+    /**
+     * <p>
+     * Shortens the given word of a value.
+     * </p>
+     *
+     * @param word the word
+     * @return the shortened word
+     */
+    private String shorten(final String word) {
+        if (ZERO_LENGTH.matcher(word).matches() && parenthesis == 0 && !property.startsWith("--")
+                && !KEEP_UNIT.contains(property)) {
+            return "0";
+        }
+
+        final Matcher color = COLOR.matcher(word);
+
+        if (color.matches()) {
+            return "#" + color.group(1) + color.group(NumberUtils.TWO) + color.group(NumberUtils.THREE);
+        }
+
+        final Matcher number = NUMBER.matcher(word);
+
+        // Digits are required
+        if (!number.matches() || (number.group(NumberUtils.TWO).isEmpty() && number.group(NumberUtils.THREE) == null)) {
+            return word;
+        }
+
+        String fraction = number.group(NumberUtils.THREE);
+
+        if (fraction == null) {
+            return word;
+        }
+
+        // Remove trailing zeros of the fraction and leading zeros of the integer part
+        int fractionEnd = fraction.length();
+
+        while (fractionEnd > 0 && fraction.charAt(fractionEnd - 1) == '0') {
+            fractionEnd--;
+        }
+
+        fraction = fraction.substring(0, fractionEnd);
+        String integer = number.group(NumberUtils.TWO).replaceFirst("^0+", "");
+
+        if (integer.isEmpty() && fraction.isEmpty()) {
+            integer = "0";
+        }
+
+        return number.group(1) + integer + (fraction.isEmpty() ? "" : "." + fraction) + number.group(NumberUtils.FOUR);
+    }
+
+    /**
+     * <p>
+     * Handles the comment starting at the given offset. A comment starting with {@code /*!} is kept.
+     * </p>
+     *
+     * @param start the offset of the comment
+     * @return the offset following the comment
+     */
+    private int comment(final int start) {
+        final int end = skipBlockComment(start);
+
+        if (charAt(start + NumberUtils.TWO) == '!') {
+            write(start, end);
+        } else {
+            // Tokens around the comment must not be merged
+            space = true;
+        }
+
+        return end;
+    }
+
+    /**
+     * <p>
+     * Finds the end of the {@code url()} argument starting at the given parenthesis.
+     * </p>
+     *
+     * @param start the offset of the opening parenthesis
+     * @return the offset following the closing parenthesis
+     */
+    private int skipUrl(final int start) {
+        final char[] input = getInput();
+        int i = start + 1;
+
+        while (i < input.length) {
+            final char c = input[i];
+
+            if (c == '"' || c == '\'') {
+                i = skipString(i);
+            } else if (c == '\\') {
+                i += NumberUtils.TWO;
+            } else if (c == ')') {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+
+        return input.length;
+    }
+}
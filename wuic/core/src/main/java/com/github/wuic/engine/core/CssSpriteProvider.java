@@ -25,6 +25,7 @@ package com.github.wuic.engine.core;
 import com.github.wuic.EnumNutType;
 import com.github.wuic.NutTypeFactory;
 import com.github.wuic.engine.Region;
+import com.github.wuic.engine.SpriteProvider;
 import com.github.wuic.nut.InMemoryNut;
 import com.github.wuic.nut.ConvertibleNut;
 import com.github.wuic.nut.Source;
@@ -43,6 +44,14 @@ import java.io.IOException;
  */
 public class CssSpriteProvider extends AbstractSpriteProvider {
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SpriteProvider newInstance() {
+        return new CssSpriteProvider();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -37,6 +37,8 @@ import com.github.wuic.util.NumberUtils;
 import com.github.wuic.util.NutUtils;
 import com.github.wuic.util.Output;
 import com.github.wuic.util.Pipe;
+import com.github.wuic.util.SpliceBuilder;
+import com.github.wuic.util.StringUtils;
 import com.github.wuic.util.UrlProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -60,6 +62,11 @@ import java.util.Map;
  */
 public final class HtmlTransformer implements Serializable, Pipe.Transformer<ConvertibleNut> {
 
+    /**
+     * Beginning of the statements that could be captured by the {@link AssetsMarkupParser}.
+     */
+    private static final String[] STATEMENTS = { "<script", "<link", "<style", "<img", "<!--", "<wuic:", };
+
     /**
      * Logger.
      */
@@ -92,9 +99,15 @@ public final class HtmlTransformer implements Serializable, Pipe.Transformer<Con
     private final AssetsMarkupParser parser;
 
     /**
-     * All replacements performed by the transformer.
+     * The maximum number of asset statements skeletons the replacements are kept for.
      */
-    private Map<Object, List<String>> replacements;
+    private static final int REPLACEMENTS_CACHE_SIZE = 32;
+
+    /**
+     * The replacements performed by the transformer, associated to the fingerprint of the content they have been
+     * computed for. A dynamic page can alternate between several skeletons, each one keeps its own replacements.
+     */
+    private final Map<String, Map<Object, List<String>>> replacements;
 
     /**
      * <p>
@@ -117,6 +130,12 @@ public final class HtmlTransformer implements Serializable, Pipe.Transformer<Con
         this.serverHint = sh;
         this.nutFilters = nutFilterList;
         this.parser = p;
+        this.replacements = new LinkedHashMap<String, Map<Object, List<String>>>(REPLACEMENTS_CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Map<Object, List<String>>> eldest) {
+                return size() > REPLACEMENTS_CACHE_SIZE;
+            }
+        };
     }
 
     /**
@@ -128,25 +147,27 @@ public final class HtmlTransformer implements Serializable, Pipe.Transformer<Con
         final Pipe.Execution e = is.execution();
         final String content = e.isText()
                 ? new String(e.getCharResult()) : new String(IOUtils.toChars(Charset.forName(charset), e.getByteResult()));
-        final StringBuilder transform = new StringBuilder(content);
 
-        // Normalize linefeed
-        int index = 0;
-
-        while ((index = transform.indexOf("\r\n", index)) != -1) {
-            transform.deleteCharAt(index);
-        }
+        // Normalize linefeed, statements are located in this source and replaced when the result is written
+        final String source = content.indexOf('\r') == -1 ? content : content.replace("\r\n", "\n");
+        final SpliceBuilder transform = new SpliceBuilder(source);
 
         int end = 0;
+        final String contentFingerprint = fingerprint(source);
+        final Map<Object, List<String>> cached;
 
-        // Perform cached replacement
-        if (this.replacements != null) {
-            for (final Map.Entry<Object, List<String>> entry : this.replacements.entrySet()) {
+        synchronized (replacements) {
+            cached = replacements.get(contentFingerprint);
+        }
+
+        // Perform cached replacement: the statements are the same as the ones previously parsed
+        if (cached != null) {
+            for (final Map.Entry<Object, List<String>> entry : cached.entrySet()) {
                 final Object replacement = entry.getKey();
-                end = replace(transform, replacement, entry.getValue(), end);
+                end = replace(source, transform, replacement, entry.getValue(), end);
             }
         } else {
-            this.replacements = new LinkedHashMap<Object, List<String>>();
+            final Map<Object, List<String>> computed = new LinkedHashMap<Object, List<String>>();
             final int endParent = convertible.getName().lastIndexOf('/');
             final String rootPath = endParent == -1 ? "" : convertible.getName().substring(0, endParent);
             final ProxyNutDao proxy = new ProxyNutDao(rootPath, request.getHeap().findDaoFor(convertible));
@@ -161,8 +182,8 @@ public final class HtmlTransformer implements Serializable, Pipe.Transformer<Con
             for (final HtmlInspectorEngine.ParseInfo parseInfo : parseInfoList) {
                 // Perform replacement
                 final String replacement = parseInfo.replacement(request, urlProvider, referenced, convertible);
-                end = replace(transform, replacement, parseInfo.getCapturedStatements(), end);
-                this.replacements.put(replacement, parseInfo.getCapturedStatements());
+                end = replace(source, transform, replacement, parseInfo.getCapturedStatements(), end);
+                computed.put(replacement, parseInfo.getCapturedStatements());
             }
 
             for (final ConvertibleNut ref : referenced) {
@@ -171,7 +192,7 @@ public final class HtmlTransformer implements Serializable, Pipe.Transformer<Con
 
             // Modify the content to give more information to the client directly inside the page
             if (!request.isStaticsServedByWuicServlet()) {
-                final ConvertibleNut appCache = applicationCache(convertible, urlProvider, transform);
+                final ConvertibleNut appCache = applicationCache(convertible, urlProvider, source, transform, computed);
 
                 if (appCache != null) {
                     referenced.add(appCache);
@@ -179,16 +200,128 @@ public final class HtmlTransformer implements Serializable, Pipe.Transformer<Con
 
                 // The hint resource
                 if (serverHint) {
-                    hintResources(urlProvider, transform, referenced);
+                    hintResources(urlProvider, source, transform, referenced, computed);
                 }
             }
+
+            synchronized (replacements) {
+                replacements.put(contentFingerprint, computed);
+            }
         }
 
-        os.writer().write(transform.toString());
+        transform.writeTo(os.writer());
 
         return true;
     }
 
+    /**
+     * <p>
+     * Computes a fingerprint of the asset statements skeleton of the given HTML content. The skeleton is made of all
+     * the statements that could be captured when the content is parsed, the fact they are contiguous or not and the
+     * position and the entire markup of the "html" and "head" opening tags where additional markup is inserted. Two
+     * contents with the same fingerprint produce the same replacements, which allows to reuse the result of a previous
+     * parsing when the content is dynamic.
+     * </p>
+     *
+     * @param content the HTML content
+     * @return the fingerprint
+     */
+    public static String fingerprint(final String content) {
+        final StringBuilder skeleton = new StringBuilder();
+        skeleton.append(content.indexOf("<html")).append(':');
+        appendOpeningTag(skeleton, content, "html");
+        appendOpeningTag(skeleton, content, "head");
+        int previousEnd = 0;
+        int index = content.indexOf('<');
+
+        while (index != -1) {
+            final int end = statementEnd(content, index);
+
+            if (end == -1) {
+                index = content.indexOf('<', index + 1);
+            } else {
+                // Statements separated by something else than whitespace are not grouped
+                boolean contiguous = true;
+
+                for (int i = previousEnd; i < index && contiguous; i++) {
+                    contiguous = Character.isWhitespace(content.charAt(i));
+                }
+
+                skeleton.append(contiguous ? '+' : '|').append(content, index, end);
+                previousEnd = end;
+                index = content.indexOf('<', end);
+            }
+        }
+
+        return StringUtils.toHexString(IOUtils.digest(skeleton.toString()));
+    }
+
+    /**
+     * <p>
+     * Appends to the given skeleton the position and the markup of the opening tag with the given name, looked up like
+     * when the resource hints are inserted.
+     * </p>
+     *
+     * @param skeleton the skeleton
+     * @param content the content
+     * @param name the tag name
+     */
+    private static void appendOpeningTag(final StringBuilder skeleton, final String content, final String name) {
+        int index = content.indexOf("<" + name + ">");
+
+        if (index == -1) {
+            index = content.indexOf("<" + name + " ");
+        }
+
+        skeleton.append(index);
+
+        if (index != -1) {
+            final int end = content.indexOf('>', index);
+            skeleton.append(content, index, end == -1 ? content.length() : end + 1);
+        }
+
+        skeleton.append(':');
+    }
+
+    /**
+     * <p>
+     * Gets the end of the statement starting at the given index if the statement could be captured by the parser.
+     * </p>
+     *
+     * @param content the content
+     * @param index the statement start
+     * @return the index following the end of the statement, -1 if the statement is not an asset or is not closed
+     */
+    private static int statementEnd(final String content, final int index) {
+        for (final String statement : STATEMENTS) {
+            if (content.regionMatches(true, index, statement, 0, statement.length())) {
+                final int end;
+
+                if ("<!--".equals(statement)) {
+                    end = content.indexOf("-->", index);
+                    return end == -1 ? -1 : end + NumberUtils.THREE;
+                } else if ("<script".equals(statement) || "<style".equals(statement)) {
+                    final String closing = "</" + statement.substring(1);
+                    int i = index;
+
+                    while ((i = content.indexOf("</", i + 1)) != -1) {
+                        if (content.regionMatches(true, i, closing, 0, closing.length())) {
+                            end = content.indexOf('>', i);
+                            return end == -1 ? -1 : end + 1;
+                        }
+                    }
+
+                    return -1;
+                } else {
+                    end = content.indexOf('>', index);
+                    return end == -1 ? -1 : end + 1;
+                }
+            }
+        }
+
+        return -1;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -213,13 +346,17 @@ public final class HtmlTransformer implements Serializable, Pipe.Transformer<Con
      *
      * @param nut the nut representing the HTML page
      * @param urlProvider the URL provider
-     * @param content the page content
+     * @param source the page content
+     * @param transform the builder where the insertion is recorded
+     * @param replacements the map where the performed replacement is recorded
      * @return  the created {@code appcache} nut, {@code null} if no {@code html} tag exists in the content
      */
     private ConvertibleNut applicationCache(final ConvertibleNut nut,
                                             final UrlProvider urlProvider,
-                                            final StringBuilder content) {
-        int index = content.indexOf("<html");
+                                            final String source,
+                                            final SpliceBuilder transform,
+                                            final Map<Object, List<String>> replacements) {
+        int index = source.indexOf("<html");
 
         if (index == -1) {
             logger.warn("Filtered HTML does not have any <html>. Application cache file won't be inserted.");
@@ -243,8 +380,8 @@ public final class HtmlTransformer implements Serializable, Pipe.Transformer<Con
             // Modify the HTML content
             index += NumberUtils.FIVE;
             final String replacement = String.format(" manifest=\"%s\"", urlProvider.getUrl(appCache));
-            content.insert(index, replacement);
-            this.replacements.put(index, Arrays.asList(replacement));
+            transform.insert(index, replacement);
+            replacements.put(index, Arrays.asList(replacement));
             return appCache;
         }
     }
@@ -276,45 +413,47 @@ public final class HtmlTransformer implements Serializable, Pipe.Transformer<Con
      * </p>
      *
      * @param urlProvider the provider
-     * @param content the content
+     * @param source the content
+     * @param transform the builder where the insertion is recorded
      * @param convertibleNuts the nuts
+     * @param replacements the map where the performed replacement is recorded
      */
     private void hintResources(final UrlProvider urlProvider,
-                               final StringBuilder content,
-                               final List<ConvertibleNut> convertibleNuts) {
-        int index = content.indexOf("<head>");
+                               final String source,
+                               final SpliceBuilder transform,
+                               final List<ConvertibleNut> convertibleNuts,
+                               final Map<Object, List<String>> replacements) {
+        final StringBuilder hints = new StringBuilder();
+        int index = source.indexOf("<head>");
 
         if (index == -1) {
-            index = content.indexOf("<head ");
+            index = source.indexOf("<head ");
         }
 
         if (index == -1) {
-            index = content.indexOf("<html>");
+            index = source.indexOf("<html>");
 
             if (index == -1) {
-                index = content.indexOf("<html ");
+                index = source.indexOf("<html ");
             }
 
             if (index == -1) {
                 logger.warn("Filtered HTML does not have any <html>. Server hint directives won't be inserted.");
                 return;
             } else {
-                // Closing <html> tag
-                index = content.indexOf(">", index) + 1;
-                content.insert(index, "<head></head>");
-                index += NumberUtils.FIVE;
+                // Create the head after the closing <html> tag
+                appendHint(urlProvider, hints.append("<head>"), convertibleNuts);
+                hints.append("</head>");
             }
         } else {
-            // Closing <head> tag
-            index = content.indexOf(">", index);
+            appendHint(urlProvider, hints, convertibleNuts);
         }
 
-        final StringBuilder hints = new StringBuilder();
-        appendHint(urlProvider, hints, convertibleNuts);
-        index++;
+        // After the closing tag
+        index = source.indexOf(">", index) + 1;
         final String replacement = hints.toString();
-        content.insert(index, replacement);
-        this.replacements.put(index, Arrays.asList(replacement));
+        transform.insert(index, replacement);
+        replacements.put(index, Arrays.asList(replacement));
     }
 
     /**
@@ -343,18 +482,20 @@ public final class HtmlTransformer implements Serializable, Pipe.Transformer<Con
 
     /**
      * <p>
-     * Replaces in the given {@link StringBuilder} all the statements specified in parameter by an empty
+     * Replaces in the given {@link SpliceBuilder} all the statements specified in parameter by an empty
      * {@code String} except the first one which will be replaced by a particular replacement also specified
-     * in parameter.
+     * in parameter. If the replacement is an {@code Integer}, the statements are inserted at this position.
      * </p>
      *
+     * @param source the content where statements are searched
      * @param transform the builder
      * @param replacement the replacement
      * @param statements the statements to replace
-     * @param startIndex the index where the method could start to search statements in the builder
+     * @param startIndex the index where the method could start to search statements in the source
      * @return the updated index
      */
-    private int replace(final StringBuilder transform,
+    private int replace(final String source,
+                        final SpliceBuilder transform,
                         final Object replacement,
                         final List<String> statements,
                         final int startIndex) {
@@ -373,45 +514,18 @@ public final class HtmlTransformer implements Serializable, Pipe.Transformer<Con
             // Replace all captured statements with HTML generated from WUIC process
             for (int i = 0; i < statements.size(); i++) {
                 final String toReplace = statements.get(i);
-                end = replace(transform, replacement.toString(), toReplace, end, i == 0);
+                final int start = source.indexOf(toReplace, end);
+
+                if (start == -1) {
+                    logger.warn("Statement '{}' not found in filtered HTML, it won't be replaced.", toReplace);
+                } else {
+                    // Add the WUIC result in place of the first statement
+                    end = start + toReplace.length();
+                    transform.replace(start, end, i == 0 ? replacement.toString() : "");
+                }
             }
 
             return end;
         }
     }
-
-    /**
-     * <p>
-     * Replaces in the given {@link StringBuilder} the statement specified in parameter by an empty {@code String}
-     * except if the statement is the first one which will be replaced by a particular replacement also specified
-     * in parameter.
-     * </p>
-     *
-     * @param transform the builder
-     * @param replacement the replacement
-     * @param startIndex the index where the method could start to search statements in the builder
-     * @param toReplace the string to replace
-     * @param isFirst if the given statement is the first one
-     * @return the updated index
-     */
-    private int replace(final StringBuilder transform,
-                        final String replacement,
-                        final String toReplace,
-                        final int startIndex,
-                        final boolean isFirst) {
-
-        final int start = transform.indexOf(toReplace, startIndex);
-        int end = start + toReplace.length();
-
-        // Add the WUIC result in place of the first statement
-        if (isFirst) {
-            transform.replace(start, end, replacement);
-            end = start + replacement.length();
-        } else {
-            transform.replace(start, end, "");
-            end = start;
-        }
-
-        return end;
-    }
 }
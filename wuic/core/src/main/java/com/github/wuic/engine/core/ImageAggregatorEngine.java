@@ -65,6 +65,11 @@ import static com.github.wuic.ApplicationConfig.PACKER_CLASS_NAME;
  * <p>
  * This engine is in charge to merge images into one final image.
  * </p>
+ *
+ * <p>
+ * A {@link DimensionPacker} keeps the elements it packs. Each request thus packs its images with its own instance
+ * created by the configured packer.
+ * </p>
  * 
  * @author Guillaume DROUET
  * @since 0.2.0
@@ -84,7 +89,7 @@ public class ImageAggregatorEngine extends AbstractAggregatorEngine {
     private static final String DEFAULT_PACKER = "com.github.wuic.engine.core.BinPacker";
 
     /**
-     * Dimension packer.
+     * The configured dimension packer, never used directly to pack images.
      */
     private DimensionPacker<ConvertibleNut> dimensionPacker;
 
@@ -109,11 +114,12 @@ public class ImageAggregatorEngine extends AbstractAggregatorEngine {
         if (!works()) {
             return request.getNuts();
         } else {
-            final Map<Region, ConvertibleNut> packed = pack(request.getNuts());
+            final DimensionPacker<ConvertibleNut> packer = newDimensionPacker();
+            final Map<Region, ConvertibleNut> packed = pack(packer, request.getNuts());
             final Source source = new SourceImpl();
 
             // Initializing the final image
-            final Dimension finalDim = getDimensionPack();
+            final Dimension finalDim = packer.getFilledArea();
             final BufferedImage transparentImage = makeTransparentImage((int) finalDim.getWidth(), (int) finalDim.getHeight());
 
             // Merge each image into the final image
@@ -211,19 +217,29 @@ public class ImageAggregatorEngine extends AbstractAggregatorEngine {
         return Arrays.asList(getNutTypeFactory().getNutType(EnumNutType.PNG));
     }
 
+    /**
+     * <p>
+     * Creates a new instance from the configured {@link DimensionPacker}.
+     * </p>
+     *
+     * @return the new packer
+     */
+    public DimensionPacker<ConvertibleNut> newDimensionPacker() {
+        return dimensionPacker.newInstance();
+    }
+
     /**
      * <p>
      * Packs the given nuts (which embed images) in the smallest area.
      * </p>
      *
+     * @param dimensionPacker the packer dedicated to this operation
      * @param nuts the images to pack
      * @return a map which associates each packed image to its allocated region
      * @throws WuicException if one image could not be read
      */
-    public Map<Region, ConvertibleNut> pack(final List<ConvertibleNut> nuts) throws WuicException {
-
-        // Clear previous work
-        dimensionPacker.clearElements();
+    public Map<Region, ConvertibleNut> pack(final DimensionPacker<ConvertibleNut> dimensionPacker, final List<ConvertibleNut> nuts)
+            throws WuicException {
 
         // Load each image, read its dimension and add it to the packer with the ile as data
         for (final ConvertibleNut nut : nuts) {
@@ -244,16 +260,4 @@ public class ImageAggregatorEngine extends AbstractAggregatorEngine {
         // Get the regions calculated by the packer !
         return dimensionPacker.getRegions();
     }
-
-    /**
-     * <p>
-     * Gets the dimension computed by the packer when defining a position for
-     * elements.
-     * </p>
-     *
-     * @return the packed dimension
-     */
-    public Dimension getDimensionPack() {
-        return dimensionPacker.getFilledArea();
-    }
 }
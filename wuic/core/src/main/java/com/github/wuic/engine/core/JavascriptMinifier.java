@@ -0,0 +1,660 @@
+/*
+ * Copyright (c) 2016   The authors of WUIC
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.github.wuic.engine.core;
+
+import com.github.wuic.util.NumberUtils;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * <p>
+ * Minifies javascript at token level. Comments are removed, except the ones starting with {@code /*!} at the beginning
+ * of a line, which usually contain a license. White spaces are removed unless they separate two tokens that would
+ * otherwise be merged. A line break is kept only when both the previous and the next tokens could end and start a
+ * statement, so automatic semicolon insertion produces the same statements. Decimal literals are shortened.
+ * </p>
+ *
+ * <p>
+ * Strings, template literals and regular expressions are copied as is. A slash starts a regular expression when it
+ * can't be a division, which depends on the previous token. After a closing parenthesis or brace, the slash can be
+ * both: {@code if (a) /b/.test(c)} versus {@code (a) / b}. In that case, the rest of the line is copied as is and
+ * the following line break is kept. If a template literal or a block comment may be opened on that line and closed on
+ * a next line, the end of the copy can't be found and the whole script is returned unchanged.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @since 0.5.3
+ */
+public class JavascriptMinifier extends TokenMinifier {
+
+    /**
+     * Keywords that can be followed by a regular expression.
+     */
+    private static final Set<String> REGEX_KEYWORDS = new HashSet<String>(Arrays.asList(
+            "return", "typeof", "instanceof", "in", "of", "new", "delete", "void", "throw", "case", "do", "else",
+            "yield", "await"));
+
+    /**
+     * The kind of the previous token.
+     */
+    private Kind previous;
+
+    /**
+     * The previous token if it's a word.
+     */
+    private String previousWord;
+
+    /**
+     * The previous token is an increment or a decrement operator.
+     */
+    private boolean increment;
+
+    /**
+     * White spaces have been skipped since the previous token.
+     */
+    private boolean space;
+
+    /**
+     * A line break has been skipped since the previous token.
+     */
+    private boolean newLine;
+
+    /**
+     * <p>
+     * Builds a new instance.
+     * </p>
+     *
+     * @param input the script
+     */
+    public JavascriptMinifier(final char[] input) {
+        super(input);
+        previous = Kind.NONE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void run() {
+        final char[] input = getInput();
+        int i = 0;
+
+        while (i < input.length) {
+            final char c = input[i];
+
+            if (c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029') {
+                newLine = true;
+                i++;
+            } else if (Character.isWhitespace(c) || c == '\u00a0' || c == '\ufeff') {
+                space = true;
+                i++;
+            } else if (c == '/' && charAt(i + 1) == '/') {
+                i = skipLine(i);
+            } else if (c == '/' && charAt(i + 1) == '*') {
+                i = comment(i);
+            } else if (c == '"' || c == '\'') {
+                i = write(i, skipString(i), Kind.STRING);
+            } else if (c == '`') {
+                i = write(i, skipTemplate(i), Kind.STRING);
+            } else if (Character.isDigit(c) || (c == '.' && Character.isDigit(charAt(i + 1)))) {
+                i = number(i);
+            } else if (isWordChar(c)) {
+                int end = i + 1;
+
+                while (end < input.length && isWordChar(input[end])) {
+                    end++;
+                }
+
+                previousWord = new String(input, i, end - i);
+                i = write(i, end, Kind.WORD);
+            } else if (c == '/' && isAmbiguousSlash()) {
+                i = verbatim(i);
+            } else if (c == '/' && regexAllowed()) {
+                i = write(i, skipRegex(i), Kind.REGEX);
+            } else {
+                i = write(i, i + 1, Kind.PUNCTUATOR);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Writes the separator required before the next token, then the token located between the given offsets.
+     * </p>
+     *
+     * @param start the start offset
+     * @param end the end offset
+     * @param kind the token kind
+     * @return the end offset
+     */
+    private int write(final int start, final int end, final Kind kind) {
+        final char first = getInput()[start];
+        final boolean operator = kind == Kind.PUNCTUATOR && (first == '+' || first == '-');
+
+        // Detect the second character of '++' or '--'
+        final boolean secondChar = operator && !increment && previous == Kind.PUNCTUATOR && !space && !newLine && lastChar() == first;
+
+        separate(first, kind);
+        increment = secondChar;
+        token(start, end);
+        previous = kind;
+        return end;
+    }
+
+    /**
+     * <p>
+     * Writes the separator required between the previous token and the next one, if any.
+     * </p>
+     *
+     * @param first the first character of the next token
+     * @param kind the kind of the next token
+     */
+    private void separate(final char first, final Kind kind) {
+        if (previous != Kind.NONE && (space || newLine)) {
+            final char last = lastChar();
+
+            // The verbatim text can end with a single line comment
+            if (newLine && (previous == Kind.VERBATIM
+                    || (canEndStatement(last, previous, increment) && canStartStatement(first, kind)))) {
+                separator('\n');
+            } else if (mustSeparate(last, first)) {
+                separator(' ');
+            }
+        }
+
+        space = false;
+        newLine = false;
+    }
+
+    /**
+     * <p>
+     * Indicates if a statement can end with the given character.
+     * </p>
+     *
+     * @param last the last character of the previous token
+     * @param kind the kind of the previous token
+     * @param increment if the previous token is an increment or a decrement operator
+     * @return {@code true} if a line break can terminate the statement
+     */
+    private static boolean canEndStatement(final char last, final Kind kind, final boolean increment) {
+        return kind == Kind.STRING || kind == Kind.REGEX || kind == Kind.NUMBER || increment
+                || isWordChar(last) || ")]}".indexOf(last) != -1;
+    }
+
+    /**
+     * <p>
+     * Indicates if a statement can start with the given token.
+     * </p>
+     *
+     * @param first the first character of the token
+     * @param kind the kind of the token
+     * @return {@code true} if a line break before the token can terminate the previous statement
+     */
+    private static boolean canStartStatement(final char first, final Kind kind) {
+        return kind == Kind.NUMBER || isWordChar(first) || "([{'\"`+-/!~#@".indexOf(first) != -1;
+    }
+
+    /**
+     * <p>
+     * Indicates if the previous token and the next one would be merged if they are not separated.
+     * </p>
+     *
+     * @param last the last character of the previous token
+     * @param first the first character of the next token
+     * @return {@code true} if a space must be written
+     */
+    private boolean mustSeparate(final char last, final char first) {
+        return (isWordChar(last) && isWordChar(first))
+                || ((last == '+' || last == '-') && last == first)
+                || (last == '/' && (first == '/' || first == '*'))
+                || (last == '<' && first == '!')
+                || (previous == Kind.NUMBER && first == '.');
+    }
+
+    /**
+     * <p>
+     * Indicates if a slash starts a regular expression according to the previous token.
+     * </p>
+     *
+     * @return {@code true} if a regular expression is expected, {@code false} for a division
+     */
+    private boolean regexAllowed() {
+        switch (previous) {
+            case NONE:
+                return true;
+            case PUNCTUATOR:
+                // A slash following 'i++' is a division
+                return !increment && ")]}".indexOf(lastChar()) == -1;
+            case WORD:
+                return REGEX_KEYWORDS.contains(previousWord);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * <p>
+     * Indicates if a slash can't be identified as a division or a regular expression without parsing the statement,
+     * which happens after a closing parenthesis or brace, or at the beginning of a line following verbatim text.
+     * </p>
+     *
+     * @return {@code true} if the slash is ambiguous
+     */
+    private boolean isAmbiguousSlash() {
+        return previous == Kind.VERBATIM || (previous == Kind.PUNCTUATOR && !increment && ")}".indexOf(lastChar()) != -1);
+    }
+
+    /**
+     * <p>
+     * Copies as is the text starting at the given offset until the end of the line. Trailing white spaces are skipped.
+     * </p>
+     *
+     * @param start the offset
+     * @return the offset following the copied text
+     */
+    private int verbatim(final int start) {
+        final char[] input = getInput();
+        int end = skipLine(start);
+
+        if (mayContinueOnNextLine(start, end)) {
+            copyInput();
+            return input.length;
+        }
+
+        while (end > start + 1 && Character.isWhitespace(input[end - 1])) {
+            end--;
+        }
+
+        return write(start, end, Kind.VERBATIM);
+    }
+
+    /**
+     * <p>
+     * Indicates if a template literal or a block comment may be opened between the given offsets and closed after.
+     * The slashes of the text can't be identified, so the quotes of a regular expression can hide a construct from the
+     * scan. The detection is thus conservative: an odd number of back-ticks or a block comment not closed on the line
+     * are also considered as continued.
+     * </p>
+     *
+     * @param start the start offset
+     * @param end the offset of the line end
+     * @return {@code true} if the copied text may not be complete
+     */
+    private boolean mayContinueOnNextLine(final int start, final int end) {
+        final char[] input = getInput();
+        int backTicks = 0;
+        boolean openComment = false;
+
+        for (int i = start; i < end; i++) {
+            if (input[i] == '`' && input[i - 1] != '\\') {
+                backTicks++;
+            } else if (input[i] == '/' && charAt(i + 1) == '*') {
+                openComment = true;
+            } else if (input[i] == '*' && charAt(i + 1) == '/') {
+                openComment = false;
+            }
+        }
+
+        if (backTicks % NumberUtils.TWO != 0 || openComment) {
+            return true;
+        }
+
+        int i = start;
+
+        while (i < end) {
+            final char c = input[i];
+
+            if (c == '"' || c == '\'') {
+                i = skipString(i);
+            } else if (c == '`') {
+                i = skipTemplate(i);
+            } else if (c == '/' && charAt(i + 1) == '*') {
+                i = skipBlockComment(i);
+            } else if (c == '/' && charAt(i + 1) == '/') {
+                return false;
+            } else {
+                i++;
+                continue;
+            }
+
+            if (i > end) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * <p>
+     * Skips the single line comment starting at the given offset. The line break is not skipped.
+     * </p>
+     *
+     * @param start the offset of the comment
+     * @return the offset of the line break
+     */
+    private int skipLine(final int start) {
+        final char[] input = getInput();
+        int i = start;
+
+        while (i < input.length && input[i] != '\n' && input[i] != '\r' && input[i] != '\u2028' && input[i] != '\u2029') {
+            i++;
+        }
+
+        return i;
+    }
+
+    /**
+     * <p>
+     * Handles the block comment starting at the given offset. A comment starting with {@code /*!} at the beginning of
+     * a line is written on its own line, any other comment is considered as a white space.
+     * </p>
+     *
+     * @param start the offset of the comment
+     * @return the offset following the comment
+     */
+    private int comment(final int start) {
+        final int end = skipBlockComment(start);
+
+        if (charAt(start + NumberUtils.TWO) == '!' && (previous == Kind.NONE || newLine)) {
+            if (previous != Kind.NONE) {
+                separator('\n');
+            }
+
+            token(start, end);
+            separator('\n');
+            space = false;
+            newLine = false;
+        } else {
+            for (int i = start; i < end; i++) {
+                if (getInput()[i] == '\n') {
+                    newLine = true;
+                }
+            }
+
+            space = true;
+        }
+
+        return end;
+    }
+
+    /**
+     * <p>
+     * Finds the end of the template literal starting at the given offset. Substitutions are skipped.
+     * </p>
+     *
+     * @param start the offset of the opening back-tick
+     * @return the offset following the closing back-tick
+     */
+    private int skipTemplate(final int start) {
+        final char[] input = getInput();
+        int i = start + 1;
+
+        while (i < input.length) {
+            final char c = input[i];
+
+            if (c == '\\') {
+                i += NumberUtils.TWO;
+            } else if (c == '`') {
+                return i + 1;
+            } else if (c == '$' && charAt(i + 1) == '{') {
+                i = skipSubstitution(i + NumberUtils.TWO);
+            } else {
+                i++;
+            }
+        }
+
+        return input.length;
+    }
+
+    /**
+     * <p>
+     * Finds the end of the template substitution starting at the given offset.
+     * </p>
+     *
+     * @param start the offset following the opening brace
+     * @return the offset following the closing brace
+     */
+    private int skipSubstitution(final int start) {
+        final char[] input = getInput();
+        int depth = 1;
+        int i = start;
+
+        while (i < input.length) {
+            final char c = input[i];
+
+            if (c == '"' || c == '\'') {
+                i = skipString(i);
+            } else if (c == '`') {
+                i = skipTemplate(i);
+            } else if (c == '/' && charAt(i + 1) == '*') {
+                i = skipBlockComment(i);
+            } else if (c == '/' && charAt(i + 1) == '/') {
+                i = skipLine(i);
+            } else {
+                if (c == '{') {
+                    depth++;
+                } else if (c == '}' && --depth == 0) {
+                    return i + 1;
+                }
+
+                i++;
+            }
+        }
+
+        return input.length;
+    }
+
+    /**
+     * <p>
+     * Finds the end of the regular expression starting at the given offset, including its flags.
+     * </p>
+     *
+     * @param start the offset of the opening slash
+     * @return the offset following the regular expression
+     */
+    private int skipRegex(final int start) {
+        final char[] input = getInput();
+        boolean inClass = false;
+        int i = start + 1;
+
+        while (i < input.length) {
+            final char c = input[i];
+
+            if (c == '\\') {
+                i += NumberUtils.TWO;
+                continue;
+            } else if (c == '\n' || c == '\r') {
+                // Not terminated
+                return i;
+            }
+
+            i++;
+
+            if (c == '[') {
+                inClass = true;
+            } else if (c == ']') {
+                inClass = false;
+            } else if (c == '/' && !inClass) {
+                break;
+            }
+        }
+
+        // Flags
+        while (i < input.length && isWordChar(input[i])) {
+            i++;
+        }
+
+        return Math.min(i, input.length);
+    }
+
+    /**
+     * <p>
+     * Writes the numeric literal starting at the given offset. Useless zeros of decimal literals are removed.
+     * </p>
+     *
+     * @param start the offset of the literal
+     * @return the offset following the literal
+     */
+    private int number(final int start) {
+        final char[] input = getInput();
+        int i = start;
+
+        if (input[i] == '0' && "xXoObB".indexOf(charAt(i + 1)) != -1) {
+            i += NumberUtils.TWO;
+
+            while (i < input.length && isWordChar(input[i])) {
+                i++;
+            }
+
+            return write(start, i, Kind.NUMBER);
+        }
+
+        i = skipDigits(i);
+
+        if (charAt(i) == '.') {
+            i = skipDigits(i + 1);
+        }
+
+        final int decimalEnd = i;
+
+        if (charAt(i) == 'e' || charAt(i) == 'E') {
+            final int exponent = charAt(i + 1) == '+' || charAt(i + 1) == '-' ? i + NumberUtils.TWO : i + 1;
+
+            if (Character.isDigit(charAt(exponent))) {
+                i = skipDigits(exponent);
+            }
+        }
+
+        if (charAt(i) == 'n') {
+            i++;
+        }
+
+        // Member access on the literal relies on its exact form
+        if (i != decimalEnd || charAt(i) == '.') {
+            return write(start, i, Kind.NUMBER);
+        }
+
+        final String shortened = shortenDecimal(new String(input, start, i - start));
+        separate(input[start], Kind.NUMBER);
+        token(start, shortened);
+        previous = Kind.NUMBER;
+        return i;
+    }
+
+    /**
+     * <p>
+     * Skips the digits and numeric separators starting at the given offset.
+     * </p>
+     *
+     * @param start the offset
+     * @return the offset following the digits
+     */
+    private int skipDigits(final int start) {
+        int i = start;
+
+        while (Character.isDigit(charAt(i)) || charAt(i) == '_') {
+            i++;
+        }
+
+        return i;
+    }
+
+    /**
+     * <p>
+     * Removes the leading zero of the integer part and the trailing zeros of the fraction of the given literal.
+     * </p>
+     *
+     * @param literal the decimal literal
+     * @return the shortened literal, or the given literal if it can't be shortened safely
+     */
+    static String shortenDecimal(final String literal) {
+        final int dot = literal.indexOf('.');
+
+        // No fraction, numeric separators or legacy octal literal
+        if (dot == -1 || literal.indexOf('_') != -1 || (dot > 1 && literal.charAt(0) == '0')) {
+            return literal;
+        }
+
+        final String integer = literal.substring(0, dot);
+        int fractionEnd = literal.length();
+
+        while (fractionEnd > dot + 1 && literal.charAt(fractionEnd - 1) == '0') {
+            fractionEnd--;
+        }
+
+        if (fractionEnd == dot + 1) {
+            return integer.isEmpty() ? "0" : integer;
+        }
+
+        return ("0".equals(integer) ? "" : integer) + literal.substring(dot, fractionEnd);
+    }
+
+    /**
+     * <p>
+     * The kinds of token that matter to decide how two tokens are separated.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    private enum Kind {
+
+        /**
+         * No token has been written yet.
+         */
+        NONE,
+
+        /**
+         * Identifier or keyword.
+         */
+        WORD,
+
+        /**
+         * Numeric literal.
+         */
+        NUMBER,
+
+        /**
+         * String or template literal.
+         */
+        STRING,
+
+        /**
+         * Regular expression literal.
+         */
+        REGEX,
+
+        /**
+         * Any other character.
+         */
+        PUNCTUATOR,
+
+        /**
+         * Text copied as is until the end of a line.
+         */
+        VERBATIM
+    }
+}
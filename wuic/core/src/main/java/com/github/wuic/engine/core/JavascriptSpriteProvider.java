@@ -27,6 +27,7 @@ import com.github.wuic.NutTypeFactory;
 import com.github.wuic.nut.InMemoryNut;
 import com.github.wuic.nut.ConvertibleNut;
 import com.github.wuic.engine.Region;
+import com.github.wuic.engine.SpriteProvider;
 import com.github.wuic.nut.Source;
 import com.github.wuic.util.IOUtils;
 import com.github.wuic.util.NutUtils;
@@ -58,6 +59,14 @@ public class JavascriptSpriteProvider extends AbstractSpriteProvider {
      */
     private static final String JS_CONSTANT = "WUIC_SPRITE";
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SpriteProvider newInstance() {
+        return new JavascriptSpriteProvider();
+    }
+
     /**
      * {@inheritDoc}
      */
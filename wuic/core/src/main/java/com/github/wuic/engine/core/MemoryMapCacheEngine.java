@@ -44,8 +44,9 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.util.Map;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <p>
@@ -56,6 +57,10 @@ import java.util.HashMap;
  * bit more memory than the configured limit. This should be taken into consideration when configuring the limit.
  * </p>
  *
+ * <p>
+ * Workflows are processed concurrently, so the map and the amount of memory in use are thread safe.
+ * </p>
+ *
  * @author Guillaume DROUET
  * @since 0.4.0
  */
@@ -77,7 +82,7 @@ public class MemoryMapCacheEngine extends ScheduledCacheEngine implements Tempor
     /**
      * Memory map.
      */
-    private Map<EngineRequest.Key, CacheEntry> cache;
+    private ConcurrentMap<EngineRequest.Key, CacheEntry> cache;
 
     /**
      * Memory size limit.
@@ -87,7 +92,7 @@ public class MemoryMapCacheEngine extends ScheduledCacheEngine implements Tempor
     /**
      * Memory currently used.
      */
-    private long used;
+    private final AtomicLong used = new AtomicLong();
 
     /**
      * The temporary file manager.
@@ -111,7 +116,7 @@ public class MemoryMapCacheEngine extends ScheduledCacheEngine implements Tempor
             @BooleanConfigParam(defaultValue = false, propertyKey = ApplicationConfig.BEST_EFFORT) final Boolean bestEffort,
             @StringConfigParam(defaultValue = "10MB", propertyKey = ApplicationConfig.MAX_SIZE_IN_MEMORY) final String maxMemorySize) {
         super.init(timeToLiveSeconds, work, bestEffort);
-        cache = new HashMap<EngineRequest.Key, CacheEntry>();
+        cache = new ConcurrentHashMap<EngineRequest.Key, CacheEntry>();
 
         // Read the limit: default value is byte but KB and MB are supported
         final String end = maxMemorySize.length() > 1 ? maxMemorySize.substring(maxMemorySize.length() - NumberUtils.TWO) : null;
@@ -165,7 +170,7 @@ public class MemoryMapCacheEngine extends ScheduledCacheEngine implements Tempor
      * @return the number of bytes
      */
     public long getMemoryInUse() {
-        return used;
+        return used.get();
     }
 
     /**
@@ -182,14 +187,16 @@ public class MemoryMapCacheEngine extends ScheduledCacheEngine implements Tempor
     @Override
     public void putToCache(final EngineRequest.Key request, final CacheResult nuts) {
         final long size = computeSize(nuts);
+        final CacheEntry previous;
 
-        if (size + used > limit) {
-            log.info("Cache memory limit exceeded, writing object to the disk.");
-            cache.put(request, new DiskCacheEntry(nuts, size));
+        if (reserve(size)) {
+            previous = cache.put(request, new MemoryCacheEntry(nuts, size));
         } else {
-            cache.put(request, new MemoryCacheEntry(nuts, size));
-            used += size;
+            log.info("Cache memory limit exceeded, writing object to the disk.");
+            previous = cache.put(request, new DiskCacheEntry(nuts, size));
         }
+
+        release(previous);
     }
 
     /**
@@ -197,13 +204,44 @@ public class MemoryMapCacheEngine extends ScheduledCacheEngine implements Tempor
      */
     @Override
     public void removeFromCache(final EngineRequest.Key request) {
-        final CacheEntry cacheEntry = cache.remove(request);
+        release(cache.remove(request));
+    }
 
+    /**
+     * <p>
+     * Reserves the given amount of memory if the limit is not exceeded.
+     * </p>
+     *
+     * @param size the size to reserve
+     * @return {@code true} if the memory has been reserved, {@code false} if the limit would be exceeded
+     */
+    private boolean reserve(final long size) {
+        long current;
+
+        do {
+            current = used.get();
+
+            if (current + size > limit) {
+                return false;
+            }
+        } while (!used.compareAndSet(current, current + size));
+
+        return true;
+    }
+
+    /**
+     * <p>
+     * Releases the resources of an entry removed from the cache.
+     * </p>
+     *
+     * @param cacheEntry the removed entry, {@code null} if no entry has been removed
+     */
+    private void release(final CacheEntry cacheEntry) {
         if (cacheEntry != null) {
             if (cacheEntry instanceof DiskCacheEntry) {
                 DiskCacheEntry.class.cast(cacheEntry).clean();
             } else {
-                used -= cacheEntry.getSize();
+                used.addAndGet(-cacheEntry.getSize());
             }
         }
     }
@@ -222,8 +260,8 @@ public class MemoryMapCacheEngine extends ScheduledCacheEngine implements Tempor
      */
     @Override
     public void clearCache() {
-        for (final Object key : cache.keySet().toArray()) {
-            removeFromCache(EngineRequest.Key.class.cast(key));
+        for (final EngineRequest.Key key : cache.keySet()) {
+            removeFromCache(key);
         }
     }
 
@@ -65,6 +65,11 @@ import static com.github.wuic.ApplicationConfig.SPRITE_PROVIDER_CLASS_NAME;
  * a potential aggregated image.
  * </p>
  *
+ * <p>
+ * The configured {@link SpriteProvider providers} are stateful. They are used as prototypes and new instances of their
+ * classes are created for each image, so sprites of different workflows can be computed concurrently.
+ * </p>
+ *
  * @author Guillaume DROUET
  * @since 0.4.4
  */
@@ -73,7 +78,7 @@ import static com.github.wuic.ApplicationConfig.SPRITE_PROVIDER_CLASS_NAME;
 public class SpriteInspectorEngine extends NodeEngine {
 
     /**
-     * The sprite provider.
+     * The configured sprite providers, never used directly to generate sprites.
      */
     private SpriteProvider[] spriteProviders;
 
@@ -101,7 +106,7 @@ public class SpriteInspectorEngine extends NodeEngine {
                     propertyKey = SPRITE_PROVIDER_CLASS_NAME,
                     setter = SpriteProviderPropertySetter.class)
             final SpriteProvider[] sp) {
-        spriteProviders = Arrays.copyOf(sp, sp.length);
+        spriteProviders = sp;
         doInspection = inspect;
     }
 
@@ -147,9 +152,9 @@ public class SpriteInspectorEngine extends NodeEngine {
                 n.setNutName(IOUtils.mergePath("best-effort", n.getName()));
             }
 
-            // Clear previous work
-            initSpriteProviders(n);
-            processNut(n);
+            // State dedicated to this image
+            final SpriteProvider[] providers = newSpriteProviders(n);
+            processNut(providers, n);
 
             // Process referenced nut
             final String suffix;
@@ -160,7 +165,7 @@ public class SpriteInspectorEngine extends NodeEngine {
                 suffix  = IOUtils.mergePath(request.getPrefixCreatedNut(), String.valueOf(spriteCpt++));
             }
 
-            retval.add(applySpriteProviders(suffix, n, request));
+            retval.add(applySpriteProviders(providers, suffix, n, request));
         }
 
         return retval;
@@ -171,10 +176,11 @@ public class SpriteInspectorEngine extends NodeEngine {
      * Processes the given nut.
      * </p>
      *
+     * @param providers the providers
      * @param nut the nut
      * @throws WuicException if processing fails
      */
-    private void processNut(final ConvertibleNut nut) throws WuicException {
+    private void processNut(final SpriteProvider[] providers, final ConvertibleNut nut) throws WuicException {
 
         // Aggregated nut references all single images
         if (!nut.getSource().getOriginalNuts().isEmpty()) {
@@ -182,7 +188,7 @@ public class SpriteInspectorEngine extends NodeEngine {
 
             for (final ConvertibleNut origin : originalNuts) {
                 if (origin instanceof ImageNut) {
-                    addRegionToSpriteProviders(ImageNut.class.cast(origin).getRegion(), origin.getName());
+                    addRegionToSpriteProviders(providers, ImageNut.class.cast(origin).getRegion(), origin.getName());
                 } else {
                     WuicException.throwBadArgumentException(
                             new IllegalArgumentException("Processed nuts must refer ImageNut instances as original nuts"));
@@ -191,18 +197,24 @@ public class SpriteInspectorEngine extends NodeEngine {
         } else {
             // Aggregation is not activated
             Input is = null;
+            ImageInputStream iis = null;
+            ImageReader reader = null;
 
             try {
                 is = nut.openStream();
-                final ImageInputStream iis = ImageIO.createImageInputStream(is.inputStream());
-
-                ImageReader reader = ImageIO.getImageReaders(iis).next();
+                iis = ImageIO.createImageInputStream(is.inputStream());
+                reader = ImageIO.getImageReaders(iis).next();
                 reader.setInput(iis);
-                addRegionToSpriteProviders(new Region(0, 0, reader.getWidth(0) - 1, reader.getHeight(0) - 1), nut.getName());
+                addRegionToSpriteProviders(providers, new Region(0, 0, reader.getWidth(0) - 1, reader.getHeight(0) - 1), nut.getName());
             } catch (IOException ioe) {
                 WuicException.throwWuicException(ioe);
             } finally {
-                IOUtils.close(is);
+                // Release native resources held by the reader
+                if (reader != null) {
+                    reader.dispose();
+                }
+
+                IOUtils.close(iis, is);
             }
         }
     }
@@ -236,15 +248,21 @@ public class SpriteInspectorEngine extends NodeEngine {
 
     /**
      * <p>
-     * Initializes all sprite providers.
+     * Creates and initializes a new instance from each configured sprite provider.
      * </p>
      *
      * @param nut the nut
+     * @return the new providers
      */
-    private void initSpriteProviders(final ConvertibleNut nut) {
-        for (final SpriteProvider sp : spriteProviders) {
-            sp.init(nut);
+    private SpriteProvider[] newSpriteProviders(final ConvertibleNut nut) {
+        final SpriteProvider[] retval = new SpriteProvider[spriteProviders.length];
+
+        for (int i = 0; i < retval.length; i++) {
+            retval[i] = spriteProviders[i].newInstance();
+            retval[i].init(nut);
         }
+
+        return retval;
     }
 
     /**
@@ -252,11 +270,12 @@ public class SpriteInspectorEngine extends NodeEngine {
      * Adds the region to all sprite providers.
      * </p>
      *
+     * @param providers the providers
      * @param region the region
      * @param name the region name
      */
-    private void addRegionToSpriteProviders(final Region region, final String name) {
-        for (final SpriteProvider sp : spriteProviders) {
+    private void addRegionToSpriteProviders(final SpriteProvider[] providers, final Region region, final String name) {
+        for (final SpriteProvider sp : providers) {
             sp.addRegion(region, name);
         }
     }
@@ -266,22 +285,24 @@ public class SpriteInspectorEngine extends NodeEngine {
      * Generates sprites from all sprite providers and add it to the given nut.
      * </p>
      *
+     * @param providers the providers
      * @param suffix the name suffix
      * @param n the nut
      * @param request the initial engine request
      * @throws WuicException if generation fails
      */
-    private ConvertibleNut applySpriteProviders(final String suffix,
+    private ConvertibleNut applySpriteProviders(final SpriteProvider[] providers,
+                                                final String suffix,
                                                 final ConvertibleNut n,
                                                 final EngineRequest request)
             throws WuicException {
-        if (spriteProviders.length == 0) {
+        if (providers.length == 0) {
             return n;
         }
 
         ConvertibleNut retval = null;
 
-        for (final SpriteProvider sp : spriteProviders) {
+        for (final SpriteProvider sp : providers) {
             final ConvertibleNut nut;
 
             try {
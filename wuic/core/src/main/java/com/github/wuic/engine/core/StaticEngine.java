@@ -34,6 +34,7 @@ import com.github.wuic.engine.NodeEngine;
 import com.github.wuic.exception.WuicException;
 import com.github.wuic.nut.ConvertibleNut;
 import com.github.wuic.nut.NotReachableNut;
+import com.github.wuic.nut.PrecompressedVariant;
 import com.github.wuic.util.IOUtils;
 import com.github.wuic.util.NumberUtils;
 
@@ -45,6 +46,7 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -61,6 +63,13 @@ import java.util.regex.Pattern;
  * chain of responsibility.
  * </p>
  *
+ * <p>
+ * The variants of the nuts compressed at build time are described in a properties file named after the workflow file
+ * with the {@code .precompressed} extension. Each key is a path as written in the workflow file and each value lists the
+ * {@link PrecompressedVariant variants} separated by a comma. The variants are exposed by the returned
+ * {@link NotReachableNut nuts}.
+ * </p>
+ *
  * @author Guillaume DROUET
  * @since 0.4.1
  */
@@ -72,6 +81,11 @@ public class StaticEngine extends NodeEngine implements ClassPathResourceResolve
      */
     public static final String STATIC_WORKFLOW_FILE = "/wuic-static/%s";
 
+    /**
+     * File pattern of the metadata describing variants compressed at build time.
+     */
+    public static final String STATIC_PRECOMPRESSED_FILE = STATIC_WORKFLOW_FILE + ".precompressed";
+
     /**
      * Pattern that matches a key/value pair pattern. One key/value pair per line is detected.
      */
@@ -125,6 +139,7 @@ public class StaticEngine extends NodeEngine implements ClassPathResourceResolve
             final String paths = IOUtils.readString(isr);
             final Matcher matcher = PATTERN_KEY_VALUE.matcher(paths);
             final Map<Integer, ConvertibleNut> nutPerDepth = new LinkedHashMap<Integer, ConvertibleNut>();
+            final Map<String, NotReachableNut> nutPerPath = new HashMap<String, NotReachableNut>();
             final List<ConvertibleNut> retval = new ArrayList<ConvertibleNut>();
 
             // Read each file associated to its type
@@ -138,7 +153,7 @@ public class StaticEngine extends NodeEngine implements ClassPathResourceResolve
                 }
 
                 final String path = pathLine.substring(depth);
-                final ConvertibleNut nut;
+                final NotReachableNut nut;
 
                 if (!path.contains("http://")) {
                     final int versionDelimiterIndex = path.indexOf('/');
@@ -156,8 +171,11 @@ public class StaticEngine extends NodeEngine implements ClassPathResourceResolve
                 }
 
                 nutPerDepth.put(depth, nut);
+                nutPerPath.put(path, nut);
             }
 
+            addPrecompressedVariants(classpathResourceResolver, workflowId, nutPerPath);
+
             return retval;
         } catch (IOException ioe) {
             WuicException.throwWuicException(ioe);
@@ -167,6 +185,52 @@ public class StaticEngine extends NodeEngine implements ClassPathResourceResolve
         }
     }
 
+    /**
+     * <p>
+     * Reads the metadata describing the variants compressed at build time for the given workflow and adds them to the
+     * nuts. Nothing is done if the workflow has no metadata.
+     * </p>
+     *
+     * @param classpathResourceResolver the {@link com.github.wuic.ClassPathResourceResolver} to use
+     * @param workflowId the workflow ID
+     * @param nutPerPath the nuts by path as written in the workflow file
+     * @throws IOException if the metadata can't be read
+     */
+    private static void addPrecompressedVariants(final ClassPathResourceResolver classpathResourceResolver,
+                                                 final String workflowId,
+                                                 final Map<String, NotReachableNut> nutPerPath)
+            throws IOException {
+        final String fileName = String.format(STATIC_PRECOMPRESSED_FILE, workflowId).substring(1);
+        final InputStream is = classpathResourceResolver.getResourceAsStream(fileName);
+
+        // Not compressed at build time
+        if (is == null) {
+            return;
+        }
+
+        final Properties properties = new Properties();
+
+        try {
+            properties.load(is);
+        } finally {
+            IOUtils.close(is);
+        }
+
+        for (final String path : properties.stringPropertyNames()) {
+            final NotReachableNut nut = nutPerPath.get(path);
+
+            if (nut != null) {
+                for (final String value : properties.getProperty(path).split(",")) {
+                    final PrecompressedVariant variant = PrecompressedVariant.parse(value);
+
+                    if (variant != null) {
+                        nut.addPrecompressedVariant(variant);
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
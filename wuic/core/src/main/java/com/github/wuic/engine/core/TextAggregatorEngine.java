@@ -53,6 +53,7 @@ import com.github.wuic.util.Output;
 import com.github.wuic.util.TimerTreeFactory;
 
 import static com.github.wuic.ApplicationConfig.COMPUTE_VERSION_ASYNCHRONOUSLY;
+import static com.github.wuic.ApplicationConfig.INDEX_SOURCE_MAP;
 
 /**
  * <p>
@@ -79,6 +80,11 @@ public class TextAggregatorEngine extends AbstractAggregatorEngine implements En
      */
     private Boolean canReadNutAsynchronously;
 
+    /**
+     * Writes an index map with one section per aggregated nut.
+     */
+    private Boolean indexSourceMap = Boolean.FALSE;
+
     /**
      * <p>
      * Configures asynchronous support.
@@ -91,6 +97,19 @@ public class TextAggregatorEngine extends AbstractAggregatorEngine implements En
         canReadNutAsynchronously = asynchronous;
     }
 
+    /**
+     * <p>
+     * Configures the aggregated source map format. With an index map, the map of each nut is kept in its own section
+     * instead of having all mappings re-encoded in a single map.
+     * </p>
+     *
+     * @param indexMap {@code true} to write an index map
+     */
+    @Config
+    public void indexSourceMap(@BooleanConfigParam(defaultValue = false, propertyKey = INDEX_SOURCE_MAP) final Boolean indexMap) {
+        indexSourceMap = indexMap;
+    }
+
     /**
      * <p>
      * Builds a new composite nut.
@@ -127,8 +146,12 @@ public class TextAggregatorEngine extends AbstractAggregatorEngine implements En
                 final ConvertibleNut first = composition.get(0);
                 final SourceMapNut sourceMapNut;
 
-                // Try to reuse the source map of the first nut if it already exists
-                if (first.getSource() instanceof SourceMapNutImpl) {
+                // Index map references the map of each nut in its own section, including the first one
+                if (indexSourceMap) {
+                    sourceMapNut = new SourceMapNutImpl(convertible, getNutTypeFactory(), true);
+                    addToSource(sourceMapNut, first, cis);
+                } else if (first.getSource() instanceof SourceMapNutImpl) {
+                    // Try to reuse the source map of the first nut if it already exists
                     sourceMapNut = SourceMapNutImpl.class.cast(first.getSource());
                     sourceMapNut.setNutName(convertible.getName() + EnumNutType.MAP.getExtensions()[0]);
                 } else {
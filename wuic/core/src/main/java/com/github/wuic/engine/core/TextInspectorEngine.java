@@ -41,6 +41,7 @@ import com.github.wuic.nut.filter.NutFilterHolder;
 import com.github.wuic.util.IOUtils;
 import com.github.wuic.util.Input;
 import com.github.wuic.util.Output;
+import com.github.wuic.util.SpliceBuilder;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -170,24 +171,24 @@ public abstract class TextInspectorEngine
 
     /**
      * <p>
-     * Includes content in place of all nuts references in the specified {@code StringBuilder}.
+     * Includes content in place of all nuts references in the specified {@link SpliceBuilder}.
      * </p>
      *
-     * @param stringBuilder the line with references
+     * @param spliceBuilder the builder collecting replacements in the line with references
      * @param replacementInfoList where replacement with references has been made
      * @param referencer the referencer
      * @throws IOException if an I/O error occurs
      */
-    private void include(final StringBuilder stringBuilder,
+    private void include(final SpliceBuilder spliceBuilder,
                          final Set<LineInspector.ReplacementInfo> replacementInfoList,
                          final ConvertibleNut referencer)
             throws IOException {
-        // Including from the end to the beginning of the line
+        // Replacements are expressed with offsets in the original line and applied when the result is written
         for (final LineInspector.ReplacementInfo replacementInfo : replacementInfoList) {
 
             // Just performs replacement if not referenced nuts has been found
             if (replacementInfo.getConvertibleNuts() == null) {
-                replacementInfo.replace(stringBuilder);
+                replacementInfo.replace(spliceBuilder);
                 continue;
             }
 
@@ -197,10 +198,10 @@ public abstract class TextInspectorEngine
 
                 if (append != null) {
                     // Content resolve, perform inline
-                    replacementInfo.replace(stringBuilder, append);
+                    replacementInfo.replace(spliceBuilder, append);
                 } else {
                     // Content not resolved, adds inspected URL
-                    replacementInfo.replace(stringBuilder);
+                    replacementInfo.replace(spliceBuilder);
                 }
             }
 
@@ -322,16 +323,18 @@ public abstract class TextInspectorEngine
                              final EngineRequest request,
                              final ConvertibleNut convertibleNut,
                              final Output os) throws IOException{
-        // Perform replacements
+        // Collect replacements and write the result in one pass
+        final SpliceBuilder spliceBuilder = new SpliceBuilder(lineBuilder);
+
         if (!replacements.isEmpty()) {
 
             // Keep all rewritten URL in best effort, try to include otherwise
             if (!request.isBestEffort()) {
-                include(lineBuilder, replacements, convertibleNut);
+                include(spliceBuilder, replacements, convertibleNut);
             } else {
                 // Performs replacements first
                 for (final LineInspector.ReplacementInfo replacementInfo : replacements) {
-                    replacementInfo.replace(lineBuilder);
+                    replacementInfo.replace(spliceBuilder);
                 }
 
                 // Populate
@@ -341,7 +344,7 @@ public abstract class TextInspectorEngine
 
         // Write the char array
         final Writer writer = os.writer();
-        writer.append(lineBuilder);
+        spliceBuilder.writeTo(writer);
         writer.write(IOUtils.NEW_LINE);
     }
 
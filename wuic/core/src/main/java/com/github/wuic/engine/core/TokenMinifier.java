@@ -0,0 +1,445 @@
+/*
+ * Copyright (c) 2016   The authors of WUIC
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.github.wuic.engine.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Base class for minifiers working at token level. The subclass reads the characters of the input and writes each
+ * token it keeps with {@link #token(int, int)} or {@link #token(int, CharSequence)}, and the separators required
+ * between two tokens with {@link #separator(char)}.
+ * </p>
+ *
+ * <p>
+ * The first token written for each line of the input is recorded as a {@link Mapping} between its position in the
+ * input and its position in the output, which is enough to build a source map with a line granularity.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @since 0.5.3
+ */
+public abstract class TokenMinifier {
+
+    /**
+     * The characters to minify.
+     */
+    private final char[] input;
+
+    /**
+     * The minified content.
+     */
+    private final StringBuilder output;
+
+    /**
+     * The mappings between input and output positions.
+     */
+    private final List<Mapping> mappings;
+
+    /**
+     * Offset in the input until lines have been counted.
+     */
+    private int counted;
+
+    /**
+     * Line of the input at the {@link #counted} offset.
+     */
+    private int inputLine;
+
+    /**
+     * Offset in the input where {@link #inputLine} starts.
+     */
+    private int inputLineStart;
+
+    /**
+     * Last line of the input having a mapping.
+     */
+    private int mappedLine;
+
+    /**
+     * Current line in the output.
+     */
+    private int outputLine;
+
+    /**
+     * Current column in the output.
+     */
+    private int outputColumn;
+
+    /**
+     * <p>
+     * Builds a new instance.
+     * </p>
+     *
+     * @param input the characters to minify
+     */
+    protected TokenMinifier(final char[] input) {
+        this.input = input;
+        this.output = new StringBuilder(input.length);
+        this.mappings = new ArrayList<Mapping>();
+        this.mappedLine = -1;
+    }
+
+    /**
+     * <p>
+     * Minifies the input. This method must be called only once.
+     * </p>
+     *
+     * @return the minified content
+     */
+    public String minify() {
+        run();
+        return output.toString();
+    }
+
+    /**
+     * <p>
+     * Reads the input and writes the tokens to keep.
+     * </p>
+     */
+    protected abstract void run();
+
+    /**
+     * <p>
+     * Gets the mappings recorded during minification.
+     * </p>
+     *
+     * @return the mappings, sorted by position
+     */
+    public List<Mapping> getMappings() {
+        return mappings;
+    }
+
+    /**
+     * <p>
+     * Gets the characters to minify.
+     * </p>
+     *
+     * @return the input
+     */
+    protected char[] getInput() {
+        return input;
+    }
+
+    /**
+     * <p>
+     * Gets the input character at the given offset.
+     * </p>
+     *
+     * @param offset the offset
+     * @return the character, {@code 0} if the offset is out of bounds
+     */
+    protected char charAt(final int offset) {
+        return offset < input.length ? input[offset] : 0;
+    }
+
+    /**
+     * <p>
+     * Gets the last character written in the output.
+     * </p>
+     *
+     * @return the character, {@code 0} if nothing has been written
+     */
+    protected char lastChar() {
+        return output.length() == 0 ? 0 : output.charAt(output.length() - 1);
+    }
+
+    /**
+     * <p>
+     * Writes the token located between the given offsets as is.
+     * </p>
+     *
+     * @param start the start offset, inclusive
+     * @param end the end offset, exclusive
+     */
+    protected void token(final int start, final int end) {
+        map(start);
+        output.append(input, start, end - start);
+        move(start, end);
+    }
+
+    /**
+     * <p>
+     * Writes a replacement for the token starting at the given offset.
+     * </p>
+     *
+     * @param start the start offset of the replaced token
+     * @param replacement the replacement
+     */
+    protected void token(final int start, final CharSequence replacement) {
+        map(start);
+        output.append(replacement);
+
+        for (int i = 0; i < replacement.length(); i++) {
+            move(replacement.charAt(i));
+        }
+    }
+
+    /**
+     * <p>
+     * Discards what has been written and writes the whole input as is, with a mapping for each line. This is used when
+     * the input contains a construct the subclass can't minify safely. The subclass must stop reading the input after
+     * this call.
+     * </p>
+     */
+    protected void copyInput() {
+        output.setLength(0);
+        mappings.clear();
+        counted = 0;
+        inputLine = 0;
+        inputLineStart = 0;
+        mappedLine = -1;
+        outputLine = 0;
+        outputColumn = 0;
+        int start = 0;
+
+        while (start < input.length) {
+            int end = start;
+
+            // Each line is written with its line break
+            while (end < input.length && input[end++] != '\n') {
+                continue;
+            }
+
+            token(start, end);
+            start = end;
+        }
+    }
+
+    /**
+     * <p>
+     * Writes a separator between two tokens.
+     * </p>
+     *
+     * @param c the separator
+     */
+    protected void separator(final char c) {
+        output.append(c);
+        move(c);
+    }
+
+    /**
+     * <p>
+     * Records a mapping if the token at the given offset is the first one written for its line.
+     * </p>
+     *
+     * @param start the offset of the token
+     */
+    private void map(final int start) {
+        // Offsets are always increasing, lines are counted incrementally
+        for (; counted < start; counted++) {
+            if (input[counted] == '\n') {
+                inputLine++;
+                inputLineStart = counted + 1;
+            }
+        }
+
+        if (inputLine != mappedLine) {
+            mappedLine = inputLine;
+            mappings.add(new Mapping(inputLine, start - inputLineStart, outputLine, outputColumn));
+        }
+    }
+
+    /**
+     * <p>
+     * Updates the output position with the input characters written between the given offsets.
+     * </p>
+     *
+     * @param start the start offset, inclusive
+     * @param end the end offset, exclusive
+     */
+    private void move(final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            move(input[i]);
+        }
+    }
+
+    /**
+     * <p>
+     * Updates the output position with the given written character.
+     * </p>
+     *
+     * @param c the character
+     */
+    private void move(final char c) {
+        if (c == '\n') {
+            outputLine++;
+            outputColumn = 0;
+        } else {
+            outputColumn++;
+        }
+    }
+
+    /**
+     * <p>
+     * Indicates if the given character can be part of an identifier, a keyword or a number.
+     * </p>
+     *
+     * @param c the character
+     * @return {@code true} if two such characters must be separated, {@code false} otherwise
+     */
+    protected static boolean isWordChar(final char c) {
+        return Character.isLetterOrDigit(c) || c == '$' || c == '_' || c == '\\' || c > '\u007f';
+    }
+
+    /**
+     * <p>
+     * Finds the end of the string literal starting at the given offset. Escaped characters are skipped.
+     * </p>
+     *
+     * @param start the offset of the opening quote
+     * @return the offset following the closing quote, or the offset of the line end if the string is not closed
+     */
+    protected int skipString(final int start) {
+        final char quote = input[start];
+        int i = start + 1;
+
+        while (i < input.length) {
+            final char c = input[i];
+
+            if (c == '\\') {
+                i += 2;
+            } else if (c == quote) {
+                return i + 1;
+            } else if (c == '\n') {
+                return i;
+            } else {
+                i++;
+            }
+        }
+
+        return input.length;
+    }
+
+    /**
+     * <p>
+     * Finds the end of the block comment starting at the given offset.
+     * </p>
+     *
+     * @param start the offset of the comment
+     * @return the offset following the comment
+     */
+    protected int skipBlockComment(final int start) {
+        for (int i = start + 2; i < input.length - 1; i++) {
+            if (input[i] == '*' && input[i + 1] == '/') {
+                return i + 2;
+            }
+        }
+
+        return input.length;
+    }
+
+    /**
+     * <p>
+     * A mapping between the position of a token in the input and its position in the output. Lines and columns are
+     * indexed by 0.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    public static final class Mapping {
+
+        /**
+         * Line in the input.
+         */
+        private final int originalLine;
+
+        /**
+         * Column in the input.
+         */
+        private final int originalColumn;
+
+        /**
+         * Line in the output.
+         */
+        private final int line;
+
+        /**
+         * Column in the output.
+         */
+        private final int column;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param originalLine the line in the input
+         * @param originalColumn the column in the input
+         * @param line the line in the output
+         * @param column the column in the output
+         */
+        private Mapping(final int originalLine, final int originalColumn, final int line, final int column) {
+            this.originalLine = originalLine;
+            this.originalColumn = originalColumn;
+            this.line = line;
+            this.column = column;
+        }
+
+        /**
+         * <p>
+         * Gets the line in the input.
+         * </p>
+         *
+         * @return the line
+         */
+        public int getOriginalLine() {
+            return originalLine;
+        }
+
+        /**
+         * <p>
+         * Gets the column in the input.
+         * </p>
+         *
+         * @return the column
+         */
+        public int getOriginalColumn() {
+            return originalColumn;
+        }
+
+        /**
+         * <p>
+         * Gets the line in the output.
+         * </p>
+         *
+         * @return the line
+         */
+        public int getLine() {
+            return line;
+        }
+
+        /**
+         * <p>
+         * Gets the column in the output.
+         * </p>
+         *
+         * @return the column
+         */
+        public int getColumn() {
+            return column;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2016   The authors of WUIC
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.github.wuic.engine.core;
+
+import com.github.wuic.EnumNutType;
+import com.github.wuic.NutType;
+import com.github.wuic.engine.EngineRequest;
+import com.github.wuic.engine.EngineService;
+import com.github.wuic.engine.EngineType;
+import com.github.wuic.exception.WuicException;
+import com.github.wuic.nut.ConvertibleNut;
+import com.github.wuic.nut.Source;
+import com.github.wuic.nut.SourceImpl;
+import com.github.wuic.nut.SourceMapNut;
+import com.github.wuic.nut.SourceMapNutImpl;
+import com.github.wuic.nut.sourcemap.FilePosition;
+import com.github.wuic.nut.sourcemap.SourceMapConsumerV3;
+import com.github.wuic.nut.sourcemap.SourceMapParseException;
+import com.github.wuic.nut.sourcemap.proto.Mapping;
+import com.github.wuic.util.IOUtils;
+import com.github.wuic.util.Input;
+import com.github.wuic.util.Output;
+import com.github.wuic.util.Pipe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * This compressor minifies scripts and style sheets at token level with {@link JavascriptMinifier} and
+ * {@link CssMinifier}, without any external tool.
+ * </p>
+ *
+ * <p>
+ * The source of each minified nut becomes a {@link SourceMapNutImpl} mapping the first token of each original line to
+ * its position in the minified content. If the nut already has a source map, for instance because it has been
+ * converted, the mappings are resolved through it so they still refer to the original sources.
+ * </p>
+ *
+ * <p>
+ * This engine is not injected by default. When it is declared in a workflow, {@link ScriptCompressorEngine} detects
+ * it and does nothing.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @since 0.5.3
+ */
+@EngineService(injectDefaultToWorkflow = false, isCoreEngine = true)
+public class TokenMinifierEngine extends AbstractCompressorEngine {
+
+    /**
+     * Logger.
+     */
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean transform(final Input source, final Output target, final ConvertibleNut convertibleNut, final EngineRequest request)
+            throws IOException {
+        final Pipe.Execution e = source.execution();
+        final char[] chars = e.isText() ? e.getCharResult() : IOUtils.toChars(Charset.forName(request.getCharset()), e.getByteResult());
+        final TokenMinifier minifier = convertibleNut.getNutType().isBasedOn(EnumNutType.CSS) ?
+                new CssMinifier(chars) : new JavascriptMinifier(chars);
+        final String minified = minifier.minify();
+
+        convertibleNut.setSource(sourceMap(convertibleNut, minifier.getMappings(), minified));
+        target.writer().write(minified);
+
+        return true;
+    }
+
+    /**
+     * <p>
+     * Creates the source map of the given minified nut.
+     * </p>
+     *
+     * @param nut the nut
+     * @param mappings the mappings recorded during minification
+     * @param minified the minified content
+     * @return the new source
+     * @throws IOException if the existing source map can't be read
+     */
+    private Source sourceMap(final ConvertibleNut nut, final List<TokenMinifier.Mapping> mappings, final String minified)
+            throws IOException {
+        final Source source = nut.getSource();
+        final SourceMapConsumerV3 consumer = source instanceof SourceMapNut ? consumer(SourceMapNut.class.cast(source)) : null;
+
+        // Mappings can't be resolved, source map is broken
+        if (mappings.isEmpty() || (consumer == null && source instanceof SourceMapNut)) {
+            return new SourceImpl(source);
+        }
+
+        final SourceMapNutImpl retval;
+
+        try {
+            retval = new SourceMapNutImpl(nut, getNutTypeFactory());
+        } catch (WuicException we) {
+            throw new IOException(we);
+        }
+
+        for (final ConvertibleNut original : source.getOriginalNuts()) {
+            retval.addOriginalNut(original);
+        }
+
+        final FilePosition last = lastPosition(minified);
+
+        for (int i = 0; i < mappings.size(); i++) {
+            final TokenMinifier.Mapping mapping = mappings.get(i);
+            final FilePosition start = new FilePosition(mapping.getLine(), mapping.getColumn());
+            final FilePosition end;
+
+            // A mapping ends where the next one starts
+            if (i + 1 < mappings.size()) {
+                end = new FilePosition(mappings.get(i + 1).getLine(), mappings.get(i + 1).getColumn());
+            } else {
+                end = last;
+            }
+
+            if (consumer == null) {
+                retval.addMapping(nut.getInitialName(), new FilePosition(mapping.getOriginalLine(), mapping.getOriginalColumn()), start, end);
+            } else {
+                // Positions are indexed by 1 in the consumer
+                final Mapping.OriginalMapping original =
+                        consumer.getMappingForLine(mapping.getOriginalLine() + 1, mapping.getOriginalColumn() + 1);
+
+                if (original != null) {
+                    final FilePosition position = new FilePosition(original.getLineNumber() - 1, original.getColumnPosition() - 1);
+                    retval.addMapping(original.getOriginalFile(), position, start, end);
+                }
+            }
+        }
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Parses the given source map.
+     * </p>
+     *
+     * @param sourceMapNut the source map
+     * @return the consumer, {@code null} if the source map is not valid
+     * @throws IOException if the source map can't be read
+     */
+    private SourceMapConsumerV3 consumer(final SourceMapNut sourceMapNut) throws IOException {
+        Input is = null;
+
+        try {
+            is = sourceMapNut.openStream();
+            final SourceMapConsumerV3 retval = new SourceMapConsumerV3();
+            retval.parse(IOUtils.readString(is.reader()));
+            return retval;
+        } catch (SourceMapParseException smpe) {
+            logger.warn("Source map of {} can't be parsed, it won't be updated after minification.", sourceMapNut.getName(), smpe);
+            return null;
+        } finally {
+            IOUtils.close(is);
+        }
+    }
+
+    /**
+     * <p>
+     * Computes the position following the last character of the given content.
+     * </p>
+     *
+     * @param content the content
+     * @return the position
+     */
+    private static FilePosition lastPosition(final String content) {
+        final int lastLineStart = content.lastIndexOf('\n') + 1;
+        int lines = 0;
+
+        for (int i = 0; i < lastLineStart; i++) {
+            if (content.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+
+        return new FilePosition(lines, content.length() - lastLineStart);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<NutType> getNutTypes() {
+        return Arrays.asList(getNutTypeFactory().getNutType(EnumNutType.JAVASCRIPT), getNutTypeFactory().getNutType(EnumNutType.CSS));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public EngineType getEngineType() {
+        return EngineType.MINIFICATION;
+    }
+}
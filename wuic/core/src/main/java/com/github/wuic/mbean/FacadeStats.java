@@ -23,11 +23,17 @@
 package com.github.wuic.mbean;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <p>
- * A facade statistics exposes transformation and resolution information.
+ * A facade statistics exposes transformation and resolution information. Statistics are reported by request threads
+ * without any lock: each workflow and heap has its own {@link LatencyStat} found in a concurrent map.
  * </p>
  *
  * @author Guillaume DROUET
@@ -38,12 +44,12 @@ public class FacadeStats implements FacadeStatsMXBean {
     /**
      * The resolution statistics.
      */
-    private final List<HeapStat> heapStats;
+    private final ConcurrentMap<String, HeapStat> heapStats;
 
     /**
      * The transformation statistics.
      */
-    private final List<WorkflowStat> workflowStats;
+    private final ConcurrentMap<String, WorkflowStat> workflowStats;
 
     /**
      * Maximum number of workflow executions statistics.
@@ -58,7 +64,7 @@ public class FacadeStats implements FacadeStatsMXBean {
     /**
      * The number of times the facade has been refreshed.
      */
-    private int refreshCount;
+    private final AtomicInteger refreshCount;
 
     /**
      * <p>
@@ -69,11 +75,11 @@ public class FacadeStats implements FacadeStatsMXBean {
      * @param maxHeapResolutions maximum number of heap resolutions statistics
      */
     public FacadeStats(final int maxWorkflowExecutions, final int maxHeapResolutions) {
-        this.heapStats = new ArrayList<HeapStat>();
-        this.workflowStats = new ArrayList<WorkflowStat>();
+        this.heapStats = new ConcurrentHashMap<String, HeapStat>();
+        this.workflowStats = new ConcurrentHashMap<String, WorkflowStat>();
         this.maxWorkflowExecutions = maxWorkflowExecutions;
         this.maxHeapResolutions = maxHeapResolutions;
-        this.refreshCount = 0;
+        this.refreshCount = new AtomicInteger();
     }
 
     /**
@@ -81,7 +87,7 @@ public class FacadeStats implements FacadeStatsMXBean {
      */
     @Override
     public List<HeapStat> getHeapStats() {
-        return heapStats;
+        return new ArrayList<HeapStat>(heapStats.values());
     }
 
     /**
@@ -89,7 +95,7 @@ public class FacadeStats implements FacadeStatsMXBean {
      */
     @Override
     public int getRefreshCount() {
-        return refreshCount;
+        return refreshCount.get();
     }
 
     /**
@@ -97,7 +103,30 @@ public class FacadeStats implements FacadeStatsMXBean {
      */
     @Override
     public List<WorkflowStat> getWorkflowStats() {
-        return workflowStats;
+        return new ArrayList<WorkflowStat>(workflowStats.values());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<LatencyStat> getTransformerLatencies() {
+        final Map<String, LatencyStat> merged = new HashMap<String, LatencyStat>();
+
+        for (final WorkflowStat workflowStat : workflowStats.values()) {
+            for (final Map.Entry<String, LatencyStat> entry : workflowStat.transformerLatencies().entrySet()) {
+                LatencyStat latency = merged.get(entry.getKey());
+
+                if (latency == null) {
+                    latency = new LatencyStat(entry.getKey());
+                    merged.put(entry.getKey(), latency);
+                }
+
+                latency.merge(entry.getValue());
+            }
+        }
+
+        return new ArrayList<LatencyStat>(merged.values());
     }
 
     /**
@@ -106,7 +135,7 @@ public class FacadeStats implements FacadeStatsMXBean {
      * </p>
      */
     public void addRefreshCount() {
-        this.refreshCount++;
+        refreshCount.incrementAndGet();
     }
 
     /**
@@ -118,20 +147,16 @@ public class FacadeStats implements FacadeStatsMXBean {
      * @param heapId the workflow ID
      */
     public void addHeapResolution(final HeapResolution heapResolution, final String heapId) {
-       HeapStat heap = null;
-
-        // Check if statistics for the given ID already exists
-        for (final HeapStat heapStat : heapStats) {
-            if (heapId.equals(heapStat.getId())) {
-                heap = heapStat;
-                break;
-            }
-        }
+        HeapStat heap = heapStats.get(heapId);
 
         // First statistics for this heap
         if (heap == null) {
             heap = new HeapStat(heapId, maxHeapResolutions);
-            heapStats.add(heap);
+            final HeapStat previous = heapStats.putIfAbsent(heapId, heap);
+
+            if (previous != null) {
+                heap = previous;
+            }
         }
 
         heap.addResolution(heapResolution);
@@ -146,23 +171,18 @@ public class FacadeStats implements FacadeStatsMXBean {
      * @param workflowId the workflow ID
      */
     public void addWorkflowExecution(final WorkflowExecution workflowExecution, final String workflowId) {
-        WorkflowStat workflow = null;
-
-        // Check if statistics for the given ID already exists
-        for (final WorkflowStat workflowStat : workflowStats) {
-            if (workflowId.equals(workflowStat.getId())) {
-                workflow = workflowStat;
-                break;
-            }
-        }
+        WorkflowStat workflow = workflowStats.get(workflowId);
 
         // First statistics for this workflow
         if (workflow == null) {
             workflow = new WorkflowStat(workflowId, maxWorkflowExecutions);
-            workflowStats.add(workflow);
+            final WorkflowStat previous = workflowStats.putIfAbsent(workflowId, workflow);
+
+            if (previous != null) {
+                workflow = previous;
+            }
         }
 
         workflow.addExecution(workflowExecution);
     }
 }
-
@@ -60,4 +60,13 @@ public interface FacadeStatsMXBean {
      * @return the statistics
      */
     List<WorkflowStat> getWorkflowStats();
+
+    /**
+     * <p>
+     * Gets the latency statistics of each transformer, merged from all the workflows.
+     * </p>
+     *
+     * @return the statistics
+     */
+    List<LatencyStat> getTransformerLatencies();
 }
\ No newline at end of file
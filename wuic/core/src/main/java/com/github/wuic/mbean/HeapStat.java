@@ -22,43 +22,23 @@
 
 package com.github.wuic.mbean;
 
-import java.util.LinkedList;
 import java.util.List;
 
 /**
  * <p>
- * Statistics object for a all resolutions of a particular heap.
+ * Statistics object for a all resolutions of a particular heap. The durations of all resolutions are recorded in
+ * {@link LatencyStat latency statistics}, only the last resolutions are kept in details.
  * </p>
  *
  * @author Guillaume DROUET
  * @since 0.5.3
  */
-public class HeapStat implements HeapStatMXBean {
+public class HeapStat extends LatencyStat implements HeapStatMXBean {
 
     /**
-     * The ID identifying the heap.
+     * The last resolutions for that heap.
      */
-    private final String id;
-
-    /**
-     * All the resolution for that heap.
-     */
-    private final List<HeapResolution> resolutions;
-
-    /**
-     * Maximum number of resolutions.
-     */
-    private final int maxResolutions;
-
-    /**
-     * The average duration of the resolutions.
-     */
-    private long averageDuration;
-
-    /**
-     * The total time of resolution.
-     */
-    private long total;
+    private final RecentItems<HeapResolution> resolutions;
 
     /**
      * <p>
@@ -66,14 +46,11 @@ public class HeapStat implements HeapStatMXBean {
      * </p>
      *
      * @param id the heap ID
-     * @param maxResolutions maximum number of resolutions
+     * @param maxResolutions maximum number of resolutions kept in details
      */
     public HeapStat(final String id, final int maxResolutions) {
-        this.id = id;
-        this.averageDuration = -1;
-        this.total = 0;
-        this.resolutions = new LinkedList<HeapResolution>();
-        this.maxResolutions = maxResolutions;
+        super(id);
+        this.resolutions = new RecentItems<HeapResolution>(maxResolutions);
     }
 
     /**
@@ -84,21 +61,8 @@ public class HeapStat implements HeapStatMXBean {
      * @param resolution the new resolution
      */
     public void addResolution(final HeapResolution resolution) {
-        if (resolutions.size() == maxResolutions) {
-            total -= resolutions.remove(0).getDuration();
-        }
-
-        total += resolution.getDuration();
         resolutions.add(resolution);
-        averageDuration = total / resolutions.size();
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public String getId() {
-        return id;
+        record(resolution.getDuration());
     }
 
     /**
@@ -106,14 +70,6 @@ public class HeapStat implements HeapStatMXBean {
      */
     @Override
     public List<HeapResolution> getResolutions() {
-        return resolutions;
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public long getAverageDuration() {
-        return averageDuration;
+        return resolutions.toList();
     }
-}
\ No newline at end of file
+}
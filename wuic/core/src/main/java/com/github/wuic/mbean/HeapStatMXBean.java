@@ -32,23 +32,14 @@ import java.util.List;
  * @author Guillaume DROUET
  * @since 0.5.3
  */
-public interface HeapStatMXBean extends IdProvider {
+public interface HeapStatMXBean extends LatencyStatMXBean {
 
     /**
      * <p>
-     * Gets the resolutions.
+     * Gets the last resolutions.
      * </p>
      *
      * @return the resolutions
      */
     List<HeapResolution> getResolutions();
-
-    /**
-     * <p>
-     * Gets the average duration of heap resolution.
-     * </p>
-     *
-     * @return the average duration
-     */
-    long getAverageDuration();
 }
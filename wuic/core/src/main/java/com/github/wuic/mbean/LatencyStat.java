@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2016   The authors of WUIC
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.github.wuic.mbean;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * Latency statistics recorded without any lock. Durations are counted in a log-linear histogram: values lower than 8
+ * have their own bucket and each power of two above is split into 8 buckets, which keeps the relative error of the
+ * computed percentiles under 12.5%. Recording a duration is a couple of atomic increments, so many threads can report
+ * concurrently without contention. Two instances can be merged to aggregate the statistics of different sources.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @since 0.5.3
+ */
+public class LatencyStat implements LatencyStatMXBean {
+
+    /**
+     * Number of bits used to split each power of two.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /**
+     * Number of buckets for each power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Total number of buckets to count any positive long value.
+     */
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    /**
+     * Milliseconds in a second.
+     */
+    private static final double MILLIS = 1000d;
+
+    /**
+     * Upper bound of a percentile.
+     */
+    private static final double ONE_HUNDRED = 100d;
+
+    /**
+     * Median.
+     */
+    private static final double P50 = 50d;
+
+    /**
+     * 95th percentile.
+     */
+    private static final double P95 = 95d;
+
+    /**
+     * 99th percentile.
+     */
+    private static final double P99 = 99d;
+
+    /**
+     * The ID.
+     */
+    private final String id;
+
+    /**
+     * When the statistics started to be recorded.
+     */
+    private final long since;
+
+    /**
+     * Number of durations per bucket.
+     */
+    private final AtomicLongArray buckets;
+
+    /**
+     * Number of recorded durations.
+     */
+    private final AtomicLong count;
+
+    /**
+     * Sum of recorded durations, saturated at {@link Long#MAX_VALUE}.
+     */
+    private final AtomicLong total;
+
+    /**
+     * Maximum recorded duration.
+     */
+    private final AtomicLong max;
+
+    /**
+     * <p>
+     * Builds a new instance.
+     * </p>
+     *
+     * @param id the ID
+     */
+    public LatencyStat(final String id) {
+        this.id = id;
+        this.since = System.currentTimeMillis();
+        this.buckets = new AtomicLongArray(BUCKETS);
+        this.count = new AtomicLong();
+        this.total = new AtomicLong();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * <p>
+     * Computes the bucket index for the given value.
+     * </p>
+     *
+     * @param value the positive value
+     * @return the index
+     */
+    static int bucket(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * <p>
+     * Computes the highest value counted in the bucket at the given index.
+     * </p>
+     *
+     * @param index the index
+     * @return the highest value
+     */
+    static long highestValue(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        final int shift = index / SUB_BUCKETS - 1;
+        final long base = SUB_BUCKETS + (index % SUB_BUCKETS) + 1L;
+        return shift >= Long.numberOfLeadingZeros(base) ? Long.MAX_VALUE : (base << shift) - 1;
+    }
+
+    /**
+     * <p>
+     * Records a duration.
+     * </p>
+     *
+     * @param duration the duration in milliseconds, negative values are considered as zero
+     */
+    public void record(final long duration) {
+        final long value = Math.max(0L, duration);
+        buckets.incrementAndGet(bucket(value));
+        addToTotal(value);
+        count.incrementAndGet();
+        updateMax(value);
+    }
+
+    /**
+     * <p>
+     * Adds all the durations recorded by the given statistics to this instance.
+     * </p>
+     *
+     * @param other the statistics to merge
+     */
+    public void merge(final LatencyStat other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            final long c = other.buckets.get(i);
+
+            if (c != 0) {
+                buckets.addAndGet(i, c);
+            }
+        }
+
+        addToTotal(other.total.get());
+        count.addAndGet(other.count.get());
+        updateMax(other.max.get());
+    }
+
+    /**
+     * <p>
+     * Adds the given positive value to the total. The total stays at {@link Long#MAX_VALUE} instead of overflowing.
+     * </p>
+     *
+     * @param value the value
+     */
+    private void addToTotal(final long value) {
+        long current = total.get();
+
+        while (true) {
+            final long sum = current + value;
+            final long next = sum < current ? Long.MAX_VALUE : sum;
+
+            if (total.compareAndSet(current, next)) {
+                return;
+            }
+
+            current = total.get();
+        }
+    }
+
+    /**
+     * <p>
+     * Updates the maximum duration if the given value is greater.
+     * </p>
+     *
+     * @param value the value
+     */
+    private void updateMax(final long value) {
+        long current = max.get();
+
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * <p>
+     * Computes the duration under which the given percentage of recorded durations are.
+     * </p>
+     *
+     * @param percentile the percentile between 0 and 100
+     * @return the duration, -1 if nothing has been recorded
+     */
+    public long percentile(final double percentile) {
+        long recorded = 0L;
+
+        // Count is updated after the buckets, the snapshot could be a bit greater than the count
+        for (int i = 0; i < BUCKETS; i++) {
+            recorded += buckets.get(i);
+        }
+
+        if (recorded == 0L) {
+            return -1L;
+        }
+
+        final long rank = Math.max(1L, (long) Math.ceil(recorded * percentile / ONE_HUNDRED));
+        long seen = 0L;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+
+            if (seen >= rank) {
+                return Math.min(highestValue(i), max.get());
+            }
+        }
+
+        return max.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getAverageDuration() {
+        final long c = count.get();
+        return c == 0L ? -1L : total.get() / c;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMaxDuration() {
+        return max.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getP50Duration() {
+        return percentile(P50);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getP95Duration() {
+        return percentile(P95);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getP99Duration() {
+        return percentile(P99);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getThroughput() {
+        final long elapsed = Math.max(1L, System.currentTimeMillis() - since);
+        return count.get() * MILLIS / elapsed;
+    }
+}
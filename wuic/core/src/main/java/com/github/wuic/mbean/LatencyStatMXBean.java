@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016   The authors of WUIC
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.github.wuic.mbean;
+
+/**
+ * <p>
+ * A conventional interface for JMX to expose {@link LatencyStat} beans.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @since 0.5.3
+ */
+public interface LatencyStatMXBean extends IdProvider {
+
+    /**
+     * <p>
+     * Gets the number of recorded durations.
+     * </p>
+     *
+     * @return the count
+     */
+    long getCount();
+
+    /**
+     * <p>
+     * Gets the average duration.
+     * </p>
+     *
+     * @return the average duration, -1 if nothing has been recorded
+     */
+    long getAverageDuration();
+
+    /**
+     * <p>
+     * Gets the maximum duration.
+     * </p>
+     *
+     * @return the maximum duration
+     */
+    long getMaxDuration();
+
+    /**
+     * <p>
+     * Gets the median duration.
+     * </p>
+     *
+     * @return the 50th percentile, -1 if nothing has been recorded
+     */
+    long getP50Duration();
+
+    /**
+     * <p>
+     * Gets the duration under which 95% of the recorded durations are.
+     * </p>
+     *
+     * @return the 95th percentile, -1 if nothing has been recorded
+     */
+    long getP95Duration();
+
+    /**
+     * <p>
+     * Gets the duration under which 99% of the recorded durations are.
+     * </p>
+     *
+     * @return the 99th percentile, -1 if nothing has been recorded
+     */
+    long getP99Duration();
+
+    /**
+     * <p>
+     * Gets the average number of recorded durations per second since the statistics have been created.
+     * </p>
+     *
+     * @return the throughput
+     */
+    double getThroughput();
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2016   The authors of WUIC
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.github.wuic.mbean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ * Keeps the last items added by any thread without any lock. When the capacity is reached, the oldest item is
+ * overwritten.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @param <T> the type of item
+ * @since 0.5.3
+ */
+final class RecentItems<T> {
+
+    /**
+     * The items.
+     */
+    private final AtomicReferenceArray<T> items;
+
+    /**
+     * The number of items added since the creation.
+     */
+    private final AtomicLong added;
+
+    /**
+     * <p>
+     * Builds a new instance.
+     * </p>
+     *
+     * @param capacity the maximum number of kept items
+     */
+    RecentItems(final int capacity) {
+        items = new AtomicReferenceArray<T>(Math.max(0, capacity));
+        added = new AtomicLong();
+    }
+
+    /**
+     * <p>
+     * Adds a new item.
+     * </p>
+     *
+     * @param item the item
+     */
+    void add(final T item) {
+        if (items.length() > 0) {
+            items.set((int) (added.getAndIncrement() % items.length()), item);
+        }
+    }
+
+    /**
+     * <p>
+     * Gets a snapshot of the kept items, from the oldest to the newest.
+     * </p>
+     *
+     * @return the items
+     */
+    List<T> toList() {
+        final int capacity = items.length();
+        final long end = added.get();
+        final long start = Math.max(0L, end - capacity);
+        final List<T> retval = new ArrayList<T>((int) (end - start));
+
+        for (long i = start; i < end; i++) {
+            final T item = items.get((int) (i % capacity));
+
+            if (item != null) {
+                retval.add(item);
+            }
+        }
+
+        return retval;
+    }
+}
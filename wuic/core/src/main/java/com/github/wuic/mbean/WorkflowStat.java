@@ -22,43 +22,32 @@
 
 package com.github.wuic.mbean;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * <p>
- * Statistics objects for a particular workflow.
+ * Statistics objects for a particular workflow. The durations of all executions and of each transformer are recorded
+ * in {@link LatencyStat latency statistics}. Only the last executions are kept in details.
  * </p>
  *
  * @author Guillaume DROUET
  * @since 0.5.3
  */
-public class WorkflowStat implements WorkflowStatMXBean {
+public class WorkflowStat extends LatencyStat implements WorkflowStatMXBean {
 
     /**
-     * The ID identifying the workflow.
+     * The last executions statistics for this workflow.
      */
-    private final String id;
+    private final RecentItems<WorkflowExecution> executions;
 
     /**
-     * All the executions statistics for this workflow.
+     * The latency statistics of each transformer.
      */
-    private final List<WorkflowExecution> executions;
-
-    /**
-     * Maximum number of executions per statistic.
-     */
-    private final int maxExecutions;
-
-    /**
-     * Average duration of an execution.
-     */
-    private long averageDuration;
-
-    /**
-     * Total duration.
-     */
-    private long total;
+    private final ConcurrentMap<String, LatencyStat> transformers;
 
     /**
      * <p>
@@ -66,38 +55,39 @@ public class WorkflowStat implements WorkflowStatMXBean {
      * </p>
      *
      * @param id the workflow ID
-     * @param maxExecutions maximum number of executions per statistic
+     * @param maxExecutions maximum number of executions kept in details
      */
     public WorkflowStat(final String id, final int maxExecutions) {
-        this.id = id;
-        this.executions = new LinkedList<WorkflowExecution>();
-        this.averageDuration = -1;
-        this.total = 0;
-        this.maxExecutions = maxExecutions;
+        super(id);
+        this.executions = new RecentItems<WorkflowExecution>(maxExecutions);
+        this.transformers = new ConcurrentHashMap<String, LatencyStat>();
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public String getId() {
-        return id;
+    public List<WorkflowExecution> getExecutions() {
+        return executions.toList();
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public List<WorkflowExecution> getExecutions() {
-        return executions;
+    public List<LatencyStat> getTransformerLatencies() {
+        return new ArrayList<LatencyStat>(transformers.values());
     }
 
     /**
-     * {@inheritDoc}
+     * <p>
+     * Gets the latency statistics of each transformer indexed by transformer class name.
+     * </p>
+     *
+     * @return the statistics
      */
-    @Override
-    public long getAverageDuration() {
-        return averageDuration;
+    Map<String, LatencyStat> transformerLatencies() {
+        return transformers;
     }
 
     /**
@@ -108,12 +98,28 @@ public class WorkflowStat implements WorkflowStatMXBean {
      * @param execution the execution
      */
     public void addExecution(final WorkflowExecution execution) {
-        if (executions.size() == maxExecutions) {
-            total -= executions.remove(0).getParseDuration();
-        }
-
         executions.add(execution);
-        total += execution.getParseDuration() + execution.getTransformDuration();
-        averageDuration = total / executions.size();
+        record(execution.getParseDuration() + execution.getTransformDuration());
+
+        for (final TransformerStat transformerStat : execution.getTransformers()) {
+            long duration = 0L;
+
+            for (final TransformationStat transformationStat : transformerStat.getTransformations()) {
+                duration += transformationStat.getDuration();
+            }
+
+            LatencyStat latency = transformers.get(transformerStat.getTransformerClass());
+
+            if (latency == null) {
+                latency = new LatencyStat(transformerStat.getTransformerClass());
+                final LatencyStat previous = transformers.putIfAbsent(transformerStat.getTransformerClass(), latency);
+
+                if (previous != null) {
+                    latency = previous;
+                }
+            }
+
+            latency.record(duration);
+        }
     }
 }
@@ -32,11 +32,11 @@ import java.util.List;
  * @author Guillaume DROUET
  * @since 0.5.3
  */
-interface WorkflowStatMXBean extends IdProvider {
+interface WorkflowStatMXBean extends LatencyStatMXBean {
 
     /**
      * <p>
-     * Gets all the execution statistics for this workflow.
+     * Gets the last execution statistics for this workflow.
      * </p>
      *
      * @return the statistics
@@ -45,10 +45,10 @@ interface WorkflowStatMXBean extends IdProvider {
 
     /**
      * <p>
-     * Gets the average duration of all executions.
+     * Gets the latency statistics of each transformer used by this workflow.
      * </p>
      *
-     * @return the average duration
+     * @return the statistics
      */
-    long getAverageDuration();
+    List<LatencyStat> getTransformerLatencies();
 }
@@ -41,14 +41,13 @@ import com.github.wuic.util.Input;
 import com.github.wuic.util.NumberUtils;
 import com.github.wuic.util.PollingScheduler;
 import com.github.wuic.util.StringUtils;
+import com.github.wuic.util.XxHash64;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
-import java.nio.ByteBuffer;
-import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -59,6 +58,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -111,6 +111,11 @@ public abstract class AbstractNutDao extends PollingScheduler<NutDaoListener> im
      */
     private NutTypeFactory nutTypeFactory;
 
+    /**
+     * Version numbers computed from content associated to the path of their nut.
+     */
+    private final Map<String, ContentVersion> contentVersions;
+
     /**
      * <p>
      * Builds a new instance.
@@ -118,6 +123,7 @@ public abstract class AbstractNutDao extends PollingScheduler<NutDaoListener> im
      */
     public AbstractNutDao() {
         nextProxyIndex = new AtomicInteger(0);
+        contentVersions = new ConcurrentHashMap<String, ContentVersion>();
     }
 
     /**
@@ -418,6 +424,21 @@ public abstract class AbstractNutDao extends PollingScheduler<NutDaoListener> im
         return new WithRootPathNutDao(rootPath);
     }
 
+    /**
+     * <p>
+     * Gets the length in bytes of the content of the nut for the given path. When both the length and the last
+     * modification timestamp are known, a version number computed from the content is memoized until one of these
+     * values changes. By default, the length is unknown and the content is read each time the version is computed.
+     * </p>
+     *
+     * @param path the nut's path
+     * @return the length, {@code null} if it can't be retrieved cheaply
+     * @throws IOException if an I/O error occurs
+     */
+    protected Long getContentLengthFor(final String path) throws IOException {
+        return null;
+    }
+
     /**
      * <p>
      * This class wraps all information required by the {@link AbstractNutDao} regarding version number management.
@@ -722,19 +743,37 @@ public abstract class AbstractNutDao extends PollingScheduler<NutDaoListener> im
             log.debug("Computing asynchronously version number for path '{}'. Content based: {}", path, versionNumberStrategy.getContentBasedVersionNumber());
 
             if (versionNumberStrategy.getContentBasedVersionNumber()) {
+                final Long length = getContentLengthFor(path);
+                final Long timestamp = length == null ? null : getLastUpdateTimestampFor(path);
+
+                // Content not modified since the last computation
+                if (length != null) {
+                    final ContentVersion contentVersion = contentVersions.get(path);
+
+                    if (contentVersion != null && contentVersion.matches(length, timestamp)) {
+                        return contentVersion.versionNumber;
+                    }
+                }
+
                 InputStream is = null;
 
                 try {
                     is = newInputStream(path, processContext).inputStream();
-                    final MessageDigest md = IOUtils.newMessageDigest();
+                    final XxHash64 hash = new XxHash64();
                     final byte[] buffer = new byte[IOUtils.WUIC_BUFFER_LEN];
                     int offset;
 
                     while ((offset = is.read(buffer)) != -1) {
-                        md.update(buffer, 0, offset);
+                        hash.update(buffer, 0, offset);
                     }
 
-                    return ByteBuffer.wrap(md.digest()).getLong();
+                    final long retval = hash.getValue() & Long.MAX_VALUE;
+
+                    if (length != null) {
+                        contentVersions.put(path, new ContentVersion(length, timestamp, retval));
+                    }
+
+                    return retval;
                 } finally {
                     IOUtils.close(is);
                 }
@@ -744,6 +783,60 @@ public abstract class AbstractNutDao extends PollingScheduler<NutDaoListener> im
         }
     }
 
+    /**
+     * <p>
+     * A version number computed from a content identified by its length and last modification timestamp.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    private static final class ContentVersion {
+
+        /**
+         * The content length.
+         */
+        private final long length;
+
+        /**
+         * The last modification timestamp.
+         */
+        private final Long timestamp;
+
+        /**
+         * The version number.
+         */
+        private final long versionNumber;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param length the content length
+         * @param timestamp the last modification timestamp
+         * @param versionNumber the version number
+         */
+        private ContentVersion(final long length, final Long timestamp, final long versionNumber) {
+            this.length = length;
+            this.timestamp = timestamp;
+            this.versionNumber = versionNumber;
+        }
+
+        /**
+         * <p>
+         * Indicates if this version number has been computed for a content with the given length and timestamp.
+         * </p>
+         *
+         * @param l the content length
+         * @param t the last modification timestamp
+         * @return {@code true} if the content is the same, {@code false} otherwise
+         */
+        private boolean matches(final long l, final Long t) {
+            return length == l && timestamp != null && timestamp.equals(t);
+        }
+    }
+
     /**
      * <p>
      * This singleton holds all new {@link AbstractNutDao} instances and helps to clean {@link #getNutObservers() observers}
@@ -31,6 +31,8 @@ import com.github.wuic.util.Pipe;
 import com.github.wuic.util.TimerTreeFactory;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +52,11 @@ public class NotReachableNut extends AbstractConvertibleNut {
      */
     private String workflow;
 
+    /**
+     * The variants compressed at build time, by content encoding.
+     */
+    private Map<String, PrecompressedVariant> precompressedVariants;
+
     /**
      * <p>
      * Creates a new instance.
@@ -65,6 +72,33 @@ public class NotReachableNut extends AbstractConvertibleNut {
         workflow = workflowId;
     }
 
+    /**
+     * <p>
+     * Adds a variant of this nut compressed at build time.
+     * </p>
+     *
+     * @param variant the variant
+     */
+    public void addPrecompressedVariant(final PrecompressedVariant variant) {
+        if (precompressedVariants == null) {
+            precompressedVariants = new LinkedHashMap<String, PrecompressedVariant>();
+        }
+
+        precompressedVariants.put(variant.getEncoding(), variant);
+    }
+
+    /**
+     * <p>
+     * Gets the variants of this nut compressed at build time.
+     * </p>
+     *
+     * @return the variants by content encoding, empty if there is no variant
+     */
+    public Map<String, PrecompressedVariant> getPrecompressedVariants() {
+        return precompressedVariants == null ?
+                Collections.<String, PrecompressedVariant>emptyMap() : Collections.unmodifiableMap(precompressedVariants);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -417,9 +417,9 @@ public class NutsHeap implements NutDaoListener, HeapListener {
 
         if (paths != null) {
 
-            // Track global resolution time
-            final List<NutResolution> nutResolutions = new ArrayList<NutResolution>();
+            // Track global resolution time: resolutions are rare and always reported, whatever the instrumentation level
             final Timer timer = new Timer();
+            final List<NutResolution> nutResolutions = new ArrayList<NutResolution>();
             timer.start();
 
             // Resolve each path
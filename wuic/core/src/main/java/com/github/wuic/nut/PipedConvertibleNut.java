@@ -113,7 +113,7 @@ public class PipedConvertibleNut extends AbstractConvertibleNut {
 
                 pipe.execute(convertibleNut.ignoreCompositeStreamOnTransformation(), callbacks.toArray(new Pipe.OnReady[callbacks.size()]));
 
-                return pipe.getStatistics();
+                return pipe.drainStatistics();
             } else {
                 is = convertibleNut.openStream();
                 final Pipe.Execution execution = is.execution();
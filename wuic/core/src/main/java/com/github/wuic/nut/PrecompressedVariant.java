@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2016   The authors of WUIC
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+
+package com.github.wuic.nut;
+
+/**
+ * <p>
+ * Describes a variant of a nut compressed at build time with a particular content encoding. The variant is a resource
+ * written next to the nut, which can be served as is to any client accepting the encoding.
+ * </p>
+ *
+ * <p>
+ * A variant is stored in the metadata of a static workflow with the format {@code encoding size hash resource}.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @since 0.5.3
+ */
+public final class PrecompressedVariant {
+
+    /**
+     * The content encoding.
+     */
+    private final String encoding;
+
+    /**
+     * The size in bytes of the compressed content.
+     */
+    private final long size;
+
+    /**
+     * The hash of the compressed content.
+     */
+    private final String hash;
+
+    /**
+     * The path of the resource containing the compressed content.
+     */
+    private final String resource;
+
+    /**
+     * <p>
+     * Builds a new instance.
+     * </p>
+     *
+     * @param encoding the content encoding
+     * @param size the size of the compressed content
+     * @param hash the hash of the compressed content
+     * @param resource the resource path
+     */
+    public PrecompressedVariant(final String encoding, final long size, final String hash, final String resource) {
+        this.encoding = encoding;
+        this.size = size;
+        this.hash = hash;
+        this.resource = resource;
+    }
+
+    /**
+     * <p>
+     * Parses a variant written with {@link #toString()}.
+     * </p>
+     *
+     * @param value the value
+     * @return the variant, {@code null} if the value is malformed
+     */
+    public static PrecompressedVariant parse(final String value) {
+        final String[] tokens = value.trim().split(" ", 4);
+
+        if (tokens.length != 4) {
+            return null;
+        }
+
+        try {
+            return new PrecompressedVariant(tokens[0], Long.parseLong(tokens[1]), tokens[2], tokens[3]);
+        } catch (NumberFormatException nfe) {
+            return null;
+        }
+    }
+
+    /**
+     * <p>
+     * Gets the content encoding.
+     * </p>
+     *
+     * @return the encoding
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * <p>
+     * Gets the size in bytes of the compressed content.
+     * </p>
+     *
+     * @return the size
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * <p>
+     * Gets the hash of the compressed content.
+     * </p>
+     *
+     * @return the hash
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * <p>
+     * Gets the path of the resource containing the compressed content.
+     * </p>
+     *
+     * @return the resource path
+     */
+    public String getResource() {
+        return resource;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format("%s %d %s %s", encoding, size, hash, resource);
+    }
+}
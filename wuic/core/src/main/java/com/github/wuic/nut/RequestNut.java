@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2016   The authors of WUIC
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.github.wuic.nut;
+
+import com.github.wuic.mbean.TransformationStat;
+import com.github.wuic.util.CollectionUtils;
+import com.github.wuic.util.Pipe;
+import com.github.wuic.util.TimerTreeFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <p>
+ * A per-request view over a nut shared between requests, typically a {@link TransformedNut} read from the cache.
+ * </p>
+ *
+ * <p>
+ * The callbacks registered with {@link #onReady(Pipe.OnReady, boolean)} are kept by the view and never added to the
+ * shared nut, so any number of requests can read the shared nut concurrently without modifying it. Referenced nuts are
+ * exposed through their own views, created once for the request.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @since 0.5.3
+ */
+public class RequestNut extends NutWrapper {
+
+    /**
+     * The callbacks of this request.
+     */
+    private final List<Pipe.OnReady> readyCallbacks;
+
+    /**
+     * The views over the referenced nuts, created on first access.
+     */
+    private List<ConvertibleNut> referencedNuts;
+
+    /**
+     * <p>
+     * Builds a new instance.
+     * </p>
+     *
+     * @param shared the shared nut
+     */
+    public RequestNut(final ConvertibleNut shared) {
+        super(shared);
+        readyCallbacks = new CopyOnWriteArrayList<Pipe.OnReady>();
+    }
+
+    /**
+     * <p>
+     * Gets the shared nut this view is built on.
+     * </p>
+     *
+     * @return the shared nut
+     */
+    public ConvertibleNut getShared() {
+        return getWrapped();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, List<TransformationStat>> transform(final Pipe.OnReady... onReady) throws IOException {
+        return getWrapped().transform(merge(onReady));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, List<TransformationStat>> transform(final TimerTreeFactory timerTreeFactory, final Pipe.OnReady... onReady)
+            throws IOException {
+        return getWrapped().transform(timerTreeFactory, merge(onReady));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onReady(final Pipe.OnReady onReady, final boolean removeOnInvocation) {
+        readyCallbacks.add(removeOnInvocation ? new RemoveCallBackOnInvocation(onReady) : onReady);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Pipe.OnReady> getReadyCallbacks() {
+        final List<Pipe.OnReady> retval = new ArrayList<Pipe.OnReady>(getWrapped().getReadyCallbacks());
+        retval.addAll(readyCallbacks);
+        return retval;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized List<ConvertibleNut> getReferencedNuts() {
+        final List<ConvertibleNut> shared = getWrapped().getReferencedNuts();
+
+        if (shared == null) {
+            return null;
+        }
+
+        if (referencedNuts == null) {
+            referencedNuts = new ArrayList<ConvertibleNut>(shared.size());
+
+            for (final ConvertibleNut ref : shared) {
+                referencedNuts.add(new RequestNut(ref));
+            }
+        }
+
+        return referencedNuts;
+    }
+
+    /**
+     * <p>
+     * Adds the callbacks of this request to the given callbacks.
+     * </p>
+     *
+     * @param onReady the callbacks specified when transforming the nut
+     * @return all the callbacks to notify
+     */
+    private Pipe.OnReady[] merge(final Pipe.OnReady ... onReady) {
+        final List<Pipe.OnReady> retval = CollectionUtils.newList(onReady);
+        retval.addAll(readyCallbacks);
+        return retval.toArray(new Pipe.OnReady[retval.size()]);
+    }
+
+    /**
+     * <p>
+     * Removes the this callback from {@link #readyCallbacks} when invoked.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    private final class RemoveCallBackOnInvocation implements Pipe.OnReady {
+
+        /**
+         * Wrapped callback.
+         */
+        private final Pipe.OnReady wrapped;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param onReady the callback
+         */
+        private RemoveCallBackOnInvocation(final Pipe.OnReady onReady) {
+            this.wrapped = onReady;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void ready(final Pipe.Execution e) throws IOException {
+            wrapped.ready(e);
+            readyCallbacks.remove(this);
+        }
+    }
+}
@@ -32,7 +32,7 @@ import com.github.wuic.nut.sourcemap.FilePosition;
 import com.github.wuic.nut.sourcemap.SourceMapConsumerV3;
 import com.github.wuic.nut.sourcemap.SourceMapGeneratorV3;
 import com.github.wuic.nut.sourcemap.SourceMapParseException;
-import com.github.wuic.nut.sourcemap.proto.Mapping;
+import com.github.wuic.nut.sourcemap.SourceMapSection;
 import com.github.wuic.util.IOUtils;
 import com.github.wuic.util.InMemoryInput;
 import com.github.wuic.util.Input;
@@ -87,36 +87,48 @@ public class SourceMapNutImpl extends SourceMapNutAdapter implements SourceMapNu
     private SourceMapGeneratorV3 generator;
 
     /**
-     * Consumer.
+     * Possibility to customize the owner and source map name.
      */
-    private SourceMapConsumerV3 consumer;
+    private String customOwnerName;
 
     /**
-     * Indicates if the consumer is synchronized with generator state.
+     * The sections of an index map, {@code null} if all the mappings are merged in the generator.
      */
-    private boolean upToDate;
+    private List<Section> sections;
 
     /**
-     * Possibility to customize the owner and source map name.
+     * <p>
+     * Creates a new instance representing an empty source map..
+     * </p>
+     *
+     * @param nut the nut owning the source map
+     * @param nutTypeFactory the nut type factory
+     * @throws WuicException if source map can't be read
      */
-    private String customOwnerName;
+    public SourceMapNutImpl(final ConvertibleNut nut, final NutTypeFactory nutTypeFactory) throws WuicException {
+        this(nut, nutTypeFactory, false);
+    }
 
     /**
      * <p>
-     * Creates a new instance representing an empty source map..
+     * Creates a new instance representing an empty source map. If the map is an index map, each source added with
+     * {@link #addSource(int, int, int, int, ConvertibleNut)} is kept in its own section instead of having its mappings
+     * merged in a single generator.
      * </p>
      *
      * @param nut the nut owning the source map
      * @param nutTypeFactory the nut type factory
+     * @param indexMap {@code true} if an index map with sections should be written
      * @throws WuicException if source map can't be read
      */
-    public SourceMapNutImpl(final ConvertibleNut nut, final NutTypeFactory nutTypeFactory) throws WuicException {
+    public SourceMapNutImpl(final ConvertibleNut nut, final NutTypeFactory nutTypeFactory, final boolean indexMap)
+            throws WuicException {
         super(nut.getName() + EXTENSION, nutTypeFactory.getNutType(EnumNutType.MAP), nut.getVersionNumber());
         owner = nut;
         sources = new LinkedHashMap<String, ConvertibleNut>();
         generator = new SourceMapGeneratorV3();
+        sections = indexMap ? new ArrayList<Section>() : null;
         setSourceRoot();
-        upToDate = false;
     }
 
     /**
@@ -158,7 +170,6 @@ public class SourceMapNutImpl extends SourceMapNutAdapter implements SourceMapNu
         super(nut);
 
         this.owner = convertibleNut;
-        this.upToDate = false;
         this.sources = new LinkedHashMap<String, ConvertibleNut>();
         init(heap, processContext, nut, resolveSources);
     }
@@ -169,6 +180,17 @@ public class SourceMapNutImpl extends SourceMapNutAdapter implements SourceMapNu
      * </p>
      */
     private void setSourceRoot() {
+        generator.setSourceRoot(sourceRoot());
+    }
+
+    /**
+     * <p>
+     * Computes the source root from the owner name.
+     * </p>
+     *
+     * @return the source root
+     */
+    private String sourceRoot() {
         // Build the source root
         final StringBuilder sourceRoot = new StringBuilder();
         final String name = customOwnerName == null ? owner.getName() : customOwnerName;
@@ -179,7 +201,7 @@ public class SourceMapNutImpl extends SourceMapNutAdapter implements SourceMapNu
             sourceRoot.append("../");
         }
 
-        generator.setSourceRoot(sourceRoot.toString());
+        return sourceRoot.toString();
     }
 
     /**
@@ -213,21 +235,18 @@ public class SourceMapNutImpl extends SourceMapNutAdapter implements SourceMapNu
         }
 
         generator = new SourceMapGeneratorV3();
-        consumer = new SourceMapConsumerV3();
+        final SourceMapConsumerV3 consumer = new SourceMapConsumerV3();
 
         try {
             // Parse the existing source map
             consumer.parse(sourceMap);
 
             if (resolveSources) {
-                resolveSources(nutsHeap, processContext);
+                resolveSources(consumer, nutsHeap, processContext);
             }
 
             generator.mergeMapSection(0, 0, sourceMap);
             setSourceRoot();
-
-            // Consumer is now synchronized with consumer
-            upToDate = true;
         } catch (SourceMapParseException smpe) {
             WuicException.throwBadStateException(new IllegalStateException("Invalid source map.", smpe));
         } catch (IOException ioe) {
@@ -237,14 +256,15 @@ public class SourceMapNutImpl extends SourceMapNutAdapter implements SourceMapNu
 
     /**
      * <p>
-     * Resolves the original sources in the current consumer with the given {@link NutsHeap}.
+     * Resolves the original sources in the given consumer with the given {@link NutsHeap}.
      * </p>
      *
+     * @param consumer the consumer that parsed the source map
      * @param nutsHeap the heap
      * @param processContext the process context
      * @throws IOException if any I/O error occurs
      */
-    private void resolveSources(final NutsHeap nutsHeap, final ProcessContext processContext) throws IOException {
+    private void resolveSources(final SourceMapConsumerV3 consumer, final NutsHeap nutsHeap, final ProcessContext processContext) throws IOException {
         // Extract names from the source map
         final Collection<String> originalSourceNames = consumer.getOriginalSources();
 
@@ -269,11 +289,19 @@ public class SourceMapNutImpl extends SourceMapNutAdapter implements SourceMapNu
      */
     @Override
     public void addSource(final int startLine, final int startColumn, final int endLine, final int endColumn, final ConvertibleNut nut) {
+        if (sections != null) {
+            addSection(startLine, startColumn, endLine, endColumn, nut);
+            sources.put(nut.getInitialName(), nut);
+            return;
+        }
+
         Input is = null;
 
         try {
-            // Update the generator
-            if (nut.getSource() instanceof SourceMapNut) {
+            // Update the generator, copying mappings directly when they are already in memory
+            if (nut.getSource() instanceof SourceMapNutImpl) {
+                generator.mergeMapSection(startLine, startColumn, SourceMapNutImpl.class.cast(nut.getSource()).flatGenerator());
+            } else if (nut.getSource() instanceof SourceMapNut) {
                 is = SourceMapNut.class.cast(nut.getSource()).openStream();
                 generator.mergeMapSection(startLine, startColumn, IOUtils.readString(is.reader()));
             } else {
@@ -294,11 +322,90 @@ public class SourceMapNutImpl extends SourceMapNutAdapter implements SourceMapNu
             IOUtils.close(is);
         }
 
-        // The consumer is no more synchronized
-        upToDate = false;
         sources.put(nut.getInitialName(), nut);
     }
 
+    /**
+     * <p>
+     * Adds a mapping between a position in an original source and a range of the owner's content. Mappings must be
+     * added in order. This is not supported by index maps, since mappings are not related to any section.
+     * </p>
+     *
+     * @param sourceName the name of the original source
+     * @param original the position in the original source
+     * @param start the first position in the owner's content
+     * @param end the last position in the owner's content
+     */
+    public void addMapping(final String sourceName, final FilePosition original, final FilePosition start, final FilePosition end) {
+        if (sections != null) {
+            WuicException.throwBadStateException(new IllegalStateException("Mappings can't be added to an index map."));
+        }
+
+        generator.addMapping(sourceName, null, original, start, end);
+    }
+
+    /**
+     * <p>
+     * Adds a section for the given nut. The mappings of the section are relative to the start position. Existing
+     * generators are reused so the mappings of a nut having its own source map are not re-encoded.
+     * </p>
+     *
+     * @param startLine the line of starting position
+     * @param startColumn the column of starting position
+     * @param endLine the line of ending position
+     * @param endColumn the column of ending position
+     * @param nut the source
+     */
+    private void addSection(final int startLine, final int startColumn, final int endLine, final int endColumn, final ConvertibleNut nut) {
+        final SourceMapGeneratorV3 sectionGenerator;
+        Input is = null;
+
+        try {
+            if (nut.getSource() instanceof SourceMapNutImpl) {
+                sectionGenerator = SourceMapNutImpl.class.cast(nut.getSource()).flatGenerator();
+            } else if (nut.getSource() instanceof SourceMapNut) {
+                is = SourceMapNut.class.cast(nut.getSource()).openStream();
+                sectionGenerator = new SourceMapGeneratorV3();
+                sectionGenerator.mergeMapSection(0, 0, IOUtils.readString(is.reader()));
+            } else {
+                // Range is relative to the section, the column offset only applies to the first line
+                final FilePosition end = new FilePosition(endLine - startLine, endLine == startLine ? endColumn - startColumn : endColumn);
+                sectionGenerator = new SourceMapGeneratorV3();
+                sectionGenerator.addMapping(nut.getInitialName(), null, new FilePosition(0, 0), new FilePosition(0, 0), end);
+            }
+
+            sections.add(new Section(startLine, startColumn, sectionGenerator));
+        } catch (SourceMapParseException smpe) {
+            WuicException.throwBadStateException(new IllegalStateException("Bad source map format.", smpe));
+        } catch (IOException ioe) {
+            WuicException.throwBadStateException(new IllegalStateException("Unable to read source map.", ioe));
+        } finally {
+            IOUtils.close(is);
+        }
+    }
+
+    /**
+     * <p>
+     * Gets a generator containing all the mappings of this source map. If this source map is an index map, a new
+     * generator merging all the sections is returned as sections can't be nested.
+     * </p>
+     *
+     * @return the generator
+     */
+    private SourceMapGeneratorV3 flatGenerator() {
+        if (sections == null) {
+            return generator;
+        }
+
+        final SourceMapGeneratorV3 retval = new SourceMapGeneratorV3();
+
+        for (final Section section : sections) {
+            retval.mergeMapSection(section.line, section.column, section.generator);
+        }
+
+        return retval;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -326,24 +433,50 @@ public class SourceMapNutImpl extends SourceMapNutAdapter implements SourceMapNu
             return null;
         }
 
-        // Sources have been added and the consumer is not yet updated
-        if (!upToDate) {
-            consumer = new SourceMapConsumerV3();
+        final String originalFile;
 
-            try {
-                consumer.parse(toString());
-            } catch (SourceMapParseException smpe) {
-                WuicException.throwStreamException(new IOException("Unable to parse current mapping", smpe));
-            }
+        if (sections == null) {
+            // Lookup the generator's position index, no serialization is required
+            originalFile = generator.getSourceAt(line, column);
+        } else {
+            final Section section = sectionAt(line, column);
 
-            // Consumer will be reused for future access
-            upToDate = true;
+            // Position is relative to the section, the column offset only applies to the first line
+            originalFile = section == null ? null :
+                    section.generator.getSourceAt(line - section.line, line == section.line ? column - section.column : column);
         }
 
-        // Get the mapping
-        final Mapping.OriginalMapping mapping = consumer.getMappingForLine(line + 1, column + 1);
+        return (originalFile != null) ? sources.get(originalFile) : null;
+    }
 
-        return (mapping != null) ? sources.get(mapping.getOriginalFile()) : null;
+    /**
+     * <p>
+     * Finds the last section starting before or at the given position.
+     * </p>
+     *
+     * @param line the line
+     * @param column the column
+     * @return the section, {@code null} if no section starts before the position
+     */
+    private Section sectionAt(final int line, final int column) {
+        int low = 0;
+        int high = sections.size() - 1;
+        Section retval = null;
+
+        // Sections are added in order
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final Section section = sections.get(mid);
+
+            if (section.line < line || (section.line == line && section.column <= column)) {
+                retval = section;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return retval;
     }
 
     /**
@@ -374,6 +507,13 @@ public class SourceMapNutImpl extends SourceMapNutAdapter implements SourceMapNu
         }
 
         customOwnerName = nutName.substring(0, index);
+
+        // Serialized sections refer to the previous name
+        if (sections != null) {
+            for (final Section section : sections) {
+                section.serialized = null;
+            }
+        }
     }
 
     /**
@@ -413,7 +553,12 @@ public class SourceMapNutImpl extends SourceMapNutAdapter implements SourceMapNu
 
                 // Source map name
                 final String name = customOwnerName == null ? owner.getName() : customOwnerName + EXTENSION;
-                generator.appendTo(stringBuilder, name);
+
+                if (sections == null) {
+                    generator.appendTo(stringBuilder, name);
+                } else {
+                    appendIndexMapTo(stringBuilder, name);
+                }
             } else {
                 new SourceMapGeneratorV3().appendTo(stringBuilder, owner.getName());
             }
@@ -424,4 +569,76 @@ public class SourceMapNutImpl extends SourceMapNutAdapter implements SourceMapNu
             return null;
         }
     }
+
+    /**
+     * <p>
+     * Writes an index map with one section per added source. Each section is serialized once and then reused.
+     * </p>
+     *
+     * @param out the output
+     * @param name the source map name
+     * @throws IOException if any I/O error occurs
+     */
+    private void appendIndexMapTo(final StringBuilder out, final String name) throws IOException {
+        final List<SourceMapSection> mapSections = new ArrayList<SourceMapSection>(sections.size());
+        final String sourceRoot = sourceRoot();
+
+        for (final Section section : sections) {
+            if (section.serialized == null) {
+                final StringBuilder serialized = new StringBuilder();
+                section.generator.appendTo(serialized, name, sourceRoot);
+                section.serialized = serialized.toString();
+            }
+
+            mapSections.add(SourceMapSection.forMap(section.serialized, section.line, section.column));
+        }
+
+        generator.appendIndexMapTo(out, name, mapSections);
+    }
+
+    /**
+     * <p>
+     * A section of an index map.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    private static final class Section {
+
+        /**
+         * The line where the section starts.
+         */
+        private final int line;
+
+        /**
+         * The column where the section starts.
+         */
+        private final int column;
+
+        /**
+         * The mappings relative to the section start.
+         */
+        private final SourceMapGeneratorV3 generator;
+
+        /**
+         * The serialized map, {@code null} if not computed yet.
+         */
+        private String serialized;
+
+        /**
+         * <p>
+         * Builds a new section.
+         * </p>
+         *
+         * @param line the start line
+         * @param column the start column
+         * @param generator the generator
+         */
+        private Section(final int line, final int column, final SourceMapGeneratorV3 generator) {
+            this.line = line;
+            this.column = column;
+            this.generator = generator;
+        }
+    }
 }
\ No newline at end of file
@@ -46,11 +46,27 @@ import java.util.Map;
  * The instances could be serialized so the wrapped nut must be a {@link Serializable}.
  * </p>
  *
+ * <p>
+ * Since the state can't change, a consumer serving the same instance many times can attach to the nut an object
+ * prepared from its content (headers, encoded body, etc) with {@link #setPrepared(Object)} and retrieve it later with
+ * {@link #getPrepared(Class)}. This object is not serialized.
+ * </p>
+ *
+ * <p>
+ * Callbacks can't be added to the instance, which is shared between requests. A {@link RequestNut} view should carry
+ * the callbacks of each request instead.
+ * </p>
+ *
  * @author Guillaume DROUET
  * @since 0.5.0
  */
 public class TransformedNut extends NutWrapper implements SizableNut {
 
+    /**
+     * An object prepared by a consumer of this nut.
+     */
+    private transient volatile Object prepared;
+
     /**
      * <p>
      * Builds a new instance.
@@ -118,6 +134,14 @@ public class TransformedNut extends NutWrapper implements SizableNut {
         throw new IllegalStateException("Can't add a referenced nut to an already transformed nut.");
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onReady(final Pipe.OnReady onReady, final boolean removeOnInvocation) {
+        throw new IllegalStateException("Can't add a callback to an already transformed nut, use a RequestNut instead.");
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -125,4 +149,29 @@ public class TransformedNut extends NutWrapper implements SizableNut {
     public int size() {
         return InMemoryNut.class.cast(getWrapped()).size();
     }
+
+    /**
+     * <p>
+     * Gets the object prepared by a consumer of this nut if it's an instance of the given type.
+     * </p>
+     *
+     * @param type the expected type
+     * @param <T> the type of prepared object
+     * @return the prepared object, {@code null} if nothing has been prepared or if the object has another type
+     */
+    public <T> T getPrepared(final Class<T> type) {
+        final Object p = prepared;
+        return type.isInstance(p) ? type.cast(p) : null;
+    }
+
+    /**
+     * <p>
+     * Attaches an object prepared from the content of this nut.
+     * </p>
+     *
+     * @param p the prepared object
+     */
+    public void setPrepared(final Object p) {
+        prepared = p;
+    }
 }
@@ -30,6 +30,7 @@ import com.github.wuic.nut.FilePathNut;
 import com.github.wuic.nut.Nut;
 import com.github.wuic.path.DirectoryPath;
 import com.github.wuic.path.FilePath;
+import com.github.wuic.path.FsItem;
 import com.github.wuic.path.Path;
 import com.github.wuic.util.IOUtils;
 import com.github.wuic.util.Input;
@@ -254,6 +255,15 @@ public abstract class PathNutDao extends AbstractNutDao implements TemporaryFile
         return getLastUpdateTimestampFor(baseDirectory.getChild(path));
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Long getContentLengthFor(final String path) throws IOException {
+        final Path child = baseDirectory.getChild(path);
+        return child instanceof FsItem ? FsItem.class.cast(child).getFile().length() : null;
+    }
+
     /**
      * {@inheritDoc}
      */
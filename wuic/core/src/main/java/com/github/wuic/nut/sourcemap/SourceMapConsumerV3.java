@@ -32,6 +32,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -47,11 +48,23 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
   private String[] sources;
   private String[] names;
   private int lineCount;
-  // Slots in the lines list will be null if the line does not have any entries.
-  private ArrayList<ArrayList<Entry>> lines = null;
-  /** originalFile path ==> original line ==> target mappings */
-  private Map<String, Map<Integer, Collection<OriginalMapping>>>
-      reverseSourceMapping;
+  // The entries are stored line by line in the parallel arrays below. The
+  // entries of line i are in [lineOffsets[i], lineOffsets[i + 1]), so an
+  // empty line has equal bounds.
+  private int lineTotal;
+  private int[] lineOffsets = new int[] { 0 };
+  private int entryCount;
+  private int[] generatedColumns;
+  private int[] sourceFileIds;
+  private int[] sourceLines;
+  private int[] sourceColumns;
+  private int[] nameIds;
+  /** Mapped entries grouped by original file and sorted by original line */
+  private long[] reverseSourceMapping;
+  /** The bounds of each original file group in reverseSourceMapping */
+  private int[] reverseSourceStarts;
+  /** originalFile path ==> original file ids, a path may be listed several times */
+  private Map<String, List<Integer>> reverseSourceIds;
   private String sourceRoot;
   private Map<String, Object> extensions = new LinkedHashMap<String, Object>();
 
@@ -125,11 +138,18 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
       sources = getJavaStringArray(sourceMapRoot.get("sources").getAsJsonArray());
       names = getJavaStringArray(sourceMapRoot.get("names").getAsJsonArray());
 
-      if (lineCount >= 0) {
-        lines = new ArrayList<ArrayList<Entry>>(lineCount);
-      } else {
-        lines = new ArrayList<ArrayList<Entry>>();
-      }
+      // Size the line table with the declared count, an estimate is used otherwise
+      int capacity = Math.max(lineCount, 16);
+      lineTotal = 0;
+      lineOffsets = new int[capacity + 1];
+      entryCount = 0;
+      capacity = Math.max(capacity, lineMap.length() / 4);
+      generatedColumns = new int[capacity];
+      sourceFileIds = new int[capacity];
+      sourceLines = new int[capacity];
+      sourceColumns = new int[capacity];
+      nameIds = new int[capacity];
+      reverseSourceMapping = null;
 
       if (sourceMapRoot.has("sourceRoot")) {
         sourceRoot = sourceMapRoot.get("sourceRoot").getAsString();
@@ -226,23 +246,20 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
     lineNumber--;
     column--;
 
-    if (lineNumber < 0 || lineNumber >= lines.size()) {
+    if (lineNumber < 0 || lineNumber >= lineTotal) {
       return null;
     }
 
-    // If the line is empty return the previous mapping.
-    if (lines.get(lineNumber) == null) {
-      return getPreviousMapping(lineNumber);
-    }
+    int start = lineOffsets[lineNumber];
+    int end = lineOffsets[lineNumber + 1];
 
-    ArrayList<Entry> entries = lines.get(lineNumber);
-    // No empty lists.
-    if (entries.get(0).getGeneratedColumn() > column) {
+    // If the line is empty or starts after the column return the previous mapping.
+    if (start == end || generatedColumns[start] > column) {
       return getPreviousMapping(lineNumber);
     }
 
-    int index = search(entries, column, 0, entries.size() - 1);
-    return getOriginalMappingForEntry(entries.get(index));
+    int index = search(column, start, end - 1);
+    return getOriginalMappingForEntry(index);
   }
 
   @Override
@@ -261,21 +278,43 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
       createReverseMapping();
     }
 
-    Map<Integer, Collection<OriginalMapping>> sourceLineToCollectionMap =
-        reverseSourceMapping.get(originalFile);
+    List<Integer> sourceIds = reverseSourceIds.get(originalFile);
 
-    if (sourceLineToCollectionMap == null) {
+    if (sourceIds == null) {
       return Collections.emptyList();
-    } else {
-      Collection<OriginalMapping> mappings =
-          sourceLineToCollectionMap.get(line);
+    }
 
-      if (mappings == null) {
-        return Collections.emptyList();
-      } else {
-        return mappings;
+    Collection<OriginalMapping> mappings = null;
+
+    for (int sourceId : sourceIds) {
+      // Search the first entry mapped to the line
+      long key = (long) line << 32;
+      int index = Arrays.binarySearch(reverseSourceMapping,
+          reverseSourceStarts[sourceId], reverseSourceStarts[sourceId + 1], key);
+      if (index < 0) {
+        index = -index - 1;
+      }
+
+      int end = reverseSourceStarts[sourceId + 1];
+
+      for (; index < end && (reverseSourceMapping[index] >>> 32) == line; index++) {
+        int entry = (int) reverseSourceMapping[index];
+
+        if (mappings == null) {
+          mappings = new ArrayList<OriginalMapping>(1);
+        }
+
+        mappings.add(OriginalMapping.newBuilder()
+            .setLineNumber(getGeneratedLine(entry))
+            .setColumnPosition(generatedColumns[entry]).build());
       }
     }
+
+    if (mappings == null) {
+      return Collections.emptyList();
+    } else {
+      return mappings;
+    }
   }
 
   public String getSourceRoot(){
@@ -318,16 +357,13 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
 
     void build() {
       int [] temp = new int[MAX_ENTRY_VALUES];
-      ArrayList<Entry> entries = new ArrayList<Entry>();
+      boolean pendingLine = false;
       while (content.hasNext()) {
         // ';' denotes a new line.
         if (tryConsumeToken(';')) {
           // The line is complete, store the result
-          completeLine(entries);
-          if (!entries.isEmpty()) {
-            // A new array list for the next line.
-            entries = new ArrayList<Entry>();
-          }
+          completeLine();
+          pendingLine = false;
         } else {
           // grab the next entry for the current line.
           int entryValues = 0;
@@ -335,9 +371,8 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
             temp[entryValues] = nextValue();
             entryValues++;
           }
-          Entry entry = decodeEntry(temp, entryValues);
-
-          entries.add(entry);
+          decodeEntry(temp, entryValues);
+          pendingLine = true;
 
           // Consume the separating token, if there is one.
           tryConsumeToken(',');
@@ -346,33 +381,49 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
 
       // Some source map generator (e.g.UglifyJS) generates lines without
       // a trailing line separator. So add the rest of the content.
-      if (!entries.isEmpty()) {
-        completeLine(entries);
+      if (pendingLine) {
+        completeLine();
       }
     }
 
-    private void completeLine(ArrayList<Entry> entries) {
-      // The line is complete, store the result for the line,
-      // null if the line is empty.
-      if (!entries.isEmpty()) {
-        lines.add(entries);
-      } else {
-        lines.add(null);
+    private void completeLine() {
+      // The line is complete, its entries end at the current entry count.
+      if (lineTotal + 1 == lineOffsets.length) {
+        lineOffsets = Arrays.copyOf(lineOffsets, lineOffsets.length * 2);
       }
+      lineOffsets[++lineTotal] = entryCount;
       line++;
       previousCol = 0;
     }
 
+    /**
+     * Appends an entry to the parallel arrays.
+     */
+    private void addEntry(int column, int srcFile, int srcLine, int srcColumn, int name) {
+      if (entryCount == generatedColumns.length) {
+        int capacity = Math.max(16, entryCount * 2);
+        generatedColumns = Arrays.copyOf(generatedColumns, capacity);
+        sourceFileIds = Arrays.copyOf(sourceFileIds, capacity);
+        sourceLines = Arrays.copyOf(sourceLines, capacity);
+        sourceColumns = Arrays.copyOf(sourceColumns, capacity);
+        nameIds = Arrays.copyOf(nameIds, capacity);
+      }
+      generatedColumns[entryCount] = column;
+      sourceFileIds[entryCount] = srcFile;
+      sourceLines[entryCount] = srcLine;
+      sourceColumns[entryCount] = srcColumn;
+      nameIds[entryCount] = name;
+      entryCount++;
+    }
+
     /**
      * Decodes the next entry, using the previous encountered values to
      * decode the relative values.
      *
      * @param vals An array of integers that represent values in the entry.
      * @param entryValues The number of entries in the array.
-     * @return The entry object.
      */
-    private Entry decodeEntry(int[] vals, int entryValues) {
-      Entry entry;
+    private void decodeEntry(int[] vals, int entryValues) {
       switch (entryValues) {
         // The first values, if present are in the following order:
         //   0: the starting column in the current line of the generated file
@@ -387,42 +438,33 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
 
         case 1:
           // An unmapped section of the generated file.
-          entry = new UnmappedEntry(
-              vals[0] + previousCol);
-          // Set the values see for the next entry.
-          previousCol = entry.getGeneratedColumn();
-          return entry;
+          previousCol = vals[0] + previousCol;
+          addEntry(previousCol, UNMAPPED, UNMAPPED, UNMAPPED, UNMAPPED);
+          return;
 
         case 4:
           // A mapped section of the generated file.
-          entry = new UnnamedEntry(
-              vals[0] + previousCol,
-              vals[1] + previousSrcId,
-              vals[2] + previousSrcLine,
-              vals[3] + previousSrcColumn);
           // Set the values see for the next entry.
-          previousCol = entry.getGeneratedColumn();
-          previousSrcId = entry.getSourceFileId();
-          previousSrcLine = entry.getSourceLine();
-          previousSrcColumn = entry.getSourceColumn();
-          return entry;
+          previousCol = vals[0] + previousCol;
+          previousSrcId = vals[1] + previousSrcId;
+          previousSrcLine = vals[2] + previousSrcLine;
+          previousSrcColumn = vals[3] + previousSrcColumn;
+          addEntry(previousCol, previousSrcId, previousSrcLine,
+              previousSrcColumn, UNMAPPED);
+          return;
 
         case 5:
           // A mapped section of the generated file, that has an associated
           // name.
-          entry = new NamedEntry(
-              vals[0] + previousCol,
-              vals[1] + previousSrcId,
-              vals[2] + previousSrcLine,
-              vals[3] + previousSrcColumn,
-              vals[4] + previousNameId);
           // Set the values see for the next entry.
-          previousCol = entry.getGeneratedColumn();
-          previousSrcId = entry.getSourceFileId();
-          previousSrcLine = entry.getSourceLine();
-          previousSrcColumn = entry.getSourceColumn();
-          previousNameId = entry.getNameId();
-          return entry;
+          previousCol = vals[0] + previousCol;
+          previousSrcId = vals[1] + previousSrcId;
+          previousSrcLine = vals[2] + previousSrcLine;
+          previousSrcColumn = vals[3] + previousSrcColumn;
+          previousNameId = vals[4] + previousNameId;
+          addEntry(previousCol, previousSrcId, previousSrcLine,
+              previousSrcColumn, previousNameId);
+          return;
 
         default:
           throw new IllegalStateException(
@@ -454,13 +496,13 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
   }
 
   /**
-   * Perform a binary search on the array to find a section that covers
-   * the target column.
+   * Perform a binary search on the entries in [start, end] to find a
+   * section that covers the target column.
    */
-  private int search(ArrayList<Entry> entries, int target, int start, int end) {
+  private int search(int target, int start, int end) {
     while (true) {
       int mid = ((end - start) / 2) + start;
-      int compare = compareEntry(entries, mid, target);
+      int compare = generatedColumns[mid] - target;
       if (compare == 0) {
         return mid;
       } else if (compare < 0) {
@@ -479,90 +521,101 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
     }
   }
 
-  /**
-   * Compare an array entry's column value to the target column value.
-   */
-  private int compareEntry(ArrayList<Entry> entries, int entry, int target) {
-    return entries.get(entry).getGeneratedColumn() - target;
-  }
-
   /**
    * Returns the mapping entry that proceeds the supplied line or null if no
    * such entry exists.
    */
   private OriginalMapping getPreviousMapping(int lineNumber) {
-    do {
-      if (lineNumber == 0) {
-        return null;
-      }
-      lineNumber--;
-    } while (lines.get(lineNumber) == null);
-    ArrayList<Entry> entries = lines.get(lineNumber);
-    return getOriginalMappingForEntry(entries.get(entries.size() - 1));
+    // Entries are stored in order, the previous one ends the last non-empty line.
+    int entry = lineOffsets[lineNumber] - 1;
+    return entry < 0 ? null : getOriginalMappingForEntry(entry);
   }
 
   /**
-   * Creates an "OriginalMapping" object for the given entry object.
+   * Creates an "OriginalMapping" object for the given entry index.
    */
-  private OriginalMapping getOriginalMappingForEntry(Entry entry) {
-    if (entry.getSourceFileId() == UNMAPPED) {
+  private OriginalMapping getOriginalMappingForEntry(int entry) {
+    if (sourceFileIds[entry] == UNMAPPED) {
       return null;
     } else {
       // Adjust the line/column here to be start at 1.
       Builder x = OriginalMapping.newBuilder()
-        .setOriginalFile(sources[entry.getSourceFileId()])
-        .setLineNumber(entry.getSourceLine() + 1)
-        .setColumnPosition(entry.getSourceColumn() + 1);
-      if (entry.getNameId() != UNMAPPED) {
-        x.setIdentifier(names[entry.getNameId()]);
+        .setOriginalFile(sources[sourceFileIds[entry]])
+        .setLineNumber(sourceLines[entry] + 1)
+        .setColumnPosition(sourceColumns[entry] + 1);
+      if (nameIds[entry] != UNMAPPED) {
+        x.setIdentifier(names[nameIds[entry]]);
       }
       return x.build();
     }
   }
 
   /**
-   * Reverse the source map; the created mapping will allow us to quickly go
-   * from a source file and line number to a collection of target
-   * OriginalMappings.
+   * Reverse the source map; the created index will allow us to quickly go
+   * from a source file and line number to the entries mapped to them. The
+   * mapped entries are grouped by source file, each group being sorted by
+   * original line and packed as {@code (sourceLine << 32) | entryIndex}.
    */
   private void createReverseMapping() {
-    reverseSourceMapping = new HashMap<String, Map<Integer, Collection<OriginalMapping>>>();
+    reverseSourceStarts = new int[sources.length + 1];
 
-    for (int targetLine = 0; targetLine < lines.size(); targetLine++) {
-      ArrayList<Entry> entries = lines.get(targetLine);
+    for (int entry = 0; entry < entryCount; entry++) {
+      if (sourceFileIds[entry] != UNMAPPED && sourceLines[entry] != UNMAPPED) {
+        reverseSourceStarts[sourceFileIds[entry] + 1]++;
+      }
+    }
 
-      if (entries != null) {
-        for (Entry entry : entries) {
-          if (entry.getSourceFileId() != UNMAPPED
-              && entry.getSourceLine() != UNMAPPED) {
-            String originalFile = sources[entry.getSourceFileId()];
+    for (int i = 0; i < sources.length; i++) {
+      reverseSourceStarts[i + 1] += reverseSourceStarts[i];
+    }
+
+    int[] positions = Arrays.copyOf(reverseSourceStarts, sources.length);
+    long[] packed = new long[reverseSourceStarts[sources.length]];
 
-            if (!reverseSourceMapping.containsKey(originalFile)) {
-              reverseSourceMapping.put(originalFile,
-                  new HashMap<Integer, Collection<OriginalMapping>>());
-            }
+    for (int entry = 0; entry < entryCount; entry++) {
+      if (sourceFileIds[entry] != UNMAPPED && sourceLines[entry] != UNMAPPED) {
+        packed[positions[sourceFileIds[entry]]++] =
+            ((long) sourceLines[entry] << 32) | entry;
+      }
+    }
 
-            Map<Integer, Collection<OriginalMapping>> lineToCollectionMap =
-                reverseSourceMapping.get(originalFile);
+    for (int i = 0; i < sources.length; i++) {
+      Arrays.sort(packed, reverseSourceStarts[i], reverseSourceStarts[i + 1]);
+    }
 
-            int sourceLine = entry.getSourceLine();
+    reverseSourceIds = new HashMap<String, List<Integer>>();
+    for (int i = 0; i < sources.length; i++) {
+      List<Integer> ids = reverseSourceIds.get(sources[i]);
 
-            if (!lineToCollectionMap.containsKey(sourceLine)) {
-              lineToCollectionMap.put(sourceLine,
-                  new ArrayList<OriginalMapping>(1));
-            }
+      if (ids == null) {
+        ids = new ArrayList<Integer>(1);
+        reverseSourceIds.put(sources[i], ids);
+      }
 
-            Collection<OriginalMapping> mappings =
-                lineToCollectionMap.get(sourceLine);
+      ids.add(i);
+    }
 
-            Builder builder = OriginalMapping.newBuilder().setLineNumber(
-                targetLine).setColumnPosition(entry.getGeneratedColumn());
+    reverseSourceMapping = packed;
+  }
 
-            mappings.add(builder.build());
-          }
-        }
+  /**
+   * Returns the generated line containing the given entry.
+   */
+  private int getGeneratedLine(int entry) {
+    int low = 0;
+    int high = lineTotal - 1;
+
+    // Finds the last line starting before or at the entry
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (lineOffsets[mid] <= entry) {
+        low = mid;
+      } else {
+        high = mid - 1;
       }
     }
+
+    return low;
   }
 
   /**
@@ -594,109 +647,6 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
     }
   }
 
-  /**
-   * Represents a mapping entry in the source map.
-   */
-  private interface Entry {
-    int getGeneratedColumn();
-    int getSourceFileId();
-    int getSourceLine();
-    int getSourceColumn();
-    int getNameId();
-  }
-
-  /**
-   * This class represents a portion of the generated file, that is not mapped
-   * to a section in the original source.
-   */
-  private static class UnmappedEntry implements Entry {
-    private final int column;
-
-    UnmappedEntry(int column) {
-      this.column = column;
-    }
-
-    @Override
-    public int getGeneratedColumn() {
-      return column;
-    }
-
-    @Override
-    public int getSourceFileId() {
-      return UNMAPPED;
-    }
-
-    @Override
-    public int getSourceLine() {
-      return UNMAPPED;
-    }
-
-    @Override
-    public int getSourceColumn() {
-      return UNMAPPED;
-    }
-
-    @Override
-    public int getNameId() {
-      return UNMAPPED;
-    }
-  }
-
-  /**
-   * This class represents a portion of the generated file, that is mapped
-   * to a section in the original source.
-   */
-  private static class UnnamedEntry extends UnmappedEntry {
-    private final int srcFile;
-    private final int srcLine;
-    private final int srcColumn;
-
-    UnnamedEntry(int column, int srcFile, int srcLine, int srcColumn) {
-      super(column);
-      this.srcFile = srcFile;
-      this.srcLine = srcLine;
-      this.srcColumn = srcColumn;
-    }
-
-    @Override
-    public int getSourceFileId() {
-      return srcFile;
-    }
-
-    @Override
-    public int getSourceLine() {
-      return srcLine;
-    }
-
-    @Override
-    public int getSourceColumn() {
-      return srcColumn;
-    }
-
-    @Override
-    public int getNameId() {
-      return UNMAPPED;
-    }
-  }
-
-  /**
-   * This class represents a portion of the generated file, that is mapped
-   * to a section in the original source, and is associated with a name.
-   */
-  private static class NamedEntry extends UnnamedEntry {
-    private final int name;
-
-    NamedEntry(int column, int srcFile, int srcLine, int srcColumn, int name) {
-      super(column, srcFile, srcLine, srcColumn);
-      this.name = name;
-    }
-
-    @Override
-    public int getNameId() {
-      return name;
-    }
-  }
-
   public static interface EntryVisitor {
     void visit(String sourceName,
                String symbolName,
@@ -712,37 +662,42 @@ public final class SourceMapConsumerV3 implements SourceMapConsumer,
     FilePosition sourceStartPosition = null;
     FilePosition startPosition = null;
 
-    final int lineCount = lines.size();
-    for (int i = 0; i < lineCount; i++) {
-      ArrayList<Entry> line = lines.get(i);
-      if (line != null) {
-        final int entryCount = line.size();
-        for (int j = 0; j < entryCount; j++) {
-          Entry entry = line.get(j);
-          if (pending) {
-            FilePosition endPosition = new FilePosition(
-                i, entry.getGeneratedColumn());
-            visitor.visit(
-                sourceName,
-                symbolName,
-                sourceStartPosition,
-                startPosition,
-                endPosition);
-            pending = false;
-          }
+    for (int i = 0; i < lineTotal; i++) {
+      final int lineEnd = lineOffsets[i + 1];
+      for (int entry = lineOffsets[i]; entry < lineEnd; entry++) {
+        if (pending) {
+          FilePosition endPosition = new FilePosition(
+              i, generatedColumns[entry]);
+          visitor.visit(
+              sourceName,
+              symbolName,
+              sourceStartPosition,
+              startPosition,
+              endPosition);
+          pending = false;
+        }
 
-          if (entry.getSourceFileId() != UNMAPPED) {
-            pending = true;
-            sourceName = sources[entry.getSourceFileId()];
-            symbolName = (entry.getNameId() != UNMAPPED)
-                ? names[entry.getNameId()] : null;
-            sourceStartPosition = new FilePosition(
-                entry.getSourceLine(), entry.getSourceColumn());
-            startPosition = new FilePosition(
-                i, entry.getGeneratedColumn());
-          }
+        if (sourceFileIds[entry] != UNMAPPED) {
+          pending = true;
+          sourceName = sources[sourceFileIds[entry]];
+          symbolName = (nameIds[entry] != UNMAPPED)
+              ? names[nameIds[entry]] : null;
+          sourceStartPosition = new FilePosition(
+              sourceLines[entry], sourceColumns[entry]);
+          startPosition = new FilePosition(
+              i, generatedColumns[entry]);
         }
       }
     }
+
+    // The last mapping is not followed by any entry, it covers the remaining content.
+    if (pending) {
+      visitor.visit(
+          sourceName,
+          symbolName,
+          sourceStartPosition,
+          startPosition,
+          new FilePosition(lineTotal, 0));
+    }
   }
 }
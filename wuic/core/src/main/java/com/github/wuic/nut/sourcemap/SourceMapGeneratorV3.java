@@ -22,6 +22,7 @@ import com.google.gson.Gson;
 import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -120,11 +121,18 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
    */
   private String sourceRootPath;
 
+  /**
+   * Index of the generated positions where each segment starts, built from
+   * the mappings without any serialization. Discarded when mappings change.
+   */
+  private PositionIndex positionIndex;
+
   /**
    * {@inheritDoc}
    */
   @Override
   public void reset() {
+    positionIndex = null;
     mappings.clear();
     lastMapping = null;
     sourceFileMap.clear();
@@ -167,6 +175,7 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
     }
 
     prefixPosition = new FilePosition(prefixLine, prefixIndex);
+    positionIndex = null;
   }
 
   /**
@@ -248,6 +257,7 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
 
     lastMapping = mapping;
     mappings.add(mapping);
+    positionIndex = null;
   }
 
   class ConsumerEntryVisitor implements EntryVisitor {
@@ -280,6 +290,57 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
     section.visitMappings(new ConsumerEntryVisitor());
   }
 
+  /**
+   * Works like {@link #mergeMapSection(int, int, String)}, except that the
+   * mappings are copied from the given generator instead of being parsed
+   * from their serialized form.
+   *
+   * @param line The line offset
+   * @param column The column offset
+   * @param section The generator containing the mappings to be appended
+   */
+  public void mergeMapSection(int line, int column, SourceMapGeneratorV3 section) {
+    setStartingPosition(line, column);
+    for (Mapping m : section.mappings) {
+      addMapping(m.sourceFile, m.originalName, m.originalPosition,
+          section.withPrefix(m.startPosition),
+          section.withPrefix(m.endPosition));
+    }
+  }
+
+  /**
+   * @return The given position adjusted for the wrapper prefix.
+   */
+  private FilePosition withPrefix(FilePosition p) {
+    if (prefixPosition.getLine() == 0 && prefixPosition.getColumn() == 0) {
+      return p;
+    }
+
+    // Only the first line needs the character position adjusted.
+    return new FilePosition(p.getLine() + prefixPosition.getLine(),
+        p.getLine() != 0 ? p.getColumn() : p.getColumn() + prefixPosition.getColumn());
+  }
+
+  /**
+   * Returns the name of the source mapped at the given position of the
+   * generated file, as a consumer of the serialized map would resolve it.
+   * The lookup relies on a sorted index updated from the mappings, so no
+   * serialization or parsing is performed.
+   *
+   * @param line The line in the generated file, indexed by 0
+   * @param column The column in the generated file, indexed by 0
+   * @return The source name, {@code null} if the position is not mapped
+   * @throws IOException if the index can't be built
+   */
+  public String getSourceAt(int line, int column) throws IOException {
+    if (positionIndex == null) {
+      positionIndex = new PositionIndex(prepMappings() + 1);
+      (new MappingTraversal()).traverse(positionIndex);
+    }
+
+    return positionIndex.find(line, column);
+  }
+
   /**
    * Works like {@link #mergeMapSection(int, int, String)}, except that
    * extensions from the @{code mapSectionContents} are merged to the top level
@@ -341,6 +402,21 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
    */
   @Override
   public void appendTo(Appendable out, String name) throws IOException {
+    appendTo(out, name, this.sourceRootPath);
+  }
+
+  /**
+   * Works like {@link #appendTo(Appendable, String)}, except that the given
+   * source root is written instead of the one set on this generator. This
+   * allows a generator to be written as a section of another source map.
+   *
+   * @param out The stream to which the map will be appended.
+   * @param name The name of the generated source file.
+   * @param sourceRootPath The source root to write, ignored if empty
+   * @throws IOException
+   */
+  public void appendTo(Appendable out, String name, String sourceRootPath)
+      throws IOException {
     int maxLine = prepMappings() + 1;
 
     // Add the header fields.
@@ -350,8 +426,8 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
     appendField(out, "lineCount", String.valueOf(maxLine));
 
     //optional source root
-    if (this.sourceRootPath != null && !this.sourceRootPath.isEmpty()) {
-      appendField(out, "sourceRoot", escapeString(this.sourceRootPath));
+    if (sourceRootPath != null && !sourceRootPath.isEmpty()) {
+      appendField(out, "sourceRoot", escapeString(sourceRootPath));
     }
 
     // Add the mappings themselves.
@@ -820,6 +896,88 @@ public final class SourceMapGeneratorV3 implements SourceMapGenerator {
     return originalNameIndex;
   }
 
+  /**
+   * Records the start of each segment written by the {@link LineMapper} in
+   * parallel primitive arrays sorted by generated position.
+   */
+  private class PositionIndex implements MappingVisitor {
+    private final int maxLine;
+    private final Map<String, Integer> sourceIds = new LinkedHashMap<String, Integer>();
+    private String[] sourceNames;
+    private int[] lines = new int[16];
+    private int[] columns = new int[16];
+    private int[] sources = new int[16];
+    private int size;
+
+    PositionIndex(int maxLine) {
+      this.maxLine = maxLine;
+    }
+
+    /**
+     * Indexes the segment as {@link LineMapper#visit} writes it.
+     */
+    @Override
+    public void visit(Mapping m, int line, int col, int nextLine, int nextCol) {
+      if ((line == nextLine && col == nextCol) || line >= maxLine) {
+        return;
+      }
+
+      if (size == lines.length) {
+        lines = Arrays.copyOf(lines, size * 2);
+        columns = Arrays.copyOf(columns, size * 2);
+        sources = Arrays.copyOf(sources, size * 2);
+      }
+
+      lines[size] = line;
+      columns[size] = col;
+      sources[size] = m == null ? UNMAPPED : sourceId(m.sourceFile);
+      size++;
+      sourceNames = null;
+    }
+
+    private int sourceId(String sourceName) {
+      Integer id = sourceIds.get(sourceName);
+      if (id == null) {
+        id = sourceIds.size();
+        sourceIds.put(sourceName, id);
+      }
+      return id;
+    }
+
+    /**
+     * Finds the last segment starting before or at the given position.
+     */
+    String find(int line, int column) {
+      if (line < 0 || line >= maxLine) {
+        return null;
+      }
+
+      int low = 0;
+      int high = size - 1;
+      int found = -1;
+
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        if (lines[mid] < line || (lines[mid] == line && columns[mid] <= column)) {
+          found = mid;
+          low = mid + 1;
+        } else {
+          high = mid - 1;
+        }
+      }
+
+      if (found == -1 || sources[found] == UNMAPPED) {
+        return null;
+      }
+
+      if (sourceNames == null) {
+        sourceNames = sourceIds.keySet().toArray(new String[sourceIds.size()]);
+      }
+
+      return sourceNames[sources[found]];
+    }
+  }
+
   private class LineMapper implements MappingVisitor {
     // The destination.
     private final Appendable out;
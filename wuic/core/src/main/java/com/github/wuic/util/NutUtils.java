@@ -34,10 +34,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.CharArrayWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.nio.ByteBuffer;
-import java.security.MessageDigest;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -216,30 +213,37 @@ public final class NutUtils {
      * @return the computed version number
      */
     public static Long getVersionNumber(final List<? extends Nut> nuts) {
-        if (nuts.size() == 1) {
+        final int size = nuts.size();
+
+        if (size == 0) {
+            return 0L;
+        } else if (size == 1) {
             return getVersionNumber(nuts.get(0));
         }
 
-        final List<Long> versionNumbers = new ArrayList<Long>();
+        final long[] versionNumbers = new long[size];
+        boolean same = true;
 
         // Collect all version number
-        for (final Nut o : nuts) {
-            versionNumbers.add(getVersionNumber(o));
+        for (int i = 0; i < size; i++) {
+            versionNumbers[i] = getVersionNumber(nuts.get(i));
+            same &= versionNumbers[i] == versionNumbers[0];
         }
 
         // When a fixed version number is set, all version number should be the same
         // In that case, we want to apply the fixed version to the composition instead of digesting a new one
-        if (new HashSet<Long>(versionNumbers).size() == 1) {
-            return versionNumbers.get(0);
+        if (same) {
+            return versionNumbers[0];
         }
 
-        final MessageDigest md = IOUtils.newMessageDigest();
+        final XxHash64 hash = new XxHash64();
 
-        for (final Long v : versionNumbers) {
-            md.update(ByteBuffer.allocate(NumberUtils.HEIGHT).putLong(v).array());
+        for (final long v : versionNumbers) {
+            hash.updateLong(v);
         }
 
-        return ByteBuffer.wrap(md.digest()).getLong();
+        // Version numbers are positive
+        return hash.getValue() & Long.MAX_VALUE;
     }
 
     /**
@@ -285,7 +289,7 @@ public final class NutUtils {
      * @throws IOException if transformation fails
      */
     public static String readTransform(final ConvertibleNut n) throws IOException {
-        return readTransform(new TimerTreeFactory(), n);
+        return readTransform(TimerTreeFactory.unsampled(), n);
     }
 
     /**
@@ -584,7 +584,7 @@ public final class Pipe<T extends ConvertibleNut> {
      * @param is the {@link InputStream}
      */
     public Pipe(final T c, final Input is) {
-        this(c, is, new TimerTreeFactory());
+        this(c, is, TimerTreeFactory.unsampled());
     }
 
     /**
@@ -663,7 +663,7 @@ public final class Pipe<T extends ConvertibleNut> {
         if (!ignoreCompositeStream && (inputStream instanceof CompositeNut.CompositeInput)) {
             final Pipe<ConvertibleNut>  p = transform(convertible, CompositeNut.CompositeInput.class.cast(inputStream));
             p.execute(true, onReady);
-            CollectionUtils.merge(p.statistics, statistics);
+            CollectionUtils.merge(p.drainStatistics(), statistics);
         } else {
             boolean written = false;
             Input is = inputStream;
@@ -703,11 +703,12 @@ public final class Pipe<T extends ConvertibleNut> {
                     }
                 }
 
-                final long elapsed = timer.end();
-                Logging.TIMER.log("Transformer {} executed in {}ms", t.getClass().getName(), elapsed);
-
-                // Report the stat
-                report(written, is, elapsed, t);
+                // Report the stat only if the execution is instrumented
+                if (timer.isEnabled()) {
+                    final long elapsed = timer.end();
+                    Logging.TIMER.log("Transformer {} executed in {}ms", t.getClass().getName(), elapsed);
+                    report(written, is, elapsed, t);
+                }
             }
 
             final Execution e;
@@ -835,6 +836,20 @@ public final class Pipe<T extends ConvertibleNut> {
         return statistics;
     }
 
+    /**
+     * <p>
+     * Returns the generated transformation statistics and forgets them: the pipe starts a new empty map, so the
+     * statistics are not retained once they have been reported.
+     * </p>
+     *
+     * @return the stats
+     */
+    public Map<String, List<TransformationStat>> drainStatistics() {
+        final Map<String, List<TransformationStat>> retval = statistics;
+        statistics = new TreeMap<String, List<TransformationStat>>();
+        return retval;
+    }
+
     /**
      * <p>
      * Transforms each nut with transformers producing content which could be aggregated.
@@ -892,7 +907,7 @@ public final class Pipe<T extends ConvertibleNut> {
                 }
 
                 Pipe.executeAndWriteTo(pipe, perNutTransformation.getConvertibleNut().getReadyCallbacks(), bos);
-                CollectionUtils.merge(pipe.statistics, statistics);
+                CollectionUtils.merge(pipe.drainStatistics(), statistics);
                 is.add(bos.input(perNutTransformation.getConvertibleNut().getNutType().getCharset()));
             } else {
                 is.add(perNutTransformation.getConvertibleNut().openStream());
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2016   The authors of WUIC
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.github.wuic.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * <p>
+ * Builds a new text from a source by collecting edits, each one replacing a range of the source with a given string.
+ * Edits are expressed with offsets in the source and can be added in any order. The result is emitted in one
+ * sequential pass, which avoids shifting the rest of a buffer each time an edit is applied.
+ * </p>
+ *
+ * <p>
+ * Edits are applied in the order of their offset. Insertions (empty range) are applied before a replacement starting
+ * at the same offset and edits with the same range keep the order they have been added. An edit overlapping a range
+ * already replaced is ignored.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @since 0.5.3
+ */
+public final class SpliceBuilder {
+
+    /**
+     * Initial capacity of edit arrays.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The source.
+     */
+    private final CharSequence source;
+
+    /**
+     * Start offset of each edit.
+     */
+    private int[] starts;
+
+    /**
+     * End offset of each edit.
+     */
+    private int[] ends;
+
+    /**
+     * Replacement of each edit.
+     */
+    private String[] replacements;
+
+    /**
+     * Number of edits.
+     */
+    private int count;
+
+    /**
+     * Number of characters added by the edits.
+     */
+    private int delta;
+
+    /**
+     * If edits have been added in order.
+     */
+    private boolean sorted;
+
+    /**
+     * <p>
+     * Builds a new instance.
+     * </p>
+     *
+     * @param source the source to edit
+     */
+    public SpliceBuilder(final CharSequence source) {
+        this.source = source;
+        this.starts = new int[INITIAL_CAPACITY];
+        this.ends = new int[INITIAL_CAPACITY];
+        this.replacements = new String[INITIAL_CAPACITY];
+        this.sorted = true;
+    }
+
+    /**
+     * <p>
+     * Replaces the characters of the source between the given offsets.
+     * </p>
+     *
+     * @param start the start offset, inclusive
+     * @param end the end offset, exclusive
+     * @param replacement the replacement
+     * @return this instance
+     */
+    public SpliceBuilder replace(final int start, final int end, final String replacement) {
+        if (start < 0 || end < start || end > source.length()) {
+            throw new IndexOutOfBoundsException(String.format("Range [%d, %d[ is out of source bounds [0, %d[",
+                    start, end, source.length()));
+        }
+
+        if (count == starts.length) {
+            final int capacity = count * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            replacements = Arrays.copyOf(replacements, capacity);
+        }
+
+        if (count > 0 && compare(start, end, starts[count - 1], ends[count - 1]) < 0) {
+            sorted = false;
+        }
+
+        starts[count] = start;
+        ends[count] = end;
+        replacements[count] = replacement;
+        delta += replacement.length() - (end - start);
+        count++;
+
+        return this;
+    }
+
+    /**
+     * <p>
+     * Inserts the given string at the given offset of the source.
+     * </p>
+     *
+     * @param offset the offset
+     * @param str the string to insert
+     * @return this instance
+     */
+    public SpliceBuilder insert(final int offset, final String str) {
+        return replace(offset, offset, str);
+    }
+
+    /**
+     * <p>
+     * Indicates if some edits have been added.
+     * </p>
+     *
+     * @return {@code true} if no edit has been added, {@code false} otherwise
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * <p>
+     * Writes the source with all edits applied to the given {@link Appendable}.
+     * </p>
+     *
+     * @param appendable the appendable
+     * @throws IOException if appendable fails
+     */
+    public void writeTo(final Appendable appendable) throws IOException {
+        final Integer[] order = order();
+        int cursor = 0;
+
+        for (final Integer i : order) {
+            // Overlaps an edit already applied
+            if (starts[i] < cursor) {
+                continue;
+            }
+
+            appendable.append(source, cursor, starts[i]);
+            appendable.append(replacements[i]);
+            cursor = ends[i];
+        }
+
+        appendable.append(source, cursor, source.length());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        final StringBuilder retval = new StringBuilder(Math.max(0, source.length() + delta));
+
+        try {
+            writeTo(retval);
+        } catch (IOException ioe) {
+            // StringBuilder does not throw any I/O error
+            throw new IllegalStateException(ioe);
+        }
+
+        return retval.toString();
+    }
+
+    /**
+     * <p>
+     * Gets the index of the edits in the order they must be applied.
+     * </p>
+     *
+     * @return the ordered indexes
+     */
+    private Integer[] order() {
+        final Integer[] retval = new Integer[count];
+
+        for (int i = 0; i < count; i++) {
+            retval[i] = i;
+        }
+
+        // Arrays.sort is stable for objects: edits with the same range keep their order
+        if (!sorted) {
+            Arrays.sort(retval, new Comparator<Integer>() {
+                @Override
+                public int compare(final Integer o1, final Integer o2) {
+                    return SpliceBuilder.compare(starts[o1], ends[o1], starts[o2], ends[o2]);
+                }
+            });
+        }
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Compares two edits regarding their range.
+     * </p>
+     *
+     * @param start1 the first edit start
+     * @param end1 the first edit end
+     * @param start2 the second edit start
+     * @param end2 the second edit end
+     * @return a negative integer if first edit is applied first, a positive integer if second edit is applied first, 0 otherwise
+     */
+    private static int compare(final int start1, final int end1, final int start2, final int end2) {
+        if (start1 != start2) {
+            return start1 < start2 ? -1 : 1;
+        }
+
+        final boolean insert1 = start1 == end1;
+        final boolean insert2 = start2 == end2;
+        return insert1 == insert2 ? 0 : (insert1 ? -1 : 1);
+    }
+}
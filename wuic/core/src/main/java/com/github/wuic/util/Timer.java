@@ -24,7 +24,13 @@ package com.github.wuic.util;
 
 /**
  * <p>
- * A simple class helping to measure the elapsed time between the last call of {@link #start()} and {@link #end(String)}.
+ * A simple class helping to measure the elapsed time between the last call of {@link #start()} and {@link #end()}.
+ * The time is measured with {@link System#nanoTime()} and returned in milliseconds.
+ * </p>
+ *
+ * <p>
+ * When instrumentation is not enabled, the shared {@link #DISABLED} instance is used: it measures nothing and callers
+ * can check {@link #isEnabled()} to skip reporting or logging.
  * </p>
  *
  * @author Guillaume DROUET
@@ -32,6 +38,40 @@ package com.github.wuic.util;
  */
 public class Timer {
 
+    /**
+     * A timer that measures nothing.
+     */
+    public static final Timer DISABLED = new Timer() {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void start() {
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long end() {
+            return 0L;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    /**
+     * Nanoseconds in one millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
     /**
      * When the timer has started.
      */
@@ -43,7 +83,7 @@ public class Timer {
      * </p>
      */
     public void start() {
-        start = System.currentTimeMillis();
+        start = System.nanoTime();
     }
 
     /**
@@ -54,6 +94,17 @@ public class Timer {
      * @return the elapsed time in ms
      */
     public long end() {
-        return System.currentTimeMillis() - start;
+        return (System.nanoTime() - start) / NANOS_PER_MILLI;
+    }
+
+    /**
+     * <p>
+     * Indicates if this timer really measures the time.
+     * </p>
+     *
+     * @return {@code true} if the elapsed time is measured, {@code false} otherwise
+     */
+    public boolean isEnabled() {
+        return true;
     }
 }
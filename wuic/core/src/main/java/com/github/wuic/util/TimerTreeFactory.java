@@ -22,34 +22,253 @@
 
 package com.github.wuic.util;
 
+import com.github.wuic.exception.WuicException;
+
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <p>
  * This factory produces special {@link Timer} allowing to deduct from the elapsed time the time spent by sub timers.
  * </p>
  *
+ * <p>
+ * The instrumentation {@link Level} is defined by a {@link Sampler}, usually owned by a facade so each one has its own
+ * configuration. The sampling decision is taken once per request with {@link Sampler#newInstance()} and the returned
+ * factory is passed down to all the operations performed for the request. Operations that are not part of a request
+ * use {@link #unsampled()}, which is never enabled. When instrumentation is not enabled, the shared
+ * {@link Timer#DISABLED} timer is returned and nothing is allocated.
+ * </p>
+ *
  * @author Guillaume DROUET
  * @since 0.5.3
  */
 public class TimerTreeFactory {
 
+    /**
+     * <p>
+     * Enumerates the instrumentation levels.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    public enum Level {
+
+        /**
+         * No request is timed.
+         */
+        OFF,
+
+        /**
+         * One request out of the sampling rate is timed. The statistics only count the timed requests, so the counts
+         * and the throughput are divided by the sampling rate while durations and percentiles remain representative.
+         */
+        SAMPLED,
+
+        /**
+         * All requests are timed.
+         */
+        FULL
+    }
+
+    /**
+     * <p>
+     * Decides which requests are timed according to an instrumentation level. The instance is thread safe and keeps
+     * its own count of sampling decisions.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    public static final class Sampler {
+
+        /**
+         * Counts the sampling decisions.
+         */
+        private final AtomicLong samples;
+
+        /**
+         * The level.
+         */
+        private final Level level;
+
+        /**
+         * The sampling rate when level is {@link Level#SAMPLED}.
+         */
+        private final int samplingRate;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param l the level
+         * @param rate the sampling rate used when level is {@link Level#SAMPLED}, one request out of this number is timed
+         */
+        public Sampler(final Level l, final int rate) {
+            if (l == null) {
+                WuicException.throwBadArgumentException(new IllegalArgumentException("Instrumentation level can't be null."));
+            } else if (rate < 1) {
+                WuicException.throwBadArgumentException(new IllegalArgumentException(
+                        "Instrumentation sampling rate must be a positive number, got " + rate));
+            }
+
+            this.samples = new AtomicLong();
+            this.level = l;
+            this.samplingRate = rate;
+        }
+
+        /**
+         * <p>
+         * Gets the instrumentation level.
+         * </p>
+         *
+         * @return the level
+         */
+        public Level getLevel() {
+            return level;
+        }
+
+        /**
+         * <p>
+         * Gets the sampling rate.
+         * </p>
+         *
+         * @return the sampling rate
+         */
+        public int getSamplingRate() {
+            return samplingRate;
+        }
+
+        /**
+         * <p>
+         * Gets a factory for a new request. The sampling decision is taken here, so this method must be called only
+         * once per request and the returned factory must be used for all the operations of the request. The factory
+         * is enabled if the request is sampled, otherwise a shared disabled factory is returned.
+         * </p>
+         *
+         * @return the factory
+         */
+        public TimerTreeFactory newInstance() {
+            final boolean sampled;
+
+            switch (level) {
+                case FULL:
+                    sampled = true;
+                    break;
+                case SAMPLED:
+                    sampled = samples.incrementAndGet() % samplingRate == 0;
+                    break;
+                default:
+                    sampled = false;
+            }
+
+            return sampled ? new TimerTreeFactory() : DISABLED;
+        }
+    }
+
+    /**
+     * A factory producing only disabled timers.
+     */
+    private static final TimerTreeFactory DISABLED = new TimerTreeFactory(false);
+
+    /**
+     * If this factory produces enabled timers.
+     */
+    private final boolean enabled;
+
     /**
      * The current timer tree.
      */
     private TimerTree timerTree;
 
+    /**
+     * <p>
+     * Builds a new instance producing enabled timers.
+     * </p>
+     */
+    public TimerTreeFactory() {
+        this(true);
+    }
+
+    /**
+     * <p>
+     * Builds a new instance.
+     * </p>
+     *
+     * @param enabled if timers are enabled
+     */
+    private TimerTreeFactory(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * <p>
+     * Gets a factory for an operation that is not part of a request. Such an operation is not bound to the
+     * {@link Sampler} of a facade, so it is never timed and the shared disabled factory is returned.
+     * </p>
+     *
+     * @return the factory
+     */
+    public static TimerTreeFactory unsampled() {
+        return DISABLED;
+    }
+
+    /**
+     * <p>
+     * Gets a standalone timer, not attached to the timer tree, for an operation of the request this factory has been
+     * created for. The timer is enabled only if this factory is enabled.
+     * </p>
+     *
+     * @return the timer
+     */
+    public Timer createTimer() {
+        return enabled ? new Timer() : Timer.DISABLED;
+    }
+
+    /**
+     * <p>
+     * Creates a factory with the same state to build timers in another thread. A timer tree is not thread safe, so a
+     * job running concurrently must use its own tree. The time spent in the forked tree is not deducted from this tree.
+     * </p>
+     *
+     * @return the new factory
+     */
+    public TimerTreeFactory fork() {
+        return enabled ? new TimerTreeFactory() : DISABLED;
+    }
+
+    /**
+     * <p>
+     * Indicates if this factory produces enabled timers.
+     * </p>
+     *
+     * @return {@code true} if enabled, {@code false} otherwise
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
     /**
      * <p>
      * Gets a new timer tree. If a timer tree already exists, the new timer tree will be a child of it and is referenced
-     * until a new child is created or the {@link TimerTree#end()} is called.
+     * until a new child is created or the {@link TimerTree#end()} is called. If this factory is not enabled,
+     * {@link Timer#DISABLED} is returned.
+     * </p>
+     *
+     * <p>
+     * Since 0.5.3, this method returns a {@link Timer} instead of a {@code TimerTree} in order to return the disabled
+     * timer. Callers that declared a {@code TimerTree} variable must now use the {@link Timer} type.
      * </p>
      *
      * @return the {@code TimerTree}
      */
-    public TimerTree getTimerTree() {
-        if (timerTree == null) {
+    public Timer getTimerTree() {
+        if (!enabled) {
+            return Timer.DISABLED;
+        } else if (timerTree == null) {
             timerTree = new TimerTree(null);
         } else {
             timerTree = timerTree.newChild();
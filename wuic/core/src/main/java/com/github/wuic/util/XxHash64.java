@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2016   The authors of WUIC
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.github.wuic.util;
+
+import java.util.zip.Checksum;
+
+/**
+ * <p>
+ * A streaming implementation of the 64 bits xxHash algorithm. This non-cryptographic hash is much faster than a
+ * message digest and produces 64 bits values, which makes collisions unlikely when version numbers are computed for a
+ * large number of nuts. Unlike {@link java.util.zip.CRC32}, the full 64 bits returned by {@link #getValue()} are
+ * significant.
+ * </p>
+ *
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @since 0.5.3
+ */
+public final class XxHash64 implements Checksum {
+
+    /**
+     * First prime.
+     */
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+
+    /**
+     * Second prime.
+     */
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+
+    /**
+     * Third prime.
+     */
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+
+    /**
+     * Fourth prime.
+     */
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+
+    /**
+     * Fifth prime.
+     */
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    /**
+     * Size of a stripe consumed by the accumulators.
+     */
+    private static final int STRIPE = 32;
+
+    /**
+     * The seed.
+     */
+    private final long seed;
+
+    /**
+     * Pending bytes not consumed as a stripe yet.
+     */
+    private final byte[] buffer;
+
+    /**
+     * Number of pending bytes.
+     */
+    private int bufferSize;
+
+    /**
+     * Total number of bytes.
+     */
+    private long length;
+
+    /**
+     * First accumulator.
+     */
+    private long v1;
+
+    /**
+     * Second accumulator.
+     */
+    private long v2;
+
+    /**
+     * Third accumulator.
+     */
+    private long v3;
+
+    /**
+     * Fourth accumulator.
+     */
+    private long v4;
+
+    /**
+     * <p>
+     * Builds a new instance with a zero seed.
+     * </p>
+     */
+    public XxHash64() {
+        this(0L);
+    }
+
+    /**
+     * <p>
+     * Builds a new instance.
+     * </p>
+     *
+     * @param seed the seed
+     */
+    public XxHash64(final long seed) {
+        this.seed = seed;
+        this.buffer = new byte[STRIPE];
+        reset();
+    }
+
+    /**
+     * <p>
+     * Hashes the given bytes.
+     * </p>
+     *
+     * @param bytes the bytes
+     * @return the hash
+     */
+    public static long hash(final byte[] bytes) {
+        final XxHash64 retval = new XxHash64();
+        retval.update(bytes, 0, bytes.length);
+        return retval.getValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void update(final int b) {
+        buffer[bufferSize++] = (byte) b;
+        length++;
+
+        if (bufferSize == STRIPE) {
+            consumeStripe(buffer, 0);
+            bufferSize = 0;
+        }
+    }
+
+    /**
+     * <p>
+     * Updates the hash with the eight bytes of the given value (little-endian order).
+     * </p>
+     *
+     * @param value the value
+     */
+    public void updateLong(final long value) {
+        for (int i = 0; i < NumberUtils.HEIGHT; i++) {
+            update((int) (value >>> (i * NumberUtils.HEIGHT)));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void update(final byte[] b, final int off, final int len) {
+        int offset = off;
+        final int end = off + len;
+        length += len;
+
+        // Complete the pending stripe
+        if (bufferSize > 0) {
+            final int copy = Math.min(STRIPE - bufferSize, len);
+            System.arraycopy(b, offset, buffer, bufferSize, copy);
+            bufferSize += copy;
+            offset += copy;
+
+            if (bufferSize < STRIPE) {
+                return;
+            }
+
+            consumeStripe(buffer, 0);
+            bufferSize = 0;
+        }
+
+        // Consume stripes directly from the given array
+        for (; offset <= end - STRIPE; offset += STRIPE) {
+            consumeStripe(b, offset);
+        }
+
+        // Keep remaining bytes
+        bufferSize = end - offset;
+        System.arraycopy(b, offset, buffer, 0, bufferSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getValue() {
+        long h;
+
+        if (length >= STRIPE) {
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = seed + PRIME5;
+        }
+
+        h += length;
+        int offset = 0;
+
+        for (; offset <= bufferSize - NumberUtils.HEIGHT; offset += NumberUtils.HEIGHT) {
+            h ^= round(0L, readLong(buffer, offset));
+            h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+        }
+
+        if (offset <= bufferSize - NumberUtils.FOUR) {
+            h ^= (readInt(buffer, offset) & 0xFFFFFFFFL) * PRIME1;
+            h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+            offset += NumberUtils.FOUR;
+        }
+
+        for (; offset < bufferSize; offset++) {
+            h ^= (buffer[offset] & 0xFFL) * PRIME5;
+            h = Long.rotateLeft(h, 11) * PRIME1;
+        }
+
+        // Avalanche
+        h ^= h >>> 33;
+        h *= PRIME2;
+        h ^= h >>> 29;
+        h *= PRIME3;
+        h ^= h >>> 32;
+
+        return h;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        v1 = seed + PRIME1 + PRIME2;
+        v2 = seed + PRIME2;
+        v3 = seed;
+        v4 = seed - PRIME1;
+        length = 0;
+        bufferSize = 0;
+    }
+
+    /**
+     * <p>
+     * Consumes a stripe of {@link #STRIPE} bytes starting at the given offset.
+     * </p>
+     *
+     * @param b the bytes
+     * @param offset the offset
+     */
+    private void consumeStripe(final byte[] b, final int offset) {
+        v1 = round(v1, readLong(b, offset));
+        v2 = round(v2, readLong(b, offset + NumberUtils.HEIGHT));
+        v3 = round(v3, readLong(b, offset + NumberUtils.HEIGHT * 2));
+        v4 = round(v4, readLong(b, offset + NumberUtils.HEIGHT * 3));
+    }
+
+    /**
+     * <p>
+     * Mixes an input in an accumulator.
+     * </p>
+     *
+     * @param acc the accumulator
+     * @param input the input
+     * @return the new accumulator value
+     */
+    private static long round(final long acc, final long input) {
+        return Long.rotateLeft(acc + input * PRIME2, 31) * PRIME1;
+    }
+
+    /**
+     * <p>
+     * Merges an accumulator in the hash.
+     * </p>
+     *
+     * @param hash the hash
+     * @param acc the accumulator
+     * @return the new hash value
+     */
+    private static long mergeRound(final long hash, final long acc) {
+        return (hash ^ round(0L, acc)) * PRIME1 + PRIME4;
+    }
+
+    /**
+     * <p>
+     * Reads a little-endian long.
+     * </p>
+     *
+     * @param b the bytes
+     * @param offset the offset
+     * @return the long
+     */
+    private static long readLong(final byte[] b, final int offset) {
+        return (readInt(b, offset) & 0xFFFFFFFFL) | ((long) readInt(b, offset + NumberUtils.FOUR) << 32);
+    }
+
+    /**
+     * <p>
+     * Reads a little-endian int.
+     * </p>
+     *
+     * @param b the bytes
+     * @param offset the offset
+     * @return the int
+     */
+    private static int readInt(final byte[] b, final int offset) {
+        return (b[offset] & 0xFF)
+                | ((b[offset + 1] & 0xFF) << 8)
+                | ((b[offset + 2] & 0xFF) << 16)
+                | ((b[offset + 3] & 0xFF) << 24);
+    }
+}
@@ -29,15 +29,18 @@ import com.github.wuic.WuicFacade;
 import com.github.wuic.WuicFacadeBuilder;
 import com.github.wuic.nut.ConvertibleNut;
 import com.github.wuic.nut.Nut;
+import com.github.wuic.nut.PrecompressedVariant;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Properties;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -310,4 +313,130 @@ public class CoreTest extends WuicTest {
         // Assert resources are closed
         TestHelper.delete(out);
     }
+
+    /**
+     * <p>
+     * Task test with workflows processed concurrently.
+     * </p>
+     */
+    @Test
+    public void taskParallelTest() throws Exception {
+        final WuicTask wuicTask = new WuicTask();
+        wuicTask.setBaseDir(getClass().getResource("/skipped").getFile().toString());
+        wuicTask.setPath("deep/*.js");
+        wuicTask.setParallel(true);
+        final File out = new File(System.getProperty("java.io.tmpdir"), "wuic-static-test");
+        wuicTask.setOutput(new File(out, "generated").toString());
+        wuicTask.setRelocateTransformedXmlTo(out.toString());
+
+        // Invoke
+        wuicTask.execute();
+
+        final File parent = new File(System.getProperty("java.io.tmpdir"), "wuic-static-test/generated/");
+        final File file = new File(parent, "wuic-task.jar");
+        Assert.assertTrue(file.exists());
+        final ZipInputStream is = new ZipInputStream(new FileInputStream(file));
+        int jsCount = 0;
+
+        for (ZipEntry entry = is.getNextEntry(); entry != null; entry = is.getNextEntry()) {
+            if (entry.getName().endsWith("aggregate.js")) {
+               jsCount++;
+            }
+
+            is.closeEntry();
+        }
+
+        Assert.assertEquals(3, jsCount);
+        is.close();
+
+        // Assert resources are closed
+        TestHelper.delete(out);
+    }
+
+    /**
+     * <p>
+     * Task test writing compressed variants.
+     * </p>
+     */
+    @Test
+    public void taskPrecompressTest() throws Exception {
+        final WuicTask wuicTask = new WuicTask();
+        wuicTask.setBaseDir(getClass().getResource("/skipped").getFile().toString());
+        wuicTask.setPath("deep/*.js");
+        wuicTask.setPrecompress(true);
+        final File out = new File(System.getProperty("java.io.tmpdir"), "wuic-static-test");
+        wuicTask.setOutput(new File(out, "generated").toString());
+        wuicTask.setRelocateTransformedXmlTo(out.toString());
+
+        // Invoke
+        wuicTask.execute();
+
+        final File parent = new File(System.getProperty("java.io.tmpdir"), "wuic-static-test/generated/");
+        final File file = new File(parent, "wuic-task.jar");
+        Assert.assertTrue(file.exists());
+        final ZipInputStream is = new ZipInputStream(new FileInputStream(file));
+        final List<String> gzEntries = new ArrayList<String>();
+        final Properties variants = new Properties();
+
+        for (ZipEntry entry = is.getNextEntry(); entry != null; entry = is.getNextEntry()) {
+            if (entry.getName().endsWith(".gz")) {
+                gzEntries.add(entry.getName());
+            } else if (entry.getName().endsWith(".precompressed")) {
+                variants.load(is);
+            }
+
+            is.closeEntry();
+        }
+
+        is.close();
+
+        // Each variant is described in the metadata, images are not compressed
+        Assert.assertFalse(gzEntries.isEmpty());
+        Assert.assertEquals(gzEntries.size(), variants.size());
+
+        for (final String path : variants.stringPropertyNames()) {
+            final PrecompressedVariant variant = PrecompressedVariant.parse(variants.getProperty(path));
+            Assert.assertNotNull(variant);
+            Assert.assertEquals("gzip", variant.getEncoding());
+            Assert.assertTrue(variant.getResource().endsWith(path + ".gz"));
+            Assert.assertTrue(gzEntries.contains("META-INF/resources/" + variant.getResource()));
+            Assert.assertFalse(path.endsWith(".png") || path.endsWith(".jpg"));
+        }
+
+        // Assert resources are closed
+        TestHelper.delete(out);
+    }
+
+    /**
+     * <p>
+     * Task test skipping workflows that did not change since previous build.
+     * </p>
+     */
+    @Test
+    public void taskIncrementalTest() throws Exception {
+        final File out = new File(System.getProperty("java.io.tmpdir"), "wuic-static-test");
+        final File parent = new File(out, "generated");
+        final File workflowDir = new File(parent, "wuic-task");
+
+        for (final boolean incremental : new boolean[] { true, true, false }) {
+            final WuicTask wuicTask = new WuicTask();
+            wuicTask.setBaseDir(getClass().getResource("/skipped").getFile().toString());
+            wuicTask.setPath("deep/*.js");
+            wuicTask.setOutput(parent.toString());
+            wuicTask.setPackageAsJar(false);
+            wuicTask.setIncremental(incremental);
+            wuicTask.execute();
+
+            if (workflowDir.exists()) {
+                Assert.assertTrue(new File(parent, WuicTask.BUILD_MANIFEST_FILE).isFile() || !incremental);
+                TestHelper.delete(workflowDir);
+            } else {
+                // Only the second build is skipped
+                Assert.assertTrue(incremental);
+            }
+        }
+
+        // Assert resources are closed
+        TestHelper.delete(out);
+    }
 }
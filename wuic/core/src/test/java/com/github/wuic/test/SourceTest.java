@@ -35,6 +35,7 @@ import com.github.wuic.nut.SourceImpl;
 import com.github.wuic.nut.SourceMapNut;
 import com.github.wuic.nut.SourceMapNutImpl;
 import com.github.wuic.nut.dao.NutDao;
+import com.github.wuic.nut.sourcemap.SourceMapConsumerV3;
 import com.github.wuic.util.FutureLong;
 import com.github.wuic.util.IOUtils;
 import com.github.wuic.util.InMemoryInput;
@@ -95,6 +96,47 @@ public class SourceTest {
      */
     @Test
     public void customSourceMapNutTest() throws Exception {
+        assertCustomSourceMapNut(false);
+    }
+
+    /**
+     * Checks that aggregating nut without any existing source map will generate a correct index map.
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void indexSourceMapNutTest() throws Exception {
+        final String sourceMap = assertCustomSourceMapNut(true);
+        Assert.assertTrue(sourceMap, sourceMap.contains("\"sections\""));
+
+        // Index map must be readable by a consumer
+        final SourceMapConsumerV3 consumer = new SourceMapConsumerV3();
+        consumer.parse(sourceMap);
+        Assert.assertEquals("g", consumer.getMappingForLine(4, 3).getOriginalFile());
+    }
+
+    /**
+     * Checks that reverse mapping resolves all the ids of a source listed several times.
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void duplicateSourceReverseMappingTest() throws Exception {
+        final SourceMapConsumerV3 consumer = new SourceMapConsumerV3();
+        consumer.parse("{\"version\":3,\"file\":\"out.js\",\"sources\":[\"a.js\",\"a.js\"],\"names\":[],\"mappings\":\"AAAA;ACAA\"}");
+        Assert.assertEquals(2, consumer.getReverseMapping("a.js", 0, 0).size());
+    }
+
+    /**
+     * <p>
+     * Builds a source map for an aggregated content and checks the nut resolved at each position.
+     * </p>
+     *
+     * @param indexMap if an index map should be built
+     * @return the serialized source map
+     * @throws Exception if test fails
+     */
+    private String assertCustomSourceMapNut(final boolean indexMap) throws Exception {
         final String aggregated =
                 "aaaaaaffffff\n" +
                 "ffffffffffff\n" +
@@ -149,7 +191,7 @@ public class SourceTest {
         Mockito.when(f.toString()).thenReturn("f");
         Mockito.when(g.toString()).thenReturn("g");
 
-        final SourceMapNut sourceMapNut = new SourceMapNutImpl(convertibleNut, new NutTypeFactory(Charset.defaultCharset().displayName()));
+        final SourceMapNut sourceMapNut = new SourceMapNutImpl(convertibleNut, new NutTypeFactory(Charset.defaultCharset().displayName()), indexMap);
 
         sourceMapNut.addSource(startLineAl1, startColAl1, endLineAl1, endColAl1, a);
         sourceMapNut.addSource(startLineFl13, startColFl13, endLineFl13, endColFl13, f);
@@ -177,6 +219,8 @@ public class SourceTest {
 
             lines++;
         }
+
+        return sourceMapNut.toString();
     }
 
     /**
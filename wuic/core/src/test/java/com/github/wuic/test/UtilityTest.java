@@ -31,6 +31,12 @@ import com.github.wuic.ProcessContext;
 import com.github.wuic.config.ServiceLoaderAnnotationScanner;
 import com.github.wuic.engine.EngineService;
 import com.github.wuic.engine.EngineType;
+import com.github.wuic.mbean.FacadeStats;
+import com.github.wuic.mbean.HeapResolution;
+import com.github.wuic.mbean.LatencyStat;
+import com.github.wuic.mbean.TransformationStat;
+import com.github.wuic.mbean.TransformerStat;
+import com.github.wuic.mbean.WorkflowExecution;
 import com.github.wuic.nut.ConvertibleNut;
 import com.github.wuic.nut.CompositeNut;
 import com.github.wuic.path.FilePath;
@@ -48,6 +54,7 @@ import com.github.wuic.util.NutUtils;
 import com.github.wuic.util.Output;
 import com.github.wuic.util.Pipe;
 import com.github.wuic.util.SequenceReader;
+import com.github.wuic.util.SpliceBuilder;
 import com.github.wuic.util.StringUtils;
 import com.github.wuic.path.DirectoryPath;
 import com.github.wuic.util.TemporaryFileManager;
@@ -55,6 +62,7 @@ import com.github.wuic.util.Timer;
 import com.github.wuic.util.TimerTreeFactory;
 import com.github.wuic.util.UrlMatcher;
 import com.github.wuic.util.UrlUtils;
+import com.github.wuic.util.XxHash64;
 import org.junit.Assert;
 import org.junit.ClassRule;
 import org.junit.Rule;
@@ -65,6 +73,9 @@ import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.mockito.Mockito;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -76,6 +87,7 @@ import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.lang.annotation.Annotation;
+import java.lang.management.ManagementFactory;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -85,6 +97,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.Arrays;
+import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
@@ -1181,6 +1194,57 @@ public class UtilityTest extends WuicTest {
         Assert.assertArrayEquals(array, new char[]{' ', ' ', ' ', ' '});
     }
 
+    /**
+     * <p>
+     * Test {@link SpliceBuilder}.
+     * </p>
+     */
+    @Test
+    public void spliceBuilderTest() {
+        final String source = "<head><script src='a.js'></script><script src='b.js'></script></head>";
+        final SpliceBuilder spliceBuilder = new SpliceBuilder(source);
+        Assert.assertTrue(spliceBuilder.isEmpty());
+        Assert.assertEquals(source, spliceBuilder.toString());
+
+        // Edits are not added in order
+        final int b = source.indexOf("<script src='b.js'>");
+        spliceBuilder.replace(b, source.indexOf("</head>"), "");
+        spliceBuilder.replace(NumberUtils.SIX, b, "<script src='ab.js'></script>");
+        spliceBuilder.insert(NumberUtils.SIX, "<link rel='preload' />");
+        spliceBuilder.insert(NumberUtils.SIX, "<meta />");
+
+        // Overlaps a replaced range
+        spliceBuilder.replace(NumberUtils.SIX + 1, NumberUtils.SIX + 2, "X");
+
+        Assert.assertFalse(spliceBuilder.isEmpty());
+        Assert.assertEquals("<head><link rel='preload' /><meta /><script src='ab.js'></script></head>", spliceBuilder.toString());
+    }
+
+    /**
+     * <p>
+     * Test {@link XxHash64} against reference values and streaming consistency.
+     * </p>
+     */
+    @Test
+    public void xxHash64Test() {
+        Assert.assertEquals(0xEF46DB3751D8E999L, XxHash64.hash(new byte[0]));
+        Assert.assertEquals(0xD24EC4F1A98C6E5BL, XxHash64.hash("a".getBytes()));
+        Assert.assertEquals(0x44BC2CF5AD770999L, XxHash64.hash("abc".getBytes()));
+        Assert.assertEquals(0xFBCEA83C8A378BF1L, XxHash64.hash("Nobody inspects the spammish repetition".getBytes()));
+
+        final byte[] bytes = new byte[1000];
+        new Random().nextBytes(bytes);
+        final XxHash64 hash = new XxHash64();
+
+        for (int i = 0; i < bytes.length; i += 7) {
+            hash.update(bytes, i, Math.min(7, bytes.length - i));
+        }
+
+        Assert.assertEquals(XxHash64.hash(bytes), hash.getValue());
+        hash.reset();
+        Assert.assertEquals(0xEF46DB3751D8E999L, hash.getValue());
+    }
+
     /**
      * <p>
      * Test {@link IOUtils#checkCharset(String)}.
@@ -1321,6 +1385,57 @@ public class UtilityTest extends WuicTest {
         Assert.assertTrue(t1.end() < 200);
     }
 
+    /**
+     * <p>
+     * Tests the instrumentation levels of {@link TimerTreeFactory}.
+     * </p>
+     */
+    @Test
+    public void instrumentationLevelTest() {
+        final TimerTreeFactory.Sampler off = new TimerTreeFactory.Sampler(TimerTreeFactory.Level.OFF, 1);
+        Assert.assertSame(off.newInstance(), off.newInstance());
+        Assert.assertSame(Timer.DISABLED, off.newInstance().getTimerTree());
+        Assert.assertEquals(0L, Timer.DISABLED.end());
+
+        // Each sampler counts its own requests
+        final TimerTreeFactory.Sampler sampled = new TimerTreeFactory.Sampler(TimerTreeFactory.Level.SAMPLED, 4);
+        final TimerTreeFactory.Sampler other = new TimerTreeFactory.Sampler(TimerTreeFactory.Level.SAMPLED, 4);
+        int enabled = 0;
+
+        for (int i = 0; i < 8; i++) {
+            if (sampled.newInstance().isEnabled()) {
+                enabled++;
+            }
+
+            // Operations outside a request are not sampled and don't change the rate
+            Assert.assertFalse(TimerTreeFactory.unsampled().isEnabled());
+        }
+
+        Assert.assertEquals(2, enabled);
+
+        // The other sampler is not affected by the requests counted above
+        for (int i = 0; i < 3; i++) {
+            Assert.assertFalse(other.newInstance().isEnabled());
+        }
+
+        Assert.assertTrue(other.newInstance().isEnabled());
+
+        final TimerTreeFactory.Sampler full = new TimerTreeFactory.Sampler(TimerTreeFactory.Level.FULL, 4);
+        Assert.assertEquals(TimerTreeFactory.Level.FULL, full.getLevel());
+        Assert.assertTrue(full.newInstance().getTimerTree().isEnabled());
+        Assert.assertTrue(new TimerTreeFactory().isEnabled());
+    }
+
+    /**
+     * <p>
+     * Tests that an invalid sampling rate is rejected.
+     * </p>
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSamplingRateTest() {
+        new TimerTreeFactory.Sampler(TimerTreeFactory.Level.SAMPLED, 0);
+    }
+
     /**
      * <p>
      * Tests {@link NumberUtils#remainingLength(int, int, int)}.
@@ -1330,4 +1445,97 @@ public class UtilityTest extends WuicTest {
     public void remainingLengthTest() {
         Assert.assertEquals(5, NumberUtils.remainingLength(10, 10, 15));
     }
+
+    /**
+     * <p>
+     * Tests percentiles and merge of {@link LatencyStat}.
+     * </p>
+     */
+    @Test
+    public void latencyStatTest() {
+        final LatencyStat stat = new LatencyStat("stat");
+        Assert.assertEquals(-1L, stat.getP50Duration());
+        Assert.assertEquals(-1L, stat.getAverageDuration());
+
+        for (int i = 1; i <= 100; i++) {
+            stat.record(i);
+        }
+
+        Assert.assertEquals(100L, stat.getCount());
+        Assert.assertEquals(50L, stat.getAverageDuration());
+        Assert.assertEquals(100L, stat.getMaxDuration());
+
+        // Relative error is lower than 12.5%
+        Assert.assertTrue(String.valueOf(stat.getP50Duration()), Math.abs(stat.getP50Duration() - 50) <= 50 / 8);
+        Assert.assertTrue(String.valueOf(stat.getP95Duration()), Math.abs(stat.getP95Duration() - 95) <= 95 / 8);
+        Assert.assertEquals(100L, stat.percentile(100));
+        Assert.assertTrue(stat.getThroughput() > 0);
+
+        final LatencyStat other = new LatencyStat("other");
+        other.record(Long.MAX_VALUE);
+        other.record(-1L);
+        stat.merge(other);
+        Assert.assertEquals(102L, stat.getCount());
+        Assert.assertEquals(Long.MAX_VALUE, stat.getMaxDuration());
+        Assert.assertEquals(Long.MAX_VALUE, stat.percentile(100));
+
+        // Total is saturated instead of overflowing
+        Assert.assertEquals(Long.MAX_VALUE / 102L, stat.getAverageDuration());
+        stat.record(1L);
+        Assert.assertEquals(Long.MAX_VALUE / 103L, stat.getAverageDuration());
+    }
+
+    /**
+     * <p>
+     * Tests concurrent reports to {@link FacadeStats} and exposure through JMX.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void facadeStatsTest() throws Exception {
+        final FacadeStats facadeStats = new FacadeStats(2, 2);
+        final List<Thread> threads = new ArrayList<Thread>();
+
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 250; i++) {
+                        final TransformationStat transformation = Mockito.mock(TransformationStat.class);
+                        Mockito.when(transformation.getDuration()).thenReturn(1L);
+                        final TransformerStat transformer = new TransformerStat("t", Arrays.asList(transformation));
+                        facadeStats.addWorkflowExecution(new WorkflowExecution(Arrays.asList(transformer), i, 1L), "wf" + (i % 2));
+                        facadeStats.addHeapResolution(new HeapResolution(new ArrayList<com.github.wuic.mbean.NutResolution>(), i), "heap");
+                    }
+                }
+            });
+        }
+
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(2, facadeStats.getWorkflowStats().size());
+        Assert.assertEquals(1000L, facadeStats.getWorkflowStats().get(0).getCount() + facadeStats.getWorkflowStats().get(1).getCount());
+        Assert.assertEquals(2, facadeStats.getWorkflowStats().get(0).getExecutions().size());
+        Assert.assertEquals(1000L, facadeStats.getHeapStats().get(0).getCount());
+        Assert.assertEquals(1000L, facadeStats.getTransformerLatencies().get(0).getCount());
+
+        final MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName("com.github.wuic.jmx:type=FacadeStatsTest");
+        mbs.registerMBean(facadeStats, name);
+
+        try {
+            final CompositeData[] heaps = (CompositeData[]) mbs.getAttribute(name, "HeapStats");
+            Assert.assertEquals("heap", heaps[0].get("id"));
+            Assert.assertEquals(facadeStats.getHeapStats().get(0).getP99Duration(), heaps[0].get("p99Duration"));
+        } finally {
+            mbs.unregisterMBean(name);
+        }
+    }
 }
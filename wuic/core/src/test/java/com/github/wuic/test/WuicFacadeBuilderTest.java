@@ -32,6 +32,7 @@ import com.github.wuic.context.SimpleContextBuilderConfigurator;
 import com.github.wuic.engine.core.TextAggregatorEngine;
 import com.github.wuic.exception.WuicException;
 import com.github.wuic.nut.ConvertibleNut;
+import com.github.wuic.nut.HeapListener;
 import com.github.wuic.nut.dao.core.ClasspathNutDao;
 import com.github.wuic.nut.dao.core.HttpNutDao;
 import com.github.wuic.util.MapPropertyResolver;
@@ -122,6 +123,29 @@ public class WuicFacadeBuilderTest {
         Assert.assertFalse(builder.build().workflowIds().isEmpty());
     }
 
+    /**
+     * <p>
+     * Tests that the context version changes when the context is built again and that heap listeners are registered.
+     * </p>
+     *
+     * @throws WuicException if test fails
+     */
+    @Test
+    public void contextVersionTest() throws WuicException {
+        final WuicFacade facade = new WuicFacadeBuilder().build();
+        final String workflowId = facade.workflowIds().iterator().next();
+        final HeapListener listener = Mockito.mock(HeapListener.class);
+        facade.addHeapListener(workflowId, listener);
+
+        final long version = facade.getContextVersion();
+        Assert.assertFalse(facade.refreshContext());
+        Assert.assertEquals(version, facade.getContextVersion());
+
+        facade.clearTag("unknown");
+        Assert.assertTrue(facade.refreshContext());
+        Assert.assertNotEquals(version, facade.getContextVersion());
+    }
+
     /**
      * <p>
      * Test when an {@link IllegalStateException} is thrown because of bad URL.
@@ -47,6 +47,7 @@ import com.github.wuic.engine.EngineService;
 import com.github.wuic.engine.EngineType;
 import com.github.wuic.engine.NodeEngine;
 import com.github.wuic.engine.core.GzipEngine;
+import com.github.wuic.engine.core.MemoryMapCacheEngine;
 import com.github.wuic.engine.core.TextAggregatorEngine;
 import com.github.wuic.exception.DuplicatedRegistrationException;
 import com.github.wuic.exception.NutNotFoundException;
@@ -78,6 +79,8 @@ import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.mockito.Mockito;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
@@ -456,6 +459,43 @@ public class ContextBuilderTest {
         Assert.assertEquals(0, count.get());
     }
 
+    /**
+     * <p>
+     * Checks that statistics are reported for a nut served from the cache without building the whole request.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void cacheHitStatsTest() throws Exception {
+        final ObjectBuilderFactory<Engine> engine = new EngineObjectBuilderFactory(
+                new ObjectBuilderFactory<Engine>(EngineService.class, MemoryMapCacheEngine.class));
+        final Context context = new ContextBuilder(engine, nutDaoBuilderFactory, nutFilterBuilderFactory)
+                .configureDefault()
+                .tag("test")
+                .processContext(processContext.getProcessContext())
+                .contextNutDaoBuilder("dao", "MockDaoBuilder")
+                .toContext()
+                .heap("heap", "dao", new String[] {NUT_NAME_ONE, })
+                .releaseTag()
+                .build();
+
+        final AtomicInteger count = new AtomicInteger();
+        context.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(final PropertyChangeEvent evt) {
+                count.incrementAndGet();
+            }
+        });
+
+        for (int i = 0; i < 3; i++) {
+            context.process("", "heap", NUT_NAME_ONE, UrlUtils.urlProviderFactory(), processContext.getProcessContext()).transform();
+        }
+
+        // Cache hits are reported like any other request
+        Assert.assertEquals(3, count.get());
+    }
+
     /**
      * Nominal test with classic use but without default engine inclusion.
      *
@@ -560,6 +600,45 @@ public class ContextBuilderTest {
         Assert.assertEquals(Arrays.toString(h), 2, h.length);
     }
 
+    /**
+     * Checks that a rebuild only re-creates the workflows impacted by a change.
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void incrementalBuildTest() throws Exception {
+        final ContextBuilder builder = new ContextBuilder(engineBuilderFactory, nutDaoBuilderFactory, nutFilterBuilderFactory)
+                .configureDefault()
+                .tag("test")
+                .processContext(processContext.getProcessContext())
+                .contextNutDaoBuilder("dao", "MockDaoBuilder")
+                .toContext()
+                .heap("heap", "dao", new String[] {NUT_NAME_ONE, NUT_NAME_TWO, })
+                .contextEngineBuilder("engine", "MockEngineBuilder")
+                .toContext()
+                .template("tpl", new String[]{"engine"})
+                .workflow("workflow-", true, "heap", "tpl")
+                .releaseTag();
+        final Workflow workflow = builder.build().getWorkflow("workflow-heap");
+
+        // Unrelated setting: workflow is kept
+        builder.tag("other").heap("other-heap", "dao", new String[] {NUT_NAME_ONE, }).releaseTag();
+        Context context = builder.build();
+        Assert.assertSame(workflow, context.getWorkflow("workflow-heap"));
+        builder.clearTag("other");
+        Assert.assertSame(workflow, builder.build().getWorkflow("workflow-heap"));
+
+        // Heap refreshed: workflow is re-created
+        builder.tag("test").heap("heap", "dao", new String[] {NUT_NAME_ONE, }).releaseTag();
+        context = builder.build();
+        final Workflow refreshed = context.getWorkflow("workflow-heap");
+        Assert.assertNotSame(workflow, refreshed);
+
+        // Engine changed: all workflows are re-created
+        builder.tag("test").contextEngineBuilder("engine", "MockEngineBuilder").toContext().releaseTag();
+        Assert.assertNotSame(refreshed, builder.build().getWorkflow("workflow-heap"));
+    }
+
     /**
      * Test when a template is not found.
      *
@@ -240,6 +240,33 @@ public class AbstractNutDaoTest {
         Assert.assertEquals(third.create("", processContext.getProcessContext()).get(0).getVersionNumber().get(), fourth.create("", processContext.getProcessContext()).get(0).getVersionNumber().get());
     }
 
+    /**
+     * Test that version number computed from content is memoized while content length and timestamp don't change.
+     *
+     * @throws Exception e
+     */
+    @Test
+    public void memoizedContentVersionNumberTest() throws Exception  {
+        final AtomicInteger reads = new AtomicInteger();
+        final NutDao dao = new MockNutDaoTest(true, null) {
+            @Override
+            protected Long getContentLengthFor(final String path) {
+                return (long) BYTES.length;
+            }
+
+            @Override
+            public Input newInputStream(final String path, final ProcessContext processContext) throws IOException {
+                reads.incrementAndGet();
+                return super.newInputStream(path, processContext);
+            }
+        };
+
+        final Long version = dao.create("", processContext.getProcessContext()).get(0).getVersionNumber().get();
+        Assert.assertTrue(version >= 0);
+        Assert.assertEquals(version, dao.create("", processContext.getProcessContext()).get(0).getVersionNumber().get());
+        Assert.assertEquals(1, reads.get());
+    }
+
     /**
      * Test fixed version number computation.
      *
@@ -29,15 +29,18 @@ import com.github.wuic.NutTypeFactoryHolder;
 import com.github.wuic.config.ObjectBuilder;
 import com.github.wuic.config.ObjectBuilderFactory;
 import com.github.wuic.engine.Engine;
+import com.github.wuic.engine.EngineRequest;
 import com.github.wuic.engine.EngineRequestBuilder;
 import com.github.wuic.engine.EngineService;
 import com.github.wuic.engine.NodeEngine;
 import com.github.wuic.engine.core.CommandLineConverterEngine;
+import com.github.wuic.engine.core.ExecutorHolder;
 import com.github.wuic.nut.ConvertibleNut;
 import com.github.wuic.nut.Nut;
 import com.github.wuic.nut.NutsHeap;
 import com.github.wuic.test.ProcessContextRule;
 import com.github.wuic.test.WuicTest;
+import com.github.wuic.util.BiFunction;
 import com.github.wuic.util.FutureLong;
 import com.github.wuic.util.IOUtils;
 import com.github.wuic.util.InMemoryOutput;
@@ -58,7 +61,11 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -190,6 +197,91 @@ public class CommandLineConverterEngineTest {
         res.get(0).transform(new Pipe.DefaultOnReady(bos));
     }
 
+    /**
+     * <p>
+     * Tests that each nut is compiled separately and that nuts are compiled again only when the composition changes.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void convertByNutTest() throws Exception {
+        final File parent = temporaryFolder.newFolder("parent");
+        IOUtils.copyStream(new ByteArrayInputStream("foo".getBytes()), new FileOutputStream(new File(parent, "foo.less")));
+        final NutsHeap heap = mockHeap(parent);
+        when(heap.getNuts().get(0).getParentFile()).thenReturn(parent.getAbsolutePath());
+
+        final ObjectBuilderFactory<Engine> factory = new ObjectBuilderFactory<Engine>(EngineService.class, CommandLineConverterEngine.class);
+        final Engine engine = factory.create("CommandLineConverterEngineBuilder")
+                .property(ApplicationConfig.INPUT_NUT_TYPE, EnumNutType.LESS.name())
+                .property(ApplicationConfig.OUTPUT_NUT_TYPE, EnumNutType.CSS.name())
+                .property(ApplicationConfig.CONVERT_BY_NUT, true)
+                .property(ApplicationConfig.COMMAND, String.format("cmd %s %s %s",
+                        CommandLineConverterEngine.PATH_TOKEN,
+                        CommandLineConverterEngine.OUT_PATH_TOKEN,
+                        CommandLineConverterEngine.SOURCE_MAP_TOKEN))
+                .build();
+        NutTypeFactoryHolder.class.cast(engine).setNutTypeFactory(new NutTypeFactory(Charset.defaultCharset().displayName()));
+
+        // Writes the name of the compiled file as result
+        final AtomicInteger count = new AtomicInteger();
+        final Set<String> results = Collections.synchronizedSet(new HashSet<String>());
+        ExecutorHolder.class.cast(engine).setExecutor(new BiFunction<CommandLineConverterEngine.CommandLineInfo, EngineRequest, Boolean>() {
+            @Override
+            public Boolean apply(final CommandLineConverterEngine.CommandLineInfo info, final EngineRequest request) {
+                Assert.assertEquals(1, info.getPathsToCompile().size());
+                count.incrementAndGet();
+
+                try {
+                    final String name = new File(info.getPathsToCompile().get(0)).getName();
+                    final File result = info.getCompilationResult();
+                    results.add(result.getName());
+                    IOUtils.copyStream(new ByteArrayInputStream(("/* " + name + " */").getBytes()), new FileOutputStream(result));
+                    final String map = "{\"version\":3,\"file\":\"" + result.getName() + "\",\"sources\":[\"" + name
+                            + "\"],\"names\":[],\"mappings\":\"AAAA\"}";
+                    IOUtils.copyStream(new ByteArrayInputStream(map.getBytes()), new FileOutputStream(result.getAbsolutePath() + ".map"));
+                } catch (IOException ioe) {
+                    Assert.fail(ioe.getMessage());
+                }
+
+                return true;
+            }
+        });
+
+        Assert.assertEquals("/* foo.less */\n/* bar.less */\n", convert(engine, heap));
+        Assert.assertEquals(2, count.get());
+
+        // Nothing changed
+        Assert.assertEquals("/* foo.less */\n/* bar.less */\n", convert(engine, heap));
+        Assert.assertEquals(2, count.get());
+
+        // One nut changed: the other one can depend on it and is compiled again
+        when(heap.getNuts().get(1).openStream()).thenAnswer(WuicTest.openStreamAnswer("baz"));
+        Assert.assertEquals("/* foo.less */\n/* bar.less */\n", convert(engine, heap));
+        Assert.assertEquals(4, count.get());
+
+        // Each compilation writes its own result
+        Assert.assertEquals(4, results.size());
+    }
+
+    /**
+     * <p>
+     * Converts the nuts of the given heap and returns the result.
+     * </p>
+     *
+     * @param engine the engine
+     * @param heap the heap
+     * @return the conversion result
+     * @throws Exception if conversion fails
+     */
+    private String convert(final Engine engine, final NutsHeap heap) throws Exception {
+        final List<ConvertibleNut> res = engine.parse(new EngineRequestBuilder("wid", heap, null, new NutTypeFactory(Charset.defaultCharset().displayName()))
+                .processContext(processContext.getProcessContext()).contextPath("cp").build());
+        final InMemoryOutput bos = new InMemoryOutput(Charset.defaultCharset().displayName());
+        res.get(0).transform(new Pipe.DefaultOnReady(bos));
+        return bos.execution().toString();
+    }
+
     /**
      * Bad configuration test.
      */
@@ -25,10 +25,12 @@ package com.github.wuic.test.engine;
 import com.github.wuic.EnumNutType;
 import com.github.wuic.NutType;
 import com.github.wuic.NutTypeFactory;
+import com.github.wuic.engine.DimensionPacker;
 import com.github.wuic.engine.Engine;
 import com.github.wuic.engine.EngineRequest;
 import com.github.wuic.engine.EngineRequestBuilder;
 import com.github.wuic.engine.EngineType;
+import com.github.wuic.engine.HeadEngine;
 import com.github.wuic.engine.NodeEngine;
 import com.github.wuic.engine.SpriteProvider;
 import com.github.wuic.engine.core.BinPacker;
@@ -37,6 +39,7 @@ import com.github.wuic.engine.core.ImageCompressorEngine;
 import com.github.wuic.engine.core.SpriteInspectorEngine;
 import com.github.wuic.exception.WuicException;
 import com.github.wuic.nut.ConvertibleNut;
+import com.github.wuic.nut.InMemoryNut;
 import com.github.wuic.nut.Nut;
 import com.github.wuic.nut.NutsHeap;
 import org.junit.Assert;
@@ -46,10 +49,16 @@ import org.junit.rules.Timeout;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import java.awt.Dimension;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -173,6 +182,124 @@ public class EngineTest {
         Assert.assertEquals(6, count.get());
     }
 
+    /**
+     * <p>
+     * Tests that the execution plan of a chain is updated when the chain is modified.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void executionPlanTest() throws Exception {
+        final NutType gif = new NutTypeFactory(Charset.defaultCharset().displayName()).getNutType(EnumNutType.GIF);
+        final AtomicInteger count = new AtomicInteger(0);
+        final NodeEngine a = new E(gif, EngineType.INSPECTOR, count);
+        final NodeEngine b = new E(gif, EngineType.AGGREGATOR, count);
+        final NodeEngine c = new E(gif, EngineType.BINARY_COMPRESSION, count);
+        a.setNext(b);
+
+        final NutsHeap heap = Mockito.mock(NutsHeap.class);
+        final Nut nut = Mockito.mock(Nut.class);
+        Mockito.when(nut.getInitialNutType()).thenReturn(gif);
+        Mockito.when(nut.getInitialName()).thenReturn("foo.gif");
+        Mockito.when(heap.getNuts()).thenReturn(Arrays.asList(nut));
+        final EngineRequest request = new EngineRequestBuilder("", heap, null, new NutTypeFactory(Charset.defaultCharset().displayName())).build();
+
+        a.parse(request);
+        Assert.assertEquals(2, count.get());
+
+        // Plan of 'a' must include 'c'
+        b.setNext(c);
+        a.parse(request);
+        Assert.assertEquals(5, count.get());
+
+        final EngineRequest skip = new EngineRequestBuilder(request).skip(EngineType.AGGREGATOR).build();
+        Assert.assertEquals(1, a.parse(skip).size());
+        Assert.assertEquals(7, count.get());
+    }
+
+    /**
+     * <p>
+     * Tests that chains run by the head engine for different types return results in the original order.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void runChainsTest() throws Exception {
+        final NutTypeFactory nutTypeFactory = new NutTypeFactory(Charset.defaultCharset().displayName());
+        final NutType js = nutTypeFactory.getNutType(EnumNutType.JAVASCRIPT);
+        final NutType css = nutTypeFactory.getNutType(EnumNutType.CSS);
+        final AtomicInteger jsCount = new AtomicInteger(0);
+        final AtomicInteger cssCount = new AtomicInteger(0);
+        final Map<NutType, NodeEngine> chains = new HashMap<NutType, NodeEngine>();
+        chains.put(js, new E(js, EngineType.INSPECTOR, jsCount));
+        chains.put(css, new E(css, EngineType.INSPECTOR, cssCount));
+
+        final NutsHeap heap = Mockito.mock(NutsHeap.class);
+        final List<Nut> nuts = new ArrayList<Nut>();
+
+        for (final String name : new String[] { "a.js", "b.css", "c.gif", "d.js" }) {
+            nuts.add(new InMemoryNut(name.getBytes(), name, nutTypeFactory.getNutType(name), 1L, false));
+        }
+
+        Mockito.when(heap.getNuts()).thenReturn(nuts);
+        final EngineRequest request = new EngineRequestBuilder("", heap, null, nutTypeFactory).chains(chains).build();
+        final List<ConvertibleNut> res = HeadEngine.runChains(request);
+
+        Assert.assertEquals(4, res.size());
+        Assert.assertEquals("a.js", res.get(0).getName());
+        Assert.assertEquals("b.css", res.get(1).getName());
+        Assert.assertEquals("c.gif", res.get(2).getName());
+        Assert.assertEquals("d.js", res.get(3).getName());
+        Assert.assertEquals(2, jsCount.get());
+        Assert.assertEquals(1, cssCount.get());
+    }
+
+    /**
+     * <p>
+     * Tests that the exception thrown by a chain run by the head engine is rethrown and that chains can be run again
+     * after the pool has been shut down.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void runChainsFailureTest() throws Exception {
+        final NutTypeFactory nutTypeFactory = new NutTypeFactory(Charset.defaultCharset().displayName());
+        final NutType js = nutTypeFactory.getNutType(EnumNutType.JAVASCRIPT);
+        final NutType css = nutTypeFactory.getNutType(EnumNutType.CSS);
+        final AtomicInteger jsCount = new AtomicInteger(0);
+        final Map<NutType, NodeEngine> chains = new HashMap<NutType, NodeEngine>();
+        chains.put(js, new E(js, EngineType.INSPECTOR, jsCount));
+
+        // No counter: the chain fails
+        chains.put(css, new E(css, EngineType.INSPECTOR, null));
+
+        final NutsHeap heap = Mockito.mock(NutsHeap.class);
+        final List<Nut> nuts = new ArrayList<Nut>();
+
+        for (final String name : new String[] { "a.js", "b.css", "c.js" }) {
+            nuts.add(new InMemoryNut(name.getBytes(), name, nutTypeFactory.getNutType(name), 1L, false));
+        }
+
+        Mockito.when(heap.getNuts()).thenReturn(nuts);
+
+        try {
+            HeadEngine.runChains(new EngineRequestBuilder("", heap, null, nutTypeFactory).chains(chains).build());
+            Assert.fail();
+        } catch (NullPointerException npe) {
+            // Expected
+        }
+
+        HeadEngine.shutdown();
+        chains.put(css, new E(css, EngineType.INSPECTOR, new AtomicInteger(0)));
+        final List<ConvertibleNut> res =
+                HeadEngine.runChains(new EngineRequestBuilder("", heap, null, nutTypeFactory).chains(chains).build());
+        Assert.assertEquals(3, res.size());
+        Assert.assertEquals("b.css", res.get(1).getName());
+    }
+
     /**
      * Nominal test for {@link NodeEngine#chain(com.github.wuic.engine.NodeEngine...)}.
      */
@@ -291,6 +418,36 @@ public class EngineTest {
         assertChainTest(chain, engine1, engine2, engine3);
     }
 
+    /**
+     * <p>
+     * Tests that each request packs its images with a new packer created from the configured one.
+     * </p>
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void newDimensionPackerTest() {
+        final DimensionPacker<ConvertibleNut> configured = Mockito.mock(DimensionPacker.class);
+        Mockito.when(configured.newInstance()).thenAnswer(new Answer<DimensionPacker<ConvertibleNut>>() {
+            @Override
+            public DimensionPacker<ConvertibleNut> answer(final InvocationOnMock invocationOnMock) {
+                return new BinPacker<ConvertibleNut>();
+            }
+        });
+
+        final ImageAggregatorEngine engine = new ImageAggregatorEngine();
+        engine.init(configured);
+
+        final DimensionPacker<ConvertibleNut> first = engine.newDimensionPacker();
+        first.addElement(new Dimension(10, 10), Mockito.mock(ConvertibleNut.class));
+        final DimensionPacker<ConvertibleNut> second = engine.newDimensionPacker();
+
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(1, first.getRegions().size());
+        Assert.assertEquals(new Dimension(0, 0), second.getFilledArea());
+        Mockito.verify(configured, Mockito.times(2)).newInstance();
+        Mockito.verify(configured, Mockito.never()).addElement(Mockito.any(Dimension.class), Mockito.any(ConvertibleNut.class));
+    }
+
     /**
      * <p>
      * Tests some assertions on given engines.
@@ -41,6 +41,7 @@ import com.github.wuic.engine.core.AbstractCacheEngine;
 import com.github.wuic.engine.core.AssetsMarkupHandler;
 import com.github.wuic.engine.core.AssetsMarkupParser;
 import com.github.wuic.engine.core.HtmlInspectorEngine;
+import com.github.wuic.engine.core.HtmlTransformer;
 import com.github.wuic.engine.core.MemoryMapCacheEngine;
 import com.github.wuic.engine.core.TextAggregatorEngine;
 import com.github.wuic.exception.WorkflowNotFoundException;
@@ -410,6 +411,32 @@ public class HtmlInspectorEngineTest {
         Assert.assertTrue(content.contains("1/000000004034EFC6baz.js"));
     }
 
+    /**
+     * <p>
+     * Tests the fingerprint of asset statements skeleton used to reuse a parsing.
+     * </p>
+     */
+    @Test
+    public void fingerprintTest() {
+        final String page = "<html><head><script src='foo.js'></script>\n<link href='bar.css' /></head><body>%s</body></html>";
+        final String fingerprint = HtmlTransformer.fingerprint(String.format(page, "Hello"));
+
+        // Same statements, different text
+        Assert.assertEquals(fingerprint, HtmlTransformer.fingerprint(String.format(page, "Bye bye")));
+
+        // Different statements
+        Assert.assertNotEquals(fingerprint, HtmlTransformer.fingerprint(String.format(page, "<img src='earth.jpg' />")));
+        Assert.assertNotEquals(fingerprint, HtmlTransformer.fingerprint(String.format(page, "Hello").replace("foo.js", "baz.js")));
+
+        // Statements not grouped anymore
+        Assert.assertNotEquals(fingerprint, HtmlTransformer.fingerprint(String.format(page, "Hello").replace("\n", "<hr/>")));
+
+        // Head tag where markup is inserted has changed
+        Assert.assertNotEquals(fingerprint, HtmlTransformer.fingerprint(String.format(page, "Hello").replace("<head>", "<head id='h'>")));
+        Assert.assertNotEquals(HtmlTransformer.fingerprint(String.format(page, "Hello").replace("<head>", "<head id='a'>")),
+                HtmlTransformer.fingerprint(String.format(page, "Hello").replace("<head>", "<head id='b'>")));
+    }
+
     /**
      * <p>
      * Tests the best effort support.
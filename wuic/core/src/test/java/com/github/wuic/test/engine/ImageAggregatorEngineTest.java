@@ -28,8 +28,14 @@ import com.github.wuic.context.ContextBuilder;
 import com.github.wuic.nut.ConvertibleNut;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import com.github.wuic.util.NumberUtils;
 import com.github.wuic.util.UrlUtils;
 import com.github.wuic.config.bean.xml.FileXmlContextBuilderConfigurator;
 import org.junit.Assert;
@@ -106,6 +112,41 @@ public class ImageAggregatorEngineTest {
         assertOneReference(nuts);
     }
 
+    /**
+     * <p>
+     * Tests that sprites of different workflows are computed concurrently without sharing any state.
+     * </p>
+     *
+     * @param ctx the tested context
+     * @throws Exception if test fails
+     */
+    @Theory
+    public void concurrentSprites(final Context ctx) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(NumberUtils.FOUR);
+
+        try {
+            final List<Future<List<ConvertibleNut>>> futures = new ArrayList<Future<List<ConvertibleNut>>>();
+
+            for (int i = 0; i < NumberUtils.FOUR; i++) {
+                final String workflow = i % NumberUtils.TWO == 0 ? "jsSpriteNotAggregate" : "cssSpriteAggregate";
+                futures.add(executor.submit(new Callable<List<ConvertibleNut>>() {
+                    @Override
+                    public List<ConvertibleNut> call() throws Exception {
+                        return ctx.process("", workflow, UrlUtils.urlProviderFactory(), null);
+                    }
+                }));
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                final List<ConvertibleNut> nuts = futures.get(i).get();
+                Assert.assertEquals(i % NumberUtils.TWO == 0 ? NumberUtils.THREE : 1, nuts.size());
+                assertOneReference(nuts);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * <p>
      * Asserts that each nut in the given list references one nut after transformation.
@@ -34,6 +34,7 @@ import com.github.wuic.engine.core.AbstractCacheEngine;
 import com.github.wuic.engine.core.MemoryMapCacheEngine;
 import com.github.wuic.exception.WuicException;
 import com.github.wuic.nut.ConvertibleNut;
+import com.github.wuic.nut.InMemoryNut;
 import com.github.wuic.nut.Nut;
 import com.github.wuic.nut.NutsHeap;
 import com.github.wuic.nut.SizableNut;
@@ -249,6 +250,102 @@ public class MemoryMapCacheEngineTest {
         Assert.assertEquals(1, counter.get());
     }
 
+    /**
+     * <p>
+     * Tests that a cached nut is found before the request is built.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void findReadyTest() throws Exception {
+        final MemoryMapCacheEngine engine = new MemoryMapCacheEngine();
+        engine.init(true, -1, false, "10MB");
+
+        final Nut nut = newNut("foo");
+        Mockito.when(nut.openStream()).thenAnswer(WuicTest.openStreamAnswer("var foo;"));
+
+        final NutDao dao = Mockito.mock(NutDao.class);
+        Mockito.when(dao.create(Mockito.anyString(), Mockito.any(ProcessContext.class))).thenReturn(Arrays.asList(nut));
+
+        final NutTypeFactory nutTypeFactory = new NutTypeFactory(Charset.defaultCharset().displayName());
+        final NutsHeap heap = new NutsHeap(this, Arrays.asList(""), dao, "heap", nutTypeFactory);
+        heap.checkFiles(processContext.getProcessContext());
+
+        // Nothing cached yet
+        Assert.assertNull(engine.findReady(new EngineRequestBuilder("wid", heap, null, nutTypeFactory), "foo.js"));
+
+        final ConvertibleNut parsed = engine.parse(new EngineRequestBuilder("wid", heap, null, nutTypeFactory).build(), "foo.js");
+        Assert.assertNotNull(parsed);
+
+        // Cached nut is found for the same workflow and the same skipped engines only
+        Assert.assertSame(parsed, engine.findReady(new EngineRequestBuilder("wid", heap, null, nutTypeFactory), "foo.js"));
+        Assert.assertNull(engine.findReady(new EngineRequestBuilder("wid", heap, null, nutTypeFactory).skip(EngineType.MINIFICATION), "foo.js"));
+        Assert.assertNull(engine.findReady(new EngineRequestBuilder("other", heap, null, nutTypeFactory), "foo.js"));
+        Assert.assertNull(engine.findReady(new EngineRequestBuilder("wid", heap, null, nutTypeFactory), "bar.js"));
+
+        // Cache invalidation
+        heap.nutUpdated(heap);
+        Assert.assertNull(engine.findReady(new EngineRequestBuilder("wid", heap, null, nutTypeFactory), "foo.js"));
+    }
+
+    /**
+     * <p>
+     * Tests that referenced nuts are found by name in the cached result.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void findReferencedTest() throws Exception {
+        final MemoryMapCacheEngine engine = new MemoryMapCacheEngine();
+        engine.init(true, -1, false, "10MB");
+
+        final Nut nut = newNut("foo");
+        Mockito.when(nut.openStream()).thenAnswer(WuicTest.openStreamAnswer("var foo;"));
+
+        final NutDao dao = Mockito.mock(NutDao.class);
+        Mockito.when(dao.create(Mockito.anyString(), Mockito.any(ProcessContext.class))).thenReturn(Arrays.asList(nut));
+
+        final NutTypeFactory nutTypeFactory = new NutTypeFactory(Charset.defaultCharset().displayName());
+        final NutType js = nutTypeFactory.getNutType(EnumNutType.JAVASCRIPT);
+        final NutsHeap heap = new NutsHeap(this, Arrays.asList(""), dao, "heap", nutTypeFactory);
+        heap.checkFiles(processContext.getProcessContext());
+
+        final EngineRequest request = new EngineRequestBuilder("wid", heap, null, nutTypeFactory).chain(js, new NodeEngine() {
+            @Override
+            public List<NutType> getNutTypes() {
+                return Arrays.asList(js);
+            }
+
+            @Override
+            public EngineType getEngineType() {
+                return EngineType.INSPECTOR;
+            }
+
+            @Override
+            protected List<ConvertibleNut> internalParse(final EngineRequest request) throws WuicException {
+                for (final ConvertibleNut convertibleNut : request.getNuts()) {
+                    convertibleNut.addReferencedNut(new InMemoryNut("var bar;".getBytes(), "lib/bar.js", js, 1L, false));
+                }
+
+                return request.getNuts();
+            }
+
+            @Override
+            public Boolean works() {
+                return true;
+            }
+        }).build();
+
+        engine.parse(request);
+
+        Assert.assertEquals("foo.js", engine.parse(request, "foo.js").getName());
+        Assert.assertEquals("lib/bar.js", engine.parse(request, "lib/bar.js").getName());
+        Assert.assertEquals("lib/bar.js", engine.parse(request, "/lib/bar.js").getName());
+        Assert.assertNull(engine.parse(request, "lib/baz.js"));
+    }
+
     /**
      * Add an element then clears the cache.
      *
@@ -285,6 +382,54 @@ public class MemoryMapCacheEngineTest {
         Assert.assertNull(engine.getFromCache(req));
     }
 
+    /**
+     * Checks that the memory in use is consistent when the cache is updated concurrently.
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void concurrentPutAndRemoveTest() throws Exception {
+        final MemoryMapCacheEngine engine = new MemoryMapCacheEngine();
+        engine.init(true, -1, false, "10KB");
+        final SizableNut nut = Mockito.mock(SizableNut.class);
+        Mockito.when(nut.size()).thenReturn(4);
+        Mockito.when(nut.getSource()).thenReturn(new SourceImpl());
+        final Map<String, AbstractCacheEngine.CacheResult.Entry> nuts = new HashMap<String, AbstractCacheEngine.CacheResult.Entry>();
+        nuts.put("a", new AbstractCacheEngine.CacheResult.Entry(nut));
+        final AbstractCacheEngine.CacheResult result = new AbstractCacheEngine.CacheResult(nuts, null);
+        final Thread[] threads = new Thread[8];
+        final AtomicInteger errors = new AtomicInteger();
+
+        for (int i = 0; i < threads.length; i++) {
+            final String workflow = String.valueOf(i);
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 100; j++) {
+                            final EngineRequest.Key key = new EngineRequest.Key(workflow + j, Arrays.asList(Mockito.mock(ConvertibleNut.class)));
+                            engine.putToCache(key, result);
+
+                            // Replacing an entry doesn't count its size twice
+                            engine.putToCache(key, result);
+                            engine.removeFromCache(key);
+                        }
+                    } catch (RuntimeException re) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(0, errors.get());
+        Assert.assertEquals(0L, engine.getMemoryInUse());
+    }
+
     /**
      * <p>
      * Tests when size limit unit is not correct.
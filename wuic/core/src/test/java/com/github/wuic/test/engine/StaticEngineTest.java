@@ -28,8 +28,10 @@ import com.github.wuic.engine.EngineRequestBuilder;
 import com.github.wuic.engine.core.StaticEngine;
 import com.github.wuic.exception.WuicException;
 import com.github.wuic.nut.ConvertibleNut;
+import com.github.wuic.nut.NotReachableNut;
 import com.github.wuic.nut.Nut;
 import com.github.wuic.nut.NutsHeap;
+import com.github.wuic.nut.PrecompressedVariant;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
@@ -45,6 +47,7 @@ import java.net.URL;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * <p>
@@ -106,6 +109,45 @@ public class StaticEngineTest {
         Assert.assertEquals(res.size(), 3);
     }
 
+    /**
+     * Test that variants compressed at build time are attached to the nuts.
+     *
+     * @throws WuicException if test fails
+     */
+    @Test
+    public void precompressedVariantTest() throws WuicException {
+        final StaticEngine engine = new StaticEngine();
+        engine.setNutTypeFactory(new NutTypeFactory(Charset.defaultCharset().displayName()));
+        engine.setClasspathResourceResolver(new ClassPathResourceResolver() {
+            @Override
+            public URL getResource(String resourcePath) throws MalformedURLException {
+                return getClass().getResource("/" + resourcePath);
+            }
+
+            @Override
+            public InputStream getResourceAsStream(String resourcePath) {
+                return getClass().getResourceAsStream("/" + resourcePath);
+            }
+        });
+
+        final NutsHeap heap = Mockito.mock(NutsHeap.class);
+        Mockito.when(heap.getNuts()).thenReturn(new ArrayList<Nut>());
+
+        final List<ConvertibleNut> res = engine.parse(new EngineRequestBuilder("precompressed", heap, null, new NutTypeFactory(Charset.defaultCharset().displayName())).build());
+        Assert.assertEquals(2, res.size());
+
+        // Only the script has been compressed
+        final Map<String, PrecompressedVariant> variants = NotReachableNut.class.cast(res.get(0)).getPrecompressedVariants();
+        Assert.assertEquals(1, variants.size());
+
+        final PrecompressedVariant variant = variants.get("gzip");
+        Assert.assertNotNull(variant);
+        Assert.assertEquals(120L, variant.getSize());
+        Assert.assertEquals("0a1b2c", variant.getHash());
+        Assert.assertEquals("precompressed/1234/aggregate.js.gz", variant.getResource());
+        Assert.assertTrue(NotReachableNut.class.cast(res.get(1)).getPrecompressedVariants().isEmpty());
+    }
+
     /**
      * Test when an unknown workflow is retrieved.
      *
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2016   The authors of WUIC
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.github.wuic.test.engine;
+
+import com.github.wuic.EnumNutType;
+import com.github.wuic.NutType;
+import com.github.wuic.NutTypeFactory;
+import com.github.wuic.engine.EngineRequest;
+import com.github.wuic.engine.EngineRequestBuilder;
+import com.github.wuic.engine.core.CssMinifier;
+import com.github.wuic.engine.core.JavascriptMinifier;
+import com.github.wuic.engine.core.TokenMinifierEngine;
+import com.github.wuic.nut.ConvertibleNut;
+import com.github.wuic.nut.Nut;
+import com.github.wuic.nut.NutsHeap;
+import com.github.wuic.nut.Source;
+import com.github.wuic.nut.SourceImpl;
+import com.github.wuic.nut.SourceMapNut;
+import com.github.wuic.nut.dao.NutDao;
+import com.github.wuic.nut.sourcemap.SourceMapConsumerV3;
+import com.github.wuic.nut.sourcemap.proto.Mapping;
+import com.github.wuic.test.ProcessContextRule;
+import com.github.wuic.test.WuicTest;
+import com.github.wuic.util.FutureLong;
+import com.github.wuic.util.IOUtils;
+import com.github.wuic.util.Input;
+import com.github.wuic.util.NutUtils;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * Tests {@link TokenMinifierEngine}, {@link JavascriptMinifier} and {@link CssMinifier}.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @since 0.5.3
+ */
+@RunWith(JUnit4.class)
+public class TokenMinifierEngineTest {
+
+    /**
+     * Process context.
+     */
+    @ClassRule
+    public static ProcessContextRule processContext = new ProcessContextRule();
+
+    /**
+     * Timeout.
+     */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(60);
+
+    /**
+     * <p>
+     * Minifies the given script.
+     * </p>
+     *
+     * @param script the script
+     * @return the minified script
+     */
+    private static String js(final String script) {
+        return new JavascriptMinifier(script.toCharArray()).minify();
+    }
+
+    /**
+     * <p>
+     * Minifies the given style sheet.
+     * </p>
+     *
+     * @param css the style sheet
+     * @return the minified style sheet
+     */
+    private static String css(final String css) {
+        return new CssMinifier(css.toCharArray()).minify();
+    }
+
+    /**
+     * <p>
+     * Tests whitespace and comments removal in scripts.
+     * </p>
+     */
+    @Test
+    public void javascriptTest() {
+        Assert.assertEquals("var a=1;var b=a+ +c;", js("var a = 1;\nvar b = a + +c;\n"));
+        Assert.assertEquals("var s='a  b'+\"c // d\";f(x,y);", js("var s = 'a  b' + \"c // d\"; // comment\n/* block */ f( x , y );"));
+        Assert.assertEquals("y=a- -b;z=a+ ++b;", js("y = a - -b; z = a + ++b;"));
+        Assert.assertEquals("var t=`x ${ a + `y` } z`;", js("var t = `x ${ a + `y` } z`;"));
+        Assert.assertEquals("/*! license */\nvar x;", js("/*! license */\nvar x;"));
+    }
+
+    /**
+     * <p>
+     * Tests that line breaks are kept when they can terminate a statement.
+     * </p>
+     */
+    @Test
+    public void javascriptAsiTest() {
+        Assert.assertEquals("return\nx", js("return\nx"));
+        Assert.assertEquals("a++\n+b", js("a++\n+b"));
+        Assert.assertEquals("if(a){b()}\nc()", js("if (a) {\n  b()\n}\nc()"));
+        Assert.assertEquals("a=b+c;", js("a = b +\n  c;"));
+        Assert.assertEquals("a=/b/\nc", js("a = /b/\nc"));
+    }
+
+    /**
+     * <p>
+     * Tests that regular expressions are distinguished from divisions.
+     * </p>
+     */
+    @Test
+    public void javascriptRegexTest() {
+        Assert.assertEquals("a=b/c/d;", js("a = b / c / d;"));
+        Assert.assertEquals("var r=/a b+c/g.test(s);", js("var r = /a b+c/g.test(s);"));
+        Assert.assertEquals("f(/[/]  /);", js("f( /[/]  / );"));
+        Assert.assertEquals("x=i++/2;", js("x = i++ / 2;"));
+    }
+
+    /**
+     * <p>
+     * Tests that a line starting with an ambiguous slash is copied as is.
+     * </p>
+     */
+    @Test
+    public void javascriptAmbiguousSlashTest() {
+        Assert.assertEquals("if(a){b()}\n/ab +c/.test(s)\nd()", js("if (a) {\n  b()\n}\n/ab +c/.test(s)\nd()"));
+        Assert.assertEquals("if(a)/ab +c/.test(s);", js("if (a) /ab +c/.test(s);"));
+        Assert.assertEquals("x=(a)/ b / c // half\ny()", js("x = (a) / b / c // half\ny()"));
+    }
+
+    /**
+     * <p>
+     * Tests that a script is returned unchanged when a line copied as is opens a construct closed on a next line.
+     * </p>
+     */
+    @Test
+    public void javascriptAmbiguousSlashMultiLineTest() {
+        final String template = "x = (a) / b + `c\n  d  `;\ny = 1";
+        Assert.assertEquals(template, js(template));
+
+        final String comment = "x = (a) / b /* c\n  d */\ny = 1";
+        Assert.assertEquals(comment, js(comment));
+
+        // Each line is mapped to itself
+        final JavascriptMinifier minifier = new JavascriptMinifier(("a = 1;\n" + comment).toCharArray());
+        minifier.minify();
+        Assert.assertEquals(4, minifier.getMappings().size());
+        Assert.assertEquals(3, minifier.getMappings().get(3).getOriginalLine());
+        Assert.assertEquals(3, minifier.getMappings().get(3).getLine());
+
+        // The quote of the regular expression hides the template from the scan
+        final String hidden = "if (a) /\"/.test(s) || `c\n  d  `\ny = 1";
+        Assert.assertEquals(hidden, js(hidden));
+
+        // Constructs closed on the same line are copied with the line
+        Assert.assertEquals("x=(a)/ b + `c` /* d */\ny=1", js("x = (a) / b + `c` /* d */\ny = 1"));
+    }
+
+    /**
+     * <p>
+     * Tests numeric literals shortening.
+     * </p>
+     */
+    @Test
+    public void javascriptNumberTest() {
+        Assert.assertEquals("x=.5+1+10+1.50e3+010;", js("x = 0.50 + 1.0 + 10.00 + 1.50e3 + 010;"));
+        Assert.assertEquals("x=1 .toString();", js("x = 1 .toString();"));
+    }
+
+    /**
+     * <p>
+     * Tests style sheet minification.
+     * </p>
+     */
+    @Test
+    public void cssTest() {
+        Assert.assertEquals("a :hover,b>c{margin:0 .5em;color:#ABC}",
+                css("a :hover , b > c { margin : 0px 0.50em ; color : #AABBCC ; ; }"));
+        Assert.assertEquals("div{width:calc(1px + 2px);background:url( a b.png )}",
+                css("div{width:calc(1px + 2px);background:url( a b.png );}"));
+        Assert.assertEquals("@media screen and (max-width:100px){a{color:red}}",
+                css("@media screen and (max-width : 100px) { a { color : red ; } }"));
+        Assert.assertEquals(".a{flex:1 1 0px;padding:0}", css("/* drop */ .a{flex:1 1 0px;padding:0.0px}"));
+        Assert.assertEquals("a{font:12px/1.5 \"A  B\"}", css("a{font:12px/1.5 \"A  B\"}"));
+    }
+
+    /**
+     * <p>
+     * Tests that units of zero lengths are kept inside functions and custom properties.
+     * </p>
+     */
+    @Test
+    public void cssZeroUnitTest() {
+        Assert.assertEquals("a{width:calc(100% - 0px);--gap:0px;margin:0}",
+                css("a { width: calc(100% - 0px); --gap: 0px; margin: 0px }"));
+    }
+
+    /**
+     * <p>
+     * Tests that a comment preceding an at-rule doesn't change the way its block is read.
+     * </p>
+     */
+    @Test
+    public void cssCommentBeforeAtRuleTest() {
+        Assert.assertEquals("@media (min-width:100px){.a :hover{color:red}}",
+                css("/* c */\n@media (min-width: 100px) { .a :hover { color: red } }"));
+        Assert.assertEquals("a{color:red}", css("a { /* c */ color: red }"));
+    }
+
+    /**
+     * <p>
+     * Tests the engine and the source map it creates.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void engineTest() throws Exception {
+        final NutDao dao = Mockito.mock(NutDao.class);
+        final NutsHeap heap = Mockito.mock(NutsHeap.class);
+        Mockito.when(heap.getId()).thenReturn("heap");
+        Mockito.when(heap.hasCreated(Mockito.any(Nut.class))).thenReturn(true);
+        Mockito.when(heap.findDaoFor(Mockito.any(Nut.class))).thenReturn(dao);
+        Mockito.when(heap.getNutDao()).thenReturn(dao);
+        final NutsHeap h = new NutsHeap(this, null, dao, "heap", new NutTypeFactory(Charset.defaultCharset().displayName()), heap);
+        h.checkFiles(processContext.getProcessContext());
+
+        final NutType nutType = new NutType(EnumNutType.JAVASCRIPT, Charset.defaultCharset().displayName());
+        final ConvertibleNut nut = Mockito.mock(ConvertibleNut.class);
+        Mockito.when(nut.getSource()).thenReturn(new SourceImpl());
+        Mockito.when(nut.getName()).thenReturn("nut.js");
+        Mockito.when(nut.getInitialName()).thenReturn("nut.js");
+        Mockito.when(nut.getVersionNumber()).thenReturn(new FutureLong(1L));
+        Mockito.when(nut.getNutType()).thenReturn(nutType);
+        Mockito.when(nut.getInitialNutType()).thenReturn(nutType);
+        Mockito.when(nut.openStream()).thenAnswer(WuicTest.openStreamAnswer("var i = 0;\n  // foo\n  var j = 1.0;"));
+
+        final EngineRequest req = new EngineRequestBuilder("", h, null, new NutTypeFactory(Charset.defaultCharset().displayName()))
+                .nuts(Arrays.asList(nut)).build();
+        final TokenMinifierEngine engine = new TokenMinifierEngine();
+        engine.init(true);
+        engine.setNutTypeFactory(new NutTypeFactory("UTF-8"));
+
+        final List<ConvertibleNut> res = engine.parse(req);
+        Assert.assertEquals(1, res.size());
+        Assert.assertEquals("var i=0;var j=1;", NutUtils.readTransform(res.get(0)));
+
+        final Source source = res.get(0).getSource();
+        Assert.assertTrue(source instanceof SourceMapNut);
+
+        Input is = null;
+
+        try {
+            is = SourceMapNut.class.cast(source).openStream();
+            final SourceMapConsumerV3 consumer = new SourceMapConsumerV3();
+            consumer.parse(IOUtils.readString(is.reader()));
+
+            // 'var j' starts at column 8 in the minified content and at line 3, column 2 in the original one
+            final Mapping.OriginalMapping mapping = consumer.getMappingForLine(1, 9);
+            Assert.assertNotNull(mapping);
+            Assert.assertTrue(mapping.getOriginalFile().endsWith("nut.js"));
+            Assert.assertEquals(3, mapping.getLineNumber());
+            Assert.assertEquals(3, mapping.getColumnPosition());
+        } finally {
+            IOUtils.close(is);
+        }
+    }
+}
@@ -26,6 +26,7 @@ import com.github.wuic.EnumNutType;
 import com.github.wuic.NutTypeFactory;
 import com.github.wuic.nut.InMemoryNut;
 import com.github.wuic.nut.ConvertibleNut;
+import com.github.wuic.nut.RequestNut;
 import com.github.wuic.nut.TransformedNut;
 import com.github.wuic.util.InMemoryOutput;
 import com.github.wuic.util.Output;
@@ -40,6 +41,7 @@ import org.mockito.Mockito;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <p>
@@ -101,4 +103,61 @@ public class TransformedNutTest {
                 new InMemoryNut(".foo{}".getBytes(), "foo.css", new NutTypeFactory(Charset.defaultCharset().displayName()).getNutType(EnumNutType.CSS), 1L, false));
         nut.addReferencedNut(Mockito.mock(ConvertibleNut.class));
     }
+
+    /**
+     * New callback can't be added.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void onReadyTest() {
+        final TransformedNut nut = new TransformedNut(
+                new InMemoryNut(".foo{}".getBytes(), "foo.css", new NutTypeFactory(Charset.defaultCharset().displayName()).getNutType(EnumNutType.CSS), 1L, false));
+        nut.onReady(Mockito.mock(Pipe.OnReady.class), true);
+    }
+
+    /**
+     * Callbacks are carried by the views and not by the shared nut.
+     *
+     * @throws IOException if test fails
+     */
+    @Test
+    public void requestNutTest() throws IOException {
+        final NutTypeFactory nutTypeFactory = new NutTypeFactory(Charset.defaultCharset().displayName());
+        final InMemoryNut css = new InMemoryNut(".foo{}".getBytes(), "foo.css", nutTypeFactory.getNutType(EnumNutType.CSS), 1L, false);
+        css.addReferencedNut(new TransformedNut(
+                new InMemoryNut("var foo;".getBytes(), "foo.js", nutTypeFactory.getNutType(EnumNutType.JAVASCRIPT), 1L, false)));
+        final TransformedNut nut = new TransformedNut(css);
+
+        final RequestNut first = new RequestNut(nut);
+        final RequestNut second = new RequestNut(nut);
+        final AtomicInteger count = new AtomicInteger();
+        final Pipe.OnReady onReady = new Pipe.OnReady() {
+            @Override
+            public void ready(final Pipe.Execution e) throws IOException {
+                count.incrementAndGet();
+            }
+        };
+
+        first.onReady(onReady, true);
+        Assert.assertTrue(nut.getReadyCallbacks().isEmpty());
+        Assert.assertEquals(1, first.getReadyCallbacks().size());
+        Assert.assertTrue(second.getReadyCallbacks().isEmpty());
+
+        // Callback registered with removal is invoked once
+        final Output bos = new InMemoryOutput(Charset.defaultCharset().displayName());
+        first.transform(new Pipe.DefaultOnReady(bos));
+        first.transform();
+        second.transform();
+        Assert.assertEquals(".foo{}", bos.execution().toString());
+        Assert.assertEquals(1, count.get());
+
+        // Referenced nuts are views too
+        final ConvertibleNut ref = first.getReferencedNuts().get(0);
+        Assert.assertTrue(ref instanceof RequestNut);
+        Assert.assertSame(ref, first.getReferencedNuts().get(0));
+        Assert.assertSame(nut.getReferencedNuts().get(0), RequestNut.class.cast(ref).getShared());
+        ref.onReady(onReady, false);
+        ref.transform();
+        Assert.assertEquals(2, count.get());
+        Assert.assertTrue(nut.getReferencedNuts().get(0).getReadyCallbacks().isEmpty());
+    }
 }
@@ -43,8 +43,10 @@ import com.github.wuic.servlet.HtmlParserFilter;
 import com.github.wuic.servlet.HttpServletRequestAdapter;
 import com.github.wuic.util.IOUtils;
 import com.github.wuic.util.InMemoryInput;
+import com.github.wuic.util.NumberUtils;
 import com.github.wuic.util.Input;
 import com.github.wuic.util.Pipe;
+import com.github.wuic.util.XxHash64;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,12 +62,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 import static com.github.wuic.ApplicationConfig.COMPUTE_VERSION_ASYNCHRONOUSLY;
 import static com.github.wuic.ApplicationConfig.CONTENT_BASED_VERSION_NUMBER;
 import static com.github.wuic.ApplicationConfig.FIXED_VERSION_NUMBER;
+import static com.github.wuic.ApplicationConfig.REVALIDATION_SECONDS;
 
 /**
  * <p>
@@ -94,6 +99,15 @@ import static com.github.wuic.ApplicationConfig.FIXED_VERSION_NUMBER;
  * {@link RequestDispatcher} and make sure it works correctly in the servlet container(s) that will deploy your application.
  * </p>
  *
+ * <p>
+ * The content read for each path is kept with a hash computed from the bytes or the chars. When the
+ * {@link ApplicationConfig#REVALIDATION_SECONDS} setting is greater than zero, this content is reused during the
+ * corresponding window instead of dispatching again the request. Since the cache is shared by all the process contexts,
+ * this window should be enabled only for resources which don't depend on the request. The hash is also used to tell
+ * when the content has changed for the last time, making polling operations possible for dynamic resources. When the
+ * window is disabled, the content is only hashed when it's read for polling.
+ * </p>
+ *
  * @author Guillaume DROUET
  * @since 0.5.0
  */
@@ -124,6 +138,16 @@ public class RequestDispatcherNutDao extends AbstractNutDao implements ServletCo
      */
     private ServletContext servletContext;
 
+    /**
+     * The last content read for each path.
+     */
+    private final ConcurrentMap<String, DispatchedContent> contents = new ConcurrentHashMap<String, DispatchedContent>();
+
+    /**
+     * The number of milliseconds during which a content is reused without being dispatched again.
+     */
+    private long revalidationMillis;
+
     /**
      * <p>
      * Initializes a new instance.
@@ -161,6 +185,18 @@ public class RequestDispatcherNutDao extends AbstractNutDao implements ServletCo
         super.init(true, computeVersionAsynchronously, fixedVersionNumber);
     }
 
+    /**
+     * <p>
+     * Initializes the revalidation window.
+     * </p>
+     *
+     * @param revalidationSeconds the number of seconds during which a read content is reused, zero or less to disable
+     */
+    @Config
+    public void init(@IntegerConfigParam(defaultValue = 0, propertyKey = REVALIDATION_SECONDS) final int revalidationSeconds) {
+        revalidationMillis = revalidationSeconds > 0 ? revalidationSeconds * (long) NumberUtils.ONE_THOUSAND : 0L;
+    }
+
     /**
      * <p>
      * Includes the resources at given path in the specified request and response.
@@ -185,15 +221,83 @@ public class RequestDispatcherNutDao extends AbstractNutDao implements ServletCo
 
     /**
      * <p>
-     * Reads the resource content located at the given path.
+     * Reads the resource content located at the given path. If the content has been read during the revalidation window,
+     * it's returned without dispatching the request again. Otherwise the content is read and its hash is compared to the
+     * previous one to detect any change. The hash is only computed if the content can be reused or if it's read for
+     * polling.
+     * </p>
+     *
+     * @param path the path
+     * @param processContext the process context
+     * @param exceptionWhenNullStream {@code true} when a {@link IOException} is thrown if the resource stream if {@code null}
+     * @param polling {@code true} if the content is read to detect changes
+     * @return the execution result providing the content, {@code null} if nothing has been read
+     * @throws IOException if include fails
+     */
+    private Pipe.Execution readContent(final String path,
+                                       final ProcessContext processContext,
+                                       final boolean exceptionWhenNullStream,
+                                       final boolean polling)
+            throws IOException  {
+        final long now = System.currentTimeMillis();
+        final DispatchedContent previous = contents.get(path);
+
+        if (previous != null && previous.isFresh(now)) {
+            return previous.execution();
+        }
+
+        final Pipe.Execution execution = dispatch(path, processContext, exceptionWhenNullStream, polling);
+
+        if (execution == null) {
+            contents.remove(path);
+        } else if (revalidationMillis > 0 || polling) {
+            final long hash = hash(execution);
+            final long changed = previous != null && previous.hash == hash ? previous.changed : now;
+            contents.put(path, new DispatchedContent(revalidationMillis > 0 ? execution : null, hash, changed, now));
+        }
+
+        return execution;
+    }
+
+    /**
+     * <p>
+     * Computes the hash of the given execution's content.
+     * </p>
+     *
+     * @param execution the execution
+     * @return the hash
+     */
+    private static long hash(final Pipe.Execution execution) {
+        if (!execution.isText()) {
+            return XxHash64.hash(execution.getByteResult());
+        }
+
+        final XxHash64 xxHash64 = new XxHash64();
+
+        for (final char c : execution.getCharResult()) {
+            xxHash64.update(c >>> NumberUtils.HEIGHT);
+            xxHash64.update(c);
+        }
+
+        return xxHash64.getValue();
+    }
+
+    /**
+     * <p>
+     * Dispatches the request to read the resource content located at the given path.
      * </p>
      *
      * @param path the path
+     * @param processContext the process context
      * @param exceptionWhenNullStream {@code true} when a {@link IOException} is thrown if the resource stream if {@code null}
+     * @param polling {@code true} if the content is read to detect changes
      * @return the execution result providing the content, {@code null} if nothing has been read
      * @throws IOException if include fails
      */
-    private Pipe.Execution readContent(final String path, final ProcessContext processContext, final boolean exceptionWhenNullStream)
+    private Pipe.Execution dispatch(final String path,
+                                    final ProcessContext processContext,
+                                    final boolean exceptionWhenNullStream,
+                                    final boolean polling)
             throws IOException  {
         if (servletContext == null) {
             throw new IllegalArgumentException(
@@ -203,7 +307,7 @@ public class RequestDispatcherNutDao extends AbstractNutDao implements ServletCo
 
         if (callInclude(path)) {
             final InMemoryHttpServletResponseWrapper wrapper = new InMemoryHttpServletResponseWrapper();
-            include(path, getRequest(path, processContext), wrapper);
+            include(path, getRequest(path, processContext, polling), wrapper);
             final byte[] bytes = wrapper.toByteArray();
 
             // Create an execution based on char or byte array
@@ -269,14 +373,16 @@ public class RequestDispatcherNutDao extends AbstractNutDao implements ServletCo
     /**
      * <p>
      * Extracts the {@link HttpServletRequest} from the given {@link ProcessContext} if it's a {@link ServletProcessContext}.
-     * Otherwise, an adapter wrapping the specified path will be returned.
+     * Otherwise, an adapter wrapping the specified path will be returned. A warning is logged in that case, unless the
+     * request is created for polling, which never has a real request to wrap.
      * </p>
      *
      * @param path the path of the adapter
      * @param processContext the potential instance wrapping the {@link HttpServletRequest}
+     * @param polling {@code true} if the request is created to detect changes
      * @return the resolved {@link HttpServletRequest}
      */
-    private HttpServletRequest getRequest(final String path, final ProcessContext processContext) {
+    private HttpServletRequest getRequest(final String path, final ProcessContext processContext, final boolean polling) {
         final HttpServletRequest retval;
         if (processContext instanceof ServletProcessContext) {
             retval = new HttpServletRequestWrapper(ServletProcessContext.class.cast(processContext).getHttpServletRequest()) {
@@ -291,7 +397,12 @@ public class RequestDispatcherNutDao extends AbstractNutDao implements ServletCo
             };
         } else {
             retval = new HttpServletRequestAdapter(slashPath(path));
-            logger.warn(WARN_MOCK_REQUEST_MESSAGE, processContext);
+
+            if (polling) {
+                logger.debug(WARN_MOCK_REQUEST_MESSAGE, processContext);
+            } else {
+                logger.warn(WARN_MOCK_REQUEST_MESSAGE, processContext);
+            }
         }
 
         retval.setAttribute(HtmlParserFilter.SKIP_FILTER, "");
@@ -311,7 +422,9 @@ public class RequestDispatcherNutDao extends AbstractNutDao implements ServletCo
      */
     @Override
     protected Long getLastUpdateTimestampFor(final String path) throws IOException {
-        throw new UnsupportedOperationException("This DAO can't provide the last timestamp");
+        readContent(path, ProcessContext.DEFAULT, true, true);
+        final DispatchedContent content = contents.get(path);
+        return content == null ? -1L : content.changed;
     }
 
     /**
@@ -337,7 +450,7 @@ public class RequestDispatcherNutDao extends AbstractNutDao implements ServletCo
      */
     @Override
     public Input newInputStream(final String path, final ProcessContext processContext) throws IOException {
-        final Pipe.Execution e = readContent(path, processContext, true);
+        final Pipe.Execution e = readContent(path, processContext, true, false);
 
         if (e == null) {
             return null;
@@ -351,7 +464,7 @@ public class RequestDispatcherNutDao extends AbstractNutDao implements ServletCo
      */
     @Override
     public Boolean exists(final String path, final ProcessContext processContext) throws IOException {
-        return readContent(path, processContext, false) != null;
+        return readContent(path, processContext, false, false) != null;
     }
 
     /**
@@ -410,4 +523,78 @@ public class RequestDispatcherNutDao extends AbstractNutDao implements ServletCo
             return null;
         }
     }
+
+    /**
+     * <p>
+     * The last content read for a path with its hash, the time when the content has been read and the time when the hash
+     * has changed for the last time.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    private final class DispatchedContent {
+
+        /**
+         * The content, {@code null} if it's not retained.
+         */
+        private final Pipe.Execution execution;
+
+        /**
+         * The content hash.
+         */
+        private final long hash;
+
+        /**
+         * When the hash has changed.
+         */
+        private final long changed;
+
+        /**
+         * When the content has been read.
+         */
+        private final long read;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param execution the content to retain, {@code null} if it can't be reused
+         * @param hash the hash
+         * @param changed the last change timestamp
+         * @param read the read timestamp
+         */
+        private DispatchedContent(final Pipe.Execution execution, final long hash, final long changed, final long read) {
+            this.execution = execution;
+            this.hash = hash;
+            this.changed = changed;
+            this.read = read;
+        }
+
+        /**
+         * <p>
+         * Indicates if the retained content can be reused at the given time.
+         * </p>
+         *
+         * @param now the current time
+         * @return {@code true} if the content is still in the revalidation window, {@code false} otherwise
+         */
+        private boolean isFresh(final long now) {
+            return execution != null && now - read < revalidationMillis;
+        }
+
+        /**
+         * <p>
+         * Returns a copy of the retained content.
+         * </p>
+         *
+         * @return the execution
+         */
+        private Pipe.Execution execution() {
+            return execution.isText()
+                    ? new Pipe.Execution(execution.getCharResult(), getCharset())
+                    : new Pipe.Execution(execution.getByteResult(), getCharset());
+        }
+    }
 }
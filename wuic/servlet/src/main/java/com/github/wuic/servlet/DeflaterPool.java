@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2016   The authors of WUIC
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+
+package com.github.wuic.servlet;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * <p>
+ * A pool of {@link Deflater} instances. Creating a {@link Deflater} allocates native memory that is only released when
+ * {@link Deflater#end()} is called, which is expensive when done for each compressed response. This pool keeps the
+ * released instances to reuse them for next responses.
+ * </p>
+ *
+ * <p>
+ * A distinct pool is used for instances producing raw deflate data (used to write GZIP format) and instances producing
+ * the ZLIB format. The number of idle instances is bounded, extra instances are ended when released.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @since 0.5.3
+ */
+public enum DeflaterPool {
+
+    /**
+     * Singleton.
+     */
+    INSTANCE;
+
+    /**
+     * Maximum number of idle instances per pool.
+     */
+    private static final int MAX_IDLE = Runtime.getRuntime().availableProcessors() * 4;
+
+    /**
+     * Idle instances that don't write ZLIB header and checksum.
+     */
+    private final Queue<Deflater> nowrap;
+
+    /**
+     * Idle instances writing ZLIB header and checksum.
+     */
+    private final Queue<Deflater> zlib;
+
+    /**
+     * Number of idle instances in {@link #nowrap} pool.
+     */
+    private final AtomicInteger nowrapIdle;
+
+    /**
+     * Number of idle instances in {@link #zlib} pool.
+     */
+    private final AtomicInteger zlibIdle;
+
+    /**
+     * <p>
+     * Builds a new instance.
+     * </p>
+     */
+    private DeflaterPool() {
+        nowrap = new ConcurrentLinkedQueue<Deflater>();
+        zlib = new ConcurrentLinkedQueue<Deflater>();
+        nowrapIdle = new AtomicInteger();
+        zlibIdle = new AtomicInteger();
+    }
+
+    /**
+     * <p>
+     * Gets a {@link Deflater} from the pool or creates a new one if no idle instance exists.
+     * </p>
+     *
+     * @param noWrap {@code true} if GZIP compatible compression is expected, {@code false} for ZLIB format
+     * @return the deflater ready to be used
+     */
+    public Deflater acquire(final boolean noWrap) {
+        final Deflater retval = (noWrap ? nowrap : zlib).poll();
+
+        if (retval == null) {
+            return new Deflater(Deflater.DEFAULT_COMPRESSION, noWrap);
+        }
+
+        (noWrap ? nowrapIdle : zlibIdle).decrementAndGet();
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Puts back in the pool the given instance acquired with the same flag. The instance is reset before being reused.
+     * </p>
+     *
+     * @param deflater the deflater
+     * @param noWrap the flag used when {@link #acquire(boolean)} has been called
+     */
+    public void release(final Deflater deflater, final boolean noWrap) {
+        final AtomicInteger idle = noWrap ? nowrapIdle : zlibIdle;
+
+        if (idle.incrementAndGet() > MAX_IDLE) {
+            idle.decrementAndGet();
+            deflater.end();
+        } else {
+            deflater.reset();
+            (noWrap ? nowrap : zlib).offer(deflater);
+        }
+    }
+}
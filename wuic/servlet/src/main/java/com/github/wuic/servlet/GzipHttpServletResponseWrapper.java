@@ -19,41 +19,37 @@
  * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
 
-  /*
- * Copyright (c) 2016   The authors of WUIC
- *
- * License/Terms of Use
- * Permission is hereby granted, free of charge and for the term of intellectual
- * property rights on the Software, to any person obtaining a copy of this software
- * and associated documentation files (the "Software"), to use, copy, modify and
- * propagate free of charge, anywhere in the world, all or part of the Software
- * subject to the following mandatory conditions:
- *
- * The above copyright notice and this permission notice shall be included in
- * all copies or substantial portions of the Software.
- *
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
- * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
- * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
- * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
- * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
- * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
- */
-
 
 package com.github.wuic.servlet;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.util.zip.GZIPOutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 /**
  * <p>
- * This class can wrap a {@link ServletOutputStream} and GZIP the stream on the fly.
+ * This class can wrap a {@link ServletOutputStream} and compress the stream on the fly.
+ * </p>
+ *
+ * <p>
+ * The bytes are kept in memory until the minimum size to compress is reached. At this moment, the content type is
+ * checked and compression is applied only if the type is not excluded. If the response is closed before the minimum
+ * size is reached, the content is written without compression. Content that declares its own encoding is never compressed.
+ * </p>
+ *
+ * <p>
+ * Compression uses {@link Deflater} instances retrieved from the {@link DeflaterPool} and the "gzip" or "deflate"
+ * encoding can be applied.
  * </p>
  *
  * @author Guillaume DROUET
@@ -61,9 +57,87 @@ import java.util.zip.GZIPOutputStream;
  */
 public class GzipHttpServletResponseWrapper extends OkHttpServletResponseWrapper {
 
+    /**
+     * Size of the buffer used by the deflater stream.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * <p>
+     * Writes GZIP format with a pooled {@link Deflater}. {@link java.util.zip.GZIPOutputStream} always creates its
+     * own instance and ends it, which does not allow to reuse it.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    private static final class PooledGzipOutputStream extends DeflaterOutputStream {
+
+        /**
+         * GZIP header: magic number, deflate method, no flag, no time, no extra flag and unknown OS.
+         */
+        private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+        /**
+         * Checksum of uncompressed data.
+         */
+        private final CRC32 crc;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param out the stream to write
+         * @param deflater a deflater producing raw data
+         * @throws IOException if header can't be written
+         */
+        private PooledGzipOutputStream(final OutputStream out, final Deflater deflater) throws IOException {
+            super(out, deflater, BUFFER_SIZE);
+            crc = new CRC32();
+            out.write(HEADER);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            super.write(b, off, len);
+            crc.update(b, off, len);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void finish() throws IOException {
+            if (!def.finished()) {
+                super.finish();
+                writeTrailerInt((int) crc.getValue());
+                writeTrailerInt((int) def.getBytesRead());
+            }
+        }
+
+        /**
+         * <p>
+         * Writes the given value in little endian order.
+         * </p>
+         *
+         * @param value the value
+         * @throws IOException if an I/O error occurs
+         */
+        private void writeTrailerInt(final int value) throws IOException {
+            out.write(value & 0xff);
+            out.write((value >> 8) & 0xff);
+            out.write((value >> 16) & 0xff);
+            out.write((value >> 24) & 0xff);
+        }
+    }
+
     /**
      * <p>
-     * Extends {@link ServletOutputStream} and stores the stream in a wrapped byte array.
+     * Extends {@link ServletOutputStream} to compress bytes written to the wrapped stream when relevant.
      * </p>
      *
      * @author Guillaume DROUET
@@ -77,9 +151,25 @@ public class GzipHttpServletResponseWrapper extends OkHttpServletResponseWrapper
         private final ServletOutputStream sos;
 
         /**
-         * The GZIP output stream
+         * Bytes written while the compression is not decided.
+         */
+        private byte[] pending;
+
+        /**
+         * Number of bytes in {@link #pending}.
+         */
+        private int count;
+
+        /**
+         * The stream to write once compression is decided: the compressing stream or the servlet stream itself.
+         * The compressing stream is buffered so single bytes are not deflated one by one.
+         */
+        private OutputStream target;
+
+        /**
+         * The deflater in use, {@code null} if the response is not compressed.
          */
-        private final GZIPOutputStream gos;
+        private Deflater deflater;
 
         /**
          * <p>
@@ -87,18 +177,100 @@ public class GzipHttpServletResponseWrapper extends OkHttpServletResponseWrapper
          * </p>
          *
          * @param sos the wrapper stream
-         * @throws IOException if an I/O error occurs
          */
-        private GzipServletStream(final ServletOutputStream sos) throws IOException{
+        private GzipServletStream(final ServletOutputStream sos) {
             this.sos = sos;
-            this.gos = new GZIPOutputStream(sos);
+            this.pending = new byte[Math.max(minSize, 1)];
+        }
+
+        /**
+         * <p>
+         * Decides if the stream must be compressed and writes the pending bytes to the selected stream.
+         * </p>
+         *
+         * @param small {@code true} if the whole content is known to be smaller than the minimum size
+         * @throws IOException if an I/O error occurs
+         */
+        private void decide(final boolean small) throws IOException {
+            if (!small && isCompressible()) {
+                HttpUtil.INSTANCE.setContentEncodingHeader(GzipHttpServletResponseWrapper.this, encoding);
+                final boolean noWrap = HttpUtil.GZIP.equals(encoding);
+                deflater = DeflaterPool.INSTANCE.acquire(noWrap);
+                target = new BufferedOutputStream(noWrap ?
+                        new PooledGzipOutputStream(sos, deflater) : new DeflaterOutputStream(sos, deflater, BUFFER_SIZE), BUFFER_SIZE);
+            } else {
+                if (contentLength != -1L) {
+                    setContentLengthHeader(contentLength);
+                }
+
+                target = sos;
+            }
+
+            if (count > 0) {
+                target.write(pending, 0, count);
+            }
+
+            pending = null;
+            count = 0;
         }
 
         /**
-         * Makes sures that all gzipped bytes are actually committed to the response.
+         * <p>
+         * Makes sure that all compressed bytes are actually committed to the response and releases the deflater.
+         * </p>
+         *
+         * @throws IOException if an I/O error occurs
          */
+        @Override
         public void close() throws IOException {
-            gos.close();
+            if (target == null) {
+                decide(count < minSize || count == 0);
+            }
+
+            try {
+                target.close();
+            } finally {
+                if (deflater != null) {
+                    DeflaterPool.INSTANCE.release(deflater, HttpUtil.GZIP.equals(encoding));
+                    deflater = null;
+                }
+            }
+        }
+
+        /**
+         * <p>
+         * Forces the compression decision with the bytes written so far. This is called when the response is about to
+         * be committed.
+         * </p>
+         *
+         * @throws IOException if an I/O error occurs
+         */
+        private void commit() throws IOException {
+            if (target == null) {
+                decide(false);
+            }
+        }
+
+        /**
+         * <p>
+         * Drops the bytes not written yet.
+         * </p>
+         */
+        private void reset() {
+            if (target == null) {
+                count = 0;
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void flush() throws IOException {
+            // Pending bytes are kept until the decision can be made
+            if (target != null) {
+                target.flush();
+            }
         }
 
         /**
@@ -106,8 +278,34 @@ public class GzipHttpServletResponseWrapper extends OkHttpServletResponseWrapper
          */
         @Override
         public void write(final int param) throws IOException {
-            // This is where we GZIP what is written
-            gos.write(param);
+            if (target == null) {
+                if (count + 1 < pending.length) {
+                    pending[count++] = (byte) param;
+                    return;
+                }
+
+                decide(false);
+            }
+
+            target.write(param);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            if (target == null) {
+                if (count + len < pending.length) {
+                    System.arraycopy(b, off, pending, count, len);
+                    count += len;
+                    return;
+                }
+
+                decide(false);
+            }
+
+            target.write(b, off, len);
         }
 
         /**
@@ -129,6 +327,26 @@ public class GzipHttpServletResponseWrapper extends OkHttpServletResponseWrapper
         }
     }
 
+    /**
+     * The content encoding to apply.
+     */
+    private final String encoding;
+
+    /**
+     * Responses smaller than this size in bytes are not compressed.
+     */
+    private final int minSize;
+
+    /**
+     * The content types that must not be compressed.
+     */
+    private final Collection<String> excludedTypes;
+
+    /**
+     * The content length declared by the application, -1 if unknown.
+     */
+    private long contentLength;
+
     /**
      * Wrapped stream.
      */
@@ -141,14 +359,80 @@ public class GzipHttpServletResponseWrapper extends OkHttpServletResponseWrapper
 
     /**
      * <p>
-     * Builds a new instance.
+     * Builds a new instance that compresses any content with GZIP.
      * </p>
      *
      * @param httpServletResponse the response to wrap
      */
     public GzipHttpServletResponseWrapper(final HttpServletResponse httpServletResponse) {
+        this(httpServletResponse, HttpUtil.GZIP, 0, Collections.<String>emptyList());
+    }
+
+    /**
+     * <p>
+     * Builds a new instance.
+     * </p>
+     *
+     * @param httpServletResponse the response to wrap
+     * @param encoding the encoding to apply ({@link HttpUtil#GZIP} or {@link HttpUtil#DEFLATE})
+     * @param minSize the minimum size in bytes of a response to compress
+     * @param excludedTypes the prefixes of content types that must not be compressed
+     */
+    public GzipHttpServletResponseWrapper(final HttpServletResponse httpServletResponse,
+                                          final String encoding,
+                                          final int minSize,
+                                          final Collection<String> excludedTypes) {
         super(httpServletResponse);
-        HttpUtil.INSTANCE.setGzipHeader(httpServletResponse);
+        this.encoding = encoding;
+        this.minSize = minSize;
+        this.excludedTypes = excludedTypes;
+        this.contentLength = -1L;
+    }
+
+    /**
+     * <p>
+     * Indicates if the response can be compressed regarding its content type and the encoding already applied.
+     * Partial content is never compressed since the byte positions of the "Content-Range" header refer to the
+     * uncompressed representation.
+     * </p>
+     *
+     * @return {@code true} if compression is allowed, {@code false} otherwise
+     */
+    private boolean isCompressible() {
+        if (getHeader("Content-Encoding") != null
+                || getStatus() == SC_PARTIAL_CONTENT
+                || getHeader("Content-Range") != null) {
+            return false;
+        }
+
+        final String contentType = getContentType();
+
+        if (contentType != null) {
+            final String type = contentType.toLowerCase();
+
+            for (final String excluded : excludedTypes) {
+                if (type.startsWith(excluded)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * <p>
+     * Sets the content length to the wrapped response.
+     * </p>
+     *
+     * @param length the length
+     */
+    private void setContentLengthHeader(final long length) {
+        if (length <= Integer.MAX_VALUE) {
+            super.setContentLength((int) length);
+        } else {
+            super.setHeader("Content-Length", String.valueOf(length));
+        }
     }
 
     /**
@@ -160,10 +444,123 @@ public class GzipHttpServletResponseWrapper extends OkHttpServletResponseWrapper
      */
     public void close() throws IOException {
         // Delegate call
-        if (gss != null) {
-            gss.close();
-        } else if (pw != null) {
+        if (pw != null) {
             pw.close();
+        } else if (gss != null) {
+            gss.close();
+        }
+    }
+
+    /**
+     * <p>
+     * The value is only recorded here: the header is set when the compression is decided, and only if the response
+     * is not compressed. The decision is made when the output stream is created if the length is lower than the
+     * minimum size. Otherwise it is deferred until the written bytes reach the minimum size, the response is committed
+     * or the stream is closed.
+     * </p>
+     *
+     * @param len the content length
+     */
+    @Override
+    public void setContentLength(final int len) {
+        contentLength = len;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setContentLengthLong(final long len) {
+        contentLength = len;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setHeader(final String name, final String value) {
+        if (isContentLength(name)) {
+            contentLength = value == null ? -1L : Long.parseLong(value.trim());
+        } else {
+            super.setHeader(name, value);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addHeader(final String name, final String value) {
+        // Only one content length is allowed, adding the header replaces it
+        if (isContentLength(name)) {
+            setHeader(name, value);
+        } else {
+            super.addHeader(name, value);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setIntHeader(final String name, final int value) {
+        if (isContentLength(name)) {
+            contentLength = value;
+        } else {
+            super.setIntHeader(name, value);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addIntHeader(final String name, final int value) {
+        if (isContentLength(name)) {
+            contentLength = value;
+        } else {
+            super.addIntHeader(name, value);
+        }
+    }
+
+    /**
+     * <p>
+     * Indicates if the given header name is "Content-Length", which is recorded instead of being set to the response.
+     * </p>
+     *
+     * @param name the header name
+     * @return {@code true} if the header is the content length, {@code false} otherwise
+     */
+    private static boolean isContentLength(final String name) {
+        return "content-length".equalsIgnoreCase(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flushBuffer() throws IOException {
+        // Response will be committed, the headers must be set
+        if (pw != null) {
+            pw.flush();
+        }
+
+        if (gss != null) {
+            gss.commit();
+        }
+
+        super.flushBuffer();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+
+        if (gss != null) {
+            gss.reset();
         }
     }
 
@@ -177,8 +574,25 @@ public class GzipHttpServletResponseWrapper extends OkHttpServletResponseWrapper
             throw new IllegalStateException("getWriter() already called!");
         }
 
+        return stream();
+    }
+
+    /**
+     * <p>
+     * Gets the compressing stream, creating it if necessary.
+     * </p>
+     *
+     * @return the stream
+     * @throws IOException if an I/O error occurs
+     */
+    private GzipServletStream stream() throws IOException {
         if (gss == null) {
             gss = new GzipServletStream(super.getOutputStream());
+
+            // Small content: no need to wait for the bytes
+            if (contentLength != -1L && contentLength < minSize) {
+                gss.decide(true);
+            }
         }
 
         return gss;
@@ -190,14 +604,14 @@ public class GzipHttpServletResponseWrapper extends OkHttpServletResponseWrapper
     @Override
     public PrintWriter getWriter() throws IOException {
         // Makes sure both methods are not called since this is not allowed
-        if (gss != null) {
+        if (gss != null && pw == null) {
             throw new IllegalStateException("getOutputStream() already called!");
         }
 
         if (pw == null) {
             // Force UTF-8 encoding
-            pw = new PrintWriter(new OutputStreamWriter(new GzipServletStream(super.getOutputStream()), "UTF-8"));
             super.setCharacterEncoding("UTF-8");
+            pw = new PrintWriter(new OutputStreamWriter(stream(), "UTF-8"));
         }
 
         return pw;
@@ -0,0 +1,548 @@
+/*
+ * Copyright (c) 2016   The authors of WUIC
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.github.wuic.servlet;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Wraps an {@link HttpServletResponse} to capture the written stream like {@link InMemoryHttpServletResponseWrapper}.
+ * Additionally, the captured content is inspected while it is written: as soon as the end of the "head" section is
+ * detected, the captured head is given to a {@link OnHeadReady callback} that can process and flush it before the rest
+ * of the page is written. The remaining content is then captured as usual.
+ * </p>
+ *
+ * <p>
+ * A closing head tag written inside a comment or a script is not the end of the head section and is ignored.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @since 0.5.3
+ */
+public class HeadFlushHttpServletResponseWrapper extends OkHttpServletResponseWrapper {
+
+    /**
+     * The closing head tag.
+     */
+    private static final String HEAD_END = "</head>";
+
+    /**
+     * The beginning of a comment.
+     */
+    private static final String COMMENT_START = "<!--";
+
+    /**
+     * The end of a comment.
+     */
+    private static final String COMMENT_END = "-->";
+
+    /**
+     * The beginning of an opening script tag.
+     */
+    private static final String SCRIPT_START = "<script";
+
+    /**
+     * The beginning of a closing script tag.
+     */
+    private static final String SCRIPT_END = "</script";
+
+    /**
+     * <p>
+     * The section of the content where the inspection currently is.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    private enum Section {
+
+        /**
+         * Markup where the closing head tag can be found.
+         */
+        MARKUP,
+
+        /**
+         * Inside a comment.
+         */
+        COMMENT,
+
+        /**
+         * Inside a script.
+         */
+        SCRIPT
+    }
+
+    /**
+     * <p>
+     * Callback notified when the head section has been written.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    public interface OnHeadReady {
+
+        /**
+         * <p>
+         * Called when the head section has been captured. Exactly one of the given arrays is not {@code null}.
+         * </p>
+         *
+         * @param bytes the head bytes if the content is written to the output stream
+         * @param chars the head chars if the content is written to the writer
+         * @throws IOException if the head can't be written
+         */
+        void ready(byte[] bytes, char[] chars) throws IOException;
+    }
+
+    /**
+     * <p>
+     * A byte array output stream giving access to its internal buffer for inspection.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    private static final class InspectedByteArray extends ByteArrayOutputStream {
+
+        /**
+         * <p>
+         * Gets the byte at the given index.
+         * </p>
+         *
+         * @param index the index
+         * @return the byte
+         */
+        private int at(final int index) {
+            return buf[index];
+        }
+
+        /**
+         * <p>
+         * Removes the first bytes and returns them.
+         * </p>
+         *
+         * @param length the number of bytes to remove
+         * @return the removed bytes
+         */
+        private byte[] cut(final int length) {
+            final byte[] retval = Arrays.copyOf(buf, length);
+            System.arraycopy(buf, length, buf, 0, count - length);
+            count -= length;
+            return retval;
+        }
+    }
+
+    /**
+     * <p>
+     * A char array writer giving access to its internal buffer for inspection.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    private static final class InspectedCharArray extends CharArrayWriter {
+
+        /**
+         * <p>
+         * Gets the char at the given index.
+         * </p>
+         *
+         * @param index the index
+         * @return the char
+         */
+        private int at(final int index) {
+            return buf[index];
+        }
+
+        /**
+         * <p>
+         * Removes the first chars and returns them.
+         * </p>
+         *
+         * @param length the number of chars to remove
+         * @return the removed chars
+         */
+        private char[] cut(final int length) {
+            final char[] retval = Arrays.copyOf(buf, length);
+            System.arraycopy(buf, length, buf, 0, count - length);
+            count -= length;
+            return retval;
+        }
+    }
+
+    /**
+     * <p>
+     * Stream capturing bytes and looking for the end of the head section.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    private final class InspectedServletStream extends ServletOutputStream {
+
+        /**
+         * The stream of the wrapped response.
+         */
+        private final ServletOutputStream wrapped;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param wrapped the stream of the wrapped response
+         */
+        private InspectedServletStream(final ServletOutputStream wrapped) {
+            this.wrapped = wrapped;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(final int param) throws IOException {
+            bytes.write(param);
+            inspect();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            bytes.write(b, off, len);
+            inspect();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isReady() {
+            // delegate to wrapped output stream
+            return wrapped.isReady();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void setWriteListener(final WriteListener writeListener) {
+            // delegate to wrapped output stream
+            wrapped.setWriteListener(writeListener);
+        }
+    }
+
+    /**
+     * <p>
+     * Writer capturing chars and looking for the end of the head section.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    private final class InspectedWriter extends Writer {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) throws IOException {
+            chars.write(cbuf, off, len);
+            inspect();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(final String str, final int off, final int len) throws IOException {
+            chars.write(str, off, len);
+            inspect();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void flush() {
+            // content is kept in memory
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() {
+            // content is kept in memory
+        }
+    }
+
+    /**
+     * The callback.
+     */
+    private final OnHeadReady onHeadReady;
+
+    /**
+     * Captured bytes.
+     */
+    private final InspectedByteArray bytes;
+
+    /**
+     * Captured chars.
+     */
+    private final InspectedCharArray chars;
+
+    /**
+     * Print writer built on top of char array.
+     */
+    private PrintWriter pw;
+
+    /**
+     * Servlet output stream built on top of byte array.
+     */
+    private ServletOutputStream sos;
+
+    /**
+     * Position until which the captured content does not contain the end of the head section.
+     */
+    private int inspected;
+
+    /**
+     * The section at the {@link #inspected} position.
+     */
+    private Section section;
+
+    /**
+     * If the head section has been given to the callback.
+     */
+    private boolean headFlushed;
+
+    /**
+     * <p>
+     * Builds a new instance.
+     * </p>
+     *
+     * @param httpServletResponse a response to wrap
+     * @param onHeadReady the callback notified with the head section
+     */
+    public HeadFlushHttpServletResponseWrapper(final HttpServletResponse httpServletResponse, final OnHeadReady onHeadReady) {
+        super(httpServletResponse);
+        this.onHeadReady = onHeadReady;
+        this.bytes = new InspectedByteArray();
+        this.chars = new InspectedCharArray();
+        this.section = Section.MARKUP;
+    }
+
+    /**
+     * <p>
+     * Looks for the end of the head section in the content written since the last call. If found, the head section
+     * is removed from the captured content and given to the callback. Comments and scripts are skipped. The inspection
+     * stops before a token that is not entirely written yet and resumes at the next call.
+     * </p>
+     *
+     * @throws IOException if callback fails
+     */
+    private void inspect() throws IOException {
+        if (headFlushed) {
+            return;
+        }
+
+        final boolean isBytes = sos != null;
+        final int count = isBytes ? bytes.size() : chars.size();
+
+        while (inspected < count) {
+            final int length;
+
+            if (section != Section.MARKUP) {
+                length = match(isBytes, count, section == Section.COMMENT ? COMMENT_END : SCRIPT_END);
+
+                if (length < 0) {
+                    return;
+                } else if (length > 0) {
+                    section = Section.MARKUP;
+                }
+            } else if ((length = match(isBytes, count, HEAD_END)) != 0) {
+                if (length > 0) {
+                    headFlushed = true;
+                    final int end = inspected + length;
+
+                    if (isBytes) {
+                        onHeadReady.ready(bytes.cut(end), null);
+                    } else {
+                        onHeadReady.ready(null, chars.cut(end));
+                    }
+                }
+
+                return;
+            } else {
+                final int comment = match(isBytes, count, COMMENT_START);
+
+                if (comment < 0) {
+                    return;
+                } else if (comment > 0) {
+                    section = Section.COMMENT;
+                    inspected += comment;
+                    continue;
+                }
+
+                final int script = match(isBytes, count, SCRIPT_START);
+
+                if (script < 0 || (script > 0 && inspected + script == count)) {
+                    return;
+                } else if (script > 0 && isScriptTagEnd(at(isBytes, inspected + script))) {
+                    section = Section.SCRIPT;
+                    inspected += script;
+                    continue;
+                }
+            }
+
+            inspected += Math.max(length, 1);
+        }
+    }
+
+    /**
+     * <p>
+     * Indicates if the given character ends the name of a script tag.
+     * </p>
+     *
+     * @param c the character following the tag name
+     * @return {@code true} if the tag is a script tag, {@code false} otherwise
+     */
+    private static boolean isScriptTagEnd(final int c) {
+        return c == '>' || c == '/' || Character.isWhitespace((char) c);
+    }
+
+    /**
+     * <p>
+     * Gets the captured byte or char at the given index.
+     * </p>
+     *
+     * @param isBytes read the bytes or the chars
+     * @param index the index
+     * @return the character
+     */
+    private int at(final boolean isBytes, final int index) {
+        return isBytes ? bytes.at(index) : chars.at(index);
+    }
+
+    /**
+     * <p>
+     * Indicates if the given token starts at the {@link #inspected} position, ignoring case.
+     * </p>
+     *
+     * @param isBytes inspect the bytes or the chars
+     * @param count the number of captured bytes or chars
+     * @param token the token in lower case
+     * @return the token length if found, 0 if not found, -1 if the captured content is a prefix of the token
+     */
+    private int match(final boolean isBytes, final int count, final String token) {
+        for (int i = 0; i < token.length(); i++) {
+            if (inspected + i == count) {
+                return -1;
+            } else if (Character.toLowerCase((char) at(isBytes, inspected + i)) != token.charAt(i)) {
+                return 0;
+            }
+        }
+
+        return token.length();
+    }
+
+    /**
+     * <p>
+     * Indicates if the head section has been detected and given to the callback.
+     * </p>
+     *
+     * @return {@code true} if head has been flushed, {@code false} otherwise
+     */
+    public boolean isHeadFlushed() {
+        return headFlushed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (pw != null) {
+            throw new IllegalStateException("getWriter() already called!");
+        }
+
+        if (sos == null) {
+            sos = new InspectedServletStream(super.getOutputStream());
+        }
+
+        return sos;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (sos != null) {
+            throw new IllegalStateException("getOutputStream() already called!");
+        }
+
+        if (pw == null) {
+            pw = new PrintWriter(new InspectedWriter());
+        }
+
+        return pw;
+    }
+
+    /**
+     * <p>
+     * Gets the byte array captured after the head section or the entire content if no head section has been detected.
+     * </p>
+     *
+     * @return the byte array, {@code null} if nothing has been written to {@link #getOutputStream()}
+     */
+    public byte[] toByteArray() {
+        return sos != null ? bytes.toByteArray() : null;
+    }
+
+    /**
+     * <p>
+     * Gets the char array captured after the head section or the entire content if no head section has been detected.
+     * </p>
+     *
+     * @return the char array, {@code null} if nothing has been written to {@link #getWriter()}
+     */
+    public char[] toCharArray() {
+        if (pw == null) {
+            return null;
+        }
+
+        pw.flush();
+        return chars.toCharArray();
+    }
+}
@@ -28,6 +28,8 @@ import com.github.wuic.NutType;
 import com.github.wuic.WuicFacade;
 import com.github.wuic.context.HeapResolutionEvent;
 import com.github.wuic.context.SimpleContextBuilderConfigurator;
+import com.github.wuic.engine.EngineType;
+import com.github.wuic.engine.core.HtmlTransformer;
 import com.github.wuic.exception.WuicException;
 import com.github.wuic.nut.ConvertibleNut;
 import com.github.wuic.nut.HeapListener;
@@ -39,6 +41,7 @@ import com.github.wuic.util.FutureLong;
 import com.github.wuic.util.IOUtils;
 import com.github.wuic.util.NumberUtils;
 import com.github.wuic.util.NutUtils;
+import com.github.wuic.util.Pipe;
 import com.github.wuic.util.StringUtils;
 import com.github.wuic.util.UrlProvider;
 import com.github.wuic.util.UrlProviderFactory;
@@ -60,6 +63,8 @@ import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
@@ -102,6 +107,14 @@ import java.util.concurrent.Future;
  * You can disable the server-push with the {@link #DISABLE_SERVER_PUSH} init-param.
  * </p>
  *
+ * <p>
+ * By default the entire page is buffered before being parsed. The {@link #STREAMING} init-param enables a mode where
+ * the head section is parsed with its own workflow and flushed as soon as the closing head tag is written, letting the
+ * browser start downloading the referenced resources while the rest of the page is generated. The remaining content is
+ * parsed when the page is complete. In this mode, only the resources referenced in the head section are pushed or hinted
+ * and the response has no ETag.
+ * </p>
+ *
  * @author Guillaume DROUET
  * @since 0.4.4
  */
@@ -122,6 +135,26 @@ public class HtmlParserFilter extends SimpleContextBuilderConfigurator implement
      */
     public static final String SKIP_FILTER = HtmlParserFilter.class.getName() + ".skip";
 
+    /**
+     * Init-param enabling the streaming mode: the head section is parsed and flushed as soon as it is written.
+     */
+    public static final String STREAMING = "c.g.wuic.filter.streaming";
+
+    /**
+     * Name of the part corresponding to the head section in streaming mode.
+     */
+    private static final String HEAD_PART = "head";
+
+    /**
+     * Name of the part following the head section in streaming mode.
+     */
+    private static final String BODY_PART = "body";
+
+    /**
+     * Maximum number of parsed dynamic page skeletons kept in memory.
+     */
+    private static final int PARSE_CACHE_SIZE = 256;
+
     /**
      * The logger.
      */
@@ -137,6 +170,11 @@ public class HtmlParserFilter extends SimpleContextBuilderConfigurator implement
      */
     private final Map<String, InMemoryNut> filterDataMap;
 
+    /**
+     * Parsed dynamic pages associated to their workflow ID and the fingerprint of their asset statements skeleton.
+     */
+    private final Map<String, ParsedPage> parseCache;
+
     /**
      * The WUIC facade.
      */
@@ -157,6 +195,11 @@ public class HtmlParserFilter extends SimpleContextBuilderConfigurator implement
      */
     private boolean forceDynamicContent;
 
+    /**
+     * Streams the page by flushing the head section as soon as possible.
+     */
+    private boolean streaming;
+
     /**
      * <p>
      * Builds a new instance with a specific {@link WuicFacade} and a root {@link com.github.wuic.nut.dao.NutDao} builder.
@@ -168,6 +211,12 @@ public class HtmlParserFilter extends SimpleContextBuilderConfigurator implement
     public HtmlParserFilter(final WuicFacade wuicFacade, final String rootNuDaoBuilderId) {
         super(HtmlParserFilter.class.getName());
         this.filterDataMap = new HashMap<String, InMemoryNut>();
+        this.parseCache = new LinkedHashMap<String, ParsedPage>(PARSE_CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, ParsedPage> eldest) {
+                return size() > PARSE_CACHE_SIZE;
+            }
+        };
         this.wuicFacade = wuicFacade;
         this.rootNuDaoBuilderId = rootNuDaoBuilderId;
     }
@@ -209,6 +258,7 @@ public class HtmlParserFilter extends SimpleContextBuilderConfigurator implement
 
             configureServerPush(filterConfig);
             forceDynamicContent = "true".equals(filterConfig.getInitParameter(FORCE_DYNAMIC_CONTENT));
+            streaming = "true".equals(filterConfig.getInitParameter(STREAMING));
         } catch (WuicException we) {
             throw new ServletException(we);
         }
@@ -249,39 +299,126 @@ public class HtmlParserFilter extends SimpleContextBuilderConfigurator implement
         }
 
         request.setAttribute(HtmlParserFilter.class.getName(), Boolean.TRUE);
+        final HttpServletRequest httpRequest = HttpServletRequest.class.cast(request);
         final HttpServletResponse httpServletResponse = HttpServletResponse.class.cast(response);
+        final String workflowId = "W" + StringUtils.toHexString(IOUtils.digest(extractWorkflowId(httpRequest)));
+
+        if (streaming) {
+            streamFilter(httpRequest, httpServletResponse, chain, workflowId);
+            return;
+        }
+
         final InMemoryHttpServletResponseWrapper wrapper = new InMemoryHttpServletResponseWrapper(httpServletResponse);
 
         chain.doFilter(request, new HttpServletResponseWrapper(wrapper));
+        writePage(httpRequest, httpServletResponse, workflowId, wrapper.toByteArray(), wrapper.toCharArray());
+    }
+
+    /**
+     * <p>
+     * Filters the page in streaming mode. The head section is parsed and flushed as soon as it has been written by the
+     * filter chain. The rest of the page is then parsed and written when the filter chain returns. If no head section
+     * is detected, the page is processed as a whole.
+     * </p>
+     *
+     * @param httpRequest the request
+     * @param httpResponse the response
+     * @param chain the filter chain
+     * @param workflowId the workflow ID of the filtered page
+     * @throws IOException if an I/O error occurs
+     * @throws ServletException if filter chain fails
+     */
+    private void streamFilter(final HttpServletRequest httpRequest,
+                              final HttpServletResponse httpResponse,
+                              final FilterChain chain,
+                              final String workflowId)
+            throws IOException, ServletException {
+        final HeadFlushHttpServletResponseWrapper wrapper = new HeadFlushHttpServletResponseWrapper(httpResponse,
+                new HeadFlushHttpServletResponseWrapper.OnHeadReady() {
+                    @Override
+                    public void ready(final byte[] bytes, final char[] chars) throws IOException {
+                        streamPart(httpRequest, httpResponse, workflowId, HEAD_PART, bytes, chars);
+                    }
+                });
+
+        chain.doFilter(httpRequest, new HttpServletResponseWrapper(wrapper));
         final byte[] bytes = wrapper.toByteArray();
         final char[] chars = wrapper.toCharArray();
 
+        if (!wrapper.isHeadFlushed()) {
+            writePage(httpRequest, httpResponse, workflowId, bytes, chars);
+        } else if ((bytes != null && bytes.length > 0) || (chars != null && chars.length > 0)) {
+            streamPart(httpRequest, httpResponse, workflowId, BODY_PART, bytes, chars);
+        }
+    }
+
+    /**
+     * <p>
+     * Parses the given part of the page with its own workflow and streams the result to the response. When the part is
+     * the head section, referenced nuts are pushed or hinted before the response is committed. The workflow skips the
+     * binary compression since the parts are written one after the other to the same response.
+     * </p>
+     *
+     * @param httpRequest the request
+     * @param httpResponse the response
+     * @param workflowId the workflow ID of the filtered page
+     * @param part the part name, {@link #HEAD_PART} or {@link #BODY_PART}
+     * @param bytes the bytes, {@code null} or empty if the content is a char stream
+     * @param chars the chars, {@code null} or empty if the content is a byte stream
+     * @throws IOException if an I/O error occurs
+     */
+    private void streamPart(final HttpServletRequest httpRequest,
+                            final HttpServletResponse httpResponse,
+                            final String workflowId,
+                            final String part,
+                            final byte[] bytes,
+                            final char[] chars)
+            throws IOException {
+        try {
+            final String partWorkflowId = workflowId + part;
+            final String path = buildPath(httpRequest, httpResponse);
+            final int index = path.lastIndexOf('.');
+            final String partPath = index > path.lastIndexOf('/') ?
+                    path.substring(0, index) + '-' + part + path.substring(index) : path + '-' + part;
+            final ConvertibleNut partNut = parse(httpRequest, partWorkflowId, partPath, bytes, chars, EngineType.BINARY_COMPRESSION);
+
+            if (HEAD_PART.equals(part)) {
+                pushOrHint(httpRequest, httpResponse, partWorkflowId, partNut);
+            }
+
+            HttpUtil.INSTANCE.stream(partNut, httpResponse);
+        } catch (WuicException we) {
+            logger.error("Unable to parse HTML", we);
+            writeUnparsed(httpResponse, bytes, chars);
+            httpResponse.getOutputStream().flush();
+        }
+    }
+
+    /**
+     * <p>
+     * Parses the entire page and writes the result to the response.
+     * </p>
+     *
+     * @param httpRequest the request
+     * @param httpResponse the response
+     * @param workflowId the workflow ID of the filtered page
+     * @param bytes the bytes, {@code null} or empty if the content is a char stream
+     * @param chars the chars, {@code null} or empty if the content is a byte stream
+     * @throws IOException if an I/O error occurs
+     */
+    private void writePage(final HttpServletRequest httpRequest,
+                           final HttpServletResponse httpResponse,
+                           final String workflowId,
+                           final byte[] bytes,
+                           final char[] chars)
+            throws IOException {
+
         // There is some content to parse
         if ((bytes != null && bytes.length > 0) || (chars != null && chars.length > 0)) {
             try {
-                final HttpServletRequest httpRequest = HttpServletRequest.class.cast(request);
-                final String workflowId = "W" + StringUtils.toHexString(IOUtils.digest(extractWorkflowId(httpRequest)));
-                final String path = buildPath(httpRequest, httpServletResponse);
-                updateWorkflow(httpRequest, bytes, chars, workflowId, path);
-
-                final List<ConvertibleNut> nuts = wuicFacade.runWorkflow(workflowId, new ServletProcessContext(httpRequest));
-                logger.info("Finding nut {} for run workflow {}", path, workflowId);
-                final ConvertibleNut htmlNut = NutUtils.findByName(nuts, path);
-
-                if (htmlNut == null) {
-                    WuicException.throwBadStateException(new IllegalStateException("The filtered page has not been found in parsed result."));
-                    return;
-                }
-
-                final HttpServletResponse httpResponse = HttpServletResponse.class.cast(response);
-                final UrlProvider provider = getUrlProvider(httpRequest).create(IOUtils.mergePath(wuicFacade.getContextPath(), workflowId));
-                final Map<String, ConvertibleNut> collectedNut = collectReferenceNut(provider, htmlNut);
-
-                if (pushService != null) {
-                    pushService.push(httpRequest, httpResponse, collectedNut.keySet());
-                } else {
-                    hint(collectedNut, httpResponse);
-                }
+                final String path = buildPath(httpRequest, httpResponse);
+                final ConvertibleNut htmlNut = parse(httpRequest, workflowId, path, bytes, chars);
+                pushOrHint(httpRequest, httpResponse, workflowId, htmlNut);
 
                 final ConvertibleNut writeNut;
 
@@ -301,9 +438,111 @@ public class HtmlParserFilter extends SimpleContextBuilderConfigurator implement
                 HttpUtil.INSTANCE.write(writeNut, httpRequest, httpResponse, false);
             } catch (WuicException we) {
                 logger.error("Unable to parse HTML", we);
-                response.getOutputStream().print(bytes != null && bytes.length > 0 ? new String(bytes) : new String(chars));
+                writeUnparsed(httpResponse, bytes, chars);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Updates and runs the workflow for the given content and retrieves the resulting nut.
+     * </p>
+     *
+     * <p>
+     * When the content is dynamic, the result is cached with the fingerprint of the asset statements skeleton. A
+     * content with the same skeleton is then directly associated to the cached transformers: the replacements computed
+     * by the previous parsing are spliced into the new content without running the workflow again.
+     * </p>
+     *
+     * @param httpRequest the request
+     * @param workflowId the workflow ID
+     * @param path the filtered nut path
+     * @param bytes the bytes, {@code null} or empty if the content is a char stream
+     * @param chars the chars, {@code null} or empty if the content is a byte stream
+     * @param skip the engine types to skip when running the workflow
+     * @return the parsed nut
+     * @throws IOException if an I/O error occurs
+     * @throws WuicException if workflow can't be run or if the parsed nut is not found
+     */
+    private ConvertibleNut parse(final HttpServletRequest httpRequest,
+                                 final String workflowId,
+                                 final String path,
+                                 final byte[] bytes,
+                                 final char[] chars,
+                                 final EngineType ... skip)
+            throws IOException, WuicException {
+        final String key;
+
+        if (isDynamic(httpRequest)) {
+            final String content = bytes != null && bytes.length > 0 ?
+                    new String(bytes, Charset.forName(wuicFacade.getNutTypeFactory().getCharset())) : new String(chars);
+            key = workflowId + ':' + HtmlTransformer.fingerprint(content);
+        } else {
+            key = null;
+        }
+
+        // The workflow is registered and its content updated even if the cached page is reused
+        updateWorkflow(httpRequest, bytes, chars, workflowId, path);
+
+        // The workflow update can build the context again
+        final long contextVersion = wuicFacade.getContextVersion();
+
+        if (key != null) {
+            final ParsedPage parsedPage;
+
+            synchronized (parseCache) {
+                parsedPage = parseCache.get(key);
+            }
+
+            if (parsedPage != null && parsedPage.contextVersion == contextVersion) {
+                logger.debug("Asset statements of dynamic nut {} did not change, reusing parsed page", path);
+                return parsedPage.newNut(path, bytes, chars);
+            }
+        }
+
+        final List<ConvertibleNut> nuts = wuicFacade.runWorkflow(workflowId, new ServletProcessContext(httpRequest), skip);
+        logger.info("Finding nut {} for run workflow {}", path, workflowId);
+        final ConvertibleNut htmlNut = NutUtils.findByName(nuts, path);
+
+        if (htmlNut == null) {
+            WuicException.throwBadStateException(new IllegalStateException("The filtered page has not been found in parsed result."));
+        } else if (key != null && htmlNut.isDynamic() && htmlNut.getTransformers() != null) {
+            for (final Pipe.Transformer<ConvertibleNut> transformer : htmlNut.getTransformers()) {
+                if (transformer instanceof HtmlTransformer) {
+                    synchronized (parseCache) {
+                        parseCache.put(key, new ParsedPage(htmlNut, contextVersion));
+                    }
+
+                    break;
+                }
             }
         }
+
+        return htmlNut;
+    }
+
+    /**
+     * <p>
+     * Pushes the nuts referenced by the given nut if a {@link PushService} is installed, hints them otherwise.
+     * </p>
+     *
+     * @param httpRequest the request
+     * @param httpResponse the response
+     * @param workflowId the workflow that produced the nut
+     * @param nut the parsed nut
+     */
+    private void pushOrHint(final HttpServletRequest httpRequest,
+                            final HttpServletResponse httpResponse,
+                            final String workflowId,
+                            final ConvertibleNut nut) {
+        final UrlProvider provider = getUrlProvider(httpRequest).create(IOUtils.mergePath(wuicFacade.getContextPath(), workflowId));
+        final Map<String, ConvertibleNut> collectedNut = collectReferenceNut(provider, nut);
+
+        if (pushService != null) {
+            pushService.push(httpRequest, httpResponse, collectedNut.keySet());
+        } else {
+            hint(collectedNut, httpResponse);
+        }
     }
 
     /**
@@ -483,6 +722,26 @@ public class HtmlParserFilter extends SimpleContextBuilderConfigurator implement
         return workflowBuilder.toString();
     }
 
+    /**
+     * <p>
+     * Writes the filtered content as is when it can't be parsed. Bytes are copied without being decoded and chars are
+     * encoded with the character encoding of the response.
+     * </p>
+     *
+     * @param httpResponse the response
+     * @param bytes the bytes, {@code null} or empty if the content is a char stream
+     * @param chars the chars, {@code null} or empty if the content is a byte stream
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeUnparsed(final HttpServletResponse httpResponse, final byte[] bytes, final char[] chars)
+            throws IOException {
+        if (bytes != null && bytes.length > 0) {
+            httpResponse.getOutputStream().write(bytes);
+        } else {
+            httpResponse.getOutputStream().write(IOUtils.toBytes(Charset.forName(httpResponse.getCharacterEncoding()), chars));
+        }
+    }
+
     /**
      * <p>
      * Creates a {@code Long} value representing a version number computed from the given byte array if not {@code null}
@@ -575,6 +834,14 @@ public class HtmlParserFilter extends SimpleContextBuilderConfigurator implement
                             synchronized (filterDataMap) {
                                 filterDataMap.remove(workflowId);
                             }
+
+                            synchronized (parseCache) {
+                                for (final Iterator<String> it = parseCache.keySet().iterator(); it.hasNext();) {
+                                    if (it.next().startsWith(workflowId + ':')) {
+                                        it.remove();
+                                    }
+                                }
+                            }
                         }
 
                         @Override
@@ -593,6 +860,70 @@ public class HtmlParserFilter extends SimpleContextBuilderConfigurator implement
         return retval;
     }
 
+    /**
+     * <p>
+     * The result of a dynamic page parsing that can be applied to any content with the same asset statements skeleton.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    private final class ParsedPage {
+
+        /**
+         * The nut resulting from the workflow execution.
+         */
+        private final ConvertibleNut parsed;
+
+        /**
+         * The context version when the workflow has been executed.
+         */
+        private final long contextVersion;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param parsed the parsed nut
+         * @param contextVersion the context version
+         */
+        private ParsedPage(final ConvertibleNut parsed, final long contextVersion) {
+            this.parsed = parsed;
+            this.contextVersion = contextVersion;
+        }
+
+        /**
+         * <p>
+         * Creates a new nut for the given content, transformed and referencing nuts like the parsed nut.
+         * </p>
+         *
+         * @param path the nut path
+         * @param bytes the bytes, {@code null} or empty if the content is a char stream
+         * @param chars the chars, {@code null} or empty if the content is a byte stream
+         * @return the new nut
+         * @throws WuicException if the nut type can't be retrieved
+         */
+        private ConvertibleNut newNut(final String path, final byte[] bytes, final char[] chars) throws WuicException {
+            final NutType nutType = wuicFacade.getNutTypeFactory().getNutType(EnumNutType.HTML);
+            final Long versionNumber = getVersionNumber(chars, bytes);
+            final InMemoryNut retval = bytes != null && bytes.length > 0 ?
+                    new InMemoryNut(bytes, path, nutType, versionNumber, true) : new InMemoryNut(chars, path, nutType, versionNumber, true);
+
+            for (final Pipe.Transformer<ConvertibleNut> transformer : parsed.getTransformers()) {
+                retval.addTransformer(transformer);
+            }
+
+            if (parsed.getReferencedNuts() != null) {
+                for (final ConvertibleNut ref : parsed.getReferencedNuts()) {
+                    retval.addReferencedNut(ref);
+                }
+            }
+
+            return retval;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -23,8 +23,14 @@
 package com.github.wuic.servlet;
 
 import com.github.wuic.nut.ConvertibleNut;
+import com.github.wuic.nut.RequestNut;
+import com.github.wuic.nut.SizableNut;
 import com.github.wuic.nut.Source;
 import com.github.wuic.nut.SourceMapNut;
+import com.github.wuic.nut.TransformedNut;
+import com.github.wuic.util.IOUtils;
+import com.github.wuic.util.Input;
+import com.github.wuic.util.NumberUtils;
 import com.github.wuic.util.NutUtils;
 import com.github.wuic.util.Pipe;
 import org.slf4j.Logger;
@@ -32,7 +38,16 @@ import org.slf4j.LoggerFactory;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 /**
  * <p>
@@ -60,6 +75,32 @@ public enum HttpUtil {
      */
     public static final String INCLUDE_REQUEST_URI_ATTRIBUTE = "javax.servlet.include.request_uri";
 
+    /**
+     * GZIP content encoding.
+     */
+    public static final String GZIP = "gzip";
+
+    /**
+     * Deflate content encoding.
+     */
+    public static final String DEFLATE = "deflate";
+
+    /**
+     * The unit used in "Range" header.
+     */
+    private static final String BYTES_UNIT = "bytes";
+
+    /**
+     * The boundary separating the parts of a "multipart/byteranges" body.
+     */
+    private static final String MULTIPART_BOUNDARY = "WUIC_BYTERANGES";
+
+    /**
+     * The maximum number of ranges accepted in a "Range" header. The complete content is sent if more ranges are
+     * requested.
+     */
+    private static final int MAX_RANGES = 16;
+
     /**
      * The logger.
      */
@@ -138,6 +179,88 @@ public enum HttpUtil {
         return can;
     }
 
+    /**
+     * <p>
+     * Selects the content encoding to apply to the response according to the "Accept-Encoding" header of the given
+     * request. "gzip" and "deflate" are supported, the quality values are taken into consideration and "gzip" is
+     * preferred when both encodings have the same quality.
+     * </p>
+     *
+     * @param request the request, if {@code null} "gzip" is returned
+     * @return {@link #GZIP}, {@link #DEFLATE} or {@code null} if no supported encoding is accepted
+     */
+    public String negotiateEncoding(final HttpServletRequest request) {
+        if (request == null) {
+            return GZIP;
+        }
+
+        final String acceptEncoding = request.getHeader("Accept-Encoding");
+
+        if (acceptEncoding == null) {
+            return null;
+        }
+
+        float gzip = -1f;
+        float deflate = -1f;
+        float any = -1f;
+
+        for (final String token : acceptEncoding.split(",")) {
+            final int semicolon = token.indexOf(';');
+            final String coding = (semicolon == -1 ? token : token.substring(0, semicolon)).trim().toLowerCase();
+            final float quality = semicolon == -1 ? 1f : quality(token.substring(semicolon + 1));
+
+            if (GZIP.equals(coding) || "x-gzip".equals(coding)) {
+                gzip = quality;
+            } else if (DEFLATE.equals(coding)) {
+                deflate = quality;
+            } else if ("*".equals(coding)) {
+                any = quality;
+            }
+        }
+
+        // Wildcard applies to encodings not explicitly listed
+        if (gzip < 0) {
+            gzip = any;
+        }
+
+        if (deflate < 0) {
+            deflate = any;
+        }
+
+        if (gzip > 0 && gzip >= deflate) {
+            return GZIP;
+        } else if (deflate > 0) {
+            return DEFLATE;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * <p>
+     * Reads the quality value from the parameters of an "Accept-Encoding" item.
+     * </p>
+     *
+     * @param params the parameters following the content coding
+     * @return the quality, 1 if not specified and 0 if not valid
+     */
+    private float quality(final String params) {
+        for (final String param : params.split(";")) {
+            final String p = param.trim();
+
+            if (p.startsWith("q=")) {
+                try {
+                    return Float.parseFloat(p.substring(NumberUtils.TWO));
+                } catch (NumberFormatException nfe) {
+                    logger.debug("Invalid quality value in Accept-Encoding header", nfe);
+                    return 0f;
+                }
+            }
+        }
+
+        return 1f;
+    }
+
     /**
      * <p>
      * Calls {@link #write(com.github.wuic.nut.ConvertibleNut, HttpServletRequest, HttpServletResponse, boolean)} and
@@ -159,6 +282,18 @@ public enum HttpUtil {
      * Serves the given nut by changing the specified response's state. The method sets headers and writes response.
      * </p>
      *
+     * <p>
+     * When the nut is a {@link TransformedNut} or a {@link RequestNut} view over it, its content won't change anymore.
+     * In that case the headers and the body are prepared once and attached to the nut, so next requests serving the same
+     * instance just copy them to the response. Such responses also support the "Range" and "If-Range" headers: single and multiple byte ranges are
+     * served with a 206 status.
+     * </p>
+     *
+     * <p>
+     * For a "HEAD" request, only the headers are written and the transformers are never applied. The "Content-Length"
+     * header is set only if the length is known without running the transformers.
+     * </p>
+     *
      * @param nut the nut to write
      * @param request the request
      * @param response the response
@@ -170,25 +305,26 @@ public enum HttpUtil {
                       final HttpServletResponse response,
                       final boolean expireHeader)
             throws IOException {
+        if (nut instanceof TransformedNut) {
+            write(TransformedNut.class.cast(nut), nut, request, response, expireHeader);
+            return;
+        } else if (nut instanceof RequestNut && RequestNut.class.cast(nut).getShared() instanceof TransformedNut) {
+            write(TransformedNut.class.cast(RequestNut.class.cast(nut).getShared()), nut, request, response, expireHeader);
+            return;
+        }
+
+        final String sourceMap = sourceMapName(nut);
 
         // Adds the source map header if any source map is available for that nut
-        if (!(nut instanceof Source) && (nut.getSource() instanceof SourceMapNut)) {
-            response.addHeader("X-SourceMap", SourceMapNut.class.cast(nut.getSource()).getName());
+        if (sourceMap != null) {
+            response.addHeader("X-SourceMap", sourceMap);
         }
 
-        final String ifNoneMatch = request.getHeader("If-None-Match");
-
-        // Make sure the value is different in case of best effort
-        final String versionNumber = String.valueOf(NutUtils.getVersionNumber(nut));
-        final String tag =  nut.getInitialName().startsWith("best-effort") ? "0" + versionNumber : versionNumber;
+        final String tag = tag(nut);
 
         // The resource has not been modified, tell the client to reuse the value in cache
-        if (ifNoneMatch != null && ifNoneMatch.equals(tag)) {
-            logger.info("Content of nut '{}' matches client cache. Sending {} status.", nut.getName(), HttpServletResponse.SC_NOT_MODIFIED);
-            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-
-            // Since we don't perform transformation, we notify the callbacks manually with an empty execution
-            NutUtils.invokeCallbacks(new Pipe.Execution(new byte[0], charset), nut.getReadyCallbacks());
+        if (matchesIfNoneMatch(request.getHeader("If-None-Match"), tag)) {
+            notModified(nut, response);
         } else {
             logger.info("Writing to the response the content read from nut '{}'", nut.getName());
             response.setCharacterEncoding(charset);
@@ -202,8 +338,573 @@ public enum HttpUtil {
             // Tag in order to reply 304
             response.setHeader("ETag", tag);
 
-            nut.transform(new WriteResponseOnReady(response, nut));
+            if (isHead(request)) {
+                // No body: don't apply the transformers and notify the callbacks manually with an empty execution
+                if (nut.isCompressed()) {
+                    setGzipHeader(response);
+                }
+
+                final int length = headContentLength(nut);
+
+                if (length != -1) {
+                    response.setContentLength(length);
+                }
+
+                NutUtils.invokeCallbacks(new Pipe.Execution(new byte[0], charset), nut.getReadyCallbacks());
+            } else {
+                nut.transform(new WriteResponseOnReady(response, nut));
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Serves the given transformed nut with the {@link PreparedResponse} attached to it. The response is prepared the
+     * first time the nut is written with a status different from 304 to a request that is not a "HEAD" request. Until
+     * then, "HEAD" requests are answered from the metadata of the nut.
+     * </p>
+     *
+     * @param nut the nut to write
+     * @param served the nut actually served, which notifies the callbacks of the request
+     * @param request the request
+     * @param response the response
+     * @param expireHeader sets a far expire header
+     * @throws IOException if stream could not be opened
+     */
+    private void write(final TransformedNut nut,
+                       final ConvertibleNut served,
+                       final HttpServletRequest request,
+                       final HttpServletResponse response,
+                       final boolean expireHeader)
+            throws IOException {
+        PreparedResponse prepared = nut.getPrepared(PreparedResponse.class);
+        final String sourceMap = prepared == null ? sourceMapName(nut) : prepared.sourceMap;
+
+        if (sourceMap != null) {
+            response.addHeader("X-SourceMap", sourceMap);
+        }
+
+        final String tag = prepared == null ? tag(nut) : prepared.tag;
+
+        if (matchesIfNoneMatch(request.getHeader("If-None-Match"), tag)) {
+            notModified(served, response);
+            return;
+        }
+
+        if (prepared == null && isHead(request)) {
+            logger.info("Writing to the response the headers of nut '{}'", nut.getName());
+            response.setCharacterEncoding(charset);
+            response.setContentType(nut.getNutType().getMimeType());
+
+            if (expireHeader) {
+                setExpireHeader(response);
+            }
+
+            response.setHeader("ETag", tag);
+
+            if (nut.isCompressed()) {
+                setGzipHeader(response);
+            }
+
+            response.setHeader("Accept-Ranges", BYTES_UNIT);
+            response.setContentLength(headContentLength(nut));
+            NutUtils.invokeCallbacks(new Pipe.Execution(new byte[0], charset), served.getReadyCallbacks());
+            return;
+        } else if (prepared == null) {
+            // Transformation notifies the callbacks
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            served.transform(new Pipe.OnReady() {
+                @Override
+                public void ready(final Pipe.Execution e) throws IOException {
+                    e.writeResultTo(bos);
+                }
+            });
+
+            prepared = new PreparedResponse(tag, nut.getNutType().getMimeType(), sourceMap, nut.isCompressed(), bos.toByteArray());
+            nut.setPrepared(prepared);
+        } else {
+            final List<Pipe.OnReady> callbacks = served.getReadyCallbacks();
+
+            if (callbacks != null && !callbacks.isEmpty()) {
+                NutUtils.invokeCallbacks(new Pipe.Execution(prepared.body, charset), callbacks);
+            }
+        }
+
+        logger.info("Writing to the response the content prepared for nut '{}'", nut.getName());
+        response.setCharacterEncoding(charset);
+        response.setContentType(prepared.contentType);
+
+        if (expireHeader) {
+            setExpireHeader(response);
+        }
+
+        response.setHeader("ETag", prepared.tag);
+
+        if (prepared.compressed) {
+            setGzipHeader(response);
+        }
+
+        writeBody(request, response, prepared.tag, prepared.contentType, prepared.body);
+    }
+
+    /**
+     * <p>
+     * Writes the given body to the response, except for "HEAD" requests. The "Range" header of the request is
+     * honored if the "If-Range" header is absent or matches the given entity tag: the satisfiable ranges are written
+     * with a 206 status or a 416 status is sent if no range is satisfiable. The "Accept-Ranges" and "Content-Length"
+     * headers are set.
+     * </p>
+     *
+     * @param request the request
+     * @param response the response
+     * @param tag the entity tag of the body
+     * @param contentType the content type of the body, used in the parts of a multipart response
+     * @param body the body
+     * @throws IOException if the body can't be written
+     */
+    public void writeBody(final HttpServletRequest request,
+                          final HttpServletResponse response,
+                          final String tag,
+                          final String contentType,
+                          final byte[] body)
+            throws IOException {
+        response.setHeader("Accept-Ranges", BYTES_UNIT);
+
+        final String ifRange = request.getHeader("If-Range");
+        final List<long[]> ranges = isHead(request) || (ifRange != null && !matchesIfRange(ifRange, tag))
+                ? null : parseRanges(request.getHeader("Range"), body.length);
+
+        if (ranges == null) {
+            response.setContentLength(body.length);
+
+            if (!isHead(request)) {
+                response.getOutputStream().write(body);
+            }
+        } else if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader("Content-Range", BYTES_UNIT + " */" + body.length);
+            response.setContentLength(0);
+        } else {
+            writeRanges(body, contentType == null ? "application/octet-stream" : contentType, ranges, response);
+        }
+    }
+
+    /**
+     * <p>
+     * Indicates if the given "If-None-Match" header matches the given entity tag as specified by RFC 7232. The header
+     * is either "*" or a comma-separated list of entity tags compared with the weak comparison function, so the "W/"
+     * prefix of weak tags is ignored. Quotes are also ignored since the tags of the nuts are not quoted.
+     * </p>
+     *
+     * @param header the header value, {@code null} if absent
+     * @param tag the entity tag of the resource
+     * @return {@code true} if the client already has the resource, {@code false} otherwise
+     */
+    public boolean matchesIfNoneMatch(final String header, final String tag) {
+        if (header == null) {
+            return false;
+        } else if ("*".equals(header.trim())) {
+            return true;
+        }
+
+        final String expected = opaqueTag(tag);
+        final int length = header.length();
+        int i = 0;
+
+        while (i < length) {
+            final char c = header.charAt(i);
+
+            // Skip separators
+            if (c == ',' || Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+
+            final int start = i;
+
+            if (header.startsWith("W/", i)) {
+                i += NumberUtils.TWO;
+            }
+
+            // A quoted tag can contain a comma
+            final int end;
+
+            if (i < length && header.charAt(i) == '"') {
+                final int close = header.indexOf('"', i + 1);
+                end = close == -1 ? length : close + 1;
+            } else {
+                final int comma = header.indexOf(',', i);
+                end = comma == -1 ? length : comma;
+            }
+
+            if (expected.equals(opaqueTag(header.substring(start, end)))) {
+                return true;
+            }
+
+            i = end;
+        }
+
+        return false;
+    }
+
+    /**
+     * <p>
+     * Indicates if the given "If-Range" header matches the given entity tag as specified by RFC 7233. The header is
+     * compared with the strong comparison function: a weak tag never matches. A date never matches since the nuts are
+     * only validated by their entity tag. Quotes are ignored since the tags of the nuts are not quoted.
+     * </p>
+     *
+     * @param header the header value
+     * @param tag the entity tag of the resource
+     * @return {@code true} if the ranges can be served, {@code false} if the entire resource must be sent
+     */
+    public boolean matchesIfRange(final String header, final String tag) {
+        final String value = header.trim();
+        return !value.startsWith("W/") && opaqueTag(tag).equals(opaqueTag(value));
+    }
+
+    /**
+     * <p>
+     * Removes the weak indicator and the quotes of the given entity tag.
+     * </p>
+     *
+     * @param tag the entity tag
+     * @return the opaque tag
+     */
+    private String opaqueTag(final String tag) {
+        String retval = tag.trim();
+
+        if (retval.startsWith("W/")) {
+            retval = retval.substring(NumberUtils.TWO);
         }
+
+        if (retval.length() >= NumberUtils.TWO && retval.charAt(0) == '"' && retval.charAt(retval.length() - 1) == '"') {
+            retval = retval.substring(1, retval.length() - 1);
+        }
+
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Writes the given ranges of the body with a 206 status. A single range is directly written with a
+     * "Content-Range" header. Multiple ranges are written in a "multipart/byteranges" body.
+     * </p>
+     *
+     * @param body the body
+     * @param contentType the content type of the body
+     * @param ranges the satisfiable ranges
+     * @param response the response
+     * @throws IOException if the body can't be written
+     */
+    private void writeRanges(final byte[] body,
+                             final String contentType,
+                             final List<long[]> ranges,
+                             final HttpServletResponse response)
+            throws IOException {
+        final int length = body.length;
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+
+        if (ranges.size() == 1) {
+            final long[] range = ranges.get(0);
+            response.setHeader("Content-Range", contentRange(range, length));
+            response.setContentLength((int) (range[1] - range[0] + 1));
+            response.getOutputStream().write(body, (int) range[0], (int) (range[1] - range[0] + 1));
+        } else {
+            // Compute the length before streaming the parts
+            final List<byte[]> partHeaders = new ArrayList<byte[]>(ranges.size());
+            final byte[] end = String.format("\r\n--%s--\r\n", MULTIPART_BOUNDARY).getBytes("US-ASCII");
+            long contentLength = end.length;
+
+            for (final long[] range : ranges) {
+                final String partHeader = String.format("\r\n--%s\r\nContent-Type: %s\r\nContent-Range: %s\r\n\r\n",
+                        MULTIPART_BOUNDARY, contentType, contentRange(range, length));
+                partHeaders.add(partHeader.getBytes("US-ASCII"));
+                contentLength += partHeaders.get(partHeaders.size() - 1).length + range[1] - range[0] + 1;
+            }
+
+            response.setContentType("multipart/byteranges; boundary=" + MULTIPART_BOUNDARY);
+            response.setContentLength((int) contentLength);
+            final OutputStream os = response.getOutputStream();
+
+            for (int i = 0; i < ranges.size(); i++) {
+                final long[] range = ranges.get(i);
+                os.write(partHeaders.get(i));
+                os.write(body, (int) range[0], (int) (range[1] - range[0] + 1));
+            }
+
+            os.write(end);
+        }
+    }
+
+    /**
+     * <p>
+     * Builds the "Content-Range" value for the given range.
+     * </p>
+     *
+     * @param range the first and last byte positions
+     * @param length the complete length
+     * @return the header value
+     */
+    private String contentRange(final long[] range, final int length) {
+        return BYTES_UNIT + ' ' + range[0] + '-' + range[1] + '/' + length;
+    }
+
+    /**
+     * <p>
+     * Parses the given "Range" header value for a content of the specified length. Each returned array contains the
+     * first and the last byte positions of a satisfiable range.
+     * </p>
+     *
+     * <p>
+     * Overlapping and adjacent ranges are merged and the result is sorted. The header is ignored when it contains more
+     * than {@link #MAX_RANGES} ranges or when the ranges request more bytes than the content length, so a small header
+     * can't make the server write many copies of the same content.
+     * </p>
+     *
+     * @param header the header value
+     * @param length the content length
+     * @return the satisfiable ranges, an empty list if no range is satisfiable, {@code null} if the header is absent or
+     * invalid and must be ignored
+     */
+    private List<long[]> parseRanges(final String header, final long length) {
+        if (header == null || !header.startsWith(BYTES_UNIT + '=')) {
+            return null;
+        }
+
+        final String[] specs = header.substring(BYTES_UNIT.length() + 1).split(",");
+
+        if (specs.length > MAX_RANGES) {
+            logger.debug("Range header contains more than {} ranges, ignoring it", MAX_RANGES);
+            return null;
+        }
+
+        final List<long[]> retval = new ArrayList<long[]>();
+        long requested = 0;
+
+        for (final String spec : specs) {
+            final String s = spec.trim();
+            final int dash = s.indexOf('-');
+
+            if (dash == -1) {
+                return null;
+            }
+
+            final long first;
+            final long last;
+
+            try {
+                if (dash == 0) {
+                    // Suffix range: the last bytes
+                    final long suffix = Long.parseLong(s.substring(1));
+
+                    if (suffix < 0) {
+                        return null;
+                    }
+
+                    first = Math.max(0, length - suffix);
+                    last = suffix == 0 ? -1 : length - 1;
+                } else {
+                    first = Long.parseLong(s.substring(0, dash));
+                    final long end = dash == s.length() - 1 ? Long.MAX_VALUE : Long.parseLong(s.substring(dash + 1));
+
+                    if (end < first) {
+                        return null;
+                    }
+
+                    last = Math.min(end, length - 1);
+                }
+            } catch (NumberFormatException nfe) {
+                logger.debug("Invalid Range header, ignoring it", nfe);
+                return null;
+            }
+
+            // Not satisfiable ranges are skipped
+            if (first < length && first <= last) {
+                retval.add(new long[] { first, last });
+                requested += last - first + 1;
+            }
+        }
+
+        if (requested > length) {
+            logger.debug("Range header requests {} bytes for a content of {} bytes, ignoring it", requested, length);
+            return null;
+        }
+
+        return mergeRanges(retval);
+    }
+
+    /**
+     * <p>
+     * Sorts the given ranges and merges the ones that overlap or are adjacent.
+     * </p>
+     *
+     * @param ranges the ranges
+     * @return the merged ranges
+     */
+    private List<long[]> mergeRanges(final List<long[]> ranges) {
+        if (ranges.size() < NumberUtils.TWO) {
+            return ranges;
+        }
+
+        Collections.sort(ranges, new Comparator<long[]>() {
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public int compare(final long[] o1, final long[] o2) {
+                return o1[0] < o2[0] ? -1 : (o1[0] == o2[0] ? 0 : 1);
+            }
+        });
+
+        final List<long[]> retval = new ArrayList<long[]>(ranges.size());
+        long[] current = ranges.get(0);
+
+        for (int i = 1; i < ranges.size(); i++) {
+            final long[] range = ranges.get(i);
+
+            if (range[0] <= current[1] + 1) {
+                current = new long[] { current[0], Math.max(current[1], range[1]) };
+            } else {
+                retval.add(current);
+                current = range;
+            }
+        }
+
+        retval.add(current);
+        return retval;
+    }
+
+    /**
+     * <p>
+     * Indicates if the given request uses the "HEAD" method.
+     * </p>
+     *
+     * @param request the request
+     * @return {@code true} if only headers must be written, {@code false} otherwise
+     */
+    private boolean isHead(final HttpServletRequest request) {
+        return "HEAD".equals(request.getMethod());
+    }
+
+    /**
+     * <p>
+     * Tells the client to reuse the value in its cache.
+     * </p>
+     *
+     * @param nut the nut matching the client cache
+     * @param response the response
+     * @throws IOException if a callback fails
+     */
+    private void notModified(final ConvertibleNut nut, final HttpServletResponse response) throws IOException {
+        logger.info("Content of nut '{}' matches client cache. Sending {} status.", nut.getName(), HttpServletResponse.SC_NOT_MODIFIED);
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+        // Since we don't perform transformation, we notify the callbacks manually with an empty execution
+        NutUtils.invokeCallbacks(new Pipe.Execution(new byte[0], charset), nut.getReadyCallbacks());
+    }
+
+    /**
+     * <p>
+     * Gets the length in bytes of the given nut when it is known without running any transformer: the nut is already
+     * transformed or it is an in-memory nut without transformer.
+     * </p>
+     *
+     * @param nut the nut
+     * @return the length, -1 if it is not known
+     * @throws IOException if the content can't be read
+     */
+    private int headContentLength(final ConvertibleNut nut) throws IOException {
+        if (!(nut instanceof TransformedNut)
+                && !(nut instanceof SizableNut && (nut.getTransformers() == null || nut.getTransformers().isEmpty()))) {
+            return -1;
+        }
+
+        Input input = null;
+
+        try {
+            input = nut.openStream();
+            final Pipe.Execution execution = input.execution();
+
+            // Chars are encoded when written
+            return execution.isText() ? execution.getByteResult().length : execution.getContentLength();
+        } finally {
+            IOUtils.close(input);
+        }
+    }
+
+    /**
+     * <p>
+     * Computes the ETag of the given nut.
+     * </p>
+     *
+     * @param nut the nut
+     * @return the tag
+     */
+    private String tag(final ConvertibleNut nut) {
+        // Make sure the value is different in case of best effort
+        final String versionNumber = String.valueOf(NutUtils.getVersionNumber(nut));
+        return nut.getInitialName().startsWith("best-effort") ? "0" + versionNumber : versionNumber;
+    }
+
+    /**
+     * <p>
+     * Gets the name of the source map available for the given nut.
+     * </p>
+     *
+     * @param nut the nut
+     * @return the source map name, {@code null} if the nut has no source map
+     */
+    private String sourceMapName(final ConvertibleNut nut) {
+        return !(nut instanceof Source) && (nut.getSource() instanceof SourceMapNut)
+                ? SourceMapNut.class.cast(nut.getSource()).getName() : null;
+    }
+
+    /**
+     * <p>
+     * Writes the given nut as a part of a response that is progressively sent to the client. Unlike
+     * {@link #write(ConvertibleNut, HttpServletRequest, HttpServletResponse, boolean)}, no header describing the entire
+     * content (length, ETag, expiry) is set. The content type is set only if the response is not committed yet and the
+     * content is flushed once written. Since the response is built from many parts, the workflow producing the nut should
+     * skip the {@link com.github.wuic.engine.EngineType#BINARY_COMPRESSION binary compression}: a compressed nut has to
+     * be decompressed each time it is streamed.
+     * </p>
+     *
+     * @param nut the nut to write
+     * @param response the response
+     * @throws IOException if stream could not be opened
+     */
+    public void stream(final ConvertibleNut nut, final HttpServletResponse response) throws IOException {
+        if (!response.isCommitted()) {
+            response.setCharacterEncoding(charset);
+            response.setContentType(nut.getNutType().getMimeType());
+        }
+
+        logger.info("Streaming to the response the content read from nut '{}'", nut.getName());
+        final OutputStream os = response.getOutputStream();
+
+        nut.transform(new Pipe.OnReady() {
+            @Override
+            public void ready(final Pipe.Execution e) throws IOException {
+                if (nut.isCompressed()) {
+                    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                    e.writeResultTo(bos);
+                    InputStream is = null;
+
+                    try {
+                        is = new GZIPInputStream(new ByteArrayInputStream(bos.toByteArray()));
+                        IOUtils.copyStream(is, os);
+                    } finally {
+                        IOUtils.close(is);
+                    }
+                } else {
+                    e.writeResultTo(os);
+                }
+            }
+        });
+
+        os.flush();
     }
 
     /**
@@ -215,7 +916,19 @@ public enum HttpUtil {
      */
     public void setGzipHeader(final HttpServletResponse httpServletResponse) {
         // Set headers assuming the content will compressed with GZIP
-        httpServletResponse.setHeader("Content-Encoding", "gzip");
+        setContentEncodingHeader(httpServletResponse, GZIP);
+    }
+
+    /**
+     * <p>
+     * Sets the headers indicating that the response content is compressed with the given encoding.
+     * </p>
+     *
+     * @param httpServletResponse the response
+     * @param encoding the content encoding
+     */
+    public void setContentEncodingHeader(final HttpServletResponse httpServletResponse, final String encoding) {
+        httpServletResponse.setHeader("Content-Encoding", encoding);
         httpServletResponse.setHeader("Vary", "Accept-Encoding");
     }
 
@@ -281,4 +994,63 @@ public enum HttpUtil {
             }
         }
     }
+
+    /**
+     * <p>
+     * The headers and the body computed once for a {@link TransformedNut}.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    private static final class PreparedResponse {
+
+        /**
+         * The ETag.
+         */
+        private final String tag;
+
+        /**
+         * The content type.
+         */
+        private final String contentType;
+
+        /**
+         * The source map name, {@code null} if none.
+         */
+        private final String sourceMap;
+
+        /**
+         * If the body is compressed.
+         */
+        private final boolean compressed;
+
+        /**
+         * The body.
+         */
+        private final byte[] body;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param tag the ETag
+         * @param contentType the content type
+         * @param sourceMap the source map name
+         * @param compressed if body is compressed
+         * @param body the body
+         */
+        private PreparedResponse(final String tag,
+                                 final String contentType,
+                                 final String sourceMap,
+                                 final boolean compressed,
+                                 final byte[] body) {
+            this.tag = tag;
+            this.contentType = contentType;
+            this.sourceMap = sourceMap;
+            this.compressed = compressed;
+            this.body = body;
+        }
+    }
 }
@@ -95,6 +95,14 @@ public class InMemoryHttpServletResponseWrapper extends OkHttpServletResponseWra
             baos.write(param);
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            baos.write(b, off, len);
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -22,9 +22,13 @@
 
 package com.github.wuic.servlet;
 
+import com.github.wuic.nut.PrecompressedVariant;
+import com.github.wuic.util.IOUtils;
+
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
@@ -32,12 +36,29 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpServletResponseWrapper;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 /**
  * <p>
  * The filter sets far "Expiry" header since the URL should be versioned by WUIC.
- * If the client supports GZIP, this optimizer also GZIP the response.
+ * If the client supports GZIP or deflate, this optimizer also compresses the response.
+ * </p>
+ *
+ * <p>
+ * Responses smaller than the size specified with the {@link #MIN_COMPRESSION_SIZE} init-param are not compressed.
+ * The content types starting with a prefix declared in the {@link #EXCLUDED_CONTENT_TYPES} init-param are not compressed
+ * either. By default, images (except SVG), audio, video, fonts and archives are excluded since they are already compressed.
+ * </p>
+ *
+ * <p>
+ * When the filter is created with the {@link PrecompressedVariant variants} compressed at build time, a variant matching
+ * the negotiated encoding is served as is instead of compressing the response at runtime.
  * </p>
  *
  * @author Guillaume DROUET
@@ -45,12 +66,105 @@ import java.io.IOException;
  */
 public class ResponseOptimizerFilter implements Filter {
 
+    /**
+     * Init-param specifying the minimum size in bytes of a response to be compressed.
+     */
+    public static final String MIN_COMPRESSION_SIZE = "c.g.wuic.filter.minCompressionSize";
+
+    /**
+     * Init-param specifying a comma-separated list of content type prefixes that must not be compressed.
+     */
+    public static final String EXCLUDED_CONTENT_TYPES = "c.g.wuic.filter.excludedContentTypes";
+
+    /**
+     * Default minimum size of a response to compress. Smaller responses would not benefit from compression.
+     */
+    public static final int DEFAULT_MIN_COMPRESSION_SIZE = 256;
+
+    /**
+     * Default content types that are not compressed.
+     */
+    public static final String DEFAULT_EXCLUDED_CONTENT_TYPES = "image/png,image/jpeg,image/gif,image/webp,image/x-icon,"
+            + "image/vnd.microsoft.icon,audio/,video/,font/woff,application/font-woff,application/zip,application/gzip,"
+            + "application/x-gzip,application/pdf,multipart/byteranges";
+
+    /**
+     * The minimum size in bytes of a response to compress.
+     */
+    private int minCompressionSize = DEFAULT_MIN_COMPRESSION_SIZE;
+
+    /**
+     * The content type prefixes that are not compressed.
+     */
+    private List<String> excludedContentTypes = parseContentTypes(DEFAULT_EXCLUDED_CONTENT_TYPES);
+
+    /**
+     * The variants compressed at build time, associated to their encoding, by URL path.
+     */
+    private final Map<String, Map<String, PrecompressedVariant>> precompressedVariants;
+
+    /**
+     * <p>
+     * Builds a new instance compressing all responses at runtime.
+     * </p>
+     */
+    public ResponseOptimizerFilter() {
+        this(Collections.<String, Map<String, PrecompressedVariant>>emptyMap());
+    }
+
+    /**
+     * <p>
+     * Builds a new instance serving the given variants when possible.
+     * </p>
+     *
+     * @param precompressedVariants the variants associated to their encoding, by URL path relative to the context path
+     */
+    public ResponseOptimizerFilter(final Map<String, Map<String, PrecompressedVariant>> precompressedVariants) {
+        this.precompressedVariants = precompressedVariants;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void init(final FilterConfig filterConfig) throws ServletException {
-        // Nothing to do
+        final String minSize = filterConfig.getInitParameter(MIN_COMPRESSION_SIZE);
+
+        if (minSize != null) {
+            try {
+                minCompressionSize = Integer.parseInt(minSize.trim());
+            } catch (NumberFormatException nfe) {
+                throw new ServletException(String.format("%s must be an integer value", MIN_COMPRESSION_SIZE), nfe);
+            }
+        }
+
+        final String excluded = filterConfig.getInitParameter(EXCLUDED_CONTENT_TYPES);
+
+        if (excluded != null) {
+            excludedContentTypes = parseContentTypes(excluded);
+        }
+    }
+
+    /**
+     * <p>
+     * Parses a comma-separated list of content types.
+     * </p>
+     *
+     * @param contentTypes the list
+     * @return the lower-cased content types
+     */
+    private static List<String> parseContentTypes(final String contentTypes) {
+        final List<String> retval = new ArrayList<String>();
+
+        for (final String contentType : contentTypes.split(",")) {
+            final String trimmed = contentType.trim();
+
+            if (!trimmed.isEmpty()) {
+                retval.add(trimmed.toLowerCase());
+            }
+        }
+
+        return retval;
     }
 
     /**
@@ -64,17 +178,111 @@ public class ResponseOptimizerFilter implements Filter {
         // Set header
         HttpUtil.INSTANCE.setExpireHeader(httpServletResponse);
 
-        // Delegate call to the chain with a wrapper that GZIP the stream
-        if (HttpUtil.INSTANCE.canGzip(HttpServletRequest.class.cast(request))) {
-            final GzipHttpServletResponseWrapper gzip = new GzipHttpServletResponseWrapper(httpServletResponse);
-            chain.doFilter(request, new HttpServletResponseWrapper(gzip));
-            gzip.close();
+        final HttpServletRequest httpServletRequest = HttpServletRequest.class.cast(request);
+        final String encoding = HttpUtil.INSTANCE.negotiateEncoding(httpServletRequest);
+        final PrecompressedVariant variant = encoding == null ? null : getVariant(httpServletRequest, encoding);
+
+        if (variant != null) {
+            // Content already compressed
+            serve(httpServletRequest, httpServletResponse, encoding, variant);
+        } else if (encoding != null) {
+            // Delegate call to the chain with a wrapper that compresses the stream
+            final GzipHttpServletResponseWrapper gzip = new GzipHttpServletResponseWrapper(
+                    httpServletResponse, encoding, minCompressionSize, excludedContentTypes);
+
+            try {
+                chain.doFilter(request, new HttpServletResponseWrapper(gzip));
+            } finally {
+                gzip.close();
+            }
         } else {
             // Delegate call to the chain
             chain.doFilter(request, response);
         }
     }
 
+    /**
+     * <p>
+     * Gets the variant compressed at build time for the requested path and the given encoding.
+     * </p>
+     *
+     * @param request the request
+     * @param encoding the negotiated encoding
+     * @return the variant, {@code null} if the response must be compressed at runtime
+     */
+    private PrecompressedVariant getVariant(final HttpServletRequest request, final String encoding) {
+        if (precompressedVariants.isEmpty()) {
+            return null;
+        }
+
+        final String path = request.getRequestURI().substring(request.getContextPath().length());
+        final Map<String, PrecompressedVariant> variants = precompressedVariants.get(path);
+        return variants == null ? null : variants.get(encoding);
+    }
+
+    /**
+     * <p>
+     * Writes the given variant to the response. The hash of the variant is used as entity tag. Byte ranges are
+     * supported and refer to the compressed bytes of the variant, which is the representation identified by the tag.
+     * The variant is streamed unless a "Range" header is present, in which case it's read in memory to write the
+     * requested ranges.
+     * </p>
+     *
+     * @param request the request
+     * @param response the response
+     * @param encoding the content encoding
+     * @param variant the variant
+     * @throws IOException if the variant can't be written
+     * @throws ServletException if the variant doesn't exist
+     */
+    private void serve(final HttpServletRequest request,
+                       final HttpServletResponse response,
+                       final String encoding,
+                       final PrecompressedVariant variant)
+            throws IOException, ServletException {
+        final ServletContext servletContext = request.getServletContext();
+        final String path = request.getRequestURI().substring(request.getContextPath().length());
+        final String etag = '"' + variant.getHash() + '"';
+
+        HttpUtil.INSTANCE.setContentEncodingHeader(response, encoding);
+        response.setHeader("ETag", etag);
+
+        // Client already has the content
+        if (HttpUtil.INSTANCE.matchesIfNoneMatch(request.getHeader("If-None-Match"), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        final InputStream is = servletContext.getResourceAsStream('/' + variant.getResource());
+
+        if (is == null) {
+            throw new ServletException(String.format("Variant %s can't be found", variant.getResource()));
+        }
+
+        try {
+            final String contentType = servletContext.getMimeType(path);
+
+            if (contentType != null) {
+                response.setContentType(contentType);
+            }
+
+            if (request.getHeader("Range") != null) {
+                final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                IOUtils.copyStream(is, bos);
+                HttpUtil.INSTANCE.writeBody(request, response, etag, contentType, bos.toByteArray());
+            } else {
+                response.setHeader("Accept-Ranges", "bytes");
+                response.setHeader("Content-Length", String.valueOf(variant.getSize()));
+
+                if (!"HEAD".equals(request.getMethod())) {
+                    IOUtils.copyStream(is, response.getOutputStream());
+                }
+            }
+        } finally {
+            IOUtils.close(is);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
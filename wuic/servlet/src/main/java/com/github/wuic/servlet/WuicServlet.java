@@ -180,6 +180,24 @@ public class WuicServlet extends HttpServlet {
         }
     }
 
+    /**
+     * <p>
+     * Serves "HEAD" requests like "GET" requests without the default {@link HttpServlet} behavior that writes the entire
+     * body to a discarding response. {@link HttpUtil} detects the method and only writes the headers, relying on cached
+     * metadata when available.
+     * </p>
+     *
+     * @param request the request
+     * @param response the response
+     * @throws ServletException if an error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doHead(final HttpServletRequest request, final HttpServletResponse response)
+            throws ServletException, IOException {
+        doGet(request, response);
+    }
+
     /**
      * <p>
      * Writes a nut in the {@link HttpServletResponse}.
@@ -27,9 +27,12 @@ import com.github.wuic.ClassPathResourceResolver;
 import com.github.wuic.WuicFacade;
 import com.github.wuic.WuicFacadeBuilder;
 import com.github.wuic.WuicTask;
+import com.github.wuic.engine.HeadEngine;
 import com.github.wuic.engine.core.StaticEngine;
 import com.github.wuic.exception.WuicException;
 import com.github.wuic.nut.ConvertibleNut;
+import com.github.wuic.nut.NotReachableNut;
+import com.github.wuic.nut.PrecompressedVariant;
 import com.github.wuic.nut.dao.servlet.WebappNutDaoBuilderInspector;
 import com.github.wuic.servlet.jetty.PathMap;
 import com.github.wuic.util.BiFunction;
@@ -56,8 +59,10 @@ import java.lang.reflect.Constructor;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 
@@ -157,7 +162,8 @@ public class WuicServletContextListener implements ServletContextListener {
             // Install a filter for each URLs corresponding to a nut owned by a workflow
             final String[] workflowList = properties.getProperty("workflowList").split("\\t");
             final ServletContext sc = classpathResourceResolver.getServletContext();
-            final FilterRegistration filterRegistration = sc.addFilter("staticWorkflowFilter", ResponseOptimizerFilter.class);
+            final Map<String, Map<String, PrecompressedVariant>> variants = new HashMap<String, Map<String, PrecompressedVariant>>();
+            final FilterRegistration filterRegistration = sc.addFilter("staticWorkflowFilter", new ResponseOptimizerFilter(variants));
 
             // Already registered elsewhere
             if (filterRegistration == null) {
@@ -171,7 +177,7 @@ public class WuicServletContextListener implements ServletContextListener {
                         classpathResourceResolver, workflow, builder.contextBuilder().getNutTypeFactory());
 
                 // Recursive call on referenced nuts
-                addFilterMapping(result, filterRegistration, urlProvider);
+                addFilterMapping(result, filterRegistration, urlProvider, variants);
             }
         } catch (IOException ioe) {
             WuicException.throwBadStateException(new IllegalStateException(ioe));
@@ -192,14 +198,40 @@ public class WuicServletContextListener implements ServletContextListener {
      * @param provider the provider computing nut URL
      */
     public void addFilterMapping(final List<ConvertibleNut> nuts, final FilterRegistration registration, final UrlProvider provider) {
+        addFilterMapping(nuts, registration, provider, null);
+    }
+
+    /**
+     * <p>
+     * Adds a mapping in the given filter for each nut and collects the variants compressed at build time.
+     * </p>
+     *
+     * @param nuts the nuts
+     * @param registration the registration
+     * @param provider the provider computing nut URL
+     * @param variants the map where variants are put by URL, {@code null} if variants are ignored
+     */
+    private void addFilterMapping(final List<ConvertibleNut> nuts,
+                                  final FilterRegistration registration,
+                                  final UrlProvider provider,
+                                  final Map<String, Map<String, PrecompressedVariant>> variants) {
 
         // Not referenced nuts
         if (nuts != null) {
             for (final ConvertibleNut nut : nuts) {
-                registration.addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), true, '/' + provider.getUrl(nut));
+                final String url = '/' + provider.getUrl(nut);
+                registration.addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), true, url);
+
+                if (variants != null && nut instanceof NotReachableNut) {
+                    final Map<String, PrecompressedVariant> nutVariants = NotReachableNut.class.cast(nut).getPrecompressedVariants();
+
+                    if (!nutVariants.isEmpty()) {
+                        variants.put(url, nutVariants);
+                    }
+                }
 
                 // Call recursively on referenced nuts
-                addFilterMapping(nut.getReferencedNuts(), registration, provider);
+                addFilterMapping(nut.getReferencedNuts(), registration, provider, variants);
             }
         }
     }
@@ -274,6 +306,7 @@ public class WuicServletContextListener implements ServletContextListener {
     @Override
     public void contextDestroyed(final ServletContextEvent sce) {
         WuicScheduledThreadPool.INSTANCE.shutdown();
+        HeadEngine.shutdown();
     }
 
     /**
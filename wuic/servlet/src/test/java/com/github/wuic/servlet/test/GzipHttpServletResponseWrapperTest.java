@@ -0,0 +1,377 @@
+/*
+ * Copyright (c) 2016   The authors of WUIC
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.github.wuic.servlet.test;
+
+import com.github.wuic.servlet.GzipHttpServletResponseWrapper;
+import com.github.wuic.nut.PrecompressedVariant;
+import com.github.wuic.servlet.HttpUtil;
+import com.github.wuic.servlet.ResponseOptimizerFilter;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * <p>
+ * Tests for {@link GzipHttpServletResponseWrapper}, encoding negotiation and compressed variants.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @since 0.5.3
+ */
+@RunWith(JUnit4.class)
+public class GzipHttpServletResponseWrapperTest {
+
+    /**
+     * Timeout.
+     */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(60);
+
+    /**
+     * <p>
+     * A {@link ServletOutputStream} writing to a byte array.
+     * </p>
+     */
+    private static final class ByteArrayServletOutputStream extends ServletOutputStream {
+
+        /**
+         * The written bytes.
+         */
+        private final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(final int b) throws IOException {
+            bos.write(b);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void setWriteListener(final WriteListener writeListener) {
+        }
+    }
+
+    /**
+     * <p>
+     * Creates a mocked response writing to the given stream.
+     * </p>
+     *
+     * @param sos the stream
+     * @param contentType the content type
+     * @return the response
+     * @throws IOException if mock fails
+     */
+    private HttpServletResponse mockResponse(final ServletOutputStream sos, final String contentType) throws IOException {
+        final HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+        Mockito.when(response.getOutputStream()).thenReturn(sos);
+        Mockito.when(response.getContentType()).thenReturn(contentType);
+        return response;
+    }
+
+    /**
+     * <p>
+     * Reads the given stream fully.
+     * </p>
+     *
+     * @param is the stream
+     * @return the bytes
+     * @throws IOException if read fails
+     */
+    private byte[] read(final InputStream is) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1024];
+        int len;
+
+        while ((len = is.read(buffer)) != -1) {
+            bos.write(buffer, 0, len);
+        }
+
+        return bos.toByteArray();
+    }
+
+    /**
+     * <p>
+     * Builds a content of the given size.
+     * </p>
+     *
+     * @param size the size
+     * @return the content
+     */
+    private byte[] content(final int size) {
+        final byte[] retval = new byte[size];
+
+        for (int i = 0; i < size; i++) {
+            retval[i] = (byte) ('a' + (i % 26));
+        }
+
+        return retval;
+    }
+
+    /**
+     * Checks that bulk and single byte writes are compressed with GZIP.
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void gzipTest() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            final ByteArrayServletOutputStream sos = new ByteArrayServletOutputStream();
+            final HttpServletResponse response = mockResponse(sos, "text/html");
+            final GzipHttpServletResponseWrapper wrapper = new GzipHttpServletResponseWrapper(
+                    response, HttpUtil.GZIP, 100, Collections.singletonList("image/png"));
+            final byte[] content = content(10000);
+            wrapper.getOutputStream().write(content[0]);
+            wrapper.getOutputStream().write(content, 1, content.length - 1);
+            wrapper.close();
+
+            Mockito.verify(response).setHeader("Content-Encoding", HttpUtil.GZIP);
+            final byte[] actual = read(new GZIPInputStream(new ByteArrayInputStream(sos.bos.toByteArray())));
+            Assert.assertTrue(Arrays.equals(content, actual));
+        }
+    }
+
+    /**
+     * Checks that single byte writes are compressed and that a content length set with any header method is not sent
+     * with the compressed response.
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void singleByteAndContentLengthHeaderTest() throws Exception {
+        final ByteArrayServletOutputStream sos = new ByteArrayServletOutputStream();
+        final HttpServletResponse response = mockResponse(sos, "text/html");
+        final GzipHttpServletResponseWrapper wrapper = new GzipHttpServletResponseWrapper(
+                response, HttpUtil.GZIP, 100, Collections.<String>emptyList());
+        final byte[] content = content(10000);
+        wrapper.setIntHeader("Content-Length", content.length);
+        wrapper.addHeader("Content-Length", String.valueOf(content.length));
+        wrapper.addIntHeader("content-length", content.length);
+
+        for (final byte b : content) {
+            wrapper.getOutputStream().write(b);
+        }
+
+        wrapper.close();
+
+        Mockito.verify(response).setHeader("Content-Encoding", HttpUtil.GZIP);
+        Mockito.verify(response, Mockito.never()).setIntHeader(Mockito.eq("Content-Length"), Mockito.anyInt());
+        Mockito.verify(response, Mockito.never()).addHeader(Mockito.eq("Content-Length"), Mockito.anyString());
+        Mockito.verify(response, Mockito.never()).addIntHeader(Mockito.eq("content-length"), Mockito.anyInt());
+        Mockito.verify(response, Mockito.never()).setContentLength(Mockito.anyInt());
+        final byte[] actual = read(new GZIPInputStream(new ByteArrayInputStream(sos.bos.toByteArray())));
+        Assert.assertTrue(Arrays.equals(content, actual));
+    }
+
+    /**
+     * Checks that deflate encoding is supported.
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void deflateTest() throws Exception {
+        final ByteArrayServletOutputStream sos = new ByteArrayServletOutputStream();
+        final HttpServletResponse response = mockResponse(sos, "text/css");
+        final GzipHttpServletResponseWrapper wrapper = new GzipHttpServletResponseWrapper(
+                response, HttpUtil.DEFLATE, 0, Collections.<String>emptyList());
+        wrapper.getWriter().print("body { color: red; }");
+        wrapper.close();
+
+        Mockito.verify(response).setHeader("Content-Encoding", HttpUtil.DEFLATE);
+        final byte[] actual = read(new InflaterInputStream(new ByteArrayInputStream(sos.bos.toByteArray())));
+        Assert.assertEquals("body { color: red; }", new String(actual, "UTF-8"));
+    }
+
+    /**
+     * Checks that small responses and excluded content types are not compressed.
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void skipTest() throws Exception {
+        ByteArrayServletOutputStream sos = new ByteArrayServletOutputStream();
+        HttpServletResponse response = mockResponse(sos, "text/html");
+        GzipHttpServletResponseWrapper wrapper = new GzipHttpServletResponseWrapper(
+                response, HttpUtil.GZIP, 100, Collections.singletonList("image/png"));
+        wrapper.setContentLength(50);
+        wrapper.getOutputStream().write(content(50));
+        wrapper.close();
+
+        Mockito.verify(response, Mockito.never()).setHeader("Content-Encoding", HttpUtil.GZIP);
+        Mockito.verify(response).setContentLength(50);
+        Assert.assertTrue(Arrays.equals(content(50), sos.bos.toByteArray()));
+
+        sos = new ByteArrayServletOutputStream();
+        response = mockResponse(sos, "image/png");
+        wrapper = new GzipHttpServletResponseWrapper(response, HttpUtil.GZIP, 100, Collections.singletonList("image/png"));
+        wrapper.getOutputStream().write(content(1000));
+        wrapper.close();
+
+        Mockito.verify(response, Mockito.never()).setHeader("Content-Encoding", HttpUtil.GZIP);
+        Assert.assertTrue(Arrays.equals(content(1000), sos.bos.toByteArray()));
+    }
+
+    /**
+     * Checks that partial content is not compressed.
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void partialContentTest() throws Exception {
+        ByteArrayServletOutputStream sos = new ByteArrayServletOutputStream();
+        HttpServletResponse response = mockResponse(sos, "text/html");
+        Mockito.when(response.getStatus()).thenReturn(HttpServletResponse.SC_PARTIAL_CONTENT);
+        GzipHttpServletResponseWrapper wrapper = new GzipHttpServletResponseWrapper(
+                response, HttpUtil.GZIP, 100, Collections.<String>emptyList());
+        wrapper.getOutputStream().write(content(1000));
+        wrapper.close();
+
+        Mockito.verify(response, Mockito.never()).setHeader("Content-Encoding", HttpUtil.GZIP);
+        Assert.assertTrue(Arrays.equals(content(1000), sos.bos.toByteArray()));
+
+        sos = new ByteArrayServletOutputStream();
+        response = mockResponse(sos, "text/html");
+        Mockito.when(response.getHeader("Content-Range")).thenReturn("bytes 0-999/2000");
+        wrapper = new GzipHttpServletResponseWrapper(response, HttpUtil.GZIP, 100, Collections.<String>emptyList());
+        wrapper.getOutputStream().write(content(1000));
+        wrapper.close();
+
+        Mockito.verify(response, Mockito.never()).setHeader("Content-Encoding", HttpUtil.GZIP);
+        Assert.assertTrue(Arrays.equals(content(1000), sos.bos.toByteArray()));
+    }
+
+    /**
+     * Checks the encoding negotiation.
+     */
+    @Test
+    public void negotiateTest() {
+        final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Assert.assertNull(HttpUtil.INSTANCE.negotiateEncoding(request));
+
+        Mockito.when(request.getHeader("Accept-Encoding")).thenReturn("gzip, deflate");
+        Assert.assertEquals(HttpUtil.GZIP, HttpUtil.INSTANCE.negotiateEncoding(request));
+
+        Mockito.when(request.getHeader("Accept-Encoding")).thenReturn("gzip;q=0.5, deflate");
+        Assert.assertEquals(HttpUtil.DEFLATE, HttpUtil.INSTANCE.negotiateEncoding(request));
+
+        Mockito.when(request.getHeader("Accept-Encoding")).thenReturn("gzip;q=0, *");
+        Assert.assertEquals(HttpUtil.DEFLATE, HttpUtil.INSTANCE.negotiateEncoding(request));
+
+        Mockito.when(request.getHeader("Accept-Encoding")).thenReturn("identity");
+        Assert.assertNull(HttpUtil.INSTANCE.negotiateEncoding(request));
+    }
+
+    /**
+     * Checks that a variant compressed at build time is served by the filter instead of compressing the response.
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void precompressedVariantTest() throws Exception {
+        final byte[] compressed = content(100);
+        final PrecompressedVariant variant = new PrecompressedVariant(HttpUtil.GZIP, compressed.length, "0a1b", "wf/1/aggregate.js.gz");
+        final ResponseOptimizerFilter filter = new ResponseOptimizerFilter(
+                Collections.singletonMap("/wf/1/aggregate.js", Collections.singletonMap(HttpUtil.GZIP, variant)));
+
+        final ServletContext servletContext = Mockito.mock(ServletContext.class);
+        Mockito.when(servletContext.getResourceAsStream("/wf/1/aggregate.js.gz")).thenReturn(new ByteArrayInputStream(compressed));
+        Mockito.when(servletContext.getMimeType("/wf/1/aggregate.js")).thenReturn("application/javascript");
+
+        final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getServletContext()).thenReturn(servletContext);
+        Mockito.when(request.getContextPath()).thenReturn("/ctx");
+        Mockito.when(request.getRequestURI()).thenReturn("/ctx/wf/1/aggregate.js");
+        Mockito.when(request.getMethod()).thenReturn("GET");
+        Mockito.when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+
+        final ByteArrayServletOutputStream sos = new ByteArrayServletOutputStream();
+        HttpServletResponse response = mockResponse(sos, null);
+        final FilterChain chain = Mockito.mock(FilterChain.class);
+        filter.doFilter(request, response, chain);
+
+        Mockito.verify(chain, Mockito.never()).doFilter(Mockito.any(ServletRequest.class), Mockito.any(ServletResponse.class));
+        Mockito.verify(response).setHeader("Content-Encoding", HttpUtil.GZIP);
+        Mockito.verify(response).setHeader("Content-Length", String.valueOf(compressed.length));
+        Mockito.verify(response).setContentType("application/javascript");
+        Assert.assertTrue(Arrays.equals(compressed, sos.bos.toByteArray()));
+
+        // Range of the compressed bytes
+        Mockito.when(servletContext.getResourceAsStream("/wf/1/aggregate.js.gz")).thenReturn(new ByteArrayInputStream(compressed));
+        Mockito.when(request.getHeader("Range")).thenReturn("bytes=10-19");
+        final ByteArrayServletOutputStream partial = new ByteArrayServletOutputStream();
+        response = mockResponse(partial, null);
+        filter.doFilter(request, response, chain);
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        Mockito.verify(response).setHeader("Content-Range", "bytes 10-19/100");
+        Assert.assertTrue(Arrays.equals(Arrays.copyOfRange(compressed, 10, 20), partial.bos.toByteArray()));
+        Mockito.when(request.getHeader("Range")).thenReturn(null);
+
+        // Not modified, weak tags in a list match
+        Mockito.when(request.getHeader("If-None-Match")).thenReturn("\"0a1b\"");
+        response = mockResponse(new ByteArrayServletOutputStream(), null);
+        filter.doFilter(request, response, chain);
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+        Mockito.when(request.getHeader("If-None-Match")).thenReturn("\"ffff\", W/\"0a1b\"");
+        response = mockResponse(new ByteArrayServletOutputStream(), null);
+        filter.doFilter(request, response, chain);
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+        // No variant for deflate: the chain is called
+        Mockito.when(request.getHeader("Accept-Encoding")).thenReturn("deflate");
+        filter.doFilter(request, mockResponse(new ByteArrayServletOutputStream(), null), chain);
+        Mockito.verify(chain).doFilter(Mockito.any(ServletRequest.class), Mockito.any(ServletResponse.class));
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2016   The authors of WUIC
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.github.wuic.servlet.test;
+
+import com.github.wuic.servlet.HeadFlushHttpServletResponseWrapper;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Tests for {@link HeadFlushHttpServletResponseWrapper}.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @since 0.5.3
+ */
+@RunWith(JUnit4.class)
+public class HeadFlushHttpServletResponseWrapperTest {
+
+    /**
+     * Timeout.
+     */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(60);
+
+    /**
+     * Collected heads.
+     */
+    private final List<String> heads = new ArrayList<String>();
+
+    /**
+     * <p>
+     * Creates a wrapper collecting the head section.
+     * </p>
+     *
+     * @return the wrapper
+     */
+    private HeadFlushHttpServletResponseWrapper newWrapper() {
+        return new HeadFlushHttpServletResponseWrapper(Mockito.mock(HttpServletResponse.class),
+                new HeadFlushHttpServletResponseWrapper.OnHeadReady() {
+                    @Override
+                    public void ready(final byte[] bytes, final char[] chars) {
+                        heads.add(bytes != null ? new String(bytes) : new String(chars));
+                    }
+                });
+    }
+
+    /**
+     * <p>
+     * Tests that the head section is detected when the closing tag is split across many writes.
+     * </p>
+     *
+     * @throws IOException if test fails
+     */
+    @Test
+    public void splitHeadWriterTest() throws IOException {
+        final HeadFlushHttpServletResponseWrapper wrapper = newWrapper();
+        final PrintWriter pw = wrapper.getWriter();
+        pw.write("<html><head><script src=\"a.js\"></script></he");
+        Assert.assertFalse(wrapper.isHeadFlushed());
+        pw.write("AD><body>");
+        Assert.assertTrue(wrapper.isHeadFlushed());
+        pw.write("</body></html>");
+
+        Assert.assertEquals(1, heads.size());
+        Assert.assertEquals("<html><head><script src=\"a.js\"></script></heAD>", heads.get(0));
+        Assert.assertEquals("<body></body></html>", new String(wrapper.toCharArray()));
+    }
+
+    /**
+     * <p>
+     * Tests head detection with byte stream.
+     * </p>
+     *
+     * @throws IOException if test fails
+     */
+    @Test
+    public void headStreamTest() throws IOException {
+        final HeadFlushHttpServletResponseWrapper wrapper = newWrapper();
+        final byte[] page = "<html><head></head><body></body></html>".getBytes();
+
+        for (final byte b : page) {
+            wrapper.getOutputStream().write(b);
+        }
+
+        Assert.assertEquals(1, heads.size());
+        Assert.assertEquals("<html><head></head>", heads.get(0));
+        Assert.assertEquals("<body></body></html>", new String(wrapper.toByteArray()));
+        Assert.assertNull(wrapper.toCharArray());
+    }
+
+    /**
+     * <p>
+     * Tests that the entire content is kept when no head section is written.
+     * </p>
+     *
+     * @throws IOException if test fails
+     */
+    @Test
+    public void noHeadTest() throws IOException {
+        final HeadFlushHttpServletResponseWrapper wrapper = newWrapper();
+        final byte[] page = "<div>fragment</div>".getBytes();
+        wrapper.getOutputStream().write(page, 0, page.length);
+
+        Assert.assertFalse(wrapper.isHeadFlushed());
+        Assert.assertTrue(heads.isEmpty());
+        Assert.assertEquals("<div>fragment</div>", new String(wrapper.toByteArray()));
+    }
+
+    /**
+     * <p>
+     * Tests that a closing head tag written inside a comment or a script is ignored.
+     * </p>
+     *
+     * @throws IOException if test fails
+     */
+    @Test
+    public void headInScriptAndCommentTest() throws IOException {
+        final HeadFlushHttpServletResponseWrapper wrapper = newWrapper();
+        final String head = "<html><head><!-- </head> --><SCRIPT type=\"text/javascript\">var s = '</head>';</script>"
+                + "<scripts></scripts></head>";
+        final byte[] page = (head + "<body></body></html>").getBytes();
+
+        for (final byte b : page) {
+            wrapper.getOutputStream().write(b);
+        }
+
+        Assert.assertEquals(1, heads.size());
+        Assert.assertEquals(head, heads.get(0));
+        Assert.assertEquals("<body></body></html>", new String(wrapper.toByteArray()));
+    }
+
+    /**
+     * <p>
+     * Tests that the readiness of the stream is the readiness of the wrapped response stream.
+     * </p>
+     *
+     * @throws IOException if test fails
+     */
+    @Test
+    public void isReadyTest() throws IOException {
+        final HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+        final ServletOutputStream sos = Mockito.mock(ServletOutputStream.class);
+        Mockito.when(response.getOutputStream()).thenReturn(sos);
+        Mockito.when(sos.isReady()).thenReturn(true);
+        final HeadFlushHttpServletResponseWrapper wrapper = new HeadFlushHttpServletResponseWrapper(response,
+                new HeadFlushHttpServletResponseWrapper.OnHeadReady() {
+                    @Override
+                    public void ready(final byte[] bytes, final char[] chars) {
+                        heads.add(bytes != null ? new String(bytes) : new String(chars));
+                    }
+                });
+
+        Assert.assertTrue(wrapper.getOutputStream().isReady());
+        Mockito.when(sos.isReady()).thenReturn(false);
+        Assert.assertFalse(wrapper.getOutputStream().isReady());
+    }
+}
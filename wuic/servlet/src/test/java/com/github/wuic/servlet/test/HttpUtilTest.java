@@ -0,0 +1,396 @@
+/*
+ * Copyright (c) 2016   The authors of WUIC
+ *
+ * License/Terms of Use
+ * Permission is hereby granted, free of charge and for the term of intellectual
+ * property rights on the Software, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to use, copy, modify and
+ * propagate free of charge, anywhere in the world, all or part of the Software
+ * subject to the following mandatory conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, PEACEFUL ENJOYMENT,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS
+ * OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package com.github.wuic.servlet.test;
+
+import com.github.wuic.EnumNutType;
+import com.github.wuic.NutType;
+import com.github.wuic.nut.InMemoryNut;
+import com.github.wuic.nut.RequestNut;
+import com.github.wuic.nut.TransformedNut;
+import com.github.wuic.servlet.HttpUtil;
+import com.github.wuic.util.Pipe;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * Tests for {@link HttpUtil}.
+ * </p>
+ *
+ * @author Guillaume DROUET
+ * @since 0.5.3
+ */
+@RunWith(JUnit4.class)
+public class HttpUtilTest {
+
+    /**
+     * Timeout.
+     */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(60);
+
+    /**
+     * <p>
+     * A {@link ServletOutputStream} writing to a byte array.
+     * </p>
+     */
+    private static final class ByteArrayServletOutputStream extends ServletOutputStream {
+
+        /**
+         * The written bytes.
+         */
+        private final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(final int b) throws IOException {
+            bos.write(b);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void setWriteListener(final WriteListener writeListener) {
+        }
+    }
+
+    /**
+     * <p>
+     * Creates a transformed nut.
+     * </p>
+     *
+     * @return the nut
+     */
+    private TransformedNut newNut() {
+        final NutType nutType = new NutType(EnumNutType.JAVASCRIPT, Charset.defaultCharset().displayName());
+        return new TransformedNut(new InMemoryNut("var foo;".getBytes(), "foo.js", nutType, 1L, false));
+    }
+
+    /**
+     * <p>
+     * Tests that a transformed nut is served many times with the response prepared once.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void preparedResponseTest() throws Exception {
+        final TransformedNut nut = newNut();
+        Assert.assertNull(nut.getPrepared(Object.class));
+
+        for (int i = 0; i < 2; i++) {
+            final ByteArrayServletOutputStream sos = new ByteArrayServletOutputStream();
+            final HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+            Mockito.when(response.getOutputStream()).thenReturn(sos);
+
+            HttpUtil.INSTANCE.write(nut, Mockito.mock(HttpServletRequest.class), response);
+
+            Assert.assertEquals("var foo;", new String(sos.bos.toByteArray()));
+            Assert.assertNotNull(nut.getPrepared(Object.class));
+            Mockito.verify(response).setHeader("ETag", "1");
+            Mockito.verify(response).setContentLength("var foo;".length());
+            Mockito.verify(response).setContentType(nut.getNutType().getMimeType());
+        }
+    }
+
+    /**
+     * <p>
+     * Tests that the views over a transformed nut share the prepared response and notify their own callbacks.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void requestNutTest() throws Exception {
+        final TransformedNut nut = newNut();
+        final AtomicInteger count = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            final RequestNut view = new RequestNut(nut);
+            view.onReady(new Pipe.OnReady() {
+                @Override
+                public void ready(final Pipe.Execution e) throws IOException {
+                    Assert.assertEquals("var foo;", e.toString());
+                    count.incrementAndGet();
+                }
+            }, true);
+
+            final ByteArrayServletOutputStream sos = new ByteArrayServletOutputStream();
+            final HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+            Mockito.when(response.getOutputStream()).thenReturn(sos);
+
+            HttpUtil.INSTANCE.write(view, Mockito.mock(HttpServletRequest.class), response);
+
+            Assert.assertEquals("var foo;", new String(sos.bos.toByteArray()));
+            Assert.assertNotNull(nut.getPrepared(Object.class));
+            Assert.assertEquals(i + 1, count.get());
+        }
+
+        Assert.assertTrue(nut.getReadyCallbacks().isEmpty());
+    }
+
+    /**
+     * <p>
+     * Tests that a 304 status is sent for a transformed nut matching the client cache.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void notModifiedTest() throws Exception {
+        final TransformedNut nut = newNut();
+        final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getHeader("If-None-Match")).thenReturn("1");
+        final HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+
+        HttpUtil.INSTANCE.write(nut, request, response);
+
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        Mockito.verify(response, Mockito.never()).getOutputStream();
+        Assert.assertNull(nut.getPrepared(Object.class));
+    }
+
+    /**
+     * <p>
+     * Writes a new transformed nut for a request with the given method and headers.
+     * </p>
+     *
+     * @param method the request method
+     * @param range the "Range" header
+     * @param ifRange the "If-Range" header
+     * @param sos the stream to write
+     * @return the response
+     * @throws Exception if write fails
+     */
+    private HttpServletResponse write(final String method,
+                                      final String range,
+                                      final String ifRange,
+                                      final ByteArrayServletOutputStream sos)
+            throws Exception {
+        final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getMethod()).thenReturn(method);
+        Mockito.when(request.getHeader("Range")).thenReturn(range);
+        Mockito.when(request.getHeader("If-Range")).thenReturn(ifRange);
+        final HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+        Mockito.when(response.getOutputStream()).thenReturn(sos);
+        HttpUtil.INSTANCE.write(newNut(), request, response);
+        return response;
+    }
+
+    /**
+     * <p>
+     * Tests single byte range requests.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void singleRangeTest() throws Exception {
+        ByteArrayServletOutputStream sos = new ByteArrayServletOutputStream();
+        HttpServletResponse response = write("GET", "bytes=4-6", null, sos);
+        Assert.assertEquals("foo", new String(sos.bos.toByteArray()));
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        Mockito.verify(response).setHeader("Content-Range", "bytes 4-6/8");
+        Mockito.verify(response).setContentLength(3);
+
+        sos = new ByteArrayServletOutputStream();
+        response = write("GET", "bytes=-4", "1", sos);
+        Assert.assertEquals("foo;", new String(sos.bos.toByteArray()));
+        Mockito.verify(response).setHeader("Content-Range", "bytes 4-7/8");
+
+        sos = new ByteArrayServletOutputStream();
+        write("GET", "bytes=6-", null, sos);
+        Assert.assertEquals("o;", new String(sos.bos.toByteArray()));
+    }
+
+    /**
+     * <p>
+     * Tests multiple byte ranges requests.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void multipleRangesTest() throws Exception {
+        final ByteArrayServletOutputStream sos = new ByteArrayServletOutputStream();
+        final HttpServletResponse response = write("GET", "bytes=0-2, 4-6", null, sos);
+        final String body = new String(sos.bos.toByteArray());
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        Mockito.verify(response).setContentType(Mockito.startsWith("multipart/byteranges; boundary="));
+        Mockito.verify(response).setContentLength(body.length());
+        Assert.assertTrue(body, body.contains("Content-Range: bytes 0-2/8\r\n\r\nvar\r\n"));
+        Assert.assertTrue(body, body.contains("Content-Range: bytes 4-6/8\r\n\r\nfoo\r\n"));
+    }
+
+    /**
+     * Checks that overlapping and adjacent ranges are merged.
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void mergedRangesTest() throws Exception {
+        final ByteArrayServletOutputStream sos = new ByteArrayServletOutputStream();
+        final HttpServletResponse response = write("GET", "bytes=4-5, 0-1, 6-6, 1-2", null, sos);
+        final String body = new String(sos.bos.toByteArray());
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        Mockito.verify(response).setContentLength(body.length());
+        final int first = body.indexOf("Content-Range: bytes 0-2/8\r\n\r\nvar\r\n");
+        Assert.assertTrue(body, first >= 0);
+        Assert.assertTrue(body, first < body.indexOf("Content-Range: bytes 4-6/8\r\n\r\nfoo\r\n"));
+        Assert.assertEquals(body, 2, body.split("Content-Range").length - 1);
+
+        final ByteArrayServletOutputStream single = new ByteArrayServletOutputStream();
+        final HttpServletResponse singleResponse = write("GET", "bytes=0-2, 3-4", null, single);
+        Mockito.verify(singleResponse).setHeader("Content-Range", "bytes 0-4/8");
+        Assert.assertEquals("var f", new String(single.bos.toByteArray()));
+    }
+
+    /**
+     * Checks that the complete content is sent when too many ranges are requested or when they overlap too much.
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void tooManyRangesTest() throws Exception {
+        final StringBuilder header = new StringBuilder("bytes=0-0");
+
+        for (int i = 0; i < 16; i++) {
+            header.append(",0-0");
+        }
+
+        ByteArrayServletOutputStream sos = new ByteArrayServletOutputStream();
+        HttpServletResponse response = write("GET", header.toString(), null, sos);
+        Assert.assertEquals("var foo;", new String(sos.bos.toByteArray()));
+        Mockito.verify(response, Mockito.never()).setStatus(Mockito.anyInt());
+
+        sos = new ByteArrayServletOutputStream();
+        response = write("GET", "bytes=0-, 0-", null, sos);
+        Assert.assertEquals("var foo;", new String(sos.bos.toByteArray()));
+        Mockito.verify(response, Mockito.never()).setStatus(Mockito.anyInt());
+    }
+
+    /**
+     * <p>
+     * Tests ranges that are not satisfiable, invalid or rejected by "If-Range".
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void ignoredRangeTest() throws Exception {
+        ByteArrayServletOutputStream sos = new ByteArrayServletOutputStream();
+        HttpServletResponse response = write("GET", "bytes=8-", null, sos);
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        Mockito.verify(response).setHeader("Content-Range", "bytes */8");
+        Assert.assertEquals(0, sos.bos.size());
+
+        sos = new ByteArrayServletOutputStream();
+        response = write("GET", "bytes=4-6", "2", sos);
+        Assert.assertEquals("var foo;", new String(sos.bos.toByteArray()));
+        Mockito.verify(response, Mockito.never()).setStatus(Mockito.anyInt());
+
+        sos = new ByteArrayServletOutputStream();
+        write("GET", "bytes=6-4", null, sos);
+        Assert.assertEquals("var foo;", new String(sos.bos.toByteArray()));
+    }
+
+    /**
+     * Checks the comparison of "If-None-Match" header.
+     */
+    @Test
+    public void ifNoneMatchTest() {
+        Assert.assertFalse(HttpUtil.INSTANCE.matchesIfNoneMatch(null, "1"));
+        Assert.assertTrue(HttpUtil.INSTANCE.matchesIfNoneMatch("*", "1"));
+        Assert.assertTrue(HttpUtil.INSTANCE.matchesIfNoneMatch("1", "1"));
+        Assert.assertTrue(HttpUtil.INSTANCE.matchesIfNoneMatch("\"1\"", "1"));
+        Assert.assertTrue(HttpUtil.INSTANCE.matchesIfNoneMatch("W/\"1\"", "\"1\""));
+        Assert.assertTrue(HttpUtil.INSTANCE.matchesIfNoneMatch("\"a,b\", \"2\" , W/\"1\"", "1"));
+        Assert.assertFalse(HttpUtil.INSTANCE.matchesIfNoneMatch("\"a,1\", \"2\"", "1"));
+        Assert.assertFalse(HttpUtil.INSTANCE.matchesIfNoneMatch("\"12\"", "1"));
+    }
+
+    /**
+     * <p>
+     * Tests that a "HEAD" request writes the headers without the body.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void headTest() throws Exception {
+        final ByteArrayServletOutputStream sos = new ByteArrayServletOutputStream();
+        final HttpServletResponse response = write("HEAD", "bytes=4-6", null, sos);
+        Assert.assertEquals(0, sos.bos.size());
+        Mockito.verify(response).setHeader("ETag", "1");
+        Mockito.verify(response).setHeader("Accept-Ranges", "bytes");
+        Mockito.verify(response).setContentLength("var foo;".length());
+        Mockito.verify(response, Mockito.never()).setStatus(Mockito.anyInt());
+
+        // The response is answered from the metadata, nothing is prepared
+        final TransformedNut nut = newNut();
+        final HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getMethod()).thenReturn("HEAD");
+        final HttpServletResponse headResponse = Mockito.mock(HttpServletResponse.class);
+        HttpUtil.INSTANCE.write(nut, request, headResponse);
+        Assert.assertNull(nut.getPrepared(Object.class));
+        Mockito.verify(headResponse).setContentLength("var foo;".length());
+        Mockito.verify(headResponse, Mockito.never()).getOutputStream();
+    }
+
+    /**
+     * Checks the strong comparison of "If-Range" header.
+     */
+    @Test
+    public void ifRangeTest() {
+        Assert.assertTrue(HttpUtil.INSTANCE.matchesIfRange("1", "1"));
+        Assert.assertTrue(HttpUtil.INSTANCE.matchesIfRange(" \"1\" ", "1"));
+        Assert.assertFalse(HttpUtil.INSTANCE.matchesIfRange("W/\"1\"", "1"));
+        Assert.assertFalse(HttpUtil.INSTANCE.matchesIfRange("\"12\"", "1"));
+        Assert.assertFalse(HttpUtil.INSTANCE.matchesIfRange("Wed, 21 Oct 2015 07:28:00 GMT", "1"));
+    }
+}
@@ -25,6 +25,7 @@ package com.github.wuic.servlet.test;
 import com.github.wuic.NutTypeFactory;
 import com.github.wuic.ProcessContext;
 import com.github.wuic.servlet.ServletProcessContext;
+import com.github.wuic.util.PollingScheduler;
 import com.github.wuic.nut.dao.servlet.RequestDispatcherNutDao;
 import org.junit.Assert;
 import org.junit.Before;
@@ -45,7 +46,9 @@ import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
 import java.io.ByteArrayInputStream;
 import java.io.PrintWriter;
+import java.lang.reflect.Method;
 import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -69,6 +72,16 @@ public class RequestDispatcherNutDaoTest {
      */
     private final AtomicReference<HttpServletRequest> capturedRequest = new AtomicReference<HttpServletRequest>();
 
+    /**
+     * The content included for 'foo.js'.
+     */
+    private final AtomicReference<String> fooContent = new AtomicReference<String>("var foo;");
+
+    /**
+     * Number of includes.
+     */
+    private final AtomicInteger includes = new AtomicInteger();
+
     /**
      * Timeout.
      */
@@ -92,8 +105,9 @@ public class RequestDispatcherNutDaoTest {
 
                 if (req.getPathInfo().contains("foo.js")) {
                     capturedRequest.set(req);
+                    includes.incrementAndGet();
                     final PrintWriter pw = HttpServletResponse.class.cast(invocationOnMock.getArguments()[1]).getWriter();
-                    pw.print("var foo;");
+                    pw.print(fooContent.get());
                     pw.flush();
                 }
 
@@ -168,4 +182,46 @@ public class RequestDispatcherNutDaoTest {
 
         Assert.assertEquals(req, servletRequest);
     }
+
+    /**
+     * <p>
+     * Tests that included content is reused during the revalidation window.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void revalidationTest() throws Exception {
+        dao.init(60);
+        Assert.assertTrue(dao.exists("foo.js", ProcessContext.DEFAULT));
+        Assert.assertTrue(dao.exists("foo.js", ProcessContext.DEFAULT));
+        Assert.assertEquals("var foo;", dao.newInputStream("foo.js", ProcessContext.DEFAULT).execution().toString());
+        Assert.assertEquals(1, includes.get());
+
+        dao.init(0);
+        Assert.assertTrue(dao.exists("foo.js", ProcessContext.DEFAULT));
+        Assert.assertEquals(2, includes.get());
+    }
+
+    /**
+     * <p>
+     * Tests that the last update timestamp changes only when the included content changes.
+     * </p>
+     *
+     * @throws Exception if test fails
+     */
+    @Test
+    public void lastUpdateTimestampTest() throws Exception {
+        final Method method = PollingScheduler.class.getDeclaredMethod("getLastUpdateTimestampFor", String.class);
+        method.setAccessible(true);
+        final Long first = (Long) method.invoke(dao, "foo.js");
+        Thread.sleep(10L);
+        Assert.assertEquals(first, method.invoke(dao, "foo.js"));
+
+        fooContent.set("var foo = 1;");
+        Thread.sleep(10L);
+        final Long second = (Long) method.invoke(dao, "foo.js");
+        Assert.assertTrue(second > first);
+        Assert.assertEquals(3, includes.get());
+    }
 }
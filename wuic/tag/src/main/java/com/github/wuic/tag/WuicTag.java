@@ -23,10 +23,13 @@
 package com.github.wuic.tag;
 
 import com.github.wuic.WuicFacade;
+import com.github.wuic.context.HeapResolutionEvent;
 import com.github.wuic.exception.WuicException;
 import com.github.wuic.servlet.ServletProcessContext;
 import com.github.wuic.servlet.WuicServletContextListener;
 import com.github.wuic.nut.ConvertibleNut;
+import com.github.wuic.nut.HeapListener;
+import com.github.wuic.nut.NutsHeap;
 import com.github.wuic.servlet.HtmlParserFilter;
 import com.github.wuic.util.HtmlUtil;
 import com.github.wuic.util.IOUtils;
@@ -35,7 +38,10 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.jsp.JspException;
 import javax.servlet.jsp.JspWriter;
@@ -57,6 +63,11 @@ public class WuicTag extends TagSupport {
      */
     private static final long serialVersionUID = 4305181623848741300L;
 
+    /**
+     * The servlet context attribute where the import markup cache is stored.
+     */
+    private static final String IMPORT_MARKUP_CACHE = WuicTag.class.getName() + ".importMarkupCache";
+
     /**
      * Logger.
      */
@@ -77,6 +88,131 @@ public class WuicTag extends TagSupport {
      */
     private WuicFacade wuicFacade;
 
+    /**
+     * The import statements already rendered, associated to their workflow ID.
+     */
+    private Map<String, ImportMarkup> importMarkupCache;
+
+    /**
+     * <p>
+     * The import statements rendered for a workflow. The markup is valid as long as the context is not built again.
+     * It is also removed from the cache by an {@link InvalidationListener} when the workflow's heap changes.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    private static final class ImportMarkup {
+
+        /**
+         * The markup.
+         */
+        private final String markup;
+
+        /**
+         * The context version the markup has been computed with.
+         */
+        private final long contextVersion;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param markup the markup
+         * @param contextVersion the context version
+         */
+        private ImportMarkup(final String markup, final long contextVersion) {
+            this.markup = markup;
+            this.contextVersion = contextVersion;
+        }
+
+        /**
+         * <p>
+         * Indicates if this markup can be written for the given context version.
+         * </p>
+         *
+         * @param version the current context version
+         * @return {@code true} if the markup is still valid, {@code false} otherwise
+         */
+        private boolean isValid(final long version) {
+            return contextVersion == version;
+        }
+    }
+
+    /**
+     * <p>
+     * Removes the markup of a workflow from the cache when its heap changes. Two instances are equal when they refer to
+     * the same workflow and cache: registering the listener each time the markup is computed does not add a new
+     * listener to the heap if it is already notified.
+     * </p>
+     *
+     * @author Guillaume DROUET
+     * @since 0.5.3
+     */
+    private static final class InvalidationListener implements HeapListener {
+
+        /**
+         * The workflow ID.
+         */
+        private final String workflowId;
+
+        /**
+         * The cache.
+         */
+        private final Map<String, ImportMarkup> cache;
+
+        /**
+         * <p>
+         * Builds a new instance.
+         * </p>
+         *
+         * @param workflowId the workflow ID
+         * @param cache the cache
+         */
+        private InvalidationListener(final String workflowId, final Map<String, ImportMarkup> cache) {
+            this.workflowId = workflowId;
+            this.cache = cache;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void nutUpdated(final NutsHeap heap) {
+            cache.remove(workflowId);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void heapResolved(final HeapResolutionEvent event) {
+            // ignore event
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(final Object other) {
+            if (other instanceof InvalidationListener) {
+                final InvalidationListener listener = InvalidationListener.class.cast(other);
+                return workflowId.equals(listener.workflowId) && cache == listener.cache;
+            } else {
+                return false;
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return workflowId.hashCode();
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -84,6 +220,92 @@ public class WuicTag extends TagSupport {
     public void setPageContext(final PageContext pageContext) {
         super.setPageContext(pageContext);
         wuicFacade = WuicServletContextListener.getWuicFacade(pageContext.getServletContext());
+        importMarkupCache = getImportMarkupCache(pageContext.getServletContext());
+    }
+
+    /**
+     * <p>
+     * Gets the import markup cache shared by all the tags of the given servlet context. The cache is created if it
+     * does not exist yet.
+     * </p>
+     *
+     * @param servletContext the servlet context
+     * @return the cache
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, ImportMarkup> getImportMarkupCache(final ServletContext servletContext) {
+        synchronized (servletContext) {
+            Map<String, ImportMarkup> retval = (Map<String, ImportMarkup>) servletContext.getAttribute(IMPORT_MARKUP_CACHE);
+
+            if (retval == null) {
+                retval = new ConcurrentHashMap<String, ImportMarkup>();
+                servletContext.setAttribute(IMPORT_MARKUP_CACHE, retval);
+            }
+
+            return retval;
+        }
+    }
+
+    /**
+     * <p>
+     * Gets the import statements of the workflow. The workflow is executed only if no valid markup has been cached for
+     * the current context version.
+     * </p>
+     *
+     * <p>
+     * When multiple configurations are allowed, the tag associated to the workflow is cleared and the markup is never
+     * cached: the configuration tags build the context again at each rendering, so a cached markup would never be valid.
+     * </p>
+     *
+     * @return the import statements
+     * @throws WuicException if the workflow can't be executed
+     * @throws IOException if the markup can't be generated
+     */
+    private String getImportMarkup() throws WuicException, IOException {
+        if (wuicFacade.allowsMultipleConfigInTagSupport()) {
+            wuicFacade.clearTag(workflowId);
+            return computeImportMarkup();
+        }
+
+        wuicFacade.refreshContext();
+
+        // Read the version before running the workflow: if the context is built again meanwhile, the markup is stored
+        // with the old version and will be computed again at the next rendering
+        final long contextVersion = wuicFacade.getContextVersion();
+        final ImportMarkup cached = importMarkupCache.get(workflowId);
+
+        if (cached != null && cached.isValid(contextVersion)) {
+            return cached.markup;
+        }
+
+        final ImportMarkup importMarkup = new ImportMarkup(computeImportMarkup(), contextVersion);
+        importMarkupCache.put(workflowId, importMarkup);
+
+        // No effect if the heap already notifies the listener of this workflow
+        wuicFacade.addHeapListener(workflowId, new InvalidationListener(workflowId, importMarkupCache));
+
+        return importMarkup.markup;
+    }
+
+    /**
+     * <p>
+     * Runs the workflow and writes the import statement of each resulting nut.
+     * </p>
+     *
+     * @return the import statements
+     * @throws WuicException if the workflow can't be executed
+     * @throws IOException if the markup can't be generated
+     */
+    private String computeImportMarkup() throws WuicException, IOException {
+        final List<ConvertibleNut> nuts = wuicFacade.runWorkflow(workflowId, new ServletProcessContext(HttpServletRequest.class.cast(pageContext.getRequest())));
+        final StringBuilder markup = new StringBuilder();
+
+        for (final ConvertibleNut nut : nuts) {
+            markup.append(HtmlUtil.writeScriptImport(nut, IOUtils.mergePath(wuicFacade.getContextPath(), workflowId)))
+                    .append(IOUtils.NEW_LINE);
+        }
+
+        return markup.toString();
     }
 
     /**
@@ -104,24 +326,20 @@ public class WuicTag extends TagSupport {
             log.debug("Process JSP tag for workflow {}.", workflowId);
             pageContext.getRequest().setAttribute(HtmlParserFilter.FORCE_DYNAMIC_CONTENT, "");
 
-            if (wuicFacade.allowsMultipleConfigInTagSupport()) {
-                wuicFacade.clearTag(workflowId);
-            }
-
             final JspWriter out = pageContext.getOut();
 
             if (pageContext.getRequest().getAttribute(HtmlParserFilter.class.getName()) == null) {
-                final List<ConvertibleNut> nuts = wuicFacade.runWorkflow(workflowId, new ServletProcessContext(HttpServletRequest.class.cast(pageContext.getRequest())));
-
-                for (final ConvertibleNut nut : nuts) {
-                    out.println(HtmlUtil.writeScriptImport(nut, IOUtils.mergePath(wuicFacade.getContextPath(), workflowId)));
-                }
+                out.print(getImportMarkup());
 
                 if (breakAggregation != null) {
                     log.warn("breakAggregation attribute has bean specified for the import of workflow {} but will be ignored because the page is not filtered by",
                             workflowId, HtmlParserFilter.class.getName());
                 }
             } else {
+                if (wuicFacade.allowsMultipleConfigInTagSupport()) {
+                    wuicFacade.clearTag(workflowId);
+                }
+
                 out.print("<wuic:html-import workflowId='");
                 out.print(workflowId);
                 out.print("'");